@@ -0,0 +1,105 @@
+package com.wilddog.client.rest.model;
+
+/**
+ * A single event received from a streaming subscription (see {@code Wilddog.listen(String, WilddogEventListener)}).
+ */
+public class WilddogEvent {
+
+	/**
+	 * The event-types sent by the Wilddog REST API on an {@code text/event-stream} connection.
+	 */
+	public enum Type {
+
+		/** the data at {@link WilddogEvent#getPath()} was replaced by {@link WilddogEvent#getData()} */
+		PUT,
+		/** the children in {@link WilddogEvent#getData()} were written under {@link WilddogEvent#getPath()} */
+		PATCH,
+		/** sent periodically by the server to keep the connection open; carries no data */
+		KEEP_ALIVE,
+		/** the subscription was cancelled by the server, ie: because the security-rules no longer allow reading */
+		CANCEL,
+		/** the token of the subscription has expired or was revoked */
+		AUTH_REVOKED;
+
+		/**
+		 * @param name -- the event-name as sent on the wire, ie: 'keep-alive'
+		 * @return the type, or null if the name is unknown
+		 */
+		public static Type fromEventName(String name ) {
+			if( name == null ) {
+				return null;
+			}
+			String normalized = name.trim().toUpperCase().replace( '-', '_' );
+			for( Type type : Type.values() ) {
+				if( type.name().equals( normalized ) ) {
+					return type;
+				}
+			}
+			return null;
+		}
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PROPERTIES & CONSTRUCTORS
+//
+///////////////////////////////////////////////////////////////////////////////
+
+	private final Type type;
+	private final String path;
+	private final Object data;
+
+	public WilddogEvent(Type type, String path, Object data ) {
+		this.type = type;
+		this.path = path == null ? "/" : path;
+		this.data = data;
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PUBLIC API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	public Type getType() {
+		return this.type;
+	}
+
+	/**
+	 * Returns the path of the changed data, relative to the path that was listened to
+	 *
+	 * @return a path starting with '/'; '/' refers to the listened path itself
+	 */
+	public String getPath() {
+		return this.path;
+	}
+
+	/**
+	 * Returns the new data; a Map for json-objects, a String/Number/Boolean for leaves, or null when deleted
+	 *
+	 * @return the data of a PUT or PATCH event; null for the other event-types
+	 */
+	public Object getData() {
+		return this.data;
+	}
+
+	@Override
+	public String toString() {
+
+		StringBuilder result = new StringBuilder();
+
+		result.append( WilddogEvent.class.getSimpleName() + "[ " )
+				.append( "(Type:" ).append( this.type ).append( ") " )
+				.append( "(Path:" ).append( this.path ).append( ") " )
+				.append( "(Data:" ).append( this.data ).append( ") " )
+				.append( "]" );
+
+		return result.toString();
+	}
+
+}
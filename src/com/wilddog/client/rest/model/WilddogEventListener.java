@@ -0,0 +1,25 @@
+package com.wilddog.client.rest.model;
+
+import com.wilddog.client.rest.error.WilddogException;
+
+/**
+ * Receives the events of a streaming subscription; callbacks are made, in order, from the subscription's own thread.
+ */
+public interface WilddogEventListener {
+
+	/**
+	 * Called for every PUT, PATCH, CANCEL and AUTH_REVOKED event; keep-alive events are not delivered.
+	 *
+	 * @param event -- never null
+	 */
+	void onEvent(WilddogEvent event );
+
+	/**
+	 * Called when the streaming connection failed or was closed by the server; unless the subscription was
+	 * closed, it reconnects after a back-off and starts again with a PUT of the full data.
+	 *
+	 * @param error -- never null
+	 */
+	void onError(WilddogException error );
+
+}
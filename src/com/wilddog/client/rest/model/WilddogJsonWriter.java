@@ -0,0 +1,21 @@
+package com.wilddog.client.rest.model;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes the json-data of a request-body straight into the connection, as it is sent; ie: from a serializer
+ * that streams its output, so the data is never held as a String or array.
+ */
+public interface WilddogJsonWriter {
+
+	/**
+	 * Called on the thread sending the request; once for every time it is sent, so again when it is retried.
+	 * Must write the same (utf-8) json-data every time.
+	 *
+	 * @param out -- buffered; must not be closed
+	 * @throws IOException if the data cannot be written; fails the request
+	 */
+	void writeTo(OutputStream out ) throws IOException;
+
+}
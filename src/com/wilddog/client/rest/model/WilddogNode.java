@@ -0,0 +1,641 @@
+package com.wilddog.client.rest.model;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+
+/**
+ * A read-only view of json-data, held as a compact tree; returned by {@code Wilddog#getNode(String)}, for
+ * subtrees too large to hold as nested maps.
+ *
+ * The whole tree lives in a handful of flat arrays: every node takes a type-byte and a long, which holds
+ * numbers and booleans unboxed; every child takes an int and a key, and keys are shared across the tree.
+ * A node is addressed by child-path, ie: {@code node.child( "sensors/42/temperature" ).asDouble()}; a
+ * missing child is a node for which {@link #exists()} is false, so paths can be chained without checks.
+ *
+ * Nothing is converted to maps, lists or boxed values unless asked for, through {@link #toObject()} or
+ * {@link #toMap()}.
+ *
+ * NOTE: immutable, and so safe to share across threads.
+ */
+public final class WilddogNode {
+
+	public enum Type {
+		OBJECT,
+		ARRAY,
+		STRING,
+		NUMBER,
+		BOOLEAN,
+		NULL,
+		/** the node does not exist; ie: a child that is not there */
+		MISSING
+	}
+
+	// the kinds of nodes, as stored; finer than Type, as numbers keep their representation
+	private static final byte OBJECT 								= 0;
+	private static final byte ARRAY 								= 1;
+	private static final byte STRING 								= 2;
+	private static final byte LONG 									= 3;
+	private static final byte DOUBLE 								= 4;
+	private static final byte BIG_INTEGER 							= 5;
+	private static final byte BOOLEAN 								= 6;
+	private static final byte NULL 									= 7;
+
+	// objects with more children than this are searched through a sorted index, built on first use
+	private static final int MAX_LINEAR_LOOKUP 						= 16;
+
+	private static final Comparator<String> KEY_COMPARATOR = new Comparator<String>() {
+		@Override
+		public int compare(String a, String b ) {
+			return a.compareTo( b );
+		}
+	};
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PROPERTIES & CONSTRUCTORS
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	private final Tree tree;
+	private final int index;
+	private final String key;
+
+	private WilddogNode(Tree tree, int index, String key ) {
+		this.tree = tree;
+		this.index = index;
+		this.key = key;
+	}
+
+	/**
+	 * Reads the json-value the parser is positioned on (or the next one, if it is not positioned yet); the
+	 * parser is left on the last token of the value.
+	 *
+	 * @return the root of the tree; a json-null if there is no value at all, ie: an empty response-body
+	 * @throws IOException if the json-data is malformed or cannot be read
+	 */
+	public static WilddogNode read(JsonParser parser ) throws IOException {
+		JsonToken token = parser.getCurrentToken();
+		if( token == null ) {
+			token = parser.nextToken();
+		}
+		Tree tree = new Tree();
+		if( token == null ) {
+			tree.addLeaf( NULL, 0 );
+		} else {
+			tree.read( parser, token );
+		}
+		tree.trim();
+		return new WilddogNode( tree, 0, null );
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PUBLIC API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	/**
+	 * @return the key of this node in its parent; null for the root
+	 */
+	public String getKey() {
+		return this.key;
+	}
+
+	public Type getType() {
+		if( this.index < 0 ) {
+			return Type.MISSING;
+		}
+		switch( this.tree.types[ this.index ] ) {
+			case OBJECT:		return Type.OBJECT;
+			case ARRAY:			return Type.ARRAY;
+			case STRING:		return Type.STRING;
+			case BOOLEAN:		return Type.BOOLEAN;
+			case NULL:			return Type.NULL;
+			default:			return Type.NUMBER;
+		}
+	}
+
+	/**
+	 * @return false for a child that is not there; true otherwise, including for a json-null
+	 */
+	public boolean exists() {
+		return this.index >= 0;
+	}
+
+	/**
+	 * @param path -- slash-separated keys, relative to this node; array-elements are addressed by index
+	 * @return the node at the path; one for which {@link #exists()} is false if there is none
+	 */
+	public WilddogNode child(String path ) {
+		WilddogNode node = this;
+		int start = 0;
+		int length = path.length();
+		while( start <= length && node.index >= 0 ) {
+			int end = path.indexOf( '/', start );
+			if( end < 0 ) {
+				end = length;
+			}
+			if( end > start ) {
+				node = node.childByKey( path.substring( start, end ) );
+			}
+			start = end + 1;
+		}
+		return node;
+	}
+
+	public boolean hasChild(String path ) {
+		return this.child( path ).exists();
+	}
+
+	/**
+	 * @return the number of children of an object or array; 0 for any other node
+	 */
+	public int getChildCount() {
+		if( !this.isContainer() ) {
+			return 0;
+		}
+		return (int) this.tree.values[ this.index ];
+	}
+
+	/**
+	 * @param position -- from 0 to {@link #getChildCount()}, in the order of the json-data
+	 */
+	public WilddogNode getChild(int position ) {
+		this.checkPosition( position );
+		int slot = this.firstSlot() + position;
+		return new WilddogNode( this.tree, this.tree.children[ slot ], this.keyAt( slot, position ) );
+	}
+
+	/**
+	 * @param position -- from 0 to {@link #getChildCount()}, in the order of the json-data
+	 * @return the key of the child; its index, for an array-element
+	 */
+	public String getChildKey(int position ) {
+		this.checkPosition( position );
+		return this.keyAt( this.firstSlot() + position, position );
+	}
+
+	/**
+	 * @return the children of an object or array, in the order of the json-data; empty for any other node
+	 */
+	public List<WilddogNode> getChildren() {
+		final int count = this.getChildCount();
+		return new AbstractList<WilddogNode>() {
+			@Override
+			public WilddogNode get(int position ) {
+				return WilddogNode.this.getChild( position );
+			}
+			@Override
+			public int size() {
+				return count;
+			}
+		};
+	}
+
+	public boolean isNull() {
+		return this.index >= 0 && this.tree.types[ this.index ] == NULL;
+	}
+
+	/**
+	 * @return the text of a string; the json-text of a number or boolean; null for a json-null
+	 * @throws IllegalStateException for an object, an array, or a missing node
+	 */
+	public String asString() {
+		switch( this.kind() ) {
+			case STRING:		return this.tree.strings[ (int) this.tree.values[ this.index ] ];
+			case LONG:			return Long.toString( this.tree.values[ this.index ] );
+			case DOUBLE:		return Double.toString( Double.longBitsToDouble( this.tree.values[ this.index ] ) );
+			case BIG_INTEGER:	return this.tree.strings[ (int) this.tree.values[ this.index ] ];
+			case BOOLEAN:		return Boolean.toString( this.tree.values[ this.index ] != 0 );
+			case NULL:			return null;
+			default:			throw this.notA( "string" );
+		}
+	}
+
+	/**
+	 * @return the value of a number, cut to a long
+	 * @throws IllegalStateException for anything but a number
+	 */
+	public long asLong() {
+		switch( this.kind() ) {
+			case LONG:			return this.tree.values[ this.index ];
+			case DOUBLE:		return (long) Double.longBitsToDouble( this.tree.values[ this.index ] );
+			case BIG_INTEGER:	return new BigInteger( this.tree.strings[ (int) this.tree.values[ this.index ] ] ).longValue();
+			default:			throw this.notA( "number" );
+		}
+	}
+
+	/**
+	 * @return the value of a number
+	 * @throws IllegalStateException for anything but a number
+	 */
+	public double asDouble() {
+		switch( this.kind() ) {
+			case LONG:			return this.tree.values[ this.index ];
+			case DOUBLE:		return Double.longBitsToDouble( this.tree.values[ this.index ] );
+			case BIG_INTEGER:	return new BigInteger( this.tree.strings[ (int) this.tree.values[ this.index ] ] ).doubleValue();
+			default:			throw this.notA( "number" );
+		}
+	}
+
+	/**
+	 * @throws IllegalStateException for anything but a boolean
+	 */
+	public boolean asBoolean() {
+		if( this.kind() != BOOLEAN ) {
+			throw this.notA( "boolean" );
+		}
+		return this.tree.values[ this.index ] != 0;
+	}
+
+	/**
+	 * Converts this node into the representation {@code JacksonUtility#toObject(String)} gives: maps (in
+	 * the order of the json-data), lists, strings, Integer/Long/BigInteger, Double and Boolean.
+	 *
+	 * NOTE: builds a copy of the whole subtree; use for small subtrees only.
+	 *
+	 * @return the value; null for a json-null or a missing node
+	 */
+	public Object toObject() {
+		if( this.index < 0 ) {
+			return null;
+		}
+		return this.tree.toObject( this.index );
+	}
+
+	/**
+	 * Converts this node into nested maps, see {@link #toObject()}.
+	 *
+	 * @return Strings mapped to arbitrary Objects; empty for anything but an object
+	 */
+	@SuppressWarnings("unchecked")
+	public Map<String, Object> toMap() {
+		Object value = this.toObject();
+		return value instanceof Map
+				? (Map<String, Object>) value
+				: new LinkedHashMap<String, Object>();
+	}
+
+	@Override
+	public String toString() {
+
+		StringBuilder result = new StringBuilder();
+
+		result.append( WilddogNode.class.getSimpleName() + "[ " )
+				.append( "(Key:" ).append( this.key ).append( ") " )
+				.append( "(Type:" ).append( this.getType() ).append( ") " );
+		if( this.isContainer() ) {
+			result.append( "(Children:" ).append( this.getChildCount() ).append( ") " );
+		} else if( this.index >= 0 ) {
+			result.append( "(Value:" ).append( this.asString() ).append( ") " );
+		}
+		result.append( "]" );
+
+		return result.toString();
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PRIVATE API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	private byte kind() {
+		return this.index < 0 ? -1 : this.tree.types[ this.index ];
+	}
+
+	private boolean isContainer() {
+		byte kind = this.kind();
+		return kind == OBJECT || kind == ARRAY;
+	}
+
+	private int firstSlot() {
+		return (int) ( this.tree.values[ this.index ] >>> 32 );
+	}
+
+	private String keyAt(int slot, int position ) {
+		return this.kind() == OBJECT ? this.tree.keys[ slot ] : Integer.toString( position );
+	}
+
+	private void checkPosition(int position ) {
+		if( position < 0 || position >= this.getChildCount() ) {
+			throw new IndexOutOfBoundsException( "position " + position + " of " + this.getChildCount() + " children" );
+		}
+	}
+
+	private WilddogNode childByKey(String key ) {
+		byte kind = this.kind();
+		int count = this.getChildCount();
+		int first = kind == OBJECT || kind == ARRAY ? this.firstSlot() : 0;
+
+		int position = -1;
+		if( kind == ARRAY ) {
+			position = parsePosition( key, count );
+		} else if( kind == OBJECT && count <= MAX_LINEAR_LOOKUP ) {
+			for( int i = 0; i < count; i++ ) {
+				if( this.tree.keys[ first + i ].equals( key ) ) {
+					position = i;
+					break;
+				}
+			}
+		} else if( kind == OBJECT ) {
+			position = this.tree.find( this.index, first, count, key );
+		}
+		if( position < 0 ) {
+			return new WilddogNode( this.tree, -1, key );
+		}
+		return new WilddogNode( this.tree, this.tree.children[ first + position ], key );
+	}
+
+	private static int parsePosition(String key, int count ) {
+		if( key.isEmpty() || key.length() > 10 ) {
+			return -1;
+		}
+		int position = 0;
+		for( int i = 0; i < key.length(); i++ ) {
+			char c = key.charAt( i );
+			if( c < '0' || c > '9' ) {
+				return -1;
+			}
+			position = position * 10 + ( c - '0' );
+		}
+		return position < count ? position : -1;
+	}
+
+	private IllegalStateException notA(String type ) {
+		return new IllegalStateException( "node '" + this.key + "' is not a " + type + "; it is " + this.getType() );
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// INTERNAL CLASSES
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	/**
+	 * The nodes in document-order; every container stores where its children start in the children-array
+	 * (high int of its value) and how many there are (low int), and the children of a container are
+	 * contiguous.
+	 */
+	private static class Tree {
+
+		private byte[] types = new byte[ 64 ];
+		private long[] values = new long[ 64 ];
+		private int nodeCount = 0;
+
+		private int[] children = new int[ 64 ];
+		private String[] keys = new String[ 64 ];
+		private int childCount = 0;
+
+		private String[] strings = new String[ 16 ];
+		private int stringCount = 0;
+
+		// the positions of the children of large objects, sorted by key; built on the first lookup
+		private final Map<Integer, int[]> sortedChildren = new ConcurrentHashMap<Integer, int[]>();
+
+		private int addLeaf(byte type, long value ) {
+			if( this.nodeCount == this.types.length ) {
+				this.types = Arrays.copyOf( this.types, this.nodeCount * 2 );
+				this.values = Arrays.copyOf( this.values, this.nodeCount * 2 );
+			}
+			this.types[ this.nodeCount ] = type;
+			this.values[ this.nodeCount ] = value;
+			return this.nodeCount++;
+		}
+
+		private int addString(byte type, String value ) {
+			if( this.stringCount == this.strings.length ) {
+				this.strings = Arrays.copyOf( this.strings, this.stringCount * 2 );
+			}
+			this.strings[ this.stringCount ] = value;
+			return this.addLeaf( type, this.stringCount++ );
+		}
+
+		/**
+		 * Reads the value starting at the token, without recursion; the children of the open containers
+		 * are collected per depth, and copied into the children-array as their container closes.
+		 */
+		private void read(JsonParser parser, JsonToken token ) throws IOException {
+
+			Map<String, String> interned = new HashMap<String, String>();
+			List<Pending> open = new ArrayList<Pending>();
+			int depth = 0;
+			String name = null;
+
+			while( true ) {
+				int node;
+				switch( token ) {
+					case START_OBJECT:
+					case START_ARRAY:
+						node = this.addLeaf( token == JsonToken.START_OBJECT ? OBJECT : ARRAY, 0 );
+						if( depth > 0 ) {
+							open.get( depth - 1 ).add( node, name );
+						}
+						if( open.size() == depth ) {
+							open.add( new Pending() );
+						}
+						open.get( depth ).open( node );
+						depth++;
+						break;
+					case END_OBJECT:
+					case END_ARRAY:
+						depth--;
+						open.get( depth ).close( this );
+						if( depth == 0 ) {
+							return;
+						}
+						break;
+					case FIELD_NAME:
+						String key = parser.getCurrentName();
+						name = interned.get( key );
+						if( name == null ) {
+							interned.put( key, key );
+							name = key;
+						}
+						break;
+					default:
+						node = this.addValue( parser, token );
+						if( depth == 0 ) {
+							return;
+						}
+						open.get( depth - 1 ).add( node, name );
+						break;
+				}
+				token = parser.nextToken();
+				if( token == null ) {
+					throw new IOException( "unexpected end of json-data" );
+				}
+			}
+		}
+
+		private int addValue(JsonParser parser, JsonToken token ) throws IOException {
+			switch( token ) {
+				case VALUE_STRING:
+					return this.addString( STRING, parser.getText() );
+				case VALUE_NUMBER_INT:
+					if( parser.getNumberType() == JsonParser.NumberType.BIG_INTEGER ) {
+						return this.addString( BIG_INTEGER, parser.getText() );
+					}
+					return this.addLeaf( LONG, parser.getLongValue() );
+				case VALUE_NUMBER_FLOAT:
+					return this.addLeaf( DOUBLE, Double.doubleToRawLongBits( parser.getDoubleValue() ) );
+				case VALUE_TRUE:
+					return this.addLeaf( BOOLEAN, 1 );
+				case VALUE_FALSE:
+					return this.addLeaf( BOOLEAN, 0 );
+				case VALUE_NULL:
+					return this.addLeaf( NULL, 0 );
+				default:
+					throw new IOException( "unexpected json-token " + token );
+			}
+		}
+
+		private void addChildren(int node, int[] nodes, String[] names, int count ) {
+			if( this.childCount + count > this.children.length ) {
+				int capacity = Math.max( this.children.length * 2, this.childCount + count );
+				this.children = Arrays.copyOf( this.children, capacity );
+				this.keys = Arrays.copyOf( this.keys, capacity );
+			}
+			System.arraycopy( nodes, 0, this.children, this.childCount, count );
+			if( this.types[ node ] == OBJECT ) {
+				System.arraycopy( names, 0, this.keys, this.childCount, count );
+			}
+			this.values[ node ] = ( (long) this.childCount << 32 ) | count;
+			this.childCount += count;
+		}
+
+		private void trim() {
+			this.types = Arrays.copyOf( this.types, this.nodeCount );
+			this.values = Arrays.copyOf( this.values, this.nodeCount );
+			this.children = Arrays.copyOf( this.children, this.childCount );
+			this.keys = Arrays.copyOf( this.keys, this.childCount );
+			this.strings = Arrays.copyOf( this.strings, this.stringCount );
+		}
+
+		/**
+		 * @return the position of the child with the key among the children of the object; -1 if none
+		 */
+		private int find(int node, final int first, int count, String key ) {
+			int[] sorted = this.sortedChildren.get( node );
+			if( sorted == null ) {
+				Integer[] positions = new Integer[ count ];
+				for( int i = 0; i < count; i++ ) {
+					positions[ i ] = i;
+				}
+				Arrays.sort( positions, new Comparator<Integer>() {
+					@Override
+					public int compare(Integer a, Integer b ) {
+						return KEY_COMPARATOR.compare( Tree.this.keys[ first + a ], Tree.this.keys[ first + b ] );
+					}
+				});
+				sorted = new int[ count ];
+				for( int i = 0; i < count; i++ ) {
+					sorted[ i ] = positions[ i ];
+				}
+				this.sortedChildren.put( node, sorted );
+			}
+
+			int low = 0;
+			int high = count - 1;
+			while( low <= high ) {
+				int middle = ( low + high ) >>> 1;
+				int compared = KEY_COMPARATOR.compare( this.keys[ first + sorted[ middle ] ], key );
+				if( compared < 0 ) {
+					low = middle + 1;
+				} else if( compared > 0 ) {
+					high = middle - 1;
+				} else {
+					return sorted[ middle ];
+				}
+			}
+			return -1;
+		}
+
+		private Object toObject(int node ) {
+			long value = this.values[ node ];
+			switch( this.types[ node ] ) {
+				case OBJECT: {
+					int first = (int) ( value >>> 32 );
+					int count = (int) value;
+					Map<String, Object> map = new LinkedHashMap<String, Object>( Math.max( 16, (int) ( count / 0.75f ) + 1 ) );
+					for( int i = first; i < first + count; i++ ) {
+						map.put( this.keys[ i ], this.toObject( this.children[ i ] ) );
+					}
+					return map;
+				}
+				case ARRAY: {
+					int first = (int) ( value >>> 32 );
+					int count = (int) value;
+					List<Object> list = new ArrayList<Object>( count );
+					for( int i = first; i < first + count; i++ ) {
+						list.add( this.toObject( this.children[ i ] ) );
+					}
+					return list;
+				}
+				case STRING:		return this.strings[ (int) value ];
+				case LONG:			return value == (int) value ? (Object) Integer.valueOf( (int) value ) : (Object) Long.valueOf( value );
+				case DOUBLE:		return Double.longBitsToDouble( value );
+				case BIG_INTEGER:	return new BigInteger( this.strings[ (int) value ] );
+				case BOOLEAN:		return value != 0;
+				default:			return null;
+			}
+		}
+	}
+
+	/**
+	 * The children collected so far for an open container; reused for every container at the same depth.
+	 */
+	private static class Pending {
+
+		private int node;
+		private int[] nodes = new int[ 16 ];
+		private String[] names = new String[ 16 ];
+		private int count;
+
+		private void open(int node ) {
+			this.node = node;
+			this.count = 0;
+		}
+
+		private void add(int child, String name ) {
+			if( this.count == this.nodes.length ) {
+				this.nodes = Arrays.copyOf( this.nodes, this.count * 2 );
+				this.names = Arrays.copyOf( this.names, this.count * 2 );
+			}
+			this.nodes[ this.count ] = child;
+			this.names[ this.count ] = name;
+			this.count++;
+		}
+
+		private void close(Tree tree ) {
+			tree.addChildren( this.node, this.nodes, this.names, this.count );
+			// drops the references to the keys, so the buffer does not keep them alive
+			Arrays.fill( this.names, 0, this.count, null );
+		}
+	}
+
+}
@@ -0,0 +1,342 @@
+package com.wilddog.client.rest.model;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * An immutable set of query-parameters for a single request.
+ *
+ * Every method returns a new instance, leaving the receiver untouched; so a query can be built once,
+ * kept in a constant, and passed to any number of concurrent calls:
+ *
+ * <pre>
+ * WilddogQuery query = new WilddogQuery().param( "print", "pretty" );
+ * wilddog.get( "users", query );
+ * </pre>
+ *
+ * The typed methods build the server-side filters of the REST API, with their values json-encoded as the
+ * server expects; each replaces an earlier parameter of the same name:
+ *
+ * <pre>
+ * WilddogQuery adults = new WilddogQuery().orderByChild( "age" ).startAt( 18 ).limitToFirst( 100 );
+ * WilddogQuery keys = new WilddogQuery().shallow();
+ * </pre>
+ *
+ * NOTE: the server compares numbers exactly, so ids and timestamps beyond 2^53 are best passed as a long;
+ * a double cannot hold them.
+ */
+public final class WilddogQuery {
+
+	public static final WilddogQuery EMPTY = new WilddogQuery();
+
+	public static final String ORDER_BY									= "orderBy";
+	public static final String LIMIT_TO_FIRST							= "limitToFirst";
+	public static final String LIMIT_TO_LAST							= "limitToLast";
+	public static final String START_AT									= "startAt";
+	public static final String END_AT									= "endAt";
+	public static final String EQUAL_TO									= "equalTo";
+	public static final String SHALLOW									= "shallow";
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PROPERTIES & CONSTRUCTORS
+//
+///////////////////////////////////////////////////////////////////////////////
+
+	private final String[] names;
+	private final String[] values;
+
+	public WilddogQuery() {
+		this( new String[0], new String[0] );
+	}
+
+	private WilddogQuery(String[] names, String[] values ) {
+		this.names = names;
+		this.values = values;
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PUBLIC API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	/**
+	 * Returns a copy of this query with the parameter appended.
+	 *
+	 * @param name -- Query string based on Wilddog REST API; cannot be null/empty
+	 * @param value -- Query parameter (not yet url-encoded); can be null
+	 * @return a new {@link WilddogQuery}
+	 */
+	public WilddogQuery param(String name, String value ) {
+		if( name == null || name.trim().isEmpty() ) {
+			throw new IllegalArgumentException( "name cannot be null or empty; was: '" + name + "'" );
+		}
+		String[] names = Arrays.copyOf( this.names, this.names.length + 1 );
+		String[] values = Arrays.copyOf( this.values, this.values.length + 1 );
+		names[names.length - 1] = name.trim();
+		values[values.length - 1] = value;
+		return new WilddogQuery( names, values );
+	}
+
+	/**
+	 * Returns a copy of this query that orders the children by their keys; ie: {@code orderBy="$key"}.
+	 */
+	public WilddogQuery orderByKey() {
+		return this.with( ORDER_BY, quote( "$key" ) );
+	}
+
+	/**
+	 * Returns a copy of this query that orders the children by their values; ie: {@code orderBy="$value"}.
+	 */
+	public WilddogQuery orderByValue() {
+		return this.with( ORDER_BY, quote( "$value" ) );
+	}
+
+	/**
+	 * Returns a copy of this query that orders the children by their priorities; ie: {@code orderBy="$priority"}.
+	 */
+	public WilddogQuery orderByPriority() {
+		return this.with( ORDER_BY, quote( "$priority" ) );
+	}
+
+	/**
+	 * Returns a copy of this query that orders the children by the value of one of their own children.
+	 *
+	 * @param child -- the (relative) path of the child to order by, ie: 'age' or 'address/city'; cannot be null/empty
+	 */
+	public WilddogQuery orderByChild(String child ) {
+		if( child == null || child.trim().isEmpty() ) {
+			throw new IllegalArgumentException( "child cannot be null or empty; was: '" + child + "'" );
+		}
+		return this.with( ORDER_BY, quote( child.trim() ) );
+	}
+
+	/**
+	 * @param limit -- the number of children kept from the start of the ordering; must be positive
+	 */
+	public WilddogQuery limitToFirst(int limit ) {
+		return this.with( LIMIT_TO_FIRST, String.valueOf( checkLimit( limit ) ) );
+	}
+
+	/**
+	 * @param limit -- the number of children kept from the end of the ordering; must be positive
+	 */
+	public WilddogQuery limitToLast(int limit ) {
+		return this.with( LIMIT_TO_LAST, String.valueOf( checkLimit( limit ) ) );
+	}
+
+	/**
+	 * @param value -- the first value (or key, when ordered by key) kept; cannot be null
+	 */
+	public WilddogQuery startAt(String value ) {
+		return this.with( START_AT, quote( value ) );
+	}
+
+	public WilddogQuery startAt(long value ) {
+		return this.with( START_AT, String.valueOf( value ) );
+	}
+
+	public WilddogQuery startAt(double value ) {
+		return this.with( START_AT, number( value ) );
+	}
+
+	public WilddogQuery startAt(boolean value ) {
+		return this.with( START_AT, String.valueOf( value ) );
+	}
+
+	/**
+	 * @param value -- the last value (or key, when ordered by key) kept; cannot be null
+	 */
+	public WilddogQuery endAt(String value ) {
+		return this.with( END_AT, quote( value ) );
+	}
+
+	public WilddogQuery endAt(long value ) {
+		return this.with( END_AT, String.valueOf( value ) );
+	}
+
+	public WilddogQuery endAt(double value ) {
+		return this.with( END_AT, number( value ) );
+	}
+
+	public WilddogQuery endAt(boolean value ) {
+		return this.with( END_AT, String.valueOf( value ) );
+	}
+
+	/**
+	 * @param value -- the only value (or key, when ordered by key) kept; cannot be null
+	 */
+	public WilddogQuery equalTo(String value ) {
+		return this.with( EQUAL_TO, quote( value ) );
+	}
+
+	public WilddogQuery equalTo(long value ) {
+		return this.with( EQUAL_TO, String.valueOf( value ) );
+	}
+
+	public WilddogQuery equalTo(double value ) {
+		return this.with( EQUAL_TO, number( value ) );
+	}
+
+	public WilddogQuery equalTo(boolean value ) {
+		return this.with( EQUAL_TO, String.valueOf( value ) );
+	}
+
+	/**
+	 * Returns a copy of this query that only fetches the keys of the children, with {@code true} in place of
+	 * any nested data; cannot be combined with the filters above.
+	 */
+	public WilddogQuery shallow() {
+		return this.with( SHALLOW, "true" );
+	}
+
+	/**
+	 * Returns a copy of this query with all parameters of the other query appended.
+	 *
+	 * @param other -- can be null
+	 * @return a new {@link WilddogQuery}, or this one if there is nothing to append
+	 */
+	public WilddogQuery merge(WilddogQuery other ) {
+		if( other == null || other.isEmpty() ) {
+			return this;
+		}
+		if( this.isEmpty() ) {
+			return other;
+		}
+		String[] names = Arrays.copyOf( this.names, this.names.length + other.names.length );
+		String[] values = Arrays.copyOf( this.values, this.values.length + other.values.length );
+		System.arraycopy( other.names, 0, names, this.names.length, other.names.length );
+		System.arraycopy( other.values, 0, values, this.values.length, other.values.length );
+		return new WilddogQuery( names, values );
+	}
+
+	public int size() {
+		return this.names.length;
+	}
+
+	public boolean isEmpty() {
+		return this.names.length == 0;
+	}
+
+	public String getName(int index ) {
+		return this.names[index];
+	}
+
+	public String getValue(int index ) {
+		return this.values[index];
+	}
+
+	/**
+	 * @return the value of the last parameter of that name, or null if absent
+	 */
+	public String getValue(String name ) {
+		for( int i = this.names.length - 1; i >= 0; i-- ) {
+			if( this.names[i].equals( name ) ) {
+				return this.values[i];
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public String toString() {
+
+		StringBuilder result = new StringBuilder();
+
+		for( int i = 0; i < this.names.length; i++ ) {
+			if( i > 0 ) {
+				result.append( "&" );
+			}
+			result.append( this.names[i] );
+			if( this.values[i] != null ) {
+				result.append( "=" ).append( this.values[i] );
+			}
+		}
+
+		return result.toString();
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PRIVATE API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	/**
+	 * Returns a copy of this query with every parameter of that name replaced by a single one.
+	 */
+	private WilddogQuery with(String name, String value ) {
+		int kept = 0;
+		for( String existing : this.names ) {
+			if( !existing.equals( name ) ) {
+				kept++;
+			}
+		}
+		String[] names = new String[kept + 1];
+		String[] values = new String[kept + 1];
+		for( int i = 0, j = 0; i < this.names.length; i++ ) {
+			if( !this.names[i].equals( name ) ) {
+				names[j] = this.names[i];
+				values[j++] = this.values[i];
+			}
+		}
+		names[kept] = name;
+		values[kept] = value;
+		return new WilddogQuery( names, values );
+	}
+
+	private static int checkLimit(int limit ) {
+		if( limit < 1 ) {
+			throw new IllegalArgumentException( "limit must be positive; was: " + limit );
+		}
+		return limit;
+	}
+
+	private static String number(double value ) {
+		if( Double.isNaN( value ) || Double.isInfinite( value ) ) {
+			throw new IllegalArgumentException( "value must be a finite number; was: " + value );
+		}
+		// integral values without the '.0' or an exponent, so they compare equal to the server's longs
+		if( value == Math.rint( value ) ) {
+			return Math.abs( value ) < 0x1p63 ? String.valueOf( (long) value ) : new BigDecimal( value ).toPlainString();
+		}
+		return String.valueOf( value );
+	}
+
+	/**
+	 * @return the value as a json-string; ie: 'a"b' becomes '"a\"b"'
+	 */
+	private static String quote(String value ) {
+		if( value == null ) {
+			throw new IllegalArgumentException( "value cannot be null" );
+		}
+		StringBuilder result = new StringBuilder( value.length() + 2 ).append( '"' );
+		for( int i = 0; i < value.length(); i++ ) {
+			char c = value.charAt( i );
+			switch( c ) {
+				case '"':  result.append( "\\\"" ); break;
+				case '\\': result.append( "\\\\" ); break;
+				case '\n': result.append( "\\n" ); break;
+				case '\r': result.append( "\\r" ); break;
+				case '\t': result.append( "\\t" ); break;
+				default:
+					if( c < 0x20 ) {
+						result.append( String.format( "\\u%04x", (int) c ) );
+					} else {
+						result.append( c );
+					}
+			}
+		}
+		return result.append( '"' ).toString();
+	}
+
+}
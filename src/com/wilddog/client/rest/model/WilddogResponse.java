@@ -1,8 +1,13 @@
 package com.wilddog.client.rest.model;
 
+import java.nio.charset.Charset;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
+import com.wilddog.client.rest.error.JacksonUtilityException;
+import com.wilddog.client.rest.error.WilddogException;
+import com.wilddog.client.rest.util.JacksonUtility;
+
 import org.apache.log4j.Logger;
 
 public class WilddogResponse {
@@ -17,27 +22,67 @@ public class WilddogResponse {
 //
 ///////////////////////////////////////////////////////////////////////////////
 
+	private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+	
 	private final boolean success;
 	private final int code;
-	private final Map<String, Object> body;
-	private final String rawBody;
+	private final String etag;
+	
+	/* NOTE: a response read off the wire keeps its bytes, and parses them on the first call to getBody();
+	 * the bytes are dropped once parsed, unless the raw-body was asked for. Guarded by 'this'.
+	 */
+	private final JacksonUtility jackson;
+	private final boolean keepRawBody;
+	private byte[] bytes;
+	private volatile Map<String, Object> body;
+	private volatile String rawBody;
 	
 	public WilddogResponse(boolean success, int code, Map<String, Object> body, String rawBody ) {
+		this( success, code, body, rawBody, null );
+	}
+	
+	/**
+	 * @param etag -- the ETag of the data, if the server was asked for it; can be null
+	 */
+	public WilddogResponse(boolean success, int code, Map<String, Object> body, String rawBody, String etag ) {
 		
 		this.success = success;
 		this.code = code;
 		
 		if( body == null ) {
-			LOGGER.info( "body was null; replacing with empty map" );
 			body = new LinkedHashMap<String, Object>();
 		}
 		this.body = body;
 		
 		if( rawBody == null ) {
-			LOGGER.info( "rawBody was null; replacing with empty string" );
 			rawBody = new String();
 		}
 		this.rawBody = rawBody.trim();
+		this.etag = etag;
+		this.jackson = null;
+		this.keepRawBody = true;
+	}
+	
+	/**
+	 * A response whose body is only parsed when asked for; ie: the echo of a write, which is often
+	 * only checked for its status-code.
+	 * 
+	 * @param bytes -- the json-data of the response-body; can be null/empty
+	 * @param keepRawBody -- whether {@link #getRawBody()} returns the json-data; it is empty otherwise
+	 * @param jackson -- parses the json-data
+	 * @param etag -- the ETag of the data, if the server was asked for it; can be null
+	 */
+	public WilddogResponse(boolean success, int code, byte[] bytes, boolean keepRawBody, JacksonUtility jackson, String etag ) {
+		
+		this.success = success;
+		this.code = code;
+		this.etag = etag;
+		this.jackson = jackson;
+		this.keepRawBody = keepRawBody;
+		this.bytes = bytes == null ? new byte[ 0 ] : bytes;
+		if( !keepRawBody ) {
+			this.rawBody = new String();
+		}
 	}
 	
 	
@@ -68,21 +113,71 @@ public class WilddogResponse {
 	}
 	
 	/**
-	 * Returns a map of the data returned by the Wilddog-client
+	 * Returns a map of the data returned by the Wilddog-client; parsed on the first call
 	 * 
 	 * @return a map of Strings to Objects
+	 * @throws IllegalStateException if the response-body is not json, caused by a {@link WilddogException}
 	 */
 	public Map<String, Object> getBody() {
-		return this.body;
+		Map<String, Object> body = this.body;
+		if( body != null ) {
+			return body;
+		}
+		synchronized( this ) {
+			if( this.body == null ) {
+				try {
+					this.body = this.jackson.toMap( this.bytes );
+				} catch( JacksonUtilityException jue ) {
+					
+					String msg = "unable to convert response-body with code " + this.code + " into map";
+					LOGGER.error( msg );
+					throw new IllegalStateException( new WilddogException( msg, jue ) );
+				}
+				if( !this.keepRawBody ) {
+					this.bytes = null;
+				}
+			}
+			return this.body;
+		}
 	}
 	
 	/**
 	 * Returns the raw data response returned by the Wilddog-client
 	 * 
+	 * NOTE: only kept when the client was built with {@code keepRawBody(true)}; empty otherwise
+	 * 
 	 * @return a String of the JSON-response from the client
 	 */
 	public String getRawBody() {
-		return this.rawBody;
+		String rawBody = this.rawBody;
+		if( rawBody != null ) {
+			return rawBody;
+		}
+		synchronized( this ) {
+			if( this.rawBody == null ) {
+				this.rawBody = new String( this.bytes, UTF_8 ).trim();
+			}
+			return this.rawBody;
+		}
+	}
+	
+	/**
+	 * Returns the ETag of the data at the path, ie: for a conditional request
+	 * 
+	 * NOTE: only sent when asked for, see {@code Wilddog#getIfChanged(String, String)}; null otherwise
+	 * 
+	 * @return the ETag, or null
+	 */
+	public String getETag() {
+		return this.etag;
+	}
+	
+	/**
+	 * Returns whether the data was not downloaded again, as it did not change since the ETag of a
+	 * conditional GET (status-code 304)
+	 */
+	public boolean isNotModified() {
+		return this.code == 304;
 	}
 	
 	@Override
@@ -93,8 +188,9 @@ public class WilddogResponse {
 		result.append( WilddogResponse.class.getSimpleName() + "[ " )
 				.append( "(Success:" ).append( this.success ).append( ") " )
 				.append( "(Code:" ).append( this.code ).append( ") " )
-				.append( "(Body:" ).append( this.body ).append( ") " )
-				.append( "(Raw-body:" ).append( this.rawBody ).append( ") " )
+				.append( "(Body:" ).append( this.body != null ? this.body : "(not parsed)" ).append( ") " )
+				.append( "(Raw-body:" ).append( this.rawBody != null ? this.rawBody : "(not decoded)" ).append( ") " )
+				.append( "(ETag:" ).append( this.etag ).append( ") " )
 				.append( "]" );
 		
 		return result.toString();
@@ -0,0 +1,130 @@
+package com.wilddog.client.rest.service;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Request;
+
+/**
+ * The time left to a call, and whether it was given up on; travels with its request as the tag, so the
+ * interceptors see it too. Once it expires, the call is cancelled, whichever phase it is in: connecting,
+ * writing the request, waiting for the response or reading it.
+ */
+final class Deadline {
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PROPERTIES & CONSTRUCTORS
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	private final long timeoutNanos;
+	private final long expiresAtNanos;
+	private volatile boolean cancelled = false;
+	private ScheduledFuture<?> timer;
+	private Deadline armed = this;
+
+	/**
+	 * @param timeoutNanos -- 0 for none; the call is then only tracked for being cancelled
+	 */
+	Deadline(long timeoutNanos ) {
+		this( timeoutNanos, System.nanoTime() + timeoutNanos );
+	}
+
+	private Deadline(long timeoutNanos, long expiresAtNanos ) {
+		this.timeoutNanos = timeoutNanos;
+		this.expiresAtNanos = expiresAtNanos;
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PUBLIC API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	/**
+	 * @return the {@link Deadline} the request was tagged with; null if it has none
+	 */
+	static Deadline of(Request request ) {
+		Object tag = request.tag();
+		return tag instanceof Deadline ? (Deadline) tag : null;
+	}
+
+	/**
+	 * @return a {@link Deadline} expiring at the same time, for another call; ie: a hedge
+	 */
+	Deadline fork() {
+		Deadline fork = new Deadline( this.timeoutNanos, this.expiresAtNanos );
+		// only this one is armed, and cancels both calls
+		fork.armed = this;
+		return fork;
+	}
+
+	/**
+	 * @param timer -- of the {@link Wilddog} sending the call; see {@link Resources#timer()}
+	 * @param onExpiry -- cancels the call(s); runs on the timer-thread, unless disarmed first; or right away,
+	 * 			if the timer was closed along with its {@link Wilddog}
+	 */
+	synchronized void arm(ScheduledExecutorService timer, Runnable onExpiry ) {
+		if( this.timeoutNanos > 0 ) {
+			try {
+				this.timer = timer.schedule( onExpiry, this.remainingNanos(), TimeUnit.NANOSECONDS );
+			} catch( RejectedExecutionException e ) {
+				// ie: sent through a closed instance
+				this.cancel();
+				onExpiry.run();
+			}
+		}
+	}
+
+	/**
+	 * Called once the response is read; the call can no longer be cancelled.
+	 */
+	void disarm() {
+		synchronized( this.armed ) {
+			if( this.armed.timer != null ) {
+				this.armed.timer.cancel( false );
+			}
+		}
+	}
+
+	long remainingNanos() {
+		return this.timeoutNanos > 0
+				? Math.max( 0, this.expiresAtNanos - System.nanoTime() )
+				: Long.MAX_VALUE;
+	}
+
+	/**
+	 * @return whether the call ran out of time
+	 */
+	boolean isExpired() {
+		return this.timeoutNanos > 0 && System.nanoTime() - this.expiresAtNanos >= 0;
+	}
+
+	/**
+	 * Marks the call as given up on, before it is cancelled; so its failure is not mistaken for one worth
+	 * retrying.
+	 */
+	void cancel() {
+		this.cancelled = true;
+	}
+
+	boolean isCancelled() {
+		return this.cancelled || this.isExpired();
+	}
+
+	@Override
+	public String toString() {
+		return this.timeoutNanos > 0
+				? "deadline of " + TimeUnit.NANOSECONDS.toMillis( this.timeoutNanos ) + "ms"
+				: "no deadline";
+	}
+
+}
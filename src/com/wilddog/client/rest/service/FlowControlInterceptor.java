@@ -0,0 +1,396 @@
+package com.wilddog.client.rest.service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+import org.apache.log4j.Logger;
+
+/**
+ * Holds every attempt of a request back until the {@link WilddogFlowControl} of its path-prefix, and then that
+ * of the whole {@link Wilddog}, lets it go; sits inside the retries, so these are limited as well.
+ *
+ * A request keeps its place within the concurrency-limit until its response-body is read to the end or
+ * closed, as its connection is in use until then; the limit is adapted as soon as the response-headers come.
+ *
+ * Event-streams are not limited, as they are open for as long as they are subscribed.
+ */
+class FlowControlInterceptor implements Interceptor {
+
+	protected static final Logger 			LOGGER 					= Logger.getRootLogger();
+
+	// the longest a waiting request goes without checking whether it was cancelled
+	private static final long MAX_WAIT_SLICE_NANOS 					= TimeUnit.MILLISECONDS.toNanos( 100 );
+
+	private final Limiter limiter;
+	private final List<Limiter> prefixLimiters = new ArrayList<Limiter>();
+	private final RelativePath relativePath;
+
+	/**
+	 * @param flowControl -- for every request; can be {@link WilddogFlowControl#UNLIMITED}
+	 * @param flowControlByPrefix -- for the requests on or below a (normalized) path-prefix
+	 */
+	FlowControlInterceptor(WilddogFlowControl flowControl, Map<String, WilddogFlowControl> flowControlByPrefix, HttpUrl baseUrl ) {
+		this.limiter = flowControl == WilddogFlowControl.UNLIMITED ? null : new Limiter( "", flowControl );
+		for( Map.Entry<String, WilddogFlowControl> entry : flowControlByPrefix.entrySet() ) {
+			this.prefixLimiters.add( new Limiter( entry.getKey(), entry.getValue() ) );
+		}
+		// the longest prefix matching a path is the one applied to it
+		Collections.sort( this.prefixLimiters, new Comparator<Limiter>() {
+			@Override
+			public int compare(Limiter a, Limiter b ) {
+				return b.prefix.length() - a.prefix.length();
+			}
+		});
+		this.relativePath = new RelativePath( baseUrl );
+	}
+
+	@Override
+	public Response intercept(Interceptor.Chain chain ) throws IOException {
+
+		Request request = chain.request();
+		if( WilddogEventStream.EVENT_STREAM_MEDIA_TYPE.equals( request.header( "Accept" ) ) ) {
+			return chain.proceed( request );
+		}
+
+		Limiter prefixLimiter = this.prefixLimiterOf( request.url() );
+		if( prefixLimiter != null ) {
+			prefixLimiter.acquire( request );
+		}
+		if( this.limiter != null ) {
+			try {
+				this.limiter.acquire( request );
+			} catch( IOException e ) {
+				if( prefixLimiter != null ) {
+					prefixLimiter.release();
+				}
+				throw e;
+			}
+		}
+
+		long sentNanos = System.nanoTime();
+		Response response;
+		try {
+			response = chain.proceed( request );
+		} catch( IOException e ) {
+			this.onCompleted( prefixLimiter, sentNanos, null, e );
+			this.release( prefixLimiter );
+			throw e;
+		} catch( RuntimeException e ) {
+			this.release( prefixLimiter );
+			throw e;
+		}
+		this.onCompleted( prefixLimiter, sentNanos, response, null );
+
+		// the connection stays in use until the response-body is read; so does the place of the request
+		if( response.body() == null ) {
+			this.release( prefixLimiter );
+			return response;
+		}
+		return response.newBuilder()
+				.body( new ReleasingResponseBody( response.body(), prefixLimiter ) )
+				.build();
+	}
+
+	/**
+	 * @return whether the request failed for being held back too long, rather than for being sent; such a
+	 * 			request is not retried, as that would only add to the queue
+	 */
+	static boolean isRejected(IOException e ) {
+		return e instanceof RejectedException;
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PRIVATE API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	private void onCompleted(Limiter prefixLimiter, long sentNanos, Response response, IOException failure ) {
+		if( prefixLimiter != null ) {
+			prefixLimiter.adapt( sentNanos, response, failure );
+		}
+		if( this.limiter != null ) {
+			this.limiter.adapt( sentNanos, response, failure );
+		}
+	}
+
+	private void release(Limiter prefixLimiter ) {
+		if( prefixLimiter != null ) {
+			prefixLimiter.release();
+		}
+		if( this.limiter != null ) {
+			this.limiter.release();
+		}
+	}
+
+	private Limiter prefixLimiterOf(HttpUrl url ) {
+		if( this.prefixLimiters.isEmpty() ) {
+			return null;
+		}
+		String path = this.relativePath.of( url );
+		for( Limiter limiter : this.prefixLimiters ) {
+			if( RelativePath.isOnOrBelow( path, limiter.prefix ) ) {
+				return limiter;
+			}
+		}
+		return null;
+	}
+
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// INTERNAL CLASSES
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	/**
+	 * The token-bucket and concurrency-limit of one {@link WilddogFlowControl}; waiting requests block on it.
+	 */
+	private static class Limiter {
+
+		private final String prefix;
+		private final WilddogFlowControl flowControl;
+
+		/* NOTE: guarded by 'this' */
+		private double tokens;
+		private long lastRefillNanos = System.nanoTime();
+		private double limit;
+		private int inFlight = 0;
+		private long lastDecreaseNanos = System.nanoTime();
+		private long pausedUntilNanos = System.nanoTime();
+		private long baselineNanos = Long.MAX_VALUE;
+
+		Limiter(String prefix, WilddogFlowControl flowControl ) {
+			this.prefix = prefix;
+			this.flowControl = flowControl;
+			this.tokens = flowControl.getBurst();
+			this.limit = flowControl.getInitialLimit();
+		}
+
+		/**
+		 * Waits for a token and a place within the concurrency-limit, and takes them.
+		 *
+		 * @throws IOException if the request's deadline expired, or neither came within the max-wait
+		 */
+		synchronized void acquire(Request request ) throws IOException {
+
+			Deadline deadline = Deadline.of( request );
+			long startNanos = System.nanoTime();
+			long maxWaitNanos = TimeUnit.MILLISECONDS.toNanos( this.flowControl.getMaxWaitMillis() );
+			if( deadline != null ) {
+				maxWaitNanos = Math.min( maxWaitNanos, deadline.remainingNanos() );
+			}
+
+			while( true ) {
+
+				if( deadline != null && deadline.isCancelled() ) {
+					throw new InterruptedIOException( "cancelled while held back by " + this );
+				}
+
+				long now = System.nanoTime();
+				this.refill( now );
+				long waitNanos;
+				if( now - this.pausedUntilNanos < 0 ) {
+					waitNanos = this.pausedUntilNanos - now;
+				} else if( this.flowControl.isRateLimited() && this.tokens < 1 ) {
+					waitNanos = (long) ( ( 1 - this.tokens ) / this.flowControl.getRate() * 1e9d ) + 1;
+				} else if( this.flowControl.isConcurrencyLimited() && this.inFlight >= (int) this.limit ) {
+					// until a request completes
+					waitNanos = Long.MAX_VALUE;
+				} else {
+					if( this.flowControl.isRateLimited() ) {
+						this.tokens -= 1;
+					}
+					this.inFlight++;
+					return;
+				}
+
+				long remainingNanos = maxWaitNanos - ( now - startNanos );
+				if( remainingNanos <= 0 ) {
+					String msg = "request(" + request.method() + ") @ " + request.url().encodedPath() + " was held back for "
+							+ TimeUnit.NANOSECONDS.toMillis( now - startNanos ) + "ms by " + this;
+					LOGGER.warn( msg );
+					throw new RejectedException( msg );
+				}
+				try {
+					TimeUnit.NANOSECONDS.timedWait( this, Math.min( Math.min( waitNanos, remainingNanos ), MAX_WAIT_SLICE_NANOS ) );
+				} catch( InterruptedException e ) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException( "interrupted while held back by " + this );
+				}
+			}
+		}
+
+		/**
+		 * Adapts the concurrency-limit to how a request went, once its response-headers (or failure) came in.
+		 *
+		 * @param sentNanos -- when the request was sent
+		 * @param response -- null if none was received
+		 * @param failure -- the failure of the request, if any
+		 */
+		synchronized void adapt(long sentNanos, Response response, IOException failure ) {
+
+			long now = System.nanoTime();
+			boolean wasLimited = this.inFlight * 2 >= this.limit;
+
+			boolean overloaded = false;
+			if( response != null && ( response.code() == 429 || response.code() == 503 ) ) {
+				overloaded = true;
+				long retryAfterMillis = WilddogRetryPolicy.retryAfterMillis( response );
+				if( retryAfterMillis > 0 ) {
+					long pausedUntil = now + TimeUnit.MILLISECONDS.toNanos( Math.min( retryAfterMillis, this.flowControl.getMaxWaitMillis() ) );
+					if( pausedUntil - this.pausedUntilNanos > 0 ) {
+						this.pausedUntilNanos = pausedUntil;
+					}
+				}
+			} else if( failure instanceof SocketTimeoutException ) {
+				overloaded = true;
+			} else if( response != null && this.flowControl.getLatencyTolerance() > 0 ) {
+				overloaded = this.isSlow( now - sentNanos );
+			}
+
+			if( this.flowControl.isConcurrencyLimited() ) {
+				if( overloaded ) {
+					// the requests sent before the last cut saw the old limit; they do not cut it again
+					if( sentNanos - this.lastDecreaseNanos > 0 ) {
+						this.limit = Math.max( this.flowControl.getMinLimit(), this.limit * this.flowControl.getBackoffRatio() );
+						this.lastDecreaseNanos = now;
+						if( LOGGER.isDebugEnabled() ) {
+							LOGGER.debug( "server overloaded; cut concurrency-limit to " + (int) this.limit + " by " + this );
+						}
+					}
+				} else if( response != null && response.code() < 500 && wasLimited ) {
+					// ie: grows by one per limit's worth of requests; only while the limit is what holds them back
+					this.limit = Math.min( this.flowControl.getMaxLimit(), this.limit + 1 / this.limit );
+				}
+			}
+			this.notifyAll();
+		}
+
+		/**
+		 * Gives back the place of a request, once its response-body is read (or closed), or it failed.
+		 */
+		synchronized void release() {
+			this.inFlight--;
+			this.notifyAll();
+		}
+
+		/**
+		 * @return whether the latency is above the tolerance of the baseline; which drifts up slowly, so it
+		 * 			follows the server when that becomes slower for good
+		 */
+		private boolean isSlow(long latencyNanos ) {
+			if( latencyNanos < this.baselineNanos ) {
+				this.baselineNanos = latencyNanos;
+				return false;
+			}
+			boolean slow = latencyNanos > this.baselineNanos * this.flowControl.getLatencyTolerance();
+			this.baselineNanos += ( latencyNanos - this.baselineNanos ) >> 10;
+			return slow;
+		}
+
+		private void refill(long now ) {
+			if( this.flowControl.isRateLimited() ) {
+				double seconds = ( now - this.lastRefillNanos ) / 1e9d;
+				this.tokens = Math.min( this.flowControl.getBurst(), this.tokens + seconds * this.flowControl.getRate() );
+			}
+			this.lastRefillNanos = now;
+		}
+
+		@Override
+		public String toString() {
+			return "flow-control" + ( this.prefix.isEmpty() ? "" : " of '" + this.prefix + "'" );
+		}
+	}
+
+	/**
+	 * Gives back the place of its request once it is read to the end or closed, whichever comes first.
+	 */
+	private class ReleasingResponseBody extends ResponseBody {
+
+		private final ResponseBody body;
+		private final BufferedSource source;
+		private final AtomicBoolean released = new AtomicBoolean();
+
+		ReleasingResponseBody(ResponseBody body, final Limiter prefixLimiter ) {
+			this.body = body;
+			this.source = Okio.buffer( new ForwardingSource( body.source() ) {
+				@Override
+				public long read(Buffer sink, long byteCount ) throws IOException {
+					long read = super.read( sink, byteCount );
+					if( read == -1 ) {
+						this.release();
+					}
+					return read;
+				}
+
+				@Override
+				public void close() throws IOException {
+					try {
+						super.close();
+					} finally {
+						this.release();
+					}
+				}
+
+				private void release() {
+					if( ReleasingResponseBody.this.released.compareAndSet( false, true ) ) {
+						FlowControlInterceptor.this.release( prefixLimiter );
+					}
+				}
+			});
+		}
+
+		@Override
+		public MediaType contentType() {
+			return this.body.contentType();
+		}
+
+		@Override
+		public long contentLength() {
+			return this.body.contentLength();
+		}
+
+		@Override
+		public BufferedSource source() {
+			return this.source;
+		}
+	}
+
+	/**
+	 * A request held back for longer than its max-wait or deadline.
+	 */
+	private static class RejectedException extends InterruptedIOException {
+
+		private static final long serialVersionUID = 1L;
+
+		RejectedException(String msg ) {
+			super( msg );
+		}
+	}
+
+}
@@ -0,0 +1,114 @@
+package com.wilddog.client.rest.service;
+
+import java.io.IOException;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+
+/**
+ * Gzip-compresses the request-bodies of at least {@code minBytes}, and those of unknown length, before they
+ * are sent ({@code Content-Encoding: gzip}); sits outside the retries, so a body is compressed only once.
+ *
+ * A body of known length is compressed up-front, and sent as is when that does not make it smaller; a
+ * streamed body is compressed while it is sent.
+ */
+class GzipRequestInterceptor implements Interceptor {
+
+	private final int minBytes;
+	private final MetricsInterceptor metrics;
+
+	/**
+	 * @param metrics -- told about the bytes saved; can be null
+	 */
+	GzipRequestInterceptor(int minBytes, MetricsInterceptor metrics ) {
+		this.minBytes = minBytes;
+		this.metrics = metrics;
+	}
+
+	@Override
+	public Response intercept(Interceptor.Chain chain ) throws IOException {
+
+		Request request = chain.request();
+		RequestBody body = request.body();
+		if( body == null || request.header( "Content-Encoding" ) != null ) {
+			return chain.proceed( request );
+		}
+
+		long length = body.contentLength();
+		if( length < 0 ) {
+			return chain.proceed( request.newBuilder()
+					.header( "Content-Encoding", "gzip" )
+					.method( request.method(), new GzipStreamingRequestBody( body ) )
+					.build() );
+		}
+		if( length < this.minBytes ) {
+			return chain.proceed( request );
+		}
+
+		Buffer compressed = new Buffer();
+		BufferedSink sink = Okio.buffer( new GzipSink( compressed ) );
+		body.writeTo( sink );
+		sink.close();
+		if( compressed.size() >= length ) {
+			// ie: already compressed, or too random to shrink
+			return chain.proceed( request );
+		}
+
+		long bytesAfter = compressed.size();
+		Request gzipped = request.newBuilder()
+				.header( "Content-Encoding", "gzip" )
+				.method( request.method(), RequestBody.create( body.contentType(), compressed.readByteString() ) )
+				.build();
+		if( this.metrics != null ) {
+			this.metrics.onCompression( request, length, bytesAfter );
+		}
+		return chain.proceed( gzipped );
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// INTERNAL CLASSES
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	/**
+	 * Compresses a body of unknown length, which is written only once, as it is sent.
+	 */
+	private static class GzipStreamingRequestBody extends RequestBody implements UnrepeatableBody {
+
+		private final RequestBody body;
+
+		GzipStreamingRequestBody(RequestBody body ) {
+			this.body = body;
+		}
+
+		@Override
+		public MediaType contentType() {
+			return this.body.contentType();
+		}
+
+		@Override
+		public long contentLength() {
+			return -1;
+		}
+
+		@Override
+		public void writeTo(BufferedSink sink ) throws IOException {
+			BufferedSink gzip = Okio.buffer( new GzipSink( sink ) );
+			this.body.writeTo( gzip );
+			// finishes the gzip-trailer; closing okhttp's sink is allowed once the body is written
+			gzip.close();
+		}
+	}
+
+}
@@ -0,0 +1,300 @@
+package com.wilddog.client.rest.service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.apache.log4j.Logger;
+
+/**
+ * Sends GETs according to a {@link WilddogHedging}: tracks the recent latencies, and sends a hedge once a
+ * request is outstanding for longer than their percentile, within the hedging-budget; one instance (and so
+ * one budget) per {@link Wilddog}.
+ *
+ * A request tagged with a {@link Deadline} is cancelled, hedge and all, once that expires; and is not hedged
+ * when the hedge would be sent after it.
+ */
+class Hedger {
+
+	protected static final Logger 			LOGGER 					= Logger.getRootLogger();
+
+	private static final int SAMPLES 								= 1024;
+	private static final int MIN_SAMPLES 							= 64;
+	private static final double MAX_BALANCE 						= 10;
+
+	private final WilddogHedging hedging;
+	private final ScheduledExecutorService timer;
+
+	/* NOTE: guarded by 'this'; the latencies of the last SAMPLES GETs, as a ring, from which the delay is
+	 * re-estimated after every MIN_SAMPLES of them
+	 */
+	private final long[] samples = new long[ SAMPLES ];
+	private long sampleCount = 0;
+	private double balance = MAX_BALANCE;
+
+	private volatile long delayNanos = -1;
+
+	/**
+	 * @param timer -- the hedges are scheduled on; see {@link Resources#timer()}
+	 */
+	Hedger(WilddogHedging hedging, ScheduledExecutorService timer ) {
+		this.hedging = hedging;
+		this.timer = timer;
+	}
+
+	/**
+	 * Sends the request on the calling thread, and a hedge on the dispatcher when it is due.
+	 */
+	Response execute(OkHttpClient client, Request request ) throws IOException {
+
+		Attempt attempt = new Attempt( client, request );
+		Response response = null;
+		try {
+			response = attempt.primary.execute();
+		} catch( IOException e ) {
+			attempt.onFailure( attempt.primary, e );
+		}
+		if( response != null ) {
+			attempt.onResponse( attempt.primary, response );
+		}
+
+		try {
+			return attempt.result.get();
+		} catch( InterruptedException e ) {
+			attempt.cancel();
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException( "interrupted while waiting for the hedge" );
+		} catch( ExecutionException e ) {
+			throw (IOException) e.getCause();
+		}
+	}
+
+	/**
+	 * Sends the request, and a hedge when it is due, on the dispatcher; cancelling the future cancels both.
+	 */
+	CompletableFuture<Response> enqueue(OkHttpClient client, Request request ) {
+
+		final Attempt attempt = new Attempt( client, request );
+		attempt.primary.enqueue( attempt.callback() );
+		attempt.result.whenComplete( new BiConsumer<Response, Throwable>() {
+			@Override
+			public void accept(Response response, Throwable t ) {
+				if( attempt.result.isCancelled() ) {
+					attempt.cancel();
+				}
+			}
+		});
+		return attempt.result;
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PRIVATE API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	private synchronized void record(long nanos ) {
+		this.samples[ (int) ( this.sampleCount % SAMPLES ) ] = nanos;
+		this.sampleCount++;
+		if( this.sampleCount % MIN_SAMPLES != 0 ) {
+			return;
+		}
+		long[] sorted = Arrays.copyOf( this.samples, (int) Math.min( this.sampleCount, SAMPLES ) );
+		Arrays.sort( sorted );
+		long percentile = sorted[ (int) ( this.hedging.getPercentile() * ( sorted.length - 1 ) ) ];
+		this.delayNanos = Math.max( this.hedging.getMinDelayNanos(), percentile );
+	}
+
+	private synchronized void deposit() {
+		this.balance = Math.min( MAX_BALANCE, this.balance + this.hedging.getBudgetRatio() );
+	}
+
+	private synchronized boolean withdraw() {
+		if( this.balance < 1 ) {
+			return false;
+		}
+		this.balance -= 1;
+		return true;
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// INTERNAL CLASSES
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	/**
+	 * A request and its hedge, if any; the first response wins, and a failure is only reported once neither
+	 * can answer anymore.
+	 */
+	private class Attempt {
+
+		private final OkHttpClient client;
+		private final Request request;
+		private final Call primary;
+		private final Deadline deadline;
+		private final long startNanos = System.nanoTime();
+		private final CompletableFuture<Response> result = new CompletableFuture<Response>();
+		private final ScheduledFuture<?> timer;
+
+		// NOTE: guarded by 'this'
+		private Call backup = null;
+		private Deadline backupDeadline = null;
+		private IOException primaryFailure = null;
+		private IOException backupFailure = null;
+		private boolean done = false;
+
+		Attempt(OkHttpClient client, Request request ) {
+			// every call gets its own tag, so the loser can be told apart from the winner once cancelled
+			Deadline deadline = Deadline.of( request );
+			if( deadline == null ) {
+				deadline = new Deadline( 0 );
+				request = request.newBuilder().tag( deadline ).build();
+			}
+			this.client = client;
+			this.request = request;
+			this.deadline = deadline;
+			this.primary = client.newCall( request );
+			Hedger.this.deposit();
+
+			this.deadline.arm( Hedger.this.timer, new Runnable() {
+				@Override
+				public void run() {
+					Attempt.this.cancel();
+				}
+			});
+			long delay = Hedger.this.delayNanos;
+			ScheduledFuture<?> timer = null;
+			if( delay >= 0 && delay < this.deadline.remainingNanos() ) {
+				try {
+					timer = Hedger.this.timer.schedule( new Runnable() {
+						@Override
+						public void run() {
+							Attempt.this.hedge();
+						}
+					}, delay, TimeUnit.NANOSECONDS );
+				} catch( RejectedExecutionException e ) {
+					// ie: sent through a closed instance; not hedged
+				}
+			}
+			this.timer = timer;
+		}
+
+		private void hedge() {
+			synchronized( this ) {
+				if( this.done || this.primaryFailure != null || this.deadline.isCancelled() || !Hedger.this.withdraw() ) {
+					return;
+				}
+				this.backupDeadline = this.deadline.fork();
+				this.backup = this.client.newCall( this.request.newBuilder().tag( this.backupDeadline ).build() );
+			}
+			if( LOGGER.isDebugEnabled() ) {
+				LOGGER.debug( "hedging request(" + this.request.method() + ") @ " + this.request.url().encodedPath() + " after "
+						+ ( ( System.nanoTime() - this.startNanos ) / 1000000 ) + "ms" );
+			}
+			this.backup.enqueue( this.callback() );
+		}
+
+		private Callback callback() {
+			return new Callback() {
+				@Override
+				public void onFailure(Call call, IOException e ) {
+					Attempt.this.onFailure( call, e );
+				}
+				@Override
+				public void onResponse(Call call, Response response ) {
+					Attempt.this.onResponse( call, response );
+				}
+			};
+		}
+
+		private void onResponse(Call call, Response response ) {
+			Call loser;
+			synchronized( this ) {
+				if( this.done ) {
+					response.close();
+					return;
+				}
+				this.done = true;
+				if( call == this.primary ) {
+					loser = this.backup;
+					if( loser != null ) {
+						this.backupDeadline.cancel();
+					}
+				} else {
+					loser = this.primary;
+					this.deadline.cancel();
+				}
+			}
+			if( this.timer != null ) {
+				this.timer.cancel( false );
+			}
+			if( loser != null ) {
+				loser.cancel();
+			}
+			Hedger.this.record( System.nanoTime() - this.startNanos );
+			this.result.complete( response );
+		}
+
+		private void onFailure(Call call, IOException e ) {
+			synchronized( this ) {
+				if( this.done ) {
+					return;
+				}
+				if( call == this.primary ) {
+					this.primaryFailure = e;
+				} else {
+					this.backupFailure = e;
+				}
+				boolean pending = call == this.primary
+						? this.backup != null && this.backupFailure == null
+						: this.primaryFailure == null;
+				if( pending ) {
+					return;
+				}
+				this.done = true;
+			}
+			if( this.timer != null ) {
+				this.timer.cancel( false );
+			}
+			this.result.completeExceptionally( this.primaryFailure != null ? this.primaryFailure : this.backupFailure );
+		}
+
+		private void cancel() {
+			Call backup;
+			synchronized( this ) {
+				backup = this.backup;
+				this.deadline.cancel();
+				if( backup != null ) {
+					this.backupDeadline.cancel();
+				}
+			}
+			if( this.timer != null ) {
+				this.timer.cancel( false );
+			}
+			this.primary.cancel();
+			if( backup != null ) {
+				backup.cancel();
+			}
+		}
+	}
+
+}
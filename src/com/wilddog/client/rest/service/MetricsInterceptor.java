@@ -0,0 +1,156 @@
+package com.wilddog.client.rest.service;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.wilddog.client.rest.service.Wilddog.WilddogRestMethod;
+
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Times every request (including its retries) and reports it to the {@link WilddogMetrics} of the client.
+ *
+ * The path-template of a url is looked up by its raw segments, so one seen before is not built again; after
+ * the first request of a path-template, reporting a request allocates nothing.
+ */
+class MetricsInterceptor implements Interceptor {
+
+	private final WilddogMetrics metrics;
+	private final int baseSegments;
+	private final int pathDepth;
+	private final TemplateNode templates = new TemplateNode( "" );
+
+	MetricsInterceptor(WilddogMetrics metrics, HttpUrl baseUrl, int pathDepth ) {
+		this.metrics = metrics;
+		this.baseSegments = new RelativePath( baseUrl ).baseSegments();
+		this.pathDepth = pathDepth;
+	}
+
+	@Override
+	public Response intercept(Interceptor.Chain chain ) throws IOException {
+
+		Request request = chain.request();
+		long start = System.nanoTime();
+		int code = 0;
+		long bytesIn = -1;
+		try {
+
+			Response response = chain.proceed( request );
+			code = response.code();
+			bytesIn = response.body() == null ? -1 : response.body().contentLength();
+			return response;
+
+		} finally {
+
+			WilddogRestMethod method = methodOf( request );
+			if( method != null ) {
+				long bytesOut = request.body() == null ? 0 : request.body().contentLength();
+				this.metrics.onRequest( method, this.templateOf( request.url() ), code, System.nanoTime() - start, bytesOut, bytesIn );
+			}
+		}
+	}
+
+	void onRetry(Request request ) {
+		WilddogRestMethod method = methodOf( request );
+		if( method != null ) {
+			this.metrics.onRetry( method, this.templateOf( request.url() ) );
+		}
+	}
+
+	void onCompression(Request request, long bytesBefore, long bytesAfter ) {
+		WilddogRestMethod method = methodOf( request );
+		if( method != null ) {
+			this.metrics.onCompression( method, this.templateOf( request.url() ), bytesBefore, bytesAfter );
+		}
+	}
+
+	/**
+	 * Returns the relative path of the url, with every segment beyond the configured depth collapsed into
+	 * '*'; so that generated keys (ie: from POST) do not create a template each.
+	 */
+	String templateOf(HttpUrl url ) {
+
+		List<String> segments = url.pathSegments();
+		TemplateNode node = this.templates;
+		for( int i = this.baseSegments; i < segments.size(); i++ ) {
+			String segment = segments.get( i );
+			boolean last = i == segments.size() - 1;
+			if( i - this.baseSegments >= this.pathDepth ) {
+				if( segment.isEmpty() || ( last && segment.equals( Wilddog.WILDDOG_API_JSON_EXTENSION ) ) ) {
+					continue;
+				}
+				return node.collapsed;
+			}
+			node = node.childOf( segment, last );
+		}
+		return node.template;
+	}
+
+	static WilddogRestMethod methodOf(Request request ) {
+		for( WilddogRestMethod method : WilddogRestMethod.values() ) {
+			if( method.name().equals( request.method() ) ) {
+				return method;
+			}
+		}
+		return null;
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// INTERNAL CLASSES
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	/**
+	 * The path-template of the urls whose segments (up to the path-depth) lead to this node.
+	 */
+	private static class TemplateNode {
+
+		private final String template;
+		private final String collapsed;
+		// the raw segment of the last child keeps its json-extension, so it is told apart from an inner one
+		private final ConcurrentMap<String, TemplateNode> children = new ConcurrentHashMap<String, TemplateNode>( 4 );
+		private final ConcurrentMap<String, TemplateNode> lastChildren = new ConcurrentHashMap<String, TemplateNode>( 4 );
+
+		/**
+		 * @param template -- of the urls that end at this node
+		 */
+		TemplateNode(String template ) {
+			this.template = template;
+			this.collapsed = join( template, "*" );
+		}
+
+		TemplateNode childOf(String segment, boolean last ) {
+			ConcurrentMap<String, TemplateNode> children = last ? this.lastChildren : this.children;
+			TemplateNode child = children.get( segment );
+			if( child == null ) {
+				String name = segment;
+				if( last && name.endsWith( Wilddog.WILDDOG_API_JSON_EXTENSION ) ) {
+					name = name.substring( 0, name.length() - Wilddog.WILDDOG_API_JSON_EXTENSION.length() );
+				}
+				child = new TemplateNode( join( this.template, name ) );
+				TemplateNode existing = children.putIfAbsent( segment, child );
+				if( existing != null ) {
+					child = existing;
+				}
+			}
+			return child;
+		}
+
+		private static String join(String template, String segment ) {
+			if( segment.isEmpty() ) {
+				return template;
+			}
+			return template.isEmpty() ? segment : template + "/" + segment;
+		}
+	}
+
+}
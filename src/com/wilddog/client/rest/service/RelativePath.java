@@ -0,0 +1,69 @@
+package com.wilddog.client.rest.service;
+
+import java.util.List;
+
+import okhttp3.HttpUrl;
+
+/**
+ * The path of a request-url relative to the base-url of a {@link Wilddog}; what the cache, the metrics and
+ * the flow-control key their state by.
+ */
+final class RelativePath {
+
+	private final int baseSegments;
+
+	RelativePath(HttpUrl baseUrl ) {
+		List<String> segments = baseUrl.pathSegments();
+		int count = segments.size();
+		// a trailing slash leaves an empty last segment
+		if( count > 0 && segments.get( count - 1 ).isEmpty() ) {
+			count--;
+		}
+		this.baseSegments = count;
+	}
+
+	/**
+	 * @return the number of path-segments of the base-url; those of a request-url after them are relative
+	 */
+	int baseSegments() {
+		return this.baseSegments;
+	}
+
+	/**
+	 * @return the (decoded) path of the url relative to the base-url, without the json-extension and empty
+	 * 			segments; ie: 'users/jack'. Empty for the base-url itself.
+	 */
+	String of(HttpUrl url ) {
+
+		List<String> segments = url.pathSegments();
+		StringBuilder path = new StringBuilder();
+		for( int i = this.baseSegments; i < segments.size(); i++ ) {
+			String segment = segments.get( i );
+			if( i == segments.size() - 1 && segment.endsWith( Wilddog.WILDDOG_API_JSON_EXTENSION ) ) {
+				segment = segment.substring( 0, segment.length() - Wilddog.WILDDOG_API_JSON_EXTENSION.length() );
+			}
+			if( segment.isEmpty() ) {
+				continue;
+			}
+			if( path.length() > 0 ) {
+				path.append( '/' );
+			}
+			path.append( segment );
+		}
+		return path.toString();
+	}
+
+	/**
+	 * @param path -- relative, as returned by {@link #of(HttpUrl)}
+	 * @param prefix -- relative; empty for the base-url
+	 * @return whether the path is the prefix, or below it; ie: 'logs/1' is below 'logs', 'logsets' is not
+	 */
+	static boolean isOnOrBelow(String path, String prefix ) {
+		if( prefix.isEmpty() ) {
+			return true;
+		}
+		return path.startsWith( prefix )
+				&& ( path.length() == prefix.length() || path.charAt( prefix.length() ) == '/' );
+	}
+
+}
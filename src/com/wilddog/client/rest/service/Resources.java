@@ -0,0 +1,115 @@
+package com.wilddog.client.rest.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.log4j.Logger;
+
+/**
+ * What a {@link Wilddog} starts on top of its client, and stops when it is closed; shared with its views
+ * (see {@link Wilddog#withDeadline(long, java.util.concurrent.TimeUnit)}):
+ * <ul>
+ * <li>the timer-thread that deadlines expire and hedges are sent on; only started once first needed.</li>
+ * <li>the event-streams (including those of synced paths) and write-behind queues still open.</li>
+ * </ul>
+ */
+class Resources {
+
+	protected static final Logger 			LOGGER 					= Logger.getRootLogger();
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PROPERTIES & CONSTRUCTORS
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	private final ScheduledThreadPoolExecutor timer;
+
+	/* NOTE: guarded by 'this' */
+	private final Set<Closeable> open = new LinkedHashSet<Closeable>();
+	private boolean closed = false;
+
+	Resources() {
+		this.timer = new ScheduledThreadPoolExecutor( 1, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r ) {
+				Thread thread = new Thread( r, "wilddog-timer" );
+				thread.setDaemon( true );
+				return thread;
+			}
+		});
+		// most timers are disarmed long before they expire; those should not pile up in the queue
+		this.timer.setRemoveOnCancelPolicy( true );
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PACKAGE API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	/**
+	 * @return the timer; it refuses new tasks once closed
+	 */
+	ScheduledExecutorService timer() {
+		return this.timer;
+	}
+
+	/**
+	 * Keeps the resource, to be closed along with the rest.
+	 *
+	 * @return false if these are closed already; the resource is then the caller's to close
+	 */
+	synchronized boolean track(Closeable resource ) {
+		if( this.closed ) {
+			return false;
+		}
+		this.open.add( resource );
+		return true;
+	}
+
+	/**
+	 * Forgets the resource, once it was closed on its own.
+	 */
+	synchronized void untrack(Closeable resource ) {
+		this.open.remove( resource );
+	}
+
+	/**
+	 * Closes every resource still open, in the order they were opened; then drops the timer, and with it the
+	 * deadlines and hedges still pending.
+	 */
+	void close() {
+		List<Closeable> open;
+		synchronized( this ) {
+			if( this.closed ) {
+				return;
+			}
+			this.closed = true;
+			open = new ArrayList<Closeable>( this.open );
+			this.open.clear();
+		}
+		for( Closeable resource : open ) {
+			try {
+				resource.close();
+			} catch( IOException | RuntimeException e ) {
+				LOGGER.warn( "unable to close " + resource + ": " + e );
+			}
+		}
+		this.timer.shutdownNow();
+	}
+
+}
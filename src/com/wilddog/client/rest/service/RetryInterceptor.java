@@ -0,0 +1,140 @@
+package com.wilddog.client.rest.service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.apache.log4j.Logger;
+
+/**
+ * Replays failed requests according to a {@link WilddogRetryPolicy}, within the policy's retry-budget; one
+ * instance (and so one budget) per {@link Wilddog}.
+ */
+class RetryInterceptor implements Interceptor {
+
+	protected static final Logger 			LOGGER 					= Logger.getRootLogger();
+
+	private final WilddogRetryPolicy policy;
+	private final MetricsInterceptor metrics;
+
+	/* NOTE: guarded by 'this'; the balance is the number of retries that may be made right now, and is
+	 * capped so that a quiet period cannot save up for a retry-storm later
+	 */
+	private final double maxBalance;
+	private double balance;
+	private long lastRefillNanos = System.nanoTime();
+
+	/**
+	 * @param metrics -- told about every retry; can be null
+	 */
+	RetryInterceptor(WilddogRetryPolicy policy, MetricsInterceptor metrics ) {
+		this.policy = policy;
+		this.metrics = metrics;
+		this.maxBalance = Math.max( 1, policy.getMinRetriesPerSecond() );
+		this.balance = this.maxBalance;
+	}
+
+	@Override
+	public Response intercept(Interceptor.Chain chain ) throws IOException {
+
+		Request request = chain.request();
+		boolean replayable = this.policy.getMaxAttempts() > 1 && this.policy.isReplayable( request.method() )
+				&& !( request.body() instanceof UnrepeatableBody )
+				// a conditional write may have been applied before its response was lost; sending it again would
+				// then fail, or (once the caller retries the transaction) apply the update twice
+				&& request.header( "if-match" ) == null;
+		if( !replayable ) {
+			return chain.proceed( request );
+		}
+		this.deposit();
+
+		for( int attempt = 1; ; attempt++ ) {
+
+			Response response = null;
+			IOException failure = null;
+			try {
+				response = chain.proceed( request );
+			} catch( IOException e ) {
+				if( "Canceled".equals( e.getMessage() ) || this.isCancelled( request ) ) {
+					// cancelled by the caller (or its deadline, or a winning hedge), not a failure
+					throw e;
+				}
+				if( FlowControlInterceptor.isRejected( e ) ) {
+					// never sent; the server is already behind
+					throw e;
+				}
+				failure = e;
+			}
+
+			if( response != null && !this.policy.isRetryable( response.code() ) ) {
+				return response;
+			}
+			long delay = this.policy.delayMillis( attempt, response );
+			if( delay < 0 || !this.isInTime( request, delay ) || !this.withdraw() ) {
+				if( failure != null ) {
+					throw failure;
+				}
+				return response;
+			}
+
+			if( LOGGER.isDebugEnabled() ) {
+				LOGGER.debug( "retrying request(" + request.method() + ") @ " + request.url().encodedPath() + " in " + delay + "ms after "
+						+ ( failure != null ? failure.toString() : "code " + response.code() ) + "; attempt " + attempt );
+			}
+			if( response != null ) {
+				response.close();
+			}
+			if( this.metrics != null ) {
+				this.metrics.onRetry( request );
+			}
+			try {
+				Thread.sleep( delay );
+			} catch( InterruptedException e ) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException( "interrupted while waiting to retry" );
+			}
+		}
+	}
+
+	/**
+	 * @return whether the call was given up on; its connection is then closed under it, so the failure
+	 * 			does not read as a cancellation
+	 */
+	private boolean isCancelled(Request request ) {
+		Deadline deadline = Deadline.of( request );
+		return deadline != null && deadline.isCancelled();
+	}
+
+	/**
+	 * @return false when the request's {@link Deadline} would expire before the retry is sent
+	 */
+	private boolean isInTime(Request request, long delayMillis ) {
+		Deadline deadline = Deadline.of( request );
+		return deadline == null || TimeUnit.MILLISECONDS.toNanos( delayMillis ) < deadline.remainingNanos();
+	}
+
+	private synchronized void deposit() {
+		this.refill();
+		this.balance = Math.min( this.maxBalance, this.balance + this.policy.getBudgetRatio() );
+	}
+
+	private synchronized boolean withdraw() {
+		this.refill();
+		if( this.balance < 1 ) {
+			return false;
+		}
+		this.balance -= 1;
+		return true;
+	}
+
+	private void refill() {
+		long now = System.nanoTime();
+		double seconds = ( now - this.lastRefillNanos ) / 1e9d;
+		this.lastRefillNanos = now;
+		this.balance = Math.min( this.maxBalance, this.balance + seconds * this.policy.getMinRetriesPerSecond() );
+	}
+
+}
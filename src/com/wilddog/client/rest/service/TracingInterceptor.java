@@ -0,0 +1,186 @@
+package com.wilddog.client.rest.service;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.wilddog.client.rest.util.LoggingUtility;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Sink;
+import okio.Timeout;
+import org.apache.log4j.Logger;
+
+/**
+ * Logs the requests selected by a {@link WilddogTracing}; sits below the retries, so every attempt is traced
+ * on its own.
+ */
+class TracingInterceptor implements Interceptor {
+
+	protected static final Logger 			LOGGER 					= Logger.getRootLogger();
+
+	private final WilddogTracing tracing;
+	private final AtomicLong counter = new AtomicLong();
+
+	TracingInterceptor(WilddogTracing tracing ) {
+		this.tracing = tracing;
+	}
+
+	@Override
+	public Response intercept(Interceptor.Chain chain ) throws IOException {
+
+		Request request = chain.request();
+		if( !this.isTraced() ) {
+			return chain.proceed( request );
+		}
+
+		long start = System.nanoTime();
+		Response response;
+		try {
+			response = chain.proceed( request );
+		} catch( IOException e ) {
+			LOGGER.info( "request(" + request.method() + ") @ " + LoggingUtility.redact( request.url() ) + " failed after "
+					+ millisSince( start ) + "ms: " + e + this.requestExcerpt( request ) );
+			throw e;
+		}
+
+		LOGGER.info( "request(" + request.method() + ") @ " + LoggingUtility.redact( request.url() ) + " returned "
+				+ response.code() + " in " + millisSince( start ) + "ms" + this.requestExcerpt( request ) + this.responseExcerpt( response ) );
+		return response;
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PRIVATE API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	private boolean isTraced() {
+		int sampleRate = this.tracing.getSampleRate();
+		if( sampleRate == 0 || !LOGGER.isInfoEnabled() ) {
+			return false;
+		}
+		return sampleRate == 1 || this.counter.getAndIncrement() % sampleRate == 0;
+	}
+
+	private String requestExcerpt(Request request ) {
+		RequestBody body = request.body();
+		int max = this.tracing.getMaxPayloadLength();
+		if( body == null || max == 0 ) {
+			return "";
+		}
+		try {
+			long length = body.contentLength();
+			if( "gzip".equalsIgnoreCase( request.header( "Content-Encoding" ) ) ) {
+				// compressed by the GzipRequestInterceptor outside this one; not worth inflating to log
+				return "; request-body: (gzip, " + ( length < 0 ? "streamed" : length + "b" ) + ")";
+			}
+			if( length < 0 ) {
+				// streamed, so it can only be written once
+				return "; request-body: (streamed)";
+			}
+			// a UTF-8 character takes up to 4 bytes; the rest of the body is not copied
+			ExcerptSink excerpt = new ExcerptSink( 4L * max );
+			BufferedSink sink = Okio.buffer( excerpt );
+			try {
+				body.writeTo( sink );
+				sink.flush();
+			} catch( ExcerptSink.Full e ) {
+				// ie: the excerpt is complete
+			}
+			return "; request-body(" + length + "b): '" + LoggingUtility.excerpt( excerpt.buffer.readUtf8(), max ) + "'";
+		} catch( IOException e ) {
+			return "; request-body: (unreadable)";
+		}
+	}
+
+	private String responseExcerpt(Response response ) {
+		int max = this.tracing.getMaxPayloadLength();
+		if( max == 0 || response.body() == null ) {
+			return "";
+		}
+		MediaType type = response.body().contentType();
+		if( type != null && WilddogEventStream.EVENT_STREAM_MEDIA_TYPE.equals( type.type() + "/" + type.subtype() ) ) {
+			// peeking would wait for the first events
+			return "; response-body: (event-stream)";
+		}
+		try {
+			// a UTF-8 character takes up to 4 bytes; peeking never consumes the body
+			String text = response.peekBody( 4L * max ).string();
+			long length = response.body().contentLength();
+			return "; response-body" + ( length < 0 ? "" : "(" + length + "b)" ) + ": '"
+					+ ( text.length() > max ? text.substring( 0, max ) + "..." : text ) + "'";
+		} catch( IOException e ) {
+			return "; response-body: (unreadable)";
+		}
+	}
+
+	private static String millisSince(long start ) {
+		long micros = ( System.nanoTime() - start ) / 1000;
+		return ( micros / 1000 ) + "." + ( micros / 100 % 10 );
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// INTERNAL CLASSES
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	/**
+	 * Keeps the first bytes written to it, and stops the writer once it has them; a body writing in pieces
+	 * is then never copied beyond those.
+	 */
+	private static class ExcerptSink implements Sink {
+
+		private final Buffer buffer = new Buffer();
+		private final long maxBytes;
+
+		ExcerptSink(long maxBytes ) {
+			this.maxBytes = maxBytes;
+		}
+
+		@Override
+		public void write(Buffer source, long byteCount ) throws IOException {
+			long kept = Math.min( byteCount, this.maxBytes - this.buffer.size() );
+			this.buffer.write( source, kept );
+			source.skip( byteCount - kept );
+			if( this.buffer.size() >= this.maxBytes ) {
+				throw new Full();
+			}
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public Timeout timeout() {
+			return Timeout.NONE;
+		}
+
+		@Override
+		public void close() {
+		}
+
+		/**
+		 * Thrown to the writer of the body once the excerpt is complete.
+		 */
+		private static class Full extends IOException {
+
+			private static final long serialVersionUID = 1L;
+		}
+	}
+
+}
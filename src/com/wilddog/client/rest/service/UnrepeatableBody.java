@@ -0,0 +1,13 @@
+package com.wilddog.client.rest.service;
+
+/**
+ * Marks a request-body that can be written only once, ie: one read from a stream as it is sent; the
+ * {@link RetryInterceptor} never replays a request with such a body.
+ *
+ * NOTE: okhttp does not know this marker, so a body that cannot be replayed must also refuse to be written a
+ * second time; should okhttp retry it after a connection-failure, the request then fails instead of sending
+ * whatever the stream has left.
+ */
+interface UnrepeatableBody {
+
+}
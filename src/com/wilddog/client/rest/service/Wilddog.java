@@ -1,32 +1,75 @@
 package com.wilddog.client.rest.service;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
-import java.net.URLEncoder;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
 
 import com.wilddog.client.rest.error.JacksonUtilityException;
 import com.wilddog.client.rest.error.WilddogException;
+import com.wilddog.client.rest.model.WilddogEventListener;
+import com.wilddog.client.rest.model.WilddogJsonWriter;
+import com.wilddog.client.rest.model.WilddogNode;
+import com.wilddog.client.rest.model.WilddogQuery;
 import com.wilddog.client.rest.model.WilddogResponse;
 import com.wilddog.client.rest.util.JacksonUtility;
+import com.wilddog.client.rest.util.LoggingUtility;
 
 import okhttp3.*;
+import okio.BufferedSink;
+import okio.GzipSource;
+import okio.Okio;
+import okio.Source;
 import org.apache.log4j.Logger;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.ObjectReader;
+import org.codehaus.jackson.type.TypeReference;
 
 /**
  * 基于 [Wilddog REST API](https://z.wilddog.com/rest/quickstart)的封装
  */
-public class Wilddog {
+public class Wilddog implements Closeable {
 	
 	protected static final Logger 			LOGGER 					= Logger.getRootLogger();
 	
 	public static final String WILDDOG_API_JSON_EXTENSION
 																	= ".json";
 	
+	/**
+	 * Asks the server to send the ETag of the data along with it.
+	 */
+	public static final String ETAG_REQUEST_HEADER					= "X-Wilddog-ETag";
+	
+	private static final int ENCODED_PATH_CACHE_SIZE				= 256;
+	private static final int MAX_TRANSACTION_ATTEMPTS				= 25;
+	private static final long MAX_TRANSACTION_BACKOFF_MILLIS		= 1000;
+	
 
 	
 ///////////////////////////////////////////////////////////////////////////////
@@ -37,31 +80,87 @@ public class Wilddog {
 	
 	
 	private final String baseUrl;
-	private String secureToken = null;
-	private List<BasicNameValuePair> query;
+	private final HttpUrl httpBaseUrl;
+	private final Map<String, String> encodedPaths = new LinkedHashMap<String, String>( 16, 0.75f, true ) {
+		private static final long serialVersionUID = 1L;
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, String> eldest ) {
+			return this.size() > ENCODED_PATH_CACHE_SIZE;
+		}
+	};
+	private final String secureToken;
+	private final AtomicReference<WilddogQuery> pendingQuery = new AtomicReference<WilddogQuery>( WilddogQuery.EMPTY );
+	private final OkHttpClient client;
+	private final boolean ownsClient;
+	private final boolean isView;
+	private final Resources resources;
+	private final JacksonUtility jackson;
+	private final boolean keepRawBody;
+	private final WilddogCache cache;
+	private final long deadlineNanos;
+	private final Hedger hedger;
+	private final boolean discardWriteBodies;
 
 	public Wilddog(String baseUrl ) throws WilddogException {
+		this( new Builder( baseUrl ) );
+	}
+	
+	public Wilddog(String baseUrl, String secureToken) throws WilddogException {
+		this( new Builder( baseUrl ).secureToken( secureToken ) );
+	}
 
-		if( baseUrl == null || baseUrl.trim().isEmpty() ) {
-			String msg = "baseUrl cannot be null or empty; was: '" + baseUrl + "'";
+	private Wilddog(Builder builder ) throws WilddogException {
+		if( builder.baseUrl == null || builder.baseUrl.trim().isEmpty() ) {
+			String msg = "baseUrl cannot be null or empty; was: '" + builder.baseUrl + "'";
 			LOGGER.error( msg );
 			throw new WilddogException( msg );
 		}
-		this.baseUrl = baseUrl.trim();
-		query = new ArrayList<BasicNameValuePair>();
-		LOGGER.info( "intialized with base-url: " + this.baseUrl );
-	}
-	
-	public Wilddog(String baseUrl, String secureToken) throws WilddogException {
-		if( baseUrl == null || baseUrl.trim().isEmpty() ) {
-			String msg = "baseUrl cannot be null or empty; was: '" + baseUrl + "'";
+		this.secureToken = builder.secureToken;
+		this.baseUrl = builder.baseUrl.trim();
+		this.httpBaseUrl = HttpUrl.parse( this.baseUrl );
+		if( this.httpBaseUrl == null ) {
+			String msg = "baseUrl is not a valid http(s) url; was: '" + this.baseUrl + "'";
 			LOGGER.error( msg );
 			throw new WilddogException( msg );
 		}
-		this.secureToken = secureToken;
-		this.baseUrl = baseUrl.trim();
-		query = new ArrayList<BasicNameValuePair>();
-		LOGGER.info( "intialized with base-url: " + this.baseUrl );
+		this.ownsClient = builder.client == null;
+		this.isView = false;
+		this.resources = new Resources();
+		this.client = builder.buildClient( this.httpBaseUrl );
+		this.jackson = builder.objectMapper == null
+				? JacksonUtility.DEFAULT
+				: new JacksonUtility( builder.objectMapper );
+		this.keepRawBody = builder.keepRawBody;
+		if( builder.cacheMaxEntries > 0 ) {
+			this.cache = new WilddogCache( this.httpBaseUrl, builder.cacheMaxEntries, builder.cacheTtlNanos, this.keepRawBody, this.jackson );
+		} else {
+			this.cache = null;
+		}
+		this.deadlineNanos = builder.deadlineNanos;
+		this.hedger = builder.hedging.isEnabled() ? new Hedger( builder.hedging, this.resources.timer() ) : null;
+		this.discardWriteBodies = builder.discardWriteBodies;
+		if( LOGGER.isDebugEnabled() ) {
+			LOGGER.debug( "intialized with base-url: " + this.baseUrl + "; " + builder.tracing + "; " + builder.hedging );
+		}
+	}
+	
+	/**
+	 * A view of the base with another deadline; see {@link #withDeadline(long, TimeUnit)}.
+	 */
+	private Wilddog(Wilddog base, long deadlineNanos ) {
+		this.secureToken = base.secureToken;
+		this.baseUrl = base.baseUrl;
+		this.httpBaseUrl = base.httpBaseUrl;
+		this.ownsClient = false;
+		this.isView = true;
+		this.resources = base.resources;
+		this.client = base.client;
+		this.jackson = base.jackson;
+		this.keepRawBody = base.keepRawBody;
+		this.cache = base.cache;
+		this.deadlineNanos = deadlineNanos;
+		this.hedger = base.hedger;
+		this.discardWriteBodies = base.discardWriteBodies;
 	}
 
 	
@@ -94,20 +193,230 @@ public class Wilddog {
 	 * @throws {@link WilddogException}
 	 */
 	public WilddogResponse get(String path ) throws WilddogException, UnsupportedEncodingException {
+		return this.get( path, (WilddogQuery) null );
+	}
+	
+	/**
+	 * GETs data from the provided-path relative to the base-url, with the provided query-parameters.
+	 * 
+	 * @param path -- if null/empty, refers to the base-url
+	 * @param query -- can be null
+	 * @return {@link WilddogResponse}
+	 * @throws UnsupportedEncodingException 
+	 * @throws {@link WilddogException}
+	 */
+	public WilddogResponse get(String path, WilddogQuery query ) throws WilddogException, UnsupportedEncodingException {
+		
+		// answer from the cache, when there is one and the request is cacheable
+		boolean cacheable = this.isCacheable( query );
+		long generation = 0;
+		if( cacheable ) {
+			WilddogResponse cached = this.cache.get( path );
+			if( cached != null ) {
+				return cached;
+			}
+			// a write made while the GET is in flight keeps its response out of the cache
+			generation = this.cache.generationOf( path );
+		}
 		
 		// make the request
-		String url = this.buildFullUrlFromRelativePath( path );
+		HttpUrl url = this.buildFullUrlFromRelativePath( path, query );
 		Request request = new Request.Builder()
 				.url(url)
+				.headers( cacheable ? this.etagHeaders( this.cache.etagOf( path ) ) : EMPTY_HEADERS )
 				.build();
 		Response httpResponse = this.makeRequest( request );
 		
 		// process the response
 		WilddogResponse response = this.processResponse( WilddogRestMethod.GET, httpResponse );
+		if( cacheable ) {
+			response = this.cached( path, response, generation );
+		}
 		
 		return response;
 	}
 	
+	/**
+	 * GETs data from the provided-path relative to the base-url, bound directly to the provided type
+	 * (without building an intermediate map).
+	 * 
+	 * @param path -- if null/empty, refers to the base-url
+	 * @param type -- the POJO, collection or scalar class to bind the data to
+	 * @return the bound data, or null if there is no data at the path
+	 * @throws UnsupportedEncodingException 
+	 * @throws {@link WilddogException} -- also if the response was not successful
+	 */
+	public <T> T get(String path, Class<T> type ) throws WilddogException, UnsupportedEncodingException {
+		return this.get( path, null, type );
+	}
+	
+	/**
+	 * GETs data from the provided-path relative to the base-url, with the provided query-parameters, bound
+	 * directly to the provided type (without building an intermediate map).
+	 * 
+	 * @param path -- if null/empty, refers to the base-url
+	 * @param query -- can be null
+	 * @param type -- the POJO, collection or scalar class to bind the data to
+	 * @return the bound data, or null if there is no data at the path
+	 * @throws UnsupportedEncodingException 
+	 * @throws {@link WilddogException} -- also if the response was not successful
+	 */
+	public <T> T get(String path, WilddogQuery query, Class<T> type ) throws WilddogException, UnsupportedEncodingException {
+		return this.getTyped( path, query, this.jackson.readerFor( type ) );
+	}
+	
+	/**
+	 * GETs data from the provided-path relative to the base-url, bound directly to the provided generic
+	 * type; ie: {@code new TypeReference<Map<String, User>>() {}}.
+	 * 
+	 * @param path -- if null/empty, refers to the base-url
+	 * @param type -- the generic type to bind the data to
+	 * @return the bound data, or null if there is no data at the path
+	 * @throws UnsupportedEncodingException 
+	 * @throws {@link WilddogException} -- also if the response was not successful
+	 */
+	public <T> T get(String path, TypeReference<T> type ) throws WilddogException, UnsupportedEncodingException {
+		return this.get( path, null, type );
+	}
+	
+	/**
+	 * GETs data from the provided-path relative to the base-url, with the provided query-parameters, bound
+	 * directly to the provided generic type.
+	 * 
+	 * @param path -- if null/empty, refers to the base-url
+	 * @param query -- can be null
+	 * @param type -- the generic type to bind the data to
+	 * @return the bound data, or null if there is no data at the path
+	 * @throws UnsupportedEncodingException 
+	 * @throws {@link WilddogException} -- also if the response was not successful
+	 */
+	public <T> T get(String path, WilddogQuery query, TypeReference<T> type ) throws WilddogException, UnsupportedEncodingException {
+		return this.getTyped( path, query, this.jackson.readerFor( type ) );
+	}
+	
+	/**
+	 * GETs data from the provided-path relative to the base-url, as a compact read-only tree (see
+	 * {@link WilddogNode}); for large results, which take a fraction of the memory of nested maps. The
+	 * cache is not consulted.
+	 * 
+	 * @param path -- if null/empty, refers to the base-url
+	 * @return the root of the data; a json-null node if there is no data at the path
+	 * @throws UnsupportedEncodingException 
+	 * @throws {@link WilddogException} -- also if the response was not successful
+	 */
+	public WilddogNode getNode(String path ) throws WilddogException, UnsupportedEncodingException {
+		return this.getNode( path, null );
+	}
+	
+	/**
+	 * GETs data from the provided-path relative to the base-url, with the provided query-parameters, as a
+	 * compact read-only tree (see {@link WilddogNode}).
+	 * 
+	 * @param path -- if null/empty, refers to the base-url
+	 * @param query -- can be null
+	 * @return the root of the data; a json-null node if there is no data at the path
+	 * @throws UnsupportedEncodingException 
+	 * @throws {@link WilddogException} -- also if the response was not successful
+	 */
+	public WilddogNode getNode(String path, WilddogQuery query ) throws WilddogException, UnsupportedEncodingException {
+		
+		// make the request
+		HttpUrl url = this.buildFullUrlFromRelativePath( path, query );
+		Request request = new Request.Builder()
+				.url(url)
+				.build();
+		Response httpResponse = this.makeRequest( request );
+		
+		// read the response
+		ResponseBody entity = httpResponse.body();
+		try {
+			
+			if( !httpResponse.isSuccessful() ) {
+				
+				String msg = "request(" + WilddogRestMethod.GET + ") @ " + url.encodedPath() 
+						+ " failed with code " + httpResponse.code() + ": " + this.errorBodyOf( entity );
+				LOGGER.error( msg );
+				throw new WilddogException( msg );
+			}
+			return this.jackson.toNode( entity.byteStream() );
+			
+		} catch( JacksonUtilityException jue ) {
+			
+			String msg = "unable to read response-body of request(" + WilddogRestMethod.GET + ") @ " + url.encodedPath();
+			LOGGER.error( msg );
+			throw new WilddogException( msg, jue );
+			
+		} finally {
+			entity.close();
+			disarmDeadline( httpResponse );
+		}
+	}
+	
+	/**
+	 * GETs the data of every provided-path relative to the base-url, with as many requests in flight at once
+	 * as this instance runs asynchronously to a host (see Builder#maxRequestsPerHost).
+	 * 
+	 * @see #getAll(Collection, int)
+	 */
+	public Map<String, WilddogResponse> getAll(Collection<String> paths ) throws WilddogException {
+		return this.getAll( paths, this.client.dispatcher().getMaxRequestsPerHost() );
+	}
+	
+	/**
+	 * GETs the data of every provided-path relative to the base-url, concurrently, over the shared connection
+	 * pool; ie: the independent paths a dashboard is made of. A path answered from the cache takes no request.
+	 * 
+	 * Every path gets its own response, and a path that fails does not fail the others: a path that received
+	 * no response at all is mapped to an unsuccessful response with code 0, and the reason in its body (under
+	 * 'error', as the server reports its own errors).
+	 * 
+	 * NOTE: the requests are also bounded by Builder#maxRequests and Builder#maxRequestsPerHost; a parallelism
+	 * above those only queues them in the dispatcher
+	 * 
+	 * @param paths -- if null/empty, a path refers to the base-url; duplicates are requested once
+	 * @param parallelism -- the maximum number of requests in flight at once; at least 1
+	 * @return the responses, mapped from the paths in the order provided
+	 * @throws {@link WilddogException} -- if the arguments are invalid, or the calling thread is interrupted
+	 */
+	public Map<String, WilddogResponse> getAll(Collection<String> paths, int parallelism ) throws WilddogException {
+		
+		if( paths == null ) {
+			
+			String msg = "paths cannot be null";
+			LOGGER.error( msg );
+			throw new WilddogException( msg );
+		}
+		if( parallelism < 1 ) {
+			
+			String msg = "parallelism must be at least 1; was: " + parallelism;
+			LOGGER.error( msg );
+			throw new WilddogException( msg );
+		}
+		
+		FanOut fanOut = new FanOut( new ArrayList<String>( new LinkedHashSet<String>( paths ) ) );
+		for( int i = 0; i < parallelism; i++ ) {
+			fanOut.next();
+		}
+		
+		try {
+			fanOut.done.await();
+		} catch( InterruptedException e ) {
+			
+			// the requests in flight complete, but no more are sent
+			fanOut.stop();
+			Thread.currentThread().interrupt();
+			String msg = "interrupted while getting " + paths.size() + " paths";
+			LOGGER.error( msg );
+			throw new WilddogException( msg, e );
+		}
+		
+		Map<String, WilddogResponse> result = new LinkedHashMap<String, WilddogResponse>();
+		for( int i = 0; i < fanOut.paths.size(); i++ ) {
+			result.put( fanOut.paths.get( i ), fanOut.responses[ i ] );
+		}
+		return result;
+	}
+	
 	/**
 	 * PATCHs data to the base-url
 	 * 
@@ -135,7 +444,7 @@ public class Wilddog {
 	
 	public WilddogResponse patch(String path, Map<String, Object> data) throws WilddogException, JacksonUtilityException, UnsupportedEncodingException {
 		// make the request
-		String url = this.buildFullUrlFromRelativePath( path );
+		HttpUrl url = this.buildFullUrlFromRelativePath( path, null );
 
 		Request request = new Request.Builder()
 				.url(url)
@@ -173,7 +482,7 @@ public class Wilddog {
 	
 	public WilddogResponse patch(String path, String jsonData) throws UnsupportedEncodingException, WilddogException {
 		// make the request
-		String url = this.buildFullUrlFromRelativePath( path );
+		HttpUrl url = this.buildFullUrlFromRelativePath( path, null );
 
 		Request request = new Request.Builder()
 				.url(url)
@@ -219,7 +528,7 @@ public class Wilddog {
 	public WilddogResponse put(String path, Map<String, Object> data ) throws JacksonUtilityException, WilddogException, UnsupportedEncodingException {
 		
 		// make the request
-		String url = this.buildFullUrlFromRelativePath( path );
+		HttpUrl url = this.buildFullUrlFromRelativePath( path, null );
 
 		Request request = new Request.Builder()
 				.url(url)
@@ -262,7 +571,7 @@ public class Wilddog {
 	public WilddogResponse put(String path, String jsonData ) throws WilddogException, UnsupportedEncodingException {
 
 		// make the request
-		String url = this.buildFullUrlFromRelativePath( path );
+		HttpUrl url = this.buildFullUrlFromRelativePath( path, null );
 
 		Request request = new Request.Builder()
 				.url(url)
@@ -276,6 +585,34 @@ public class Wilddog {
 		return response;		
 	}
 	
+	/**
+	 * PUTs the provided value, serialized directly to json, to the provided-path relative to the base-url
+	 * (ie: creates or overwrites).
+	 * 
+	 * NOTE: a String value is sent as json-data, see {@link #put(String, String)}
+	 * 
+	 * @param path -- if null/empty, refers to base-url
+	 * @param value -- a POJO, collection or scalar; null deletes any data existing at the path
+	 * @return {@link WilddogResponse}
+	 * @throws UnsupportedEncodingException 
+	 * @throws {@link JacksonUtilityException}
+	 * @throws {@link WilddogException}
+	 */
+	public <T> WilddogResponse put(String path, T value ) throws JacksonUtilityException, WilddogException, UnsupportedEncodingException {
+		
+		// make the request
+		HttpUrl url = this.buildFullUrlFromRelativePath( path, null );
+
+		Request request = new Request.Builder()
+				.url(url)
+				.put(this.buildRequestBodyFromValue( value ))
+				.build();
+
+		Response httpResponse = this.makeRequest( request );
+
+		return this.processResponse( WilddogRestMethod.PUT, httpResponse );
+	}
+	
 	/**
 	 * POSTs data to the base-url (ie: creates).
 	 * 
@@ -312,7 +649,7 @@ public class Wilddog {
 	public WilddogResponse post(String path, Map<String, Object> data ) throws JacksonUtilityException, WilddogException, UnsupportedEncodingException {
 		
 		// make the request
-		String url = this.buildFullUrlFromRelativePath( path );
+		HttpUrl url = this.buildFullUrlFromRelativePath( path, null );
 
 		Request request = new Request.Builder()
 				.url(url)
@@ -361,7 +698,7 @@ public class Wilddog {
 	public WilddogResponse post(String path, String jsonData ) throws WilddogException, UnsupportedEncodingException {
 		
 		// make the request
-		String url = this.buildFullUrlFromRelativePath( path );
+		HttpUrl url = this.buildFullUrlFromRelativePath( path, null );
 
 		Request request = new Request.Builder()
 				.url(url)
@@ -377,178 +714,1535 @@ public class Wilddog {
 	}
 	
 	/**
-	 * Append a query to the request.
+	 * POSTs the provided value, serialized directly to json, to the provided-path relative to the base-url
+	 * (ie: PUSH; see {@link #post(String, Map)}).
 	 * 
-	 * @param query -- Query string based on Wilddog REST API
-	 * @param parameter -- Query parameter
-	 * @return Wilddog -- return this Wilddog object
-	 */
-	
-	public Wilddog addQuery(String query, String parameter) {
-		this.query.add(new BasicNameValuePair(query, parameter));
-		return this;
-	}
-	
-	/**
-	 * DELETEs data from the base-url.
+	 * NOTE: a String value is sent as json-data, see {@link #post(String, String)}
 	 * 
+	 * @param path -- if null/empty, refers to base-url
+	 * @param value -- a POJO, collection or scalar
 	 * @return {@link WilddogResponse}
 	 * @throws UnsupportedEncodingException 
+	 * @throws {@link JacksonUtilityException}
 	 * @throws {@link WilddogException}
 	 */
-	public WilddogResponse delete() throws WilddogException, UnsupportedEncodingException {
-		return this.delete( null );
-	}
+	public <T> WilddogResponse post(String path, T value ) throws JacksonUtilityException, WilddogException, UnsupportedEncodingException {
+		
+		// make the request
+		HttpUrl url = this.buildFullUrlFromRelativePath( path, null );
+
+		Request request = new Request.Builder()
+				.url(url)
+				.post(this.buildRequestBodyFromValue( value ))
+				.build();
+
+		Response httpResponse = this.makeRequest( request );
 
+		return this.processResponse( WilddogRestMethod.POST, httpResponse );
+	}
+	
 	/**
-	 * DELETEs data from the provided-path relative to the base-url.
+	 * PATCHs the non-null properties of the provided value, serialized directly to json, on the provided-path
+	 * relative to the base-url.
 	 * 
-	 * @param path -- if null/empty, refers to the base-url
+	 * NOTE: a String value is sent as json-data, see {@link #patch(String, String)}
+	 * 
+	 * @param path -- if null/empty, refers to base-url
+	 * @param value -- a POJO or map
 	 * @return {@link WilddogResponse}
 	 * @throws UnsupportedEncodingException 
+	 * @throws {@link JacksonUtilityException}
 	 * @throws {@link WilddogException}
 	 */
-	public WilddogResponse delete(String path ) throws WilddogException, UnsupportedEncodingException {
+	public <T> WilddogResponse patch(String path, T value ) throws JacksonUtilityException, WilddogException, UnsupportedEncodingException {
 		
 		// make the request
-		String url = this.buildFullUrlFromRelativePath( path );
+		HttpUrl url = this.buildFullUrlFromRelativePath( path, null );
 
 		Request request = new Request.Builder()
 				.url(url)
-				.delete()
+				.patch(this.buildRequestBodyFromValue( value ))
 				.build();
 
 		Response httpResponse = this.makeRequest( request );
 
-		
-		// process the response
-		WilddogResponse response = this.processResponse( WilddogRestMethod.DELETE, httpResponse );
-		
-		return response;
+		return this.processResponse( WilddogRestMethod.PATCH, httpResponse );
 	}
 	
+	/**
+	 * PUTs the (utf-8) json-data to the provided-path relative to the base-url (ie: creates or overwrites),
+	 * without decoding it into a String first; for writers that already hold serialized json.
+	 * 
+	 * NOTE: the bytes are sent as json-data, not serialized as a value (see {@link #put(String, Object)})
+	 * 
+	 * @param path -- if null/empty, refers to base-url
+	 * @param jsonData -- the utf-8 json-data, sent as is (not copied); cannot be null
+	 * @return {@link WilddogResponse}
+	 * @throws {@link WilddogException}
+	 */
+	public WilddogResponse put(String path, byte[] jsonData ) throws WilddogException {
+		return this.write( WilddogRestMethod.PUT, path, this.buildRequestBody( jsonData ) );
+	}
 	
+	/**
+	 * PUTs the json-data in the buffer to the provided-path relative to the base-url (ie: creates or
+	 * overwrites), without copying it into an array or String first.
+	 * 
+	 * @param path -- if null/empty, refers to base-url
+	 * @param jsonData -- the utf-8 json-data from its position to its limit, sent as is; neither the
+	 *     position nor the contents may change until the response is received; cannot be null
+	 * @return {@link WilddogResponse}
+	 * @throws {@link WilddogException}
+	 */
+	public WilddogResponse put(String path, ByteBuffer jsonData ) throws WilddogException {
+		return this.write( WilddogRestMethod.PUT, path, this.buildRequestBody( jsonData ) );
+	}
 	
-///////////////////////////////////////////////////////////////////////////////
-//
-// PRIVATE API
-//
-///////////////////////////////////////////////////////////////////////////////
+	/**
+	 * PUTs the json-data written by the writer to the provided-path relative to the base-url (ie: creates or
+	 * overwrites); it is streamed into the request as it is sent, so it is never held in memory as a whole.
+	 * 
+	 * @param path -- if null/empty, refers to base-url
+	 * @param writer -- writes the json-data into the request as it is sent; cannot be null
+	 * @return {@link WilddogResponse}
+	 * @throws {@link WilddogException}
+	 */
+	public WilddogResponse put(String path, WilddogJsonWriter writer ) throws WilddogException {
+		return this.write( WilddogRestMethod.PUT, path, this.buildRequestBody( writer ) );
+	}
 	
+	/**
+	 * PATCHs the (utf-8) json-data on the provided-path relative to the base-url, without decoding it into a
+	 * String first.
+	 * 
+	 * @param path -- if null/empty, refers to base-url
+	 * @param jsonData -- the utf-8 json-data, sent as is (not copied); cannot be null
+	 * @return {@link WilddogResponse}
+	 * @throws {@link WilddogException}
+	 */
+	public WilddogResponse patch(String path, byte[] jsonData ) throws WilddogException {
+		return this.write( WilddogRestMethod.PATCH, path, this.buildRequestBody( jsonData ) );
+	}
 	
-	private RequestBody buildRequestBodyFromDataMap(Map<String, Object> dataMap ) throws WilddogException, JacksonUtilityException {
-		
-		String jsonData = JacksonUtility.GET_JSON_STRING_FROM_MAP( dataMap );
-		
-		return this.buildRequestBodyFromJsonData( jsonData );
+	/**
+	 * PATCHs the json-data in the buffer on the provided-path relative to the base-url, without copying it into
+	 * an array or String first.
+	 * 
+	 * @param path -- if null/empty, refers to base-url
+	 * @param jsonData -- the utf-8 json-data from its position to its limit, sent as is; neither the
+	 *     position nor the contents may change until the response is received; cannot be null
+	 * @return {@link WilddogResponse}
+	 * @throws {@link WilddogException}
+	 */
+	public WilddogResponse patch(String path, ByteBuffer jsonData ) throws WilddogException {
+		return this.write( WilddogRestMethod.PATCH, path, this.buildRequestBody( jsonData ) );
 	}
-
-	public static final MediaType JSON
-			= MediaType.parse("application/json; charset=utf-8");
-
-	private RequestBody buildRequestBodyFromJsonData(String jsonData ) throws WilddogException {
-
-		RequestBody result =  null;
-		try {
-
-			result = RequestBody.create(JSON, jsonData);
-
-		} catch( Throwable t ) {
-			
-			String msg = "unable to create entity from data; data was: " + jsonData;
-			LOGGER.error( msg );
-			throw new WilddogException( msg, t );
-			
-		}
-		
-		return result;
+	
+	/**
+	 * PATCHs the json-data written by the writer on the provided-path relative to the base-url; it is streamed
+	 * into the request as it is sent.
+	 * 
+	 * @param path -- if null/empty, refers to base-url
+	 * @param writer -- writes the json-data into the request as it is sent; cannot be null
+	 * @return {@link WilddogResponse}
+	 * @throws {@link WilddogException}
+	 */
+	public WilddogResponse patch(String path, WilddogJsonWriter writer ) throws WilddogException {
+		return this.write( WilddogRestMethod.PATCH, path, this.buildRequestBody( writer ) );
 	}
 	
-	private String buildFullUrlFromRelativePath( String path ) throws UnsupportedEncodingException {
-		
-		// massage the path (whether it's null, empty, or not) into a full URL
-		if( path == null ) {
-			path = "";
-		}
-		path = path.trim();
-		if( !path.isEmpty() && !path.startsWith( "/" ) ) {
-			path = "/" + path;
-		}
-		String url = this.baseUrl + path + Wilddog.WILDDOG_API_JSON_EXTENSION;
-		
-		if(query != null) {
-			url += "?";
+	/**
+	 * POSTs the (utf-8) json-data to the provided-path relative to the base-url (ie: PUSH; see
+	 * {@link #post(String, Map)}), without decoding it into a String first.
+	 * 
+	 * @param path -- if null/empty, refers to base-url
+	 * @param jsonData -- the utf-8 json-data, sent as is (not copied); cannot be null
+	 * @return {@link WilddogResponse}
+	 * @throws {@link WilddogException}
+	 */
+	public WilddogResponse post(String path, byte[] jsonData ) throws WilddogException {
+		return this.write( WilddogRestMethod.POST, path, this.buildRequestBody( jsonData ) );
+	}
+	
+	/**
+	 * POSTs the json-data in the buffer to the provided-path relative to the base-url (ie: PUSH), without
+	 * copying it into an array or String first.
+	 * 
+	 * @param path -- if null/empty, refers to base-url
+	 * @param jsonData -- the utf-8 json-data from its position to its limit, sent as is; neither the
+	 *     position nor the contents may change until the response is received; cannot be null
+	 * @return {@link WilddogResponse}
+	 * @throws {@link WilddogException}
+	 */
+	public WilddogResponse post(String path, ByteBuffer jsonData ) throws WilddogException {
+		return this.write( WilddogRestMethod.POST, path, this.buildRequestBody( jsonData ) );
+	}
+	
+	/**
+	 * POSTs the json-data written by the writer to the provided-path relative to the base-url (ie: PUSH); it is
+	 * streamed into the request as it is sent.
+	 * 
+	 * @param path -- if null/empty, refers to base-url
+	 * @param writer -- writes the json-data into the request as it is sent; cannot be null
+	 * @return {@link WilddogResponse}
+	 * @throws {@link WilddogException}
+	 */
+	public WilddogResponse post(String path, WilddogJsonWriter writer ) throws WilddogException {
+		return this.write( WilddogRestMethod.POST, path, this.buildRequestBody( writer ) );
+	}
+	
+	/**
+	 * Append a query to the next request made on this instance.
+	 * 
+	 * @param query -- Query string based on Wilddog REST API
+	 * @param parameter -- Query parameter
+	 * @return Wilddog -- return this Wilddog object
+	 * @deprecated the pending query is shared by every thread using this instance, and is consumed by
+	 * 			whichever request comes next; pass a {@link WilddogQuery} to the request instead
+	 */
+	@Deprecated
+	public Wilddog addQuery(String query, String parameter) {
+		WilddogQuery current;
+		do {
+			current = this.pendingQuery.get();
+		} while( !this.pendingQuery.compareAndSet( current, current.param( query, parameter ) ) );
+		return this;
+	}
+	
+	/**
+	 * DELETEs data from the base-url.
+	 * 
+	 * @return {@link WilddogResponse}
+	 * @throws UnsupportedEncodingException 
+	 * @throws {@link WilddogException}
+	 */
+	public WilddogResponse delete() throws WilddogException, UnsupportedEncodingException {
+		return this.delete( null );
+	}
+
+	/**
+	 * DELETEs data from the provided-path relative to the base-url.
+	 * 
+	 * @param path -- if null/empty, refers to the base-url
+	 * @return {@link WilddogResponse}
+	 * @throws UnsupportedEncodingException 
+	 * @throws {@link WilddogException}
+	 */
+	public WilddogResponse delete(String path ) throws WilddogException, UnsupportedEncodingException {
+		return this.delete( path, (WilddogQuery) null );
+	}
+
+	/**
+	 * DELETEs data from the provided-path relative to the base-url, with the provided query-parameters.
+	 * 
+	 * @param path -- if null/empty, refers to the base-url
+	 * @param query -- can be null
+	 * @return {@link WilddogResponse}
+	 * @throws UnsupportedEncodingException 
+	 * @throws {@link WilddogException}
+	 */
+	public WilddogResponse delete(String path, WilddogQuery query ) throws WilddogException, UnsupportedEncodingException {
+		
+		// make the request
+		HttpUrl url = this.buildFullUrlFromRelativePath( path, query );
+
+		Request request = new Request.Builder()
+				.url(url)
+				.delete()
+				.build();
+
+		Response httpResponse = this.makeRequest( request );
+
+		
+		// process the response
+		WilddogResponse response = this.processResponse( WilddogRestMethod.DELETE, httpResponse );
+		
+		return response;
+	}
+	
+	
+	
+///////////////////////////////////////////////////////////////////////////////
+//
+// PUBLIC API (ASYNCHRONOUS)
+//
+///////////////////////////////////////////////////////////////////////////////
+	
+	/* NOTE: the *Async methods never block the calling thread; the request is queued on the dispatcher of
+	 * this instance (see Builder#maxRequests and Builder#maxRequestsPerHost) and the returned future
+	 * completes, on a dispatcher-thread, with the processed response or with a WilddogException.
+	 * Cancelling the future cancels the underlying call.
+	 */
+	
+	/**
+	 * Asynchronously GETs data from the provided-path relative to the base-url.
+	 * 
+	 * @param path -- if null/empty, refers to the base-url
+	 * @return a future of the {@link WilddogResponse}
+	 */
+	public CompletableFuture<WilddogResponse> getAsync(String path ) {
+		return this.getAsync( path, null );
+	}
+	
+	/**
+	 * Asynchronously GETs data from the provided-path relative to the base-url, with the provided query-parameters.
+	 * 
+	 * @param path -- if null/empty, refers to the base-url
+	 * @param query -- can be null
+	 * @return a future of the {@link WilddogResponse}
+	 */
+	public CompletableFuture<WilddogResponse> getAsync(final String path, WilddogQuery query ) {
+		
+		if( !this.isCacheable( query ) ) {
+			return this.enqueue( WilddogRestMethod.GET, path, query, null );
+		}
+		WilddogResponse cached = this.cache.get( path );
+		if( cached != null ) {
+			return CompletableFuture.completedFuture( cached );
+		}
+		final long generation = this.cache.generationOf( path );
+		final CompletableFuture<WilddogResponse> sent = this.enqueue( WilddogRestMethod.GET, path, query, null, this.etagHeaders( this.cache.etagOf( path ) ) );
+		final CompletableFuture<WilddogResponse> result = new CompletableFuture<WilddogResponse>();
+		sent.whenComplete( new BiConsumer<WilddogResponse, Throwable>() {
+			@Override
+			public void accept(WilddogResponse response, Throwable t ) {
+				if( t != null ) {
+					result.completeExceptionally( t );
+					return;
+				}
+				try {
+					result.complete( Wilddog.this.cached( path, response, generation ) );
+				} catch( WilddogException e ) {
+					result.completeExceptionally( e );
+				}
+			}
+		});
+		result.whenComplete( new BiConsumer<WilddogResponse, Throwable>() {
+			@Override
+			public void accept(WilddogResponse response, Throwable t ) {
+				if( result.isCancelled() ) {
+					sent.cancel( true );
+				}
+			}
+		});
+		return result;
+	}
+	
+	/**
+	 * Asynchronously PATCHs data on the provided-path relative to the base-url.
+	 * 
+	 * @param path -- if null/empty, refers to the base-url
+	 * @param data -- can be null/empty
+	 * @return a future of the {@link WilddogResponse}
+	 */
+	public CompletableFuture<WilddogResponse> patchAsync(String path, Map<String, Object> data ) {
+		return this.enqueue( WilddogRestMethod.PATCH, path, null, data );
+	}
+	
+	/**
+	 * Asynchronously PATCHs json-data on the provided-path relative to the base-url.
+	 * 
+	 * @param path -- if null/empty, refers to the base-url
+	 * @param jsonData -- can be null/empty
+	 * @return a future of the {@link WilddogResponse}
+	 */
+	public CompletableFuture<WilddogResponse> patchAsync(String path, String jsonData ) {
+		return this.enqueue( WilddogRestMethod.PATCH, path, null, jsonData );
+	}
+	
+	/**
+	 * Asynchronously PATCHs the (utf-8) json-data on the provided-path relative to the base-url, without
+	 * decoding it into a String first.
+	 * 
+	 * @param path -- if null/empty, refers to the base-url
+	 * @param jsonData -- sent as is (not copied); cannot be null
+	 * @return a future of the {@link WilddogResponse}
+	 */
+	public CompletableFuture<WilddogResponse> patchAsync(String path, byte[] jsonData ) {
+		return this.enqueue( WilddogRestMethod.PATCH, path, null, jsonData );
+	}
+	
+	/**
+	 * Asynchronously PUTs data to the provided-path relative to the base-url (ie: creates or overwrites).
+	 * 
+	 * @param path -- if null/empty, refers to the base-url
+	 * @param data -- can be null/empty
+	 * @return a future of the {@link WilddogResponse}
+	 */
+	public CompletableFuture<WilddogResponse> putAsync(String path, Map<String, Object> data ) {
+		return this.enqueue( WilddogRestMethod.PUT, path, null, data );
+	}
+	
+	/**
+	 * Asynchronously PUTs json-data to the provided-path relative to the base-url (ie: creates or overwrites).
+	 * 
+	 * @param path -- if null/empty, refers to the base-url
+	 * @param jsonData -- can be null/empty
+	 * @return a future of the {@link WilddogResponse}
+	 */
+	public CompletableFuture<WilddogResponse> putAsync(String path, String jsonData ) {
+		return this.enqueue( WilddogRestMethod.PUT, path, null, jsonData );
+	}
+	
+	/**
+	 * Asynchronously PUTs the (utf-8) json-data to the provided-path relative to the base-url (ie: creates or
+	 * overwrites), without decoding it into a String first.
+	 * 
+	 * @param path -- if null/empty, refers to the base-url
+	 * @param jsonData -- sent as is (not copied); cannot be null
+	 * @return a future of the {@link WilddogResponse}
+	 */
+	public CompletableFuture<WilddogResponse> putAsync(String path, byte[] jsonData ) {
+		return this.enqueue( WilddogRestMethod.PUT, path, null, jsonData );
+	}
+	
+	/**
+	 * Asynchronously POSTs data to the provided-path relative to the base-url (ie: PUSH; see {@link #post(String, Map)}).
+	 * 
+	 * @param path -- if null/empty, refers to the base-url
+	 * @param data -- can be null/empty but will result in no data being POSTed
+	 * @return a future of the {@link WilddogResponse}
+	 */
+	public CompletableFuture<WilddogResponse> postAsync(String path, Map<String, Object> data ) {
+		return this.enqueue( WilddogRestMethod.POST, path, null, data );
+	}
+	
+	/**
+	 * Asynchronously POSTs json-data to the provided-path relative to the base-url (ie: PUSH; see {@link #post(String, String)}).
+	 * 
+	 * @param path -- if null/empty, refers to the base-url
+	 * @param jsonData -- can be null/empty but will result in no data being POSTed
+	 * @return a future of the {@link WilddogResponse}
+	 */
+	public CompletableFuture<WilddogResponse> postAsync(String path, String jsonData ) {
+		return this.enqueue( WilddogRestMethod.POST, path, null, jsonData );
+	}
+	
+	/**
+	 * Asynchronously POSTs the (utf-8) json-data to the provided-path relative to the base-url (ie: PUSH),
+	 * without decoding it into a String first.
+	 * 
+	 * @param path -- if null/empty, refers to the base-url
+	 * @param jsonData -- sent as is (not copied); cannot be null
+	 * @return a future of the {@link WilddogResponse}
+	 */
+	public CompletableFuture<WilddogResponse> postAsync(String path, byte[] jsonData ) {
+		return this.enqueue( WilddogRestMethod.POST, path, null, jsonData );
+	}
+	
+	/**
+	 * Asynchronously DELETEs data from the provided-path relative to the base-url.
+	 * 
+	 * @param path -- if null/empty, refers to the base-url
+	 * @return a future of the {@link WilddogResponse}
+	 */
+	public CompletableFuture<WilddogResponse> deleteAsync(String path ) {
+		return this.deleteAsync( path, null );
+	}
+	
+	/**
+	 * Asynchronously DELETEs data from the provided-path relative to the base-url, with the provided query-parameters.
+	 * 
+	 * @param path -- if null/empty, refers to the base-url
+	 * @param query -- can be null
+	 * @return a future of the {@link WilddogResponse}
+	 */
+	public CompletableFuture<WilddogResponse> deleteAsync(String path, WilddogQuery query ) {
+		return this.enqueue( WilddogRestMethod.DELETE, path, query, null );
+	}
+	
+	/**
+	 * GETs data from the provided-path relative to the base-url, unless it still has the provided ETag; the
+	 * response carries the (current) ETag, see {@link WilddogResponse#getETag()}.
+	 * 
+	 * @param path -- if null/empty, refers to the base-url
+	 * @param etag -- the ETag of the data already held; null to always get the data
+	 * @return {@link WilddogResponse}; with code 304 and no data if the data did not change
+	 * @throws {@link WilddogException}
+	 */
+	public WilddogResponse getIfChanged(String path, String etag ) throws WilddogException {
+		
+		Request request = new Request.Builder()
+				.url( this.buildFullUrlFromRelativePath( path, null ) )
+				.headers( this.etagHeaders( etag ) )
+				.build();
+		Response httpResponse = this.makeRequest( request );
+		
+		if( httpResponse.code() == 304 ) {
+			httpResponse.close();
+			disarmDeadline( httpResponse );
+			return new WilddogResponse( false, 304, null, null, etag );
+		}
+		return this.processResponse( WilddogRestMethod.GET, httpResponse );
+	}
+	
+	/**
+	 * Atomically replaces the data at the provided-path relative to the base-url with the result of the
+	 * update; see {@link #transaction(String, Class, Function)}.
+	 * 
+	 * @param path -- if null/empty, refers to the base-url
+	 * @param update -- maps the current data (maps, lists or scalars; null if none) to the new data
+	 * @return the data written
+	 * @throws {@link WilddogException}
+	 */
+	public Object transaction(String path, Function<Object, Object> update ) throws WilddogException {
+		return this.transaction( path, Object.class, update );
+	}
+	
+	/**
+	 * Atomically replaces the data at the provided-path relative to the base-url with the result of the
+	 * update, through optimistic concurrency: the data is read with its ETag, and written back only if it
+	 * still has that ETag ({@code if-match}). When another client wrote in between, the server refuses the
+	 * write (412) and sends the current data, to which the update is applied again, after a short back-off;
+	 * up to 25 attempts in all.
+	 * 
+	 * NOTE: the update may run several times, so it must not have side-effects; and a conditional write is
+	 * never retried blindly, as it may have been applied before its response was lost.
+	 * 
+	 * @param path -- if null/empty, refers to the base-url
+	 * @param type -- the class the data is bound to
+	 * @param update -- maps the current data (null if none) to the new data; null deletes the data
+	 * @return the data written
+	 * @throws {@link WilddogException} -- also when the data kept changing for all attempts
+	 */
+	public <T> T transaction(String path, Class<T> type, Function<T, T> update ) throws WilddogException {
+		
+		if( update == null ) {
+			throw new IllegalArgumentException( "update cannot be null" );
+		}
+		ObjectReader reader = this.jackson.readerFor( type );
+		HttpUrl url = this.buildFullUrlFromRelativePath( path, null );
+		
+		Response httpResponse = this.makeRequest( new Request.Builder()
+				.url( url )
+				.header( ETAG_REQUEST_HEADER, "true" )
+				.build() );
+		
+		long backoff = 10;
+		for( int attempt = 1; ; attempt++ ) {
+			
+			// the current data; from the GET, or from the 412 that refused the previous write
+			String etag = httpResponse.header( "ETag" );
+			T current = this.readTransactionValue( path, httpResponse, reader );
+			if( etag == null ) {
+				
+				String msg = "transaction @ " + path + " failed; the server sent no ETag";
+				LOGGER.error( msg );
+				throw new WilddogException( msg );
+			}
+			
+			T next = update.apply( current );
+			RequestBody body;
+			try {
+				body = this.buildRequestBodyFromValue( next );
+			} catch( JacksonUtilityException jue ) {
+				
+				String msg = "unable to convert the result of the transaction @ " + path + " into json";
+				LOGGER.error( msg );
+				throw new WilddogException( msg, jue );
+			}
+			httpResponse = this.makeRequest( new Request.Builder()
+					.url( url )
+					.header( ETAG_REQUEST_HEADER, "true" )
+					.header( "if-match", etag )
+					.put( body )
+					.build() );
+			
+			if( this.cache != null ) {
+				this.cache.invalidate( url );
+			}
+			if( httpResponse.isSuccessful() ) {
+				httpResponse.close();
+				disarmDeadline( httpResponse );
+				return next;
+			}
+			if( httpResponse.code() != 412 || attempt >= MAX_TRANSACTION_ATTEMPTS ) {
+				
+				int code = httpResponse.code();
+				httpResponse.close();
+				disarmDeadline( httpResponse );
+				String msg = "transaction @ " + path + " failed after " + attempt + " attempts; code was " + code;
+				LOGGER.error( msg );
+				throw new WilddogException( msg );
+			}
+			
+			// contended; full jitter keeps competing clients from colliding again
+			try {
+				Thread.sleep( ThreadLocalRandom.current().nextLong( backoff + 1 ) );
+			} catch( InterruptedException e ) {
+				
+				httpResponse.close();
+				disarmDeadline( httpResponse );
+				Thread.currentThread().interrupt();
+				String msg = "transaction @ " + path + " was interrupted";
+				LOGGER.error( msg );
+				throw new WilddogException( msg, e );
+			}
+			backoff = Math.min( backoff * 2, MAX_TRANSACTION_BACKOFF_MILLIS );
+		}
+	}
+	
+	/**
+	 * Streams the json-data at the provided-path relative to the base-url into the stream, without holding it
+	 * in memory; ie: for backups of large subtrees.
+	 * 
+	 * @param path -- if null/empty, refers to the base-url
+	 * @param out -- receives the json-data; flushed, but not closed
+	 * @return the number of bytes of json-data downloaded
+	 * @throws {@link WilddogException}
+	 */
+	public long download(String path, OutputStream out ) throws WilddogException {
+		return this.download( path, out, false );
+	}
+	
+	/**
+	 * Streams the json-data at the provided-path relative to the base-url into the stream, without holding it
+	 * in memory; ie: for backups of large subtrees.
+	 * 
+	 * @param path -- if null/empty, refers to the base-url
+	 * @param out -- receives the json-data; flushed, but not closed
+	 * @param gzip -- whether the json-data is gzip-compressed on its way into the stream
+	 * @return the number of bytes of (uncompressed) json-data downloaded
+	 * @throws {@link WilddogException}
+	 */
+	public long download(String path, OutputStream out, boolean gzip ) throws WilddogException {
+		
+		if( out == null ) {
+			
+			String msg = "out cannot be null";
+			LOGGER.error( msg );
+			throw new WilddogException( msg );
+		}
+		
+		Request request = new Request.Builder()
+				.url( this.buildFullUrlFromRelativePath( path, null ) )
+				.get()
+				.build();
+		
+		Response httpResponse = this.makeRequest( request );
+		try {
+			
+			if( !httpResponse.isSuccessful() ) {
+				String msg = "unable to download '" + path + "'; code was " + httpResponse.code();
+				LOGGER.error( msg );
+				throw new WilddogException( msg );
+			}
+			
+			// okio hands the body's segments to the sink without copying them
+			GZIPOutputStream compressed = gzip ? new GZIPOutputStream( out, 64 * 1024 ) : null;
+			BufferedSink sink = Okio.buffer( Okio.sink( gzip ? compressed : out ) );
+			long bytes = sink.writeAll( httpResponse.body().source() );
+			sink.flush();
+			if( compressed != null ) {
+				compressed.finish();
+			}
+			out.flush();
+			return bytes;
+			
+		} catch( IOException e ) {
+			
+			String msg = describeFailure( "unable to download '" + path + "'", httpResponse.request() );
+			LOGGER.error( msg );
+			throw new WilddogException( msg, e );
+			
+		} finally {
+			httpResponse.close();
+			disarmDeadline( httpResponse );
+		}
+	}
+	
+	/**
+	 * Streams the json-data at the provided-path relative to the base-url into the file; the file is only
+	 * replaced once the download is complete.
+	 * 
+	 * @param path -- if null/empty, refers to the base-url
+	 * @param file -- created or replaced
+	 * @return the number of bytes of json-data downloaded
+	 * @throws {@link WilddogException}
+	 */
+	public long download(String path, Path file ) throws WilddogException {
+		return this.download( path, file, false );
+	}
+	
+	/**
+	 * Streams the json-data at the provided-path relative to the base-url into the file; the file is only
+	 * replaced once the download is complete.
+	 * 
+	 * @param path -- if null/empty, refers to the base-url
+	 * @param file -- created or replaced
+	 * @param gzip -- whether the file is gzip-compressed
+	 * @return the number of bytes of (uncompressed) json-data downloaded
+	 * @throws {@link WilddogException}
+	 */
+	public long download(String path, Path file, boolean gzip ) throws WilddogException {
+		
+		if( file == null ) {
+			
+			String msg = "file cannot be null";
+			LOGGER.error( msg );
+			throw new WilddogException( msg );
+		}
+		
+		Path partial = file.resolveSibling( file.getFileName() + ".part" );
+		try {
+			
+			long bytes;
+			OutputStream out = Files.newOutputStream( partial );
+			try {
+				bytes = this.download( path, out, gzip );
+			} finally {
+				out.close();
+			}
+			try {
+				Files.move( partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+			} catch( AtomicMoveNotSupportedException e ) {
+				Files.move( partial, file, StandardCopyOption.REPLACE_EXISTING );
+			}
+			return bytes;
+			
+		} catch( IOException e ) {
+			
+			String msg = "unable to download '" + path + "' into " + file;
+			LOGGER.error( msg );
+			throw new WilddogException( msg, e );
+			
+		} finally {
+			try {
+				Files.deleteIfExists( partial );
+			} catch( IOException e ) {
+				LOGGER.warn( "unable to delete " + partial );
+			}
+		}
+	}
+	
+	/**
+	 * PUTs the json-data read from the stream to the provided-path relative to the base-url, without holding
+	 * it in memory; ie: to restore a backup made by {@link #download(String, OutputStream)}.
+	 * 
+	 * NOTE: the stream can only be read once, so the request is never retried; and the server is asked not to
+	 * echo the data back ({@code print=silent}), so the response-body is empty.
+	 * 
+	 * @param path -- if null/empty, refers to the base-url
+	 * @param in -- the json-data; read to the end, but not closed
+	 * @return {@link WilddogResponse}
+	 * @throws {@link WilddogException}
+	 */
+	public WilddogResponse upload(String path, InputStream in ) throws WilddogException {
+		return this.upload( path, in, false );
+	}
+	
+	/**
+	 * PUTs the json-data read from the stream to the provided-path relative to the base-url, without holding
+	 * it in memory; see {@link #upload(String, InputStream)}.
+	 * 
+	 * @param path -- if null/empty, refers to the base-url
+	 * @param in -- the json-data; read to the end, but not closed
+	 * @param gzip -- whether the stream is gzip-compressed, ie: written by a gzip-download
+	 * @return {@link WilddogResponse}
+	 * @throws {@link WilddogException}
+	 */
+	public WilddogResponse upload(String path, InputStream in, boolean gzip ) throws WilddogException {
+		
+		if( in == null ) {
+			
+			String msg = "in cannot be null";
+			LOGGER.error( msg );
+			throw new WilddogException( msg );
+		}
+		
+		Request request = new Request.Builder()
+				.url( this.buildFullUrlFromRelativePath( path, new WilddogQuery().param( "print", "silent" ) ) )
+				.put( new StreamingRequestBody( in, gzip ) )
+				.build();
+		
+		Response httpResponse = this.makeRequest( request );
+		
+		return this.processResponse( WilddogRestMethod.PUT, httpResponse );
+	}
+	
+	/**
+	 * Subscribes to the changes of the data at the provided-path relative to the base-url, over a single
+	 * long-lived streaming connection ({@code Accept: text/event-stream}); the first event is a PUT of
+	 * the current data, followed by a PUT or PATCH for every change. The connection is re-established,
+	 * with back-off, whenever it fails.
+	 * 
+	 * @param path -- if null/empty, refers to the base-url
+	 * @param listener -- receives the events on the subscription's thread; cannot be null
+	 * @return the running {@link WilddogEventStream}; close it to unsubscribe
+	 * @throws UnsupportedEncodingException 
+	 * @throws {@link WilddogException}
+	 */
+	public WilddogEventStream listen(String path, WilddogEventListener listener ) throws WilddogException, UnsupportedEncodingException {
+		
+		if( listener == null ) {
+			
+			String msg = "listener cannot be null";
+			LOGGER.error( msg );
+			throw new WilddogException( msg );
+		}
+		
+		HttpUrl url = this.buildFullUrlFromRelativePath( path, null );
+		Request request = new Request.Builder()
+				.url(url)
+				.build();
+		
+		final WilddogEventStream stream = new WilddogEventStream( this.client, request, this.jackson, listener );
+		if( !this.resources.track( stream ) ) {
+			
+			String msg = "cannot listen @ " + url.encodedPath() + "; this instance is closed";
+			LOGGER.error( msg );
+			throw new WilddogException( msg );
+		}
+		stream.onClose( new Runnable() {
+			@Override
+			public void run() {
+				Wilddog.this.resources.untrack( stream );
+			}
+		});
+		stream.start();
+		
+		return stream;
+	}
+	
+	/**
+	 * Iterates over the children of the provided-path relative to the base-url in key-order, a page at a time,
+	 * with the next page prefetched.
+	 * 
+	 * @param path -- if null/empty, refers to the base-url
+	 * @param pageSize -- the number of children fetched per request; must be positive
+	 * @return a new {@link WilddogPager} of the children as maps, lists or scalars
+	 */
+	public WilddogPager<Object> pager(String path, int pageSize ) {
+		return this.pager( path, pageSize, 1, Object.class );
+	}
+	
+	/**
+	 * Iterates over the children of the provided-path relative to the base-url in key-order, a page at a time,
+	 * with the next page prefetched; every child is bound to the type.
+	 * 
+	 * @param path -- if null/empty, refers to the base-url
+	 * @param pageSize -- the number of children fetched per request; must be positive
+	 * @param type -- the class every child is bound to
+	 * @return a new {@link WilddogPager}
+	 */
+	public <T> WilddogPager<T> pager(String path, int pageSize, Class<T> type ) {
+		return this.pager( path, pageSize, 1, type );
+	}
+	
+	/**
+	 * Iterates over the children of the provided-path relative to the base-url in key-order, a page at a time;
+	 * at most {@code 1 + prefetchPages} pages are held at once.
+	 * 
+	 * @param path -- if null/empty, refers to the base-url
+	 * @param pageSize -- the number of children fetched per request; must be positive
+	 * @param prefetchPages -- the number of pages requested ahead of the one being consumed; 0 to fetch on demand
+	 * @param type -- the class every child is bound to
+	 * @return a new {@link WilddogPager}
+	 */
+	public <T> WilddogPager<T> pager(String path, int pageSize, int prefetchPages, final Class<T> type ) {
+		if( pageSize < 1 ) {
+			throw new IllegalArgumentException( "pageSize must be positive; was: " + pageSize );
+		}
+		if( prefetchPages < 0 ) {
+			throw new IllegalArgumentException( "prefetchPages cannot be negative; was: " + prefetchPages );
+		}
+		final ObjectMapper mapper = this.jackson.getMapper();
+		return new WilddogPager<T>( this, path, pageSize, prefetchPages, new Function<Object, T>() {
+			@Override
+			public T apply(Object value ) {
+				return type == Object.class ? type.cast( value ) : mapper.convertValue( value, type );
+			}
+		});
+	}
+	
+	/**
+	 * Creates a write-buffer that sends its PUTs and PATCHs as one multi-path PATCH when flushed explicitly.
+	 * 
+	 * @return a new {@link WilddogBatch}
+	 */
+	public WilddogBatch batch() {
+		return new WilddogBatch( this, 0, 0 );
+	}
+	
+	/**
+	 * Creates a write-buffer that sends its PUTs and PATCHs as one multi-path PATCH, when flushed explicitly,
+	 * once maxOperations writes are buffered, or maxDelay after the first buffered write.
+	 * 
+	 * @param maxOperations -- 0 for no size-threshold
+	 * @param maxDelay -- 0 for no time-threshold
+	 * @return a new {@link WilddogBatch}; close it to flush the remaining writes and stop its timer
+	 */
+	public WilddogBatch batch(int maxOperations, long maxDelay, TimeUnit unit ) {
+		if( maxOperations < 0 || maxDelay < 0 ) {
+			throw new IllegalArgumentException( "maxOperations and maxDelay cannot be negative; were: " + maxOperations + ", " + maxDelay );
+		}
+		return new WilddogBatch( this, maxOperations, unit.toMillis( maxDelay ) );
+	}
+	
+	/**
+	 * Opens (or creates) a write-behind queue journaled in the file, with up to 100000 pending writes sent
+	 * in batches of up to 500; writes left unacknowledged by a previous process are replayed first.
+	 * 
+	 * @param journal -- the journal-file; locked while the queue is open, so it cannot be shared by two of them
+	 * @return the running {@link WilddogWriteBehind}; close it to stop draining
+	 * @throws {@link WilddogException} if the journal cannot be opened
+	 */
+	public WilddogWriteBehind writeBehind(Path journal ) throws WilddogException {
+		return this.writeBehind( journal, 100000, 500 );
+	}
+	
+	/**
+	 * Opens (or creates) a write-behind queue journaled in the file; writes left unacknowledged by a previous
+	 * process are replayed first.
+	 * 
+	 * @param journal -- the journal-file; locked while the queue is open, so it cannot be shared by two of them
+	 * @param maxPending -- the number of unacknowledged writes beyond which new writes are refused
+	 * @param maxBatch -- the number of writes sent as one request
+	 * @return the running {@link WilddogWriteBehind}; close it to stop draining
+	 * @throws {@link WilddogException} if the journal cannot be opened
+	 */
+	public WilddogWriteBehind writeBehind(Path journal, int maxPending, int maxBatch ) throws WilddogException {
+		if( journal == null ) {
+			throw new IllegalArgumentException( "journal cannot be null" );
+		}
+		if( maxPending < 1 || maxBatch < 1 ) {
+			throw new IllegalArgumentException( "maxPending and maxBatch must be positive; were: " + maxPending + ", " + maxBatch );
+		}
+		WilddogWriteBehind queue = new WilddogWriteBehind( this, journal, maxPending, maxBatch );
+		if( !this.resources.track( queue ) ) {
+			
+			queue.close();
+			String msg = "cannot open write-behind journal " + journal + "; this instance is closed";
+			LOGGER.error( msg );
+			throw new WilddogException( msg );
+		}
+		return queue;
+	}
+	
+	/**
+	 * Keeps the subtree of the provided-path current in the cache through a streaming subscription (see
+	 * {@link #listen(String, WilddogEventListener)}); reads of that path, and of every path below it, are
+	 * then answered from memory for as long as the stream is connected. The same path may be kept synced by
+	 * several streams; it stays synced until the last of them is closed.
+	 * 
+	 * @param path -- if null/empty, refers to the base-url
+	 * @return the running {@link WilddogEventStream}; close it to stop syncing
+	 * @throws UnsupportedEncodingException 
+	 * @throws {@link WilddogException} -- if this instance was built without a cache
+	 */
+	public WilddogEventStream keepSynced(final String path ) throws WilddogException, UnsupportedEncodingException {
+		
+		if( this.cache == null ) {
+			
+			String msg = "cannot keep '" + path + "' synced without a cache; see Builder#cache";
+			LOGGER.error( msg );
+			throw new WilddogException( msg );
+		}
+		
+		final WilddogEventListener synced = this.cache.sync( path );
+		WilddogEventStream stream = this.listen( path, synced );
+		stream.onClose( new Runnable() {
+			@Override
+			public void run() {
+				Wilddog.this.cache.unsync( synced );
+			}
+		});
+		
+		return stream;
+	}
+	
+	/**
+	 * Returns the cache in front of {@link #get(String)}, ie: to read its hit/miss/eviction counters
+	 * 
+	 * @return the {@link WilddogCache}, or null if this instance was built without one
+	 */
+	public WilddogCache getCache() {
+		return this.cache;
+	}
+	
+	/**
+	 * Returns a view of this instance whose requests must complete within the timeout; ie: 
+	 * {@code wilddog.withDeadline( 200, TimeUnit.MILLISECONDS ).get( "users" )}. The view shares the
+	 * connections, cache, retry- and hedging-budget of this instance, and is cheap to create per call.
+	 * 
+	 * The deadline covers the whole call: connecting, writing the request, waiting for the response and
+	 * reading it, as well as any retries and hedges in between; a call still running when it expires is
+	 * cancelled, and fails with a {@link WilddogException}.
+	 * 
+	 * @param timeout -- 0 for no deadline, other than the connect-, read- and write-timeouts
+	 * @return the view; closing it leaves this instance open
+	 */
+	public Wilddog withDeadline(long timeout, TimeUnit unit ) {
+		if( timeout < 0 ) {
+			throw new IllegalArgumentException( "timeout cannot be negative; was: " + timeout );
+		}
+		return new Wilddog( this, unit.toNanos( timeout ) );
+	}
+	
+	/**
+	 * @return the deadline of every request of this instance; 0 if there is none
+	 */
+	public long getDeadline(TimeUnit unit ) {
+		return unit.convert( this.deadlineNanos, TimeUnit.NANOSECONDS );
+	}
+	
+	/**
+	 * Releases what this instance holds:
+	 * <ul>
+	 * <li>the event-streams (including those of synced paths) and write-behind queues still open are closed;
+	 * the writes a queue has not sent stay in its journal, and are replayed once that is opened again (see
+	 * {@link #writeBehind(Path)}).</li>
+	 * <li>the timer is stopped; the deadlines and hedges still pending no longer fire.</li>
+	 * <li>the calls in flight are cancelled, and the connection-pool and dispatcher-threads are released.</li>
+	 * </ul>
+	 * Afterwards, listening or opening a write-behind queue fails, and so do the calls with a deadline.
+	 * 
+	 * NOTE: an {@link OkHttpClient} handed in through {@link Builder#client(OkHttpClient)} is owned
+	 * by the caller, and is left untouched, calls in flight included. Closing a view made by
+	 * {@link #withDeadline(long, TimeUnit)} does nothing.
+	 */
+	@Override
+	public void close() {
+		if( this.isView ) {
+			return;
+		}
+		this.resources.close();
+		if( !this.ownsClient ) {
+			return;
+		}
+		this.client.dispatcher().cancelAll();
+		this.client.dispatcher().executorService().shutdown();
+		this.client.connectionPool().evictAll();
+	}
+	
+	
+	
+///////////////////////////////////////////////////////////////////////////////
+//
+// PRIVATE API
+//
+///////////////////////////////////////////////////////////////////////////////
+	
+	
+	JacksonUtility jackson() {
+		return this.jackson;
+	}
+	
+	/**
+	 * Forgets a write-behind queue that was closed on its own.
+	 */
+	void untrack(Closeable resource ) {
+		this.resources.untrack( resource );
+	}
+	
+	private RequestBody buildRequestBodyFromDataMap(Map<String, Object> dataMap ) throws WilddogException, JacksonUtilityException {
+		
+		String jsonData = this.jackson.toJsonString( dataMap );
+		
+		return this.buildRequestBodyFromJsonData( jsonData );
+	}
+
+	private static final Charset UTF_8 = Charset.forName( "UTF-8" );
+
+	private RequestBody buildRequestBodyFromValue(Object value ) throws JacksonUtilityException {
+		return RequestBody.create( JSON, this.jackson.toJsonBytes( value ) );
+	}
+
+	public static final MediaType JSON
+			= MediaType.parse("application/json; charset=utf-8");
+
+	private RequestBody buildRequestBodyFromJsonData(String jsonData ) throws WilddogException {
+
+		RequestBody result =  null;
+		try {
+
+			result = RequestBody.create(JSON, jsonData);
+
+		} catch( Throwable t ) {
+			
+			String msg = "unable to create entity from data; data was: " + LoggingUtility.excerpt( jsonData );
+			LOGGER.error( msg );
+			throw new WilddogException( msg, t );
+			
+		}
+		
+		return result;
+	}
+	
+	private RequestBody buildRequestBody(byte[] jsonData ) throws WilddogException {
+		checkNotNull( jsonData, "jsonData" );
+		return new ByteBufferRequestBody( ByteBuffer.wrap( jsonData ) );
+	}
+	
+	private RequestBody buildRequestBody(ByteBuffer jsonData ) throws WilddogException {
+		checkNotNull( jsonData, "jsonData" );
+		return new ByteBufferRequestBody( jsonData );
+	}
+	
+	private RequestBody buildRequestBody(WilddogJsonWriter writer ) throws WilddogException {
+		checkNotNull( writer, "writer" );
+		return new WriterRequestBody( writer );
+	}
+	
+	private static void checkNotNull(Object data, String name ) throws WilddogException {
+		if( data == null ) {
+			
+			String msg = name + " cannot be null";
+			LOGGER.error( msg );
+			throw new WilddogException( msg );
+		}
+	}
+	
+	/**
+	 * Sends the body to the provided-path relative to the base-url.
+	 */
+	private WilddogResponse write(WilddogRestMethod method, String path, RequestBody body ) throws WilddogException {
+		
+		// make the request
+		Request request = new Request.Builder()
+				.url( this.buildFullUrlFromRelativePath( path, null ) )
+				.method( method.name(), body )
+				.build();
+		
+		Response httpResponse = this.makeRequest( request );
+		
+		return this.processResponse( method, httpResponse );
+	}
+	
+	private HttpUrl buildFullUrlFromRelativePath( String path, WilddogQuery query ) {
+		
+		// massage the path (whether it's null, empty, or not) into a full URL
+		HttpUrl.Builder url = this.httpBaseUrl.newBuilder()
+				.encodedPath( this.encodePath( path == null ? "" : path ) );
+		
+		// any query left by addQuery(...) belongs to this request only
+		query = this.pendingQuery.getAndSet( WilddogQuery.EMPTY ).merge( query );
+		
+		for( int i = 0; i < query.size(); i++ ) {
+			url.addEncodedQueryParameter( encodeQueryComponent( query.getName( i ) ), encodeQueryComponent( query.getValue( i ) ) );
+		}
+		
+		if( secureToken != null ) {
+			url.addEncodedQueryParameter( "auth", encodeQueryComponent( secureToken ) );
+		}
+		
+		HttpUrl result = url.build();
+		if( LOGGER.isDebugEnabled() ) {
+			LOGGER.debug( "built full url to '" + result.encodedPath() + "' using relative-path of '" + path + "'" );
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Percent-encodes everything but the unreserved characters of RFC 3986, and '$', ',' and ':' which are
+	 * common in the json-values of typed queries; okhttp itself leaves '+' and '\' as they are, which servers
+	 * read as a space and reject, respectively.
+	 */
+	private static String encodeQueryComponent( String value ) {
+		if( value == null ) {
+			return null;
+		}
+		int i = 0;
+		while( i < value.length() && isQuerySafe( value.charAt( i ) ) ) {
+			i++;
+		}
+		if( i == value.length() ) {
+			return value;
+		}
+		StringBuilder result = new StringBuilder( value.length() + 16 ).append( value, 0, i );
+		for( byte b : value.substring( i ).getBytes( UTF_8 ) ) {
+			char c = (char) ( b & 0xff );
+			if( isQuerySafe( c ) ) {
+				result.append( c );
+			} else {
+				result.append( '%' ).append( HEX_DIGITS[( b >> 4 ) & 0xf] ).append( HEX_DIGITS[b & 0xf] );
+			}
+		}
+		return result.toString();
+	}
+	
+	private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+	
+	private static boolean isQuerySafe( char c ) {
+		return ( c >= 'a' && c <= 'z' ) || ( c >= 'A' && c <= 'Z' ) || ( c >= '0' && c <= '9' )
+				|| c == '-' || c == '.' || c == '_' || c == '~' || c == '$' || c == ',' || c == ':';
+	}
+	
+	/**
+	 * Returns the encoded path of the json-resource for the relative-path; ie: 'a/b c' becomes '/rest/a/b%20c.json'.
+	 * Encoded paths are kept in a small LRU, as most applications read and write a limited set of paths.
+	 */
+	private String encodePath( String path ) {
+		
+		synchronized( this.encodedPaths ) {
+			String cached = this.encodedPaths.get( path );
+			if( cached != null ) {
+				return cached;
+			}
+		}
+		
+		List<String> segments = new ArrayList<String>();
+		for( String segment : this.httpBaseUrl.pathSegments() ) {
+			if( !segment.isEmpty() ) {
+				segments.add( segment );
+			}
+		}
+		for( String segment : path.trim().split( "/" ) ) {
+			if( !segment.isEmpty() ) {
+				segments.add( segment );
+			}
+		}
+		
+		HttpUrl.Builder builder = this.httpBaseUrl.newBuilder().encodedPath( "/" );
+		for( int i = 0; i < segments.size() - 1; i++ ) {
+			builder.addPathSegment( segments.get( i ) );
+		}
+		builder.addPathSegment( ( segments.isEmpty() ? "" : segments.get( segments.size() - 1 ) ) + Wilddog.WILDDOG_API_JSON_EXTENSION );
+		String encoded = builder.build().encodedPath();
+		
+		synchronized( this.encodedPaths ) {
+			this.encodedPaths.put( path, encoded );
+		}
+		return encoded;
+	}
+
+	private Response makeRequest( Request request ) throws WilddogException {
+		// sanity-check
+		if( request == null ) {
+
+			String msg = "request cannot be null";
+			LOGGER.error( msg );
+			throw new WilddogException( msg );
+		}
+		request = this.prepare( request );
+		Response response = null;
+		try {
+			
+			if( this.hedger != null && WilddogRestMethod.GET.name().equals( request.method() ) ) {
+				response = this.hedger.execute( this.client, request );
+			} else {
+				final Call call = this.client.newCall( request );
+				this.armDeadline( request, call );
+				response = call.execute();
+			}
 
-			Iterator<BasicNameValuePair> it = query.iterator();
-			BasicNameValuePair e;
-			while(it.hasNext()) {
-				e = it.next();
-				url += e.getName() + "=" + URLEncoder.encode(e.getValue(), "UTF-8") + "&";
+		} catch( Throwable t ) {
+			String msg = describeFailure( "unable to receive response from request(" + request.method() +  ") @ " + LoggingUtility.redact( request.url() ), request );
+			LOGGER.error( msg );
+			throw new WilddogException( msg, t );
+		}
+		return response;
+	}
+	
+	/**
+	 * Sends the request on the dispatcher; cancelling the future cancels the call.
+	 * 
+	 * @param request -- already tagged with its deadline, if any
+	 */
+	private CompletableFuture<Response> send(Request request ) {
+		
+		if( this.hedger != null && WilddogRestMethod.GET.name().equals( request.method() ) ) {
+			return this.hedger.enqueue( this.client, request );
+		}
+		
+		final CompletableFuture<Response> result = new CompletableFuture<Response>();
+		final Call call = this.client.newCall( request );
+		this.armDeadline( request, call );
+		call.enqueue( new Callback() {
+			
+			@Override
+			public void onFailure(Call call, IOException e ) {
+				result.completeExceptionally( e );
+			}
+			
+			@Override
+			public void onResponse(Call call, Response httpResponse ) {
+				if( !result.complete( httpResponse ) ) {
+					httpResponse.close();
+				}
+			}
+		});
+		final Deadline deadline = Deadline.of( request );
+		result.whenComplete( new BiConsumer<Response, Throwable>() {
+			@Override
+			public void accept(Response response, Throwable t ) {
+				if( result.isCancelled() ) {
+					if( deadline != null ) {
+						deadline.cancel();
+					}
+					call.cancel();
+				}
+			}
+		});
+		return result;
+	}
+	
+	/**
+	 * @return the request, tagged with a fresh {@link Deadline} when this instance has one; and asking for
+	 * 			no response-body when that would be discarded anyway
+	 */
+	private Request prepare(Request request ) {
+		Request.Builder builder = null;
+		if( this.isBodyDiscarded( request.method() ) && request.url().queryParameter( "print" ) == null ) {
+			builder = request.newBuilder().url( request.url().newBuilder().addQueryParameter( "print", "silent" ).build() );
+		}
+		if( this.deadlineNanos > 0 ) {
+			builder = ( builder == null ? request.newBuilder() : builder ).tag( new Deadline( this.deadlineNanos ) );
+		}
+		return builder == null ? request : builder.build();
+	}
+	
+	/**
+	 * POSTs are never discarded, as their response-body holds the generated key.
+	 */
+	private boolean isBodyDiscarded(String method ) {
+		return this.discardWriteBodies
+				&& ( method.equals( "PUT" ) || method.equals( "PATCH" ) || method.equals( "DELETE" ) );
+	}
+	
+	private void armDeadline(Request request, final Call call ) {
+		Deadline deadline = Deadline.of( request );
+		if( deadline != null ) {
+			deadline.arm( this.resources.timer(), new Runnable() {
+				@Override
+				public void run() {
+					call.cancel();
+				}
+			});
+		}
+	}
+	
+	/**
+	 * Stops the deadline of the response's request, now that the response is read.
+	 */
+	private static void disarmDeadline(Response httpResponse ) {
+		Deadline deadline = Deadline.of( httpResponse.request() );
+		if( deadline != null ) {
+			deadline.disarm();
+		}
+	}
+	
+	/**
+	 * @return the message, telling whether the request failed because it ran out of time
+	 */
+	private static String describeFailure(String msg, Request request ) {
+		Deadline deadline = Deadline.of( request );
+		return deadline != null && deadline.isExpired()
+				? msg + "; exceeded its " + deadline
+				: msg;
+	}
+	
+	/**
+	 * Builds the request and queues it on the dispatcher.
+	 * 
+	 * @param data -- null, a Map<String, Object>, or a json-String
+	 */
+	private CompletableFuture<WilddogResponse> enqueue(WilddogRestMethod method, String path, WilddogQuery query, Object data ) {
+		return this.enqueue( method, path, query, data, EMPTY_HEADERS );
+	}
+	
+	/**
+	 * @param headers -- sent along with the request
+	 */
+	@SuppressWarnings("unchecked")
+	private CompletableFuture<WilddogResponse> enqueue(final WilddogRestMethod method, String path, WilddogQuery query, Object data, Headers headers ) {
+		
+		final CompletableFuture<WilddogResponse> result = new CompletableFuture<WilddogResponse>();
+		
+		final Request request;
+		try {
+			
+			HttpUrl url = this.buildFullUrlFromRelativePath( path, query );
+			RequestBody body = null;
+			if( method != WilddogRestMethod.GET && method != WilddogRestMethod.DELETE ) {
+				if( data instanceof Map ) {
+					body = this.buildRequestBodyFromDataMap( (Map<String, Object>) data );
+				} else if( data instanceof byte[] ) {
+					body = this.buildRequestBody( (byte[]) data );
+				} else {
+					body = this.buildRequestBodyFromJsonData( (String) data );
+				}
 			}
+			request = this.prepare( new Request.Builder()
+					.url( url )
+					.headers( headers )
+					.method( method.name(), body )
+					.build() );
+			
+		} catch( Throwable t ) {
+			
+			String msg = "unable to build request(" + method + ") for path '" + path + "'";
+			LOGGER.error( msg );
+			result.completeExceptionally( t instanceof WilddogException ? t : new WilddogException( msg, t ) );
+			return result;
 		}
 		
-		if(secureToken != null) {
-			if(query != null) {
-				url += "auth=" + secureToken;
-			} else {
-				url += "?auth=" + secureToken;
+		final CompletableFuture<Response> sent = this.send( request );
+		sent.whenComplete( new BiConsumer<Response, Throwable>() {
+			@Override
+			public void accept(Response httpResponse, Throwable t ) {
+				if( t != null ) {
+					String msg = describeFailure( "unable to receive response from request(" + request.method() +  ") @ " + LoggingUtility.redact( request.url() ), request );
+					LOGGER.error( msg );
+					result.completeExceptionally( new WilddogException( msg, t ) );
+					return;
+				}
+				try {
+					result.complete( Wilddog.this.processResponse( method, httpResponse ) );
+				} catch( Throwable e ) {
+					result.completeExceptionally( e );
+				}
 			}
-		}
+		});
 		
-		if(url.lastIndexOf("&") == url.length()) {
-			StringBuilder str = new StringBuilder(url);
-			str.deleteCharAt(str.length());
-			url = str.toString();
+		result.whenComplete( new BiConsumer<WilddogResponse, Throwable>() {
+			@Override
+			public void accept(WilddogResponse response, Throwable t ) {
+				if( result.isCancelled() ) {
+					sent.cancel( true );
+				}
+			}
+		});
+		
+		return result;
+	}
+	
+	private static final Headers EMPTY_HEADERS = Headers.of();
+	
+	/**
+	 * @param etag -- the ETag of the data held; null if there is none
+	 * @return the headers asking for the ETag of the data, and for no data if it still has the provided ETag
+	 */
+	private Headers etagHeaders(String etag ) {
+		return etag == null
+				? Headers.of( ETAG_REQUEST_HEADER, "true" )
+				: Headers.of( ETAG_REQUEST_HEADER, "true", "If-None-Match", etag );
+	}
+	
+	/**
+	 * Only query-less GETs are cached; a pending query (see addQuery) is consumed by the request instead.
+	 */
+	private boolean isCacheable(WilddogQuery query ) {
+		return this.cache != null
+				&& ( query == null || query.isEmpty() )
+				&& this.pendingQuery.get().isEmpty();
+	}
+	
+	/**
+	 * Keeps the response of a cacheable GET in the cache, if it was successful and the path was not written
+	 * meanwhile.
+	 * 
+	 * @param generation -- the generation of the path in the cache, taken before the GET was sent
+	 * @return the response to hand out; with the same read-only body as a later hit
+	 * @throws {@link WilddogException} if the response-body is not json
+	 */
+	private WilddogResponse cached(String path, WilddogResponse response, long generation ) throws WilddogException {
+		if( !response.getSuccess() ) {
+			return response;
+		}
+		try {
+			return this.cache.put( path, response, generation );
+		} catch( IllegalStateException e ) {
+			// the body is not json
+			throw (WilddogException) e.getCause();
 		}
+	}
+	
+	private <T> T getTyped(String path, WilddogQuery query, ObjectReader reader ) throws WilddogException, UnsupportedEncodingException {
 		
-		LOGGER.info( "built full url to '" + url + "' using relative-path of '" + path + "'" );
+		// make the request
+		HttpUrl url = this.buildFullUrlFromRelativePath( path, query );
+		Request request = new Request.Builder()
+				.url(url)
+				.build();
+		Response httpResponse = this.makeRequest( request );
 		
-		return url;
+		// bind the response
+		return this.processTypedResponse( WilddogRestMethod.GET, httpResponse, reader );
 	}
-
-   static class LoggingInterceptor implements Interceptor {
-        @Override public Response intercept(Interceptor.Chain chain) throws IOException {
-            Request request = chain.request();
-
-            long t1 = System.nanoTime();
-            LOGGER.info(String.format("Sending request %s on %s%n%s",
-                    request.url(), chain.connection(), request.headers()));
-
-            Response response = chain.proceed(request);
-
-
-
-            long t2 = System.nanoTime();
-            LOGGER.info(String.format("Received response for %s in %.1fms %dbyte %n%s",
-                    response.request().url(), (t2 - t1) / 1e6d,  response.body().contentLength(), response.headers()));
-
-            return response;
-        }
-    }
-	
 	
-	private Response makeRequest( Request request ) throws WilddogException {
-		// sanity-check
-		if( request == null ) {
-
-			String msg = "request cannot be null";
+	/**
+	 * Binds the data of a successful GET, or of a 412 response to a conditional PUT; which both carry the
+	 * current data at the path.
+	 */
+	private <T> T readTransactionValue(String path, Response httpResponse, ObjectReader reader ) throws WilddogException {
+		
+		ResponseBody entity = httpResponse.body();
+		try {
+			
+			if( !httpResponse.isSuccessful() && httpResponse.code() != 412 ) {
+				
+				String msg = "transaction @ " + path + " failed; code was " + httpResponse.code();
+				LOGGER.error( msg );
+				throw new WilddogException( msg );
+			}
+			return this.jackson.toValue( entity.byteStream(), reader );
+			
+		} catch( JacksonUtilityException jue ) {
+			
+			String msg = "unable to bind the data of the transaction @ " + path;
 			LOGGER.error( msg );
-			throw new WilddogException( msg );
+			throw new WilddogException( msg, jue );
+			
+		} finally {
+			entity.close();
+			disarmDeadline( httpResponse );
 		}
-		Response response = null;
+	}
+	
+	/**
+	 * Describes the body of a failed response for an error-message; as json when it is, or as an excerpt of
+	 * its text when it is not (ie: the html of a 502 from a proxy).
+	 */
+	private String errorBodyOf(ResponseBody entity ) {
+		
+		String text;
 		try {
-            OkHttpClient client = new OkHttpClient.Builder()
-                    .addNetworkInterceptor(new LoggingInterceptor())
-                    .build();
-
-            response = client.newCall(request).execute();
-
-		} catch( Throwable t ) {
-			String msg = "unable to receive response from request(" + request.method() +  ") @ " + request.url();
+			
+			text = entity.string().trim();
+			
+		} catch( IOException e ) {
+			
+			return "(unreadable: " + e + ")";
+		}
+		if( text.startsWith( "{" ) ) {
+			try {
+				
+				return String.valueOf( this.jackson.toMap( text ) );
+				
+			} catch( JacksonUtilityException jue ) {
+				
+				// ie: cut short; the text says as much
+			}
+		}
+		return LoggingUtility.excerpt( text );
+	}
+	
+	private <T> T processTypedResponse(WilddogRestMethod method, Response httpResponse, ObjectReader reader ) throws WilddogException {
+		
+		ResponseBody entity = httpResponse.body();
+		try {
+			
+			if( !httpResponse.isSuccessful() ) {
+				
+				String msg = "request(" + method + ") @ " + httpResponse.request().url().encodedPath() 
+						+ " failed with code " + httpResponse.code() + ": " + this.errorBodyOf( entity );
+				LOGGER.error( msg );
+				throw new WilddogException( msg );
+			}
+			return this.jackson.toValue( entity.byteStream(), reader );
+			
+		} catch( JacksonUtilityException jue ) {
+			
+			String msg = "unable to bind response-body of request(" + method + ") @ " + httpResponse.request().url().encodedPath();
 			LOGGER.error( msg );
-			throw new WilddogException( msg, t );
+			throw new WilddogException( msg, jue );
+			
+		} finally {
+			entity.close();
+			disarmDeadline( httpResponse );
 		}
-		return response;
 	}
 	
 	private WilddogResponse processResponse(WilddogRestMethod method, Response httpResponse ) throws WilddogException {
@@ -574,41 +2268,68 @@ public class Wilddog {
 		
 		// get the response-code
 		int code = httpResponse.code();
+		
+		// the cached data did not change since its ETag
+		if( code == 304 && method == WilddogRestMethod.GET && this.cache != null ) {
+			WilddogResponse revalidated = this.cache.revalidate( httpResponse.request().url() );
+			if( revalidated != null ) {
+				entity.close();
+				disarmDeadline( httpResponse );
+				return revalidated;
+			}
+		}
 
 		// set the response-success
 		boolean success =  httpResponse.isSuccessful();
 
-		// get the response-body
-		String  responseBody = null;
-
-//        if (entity.contentLength() > 0) {
-        try {
-            responseBody =  new String(entity.bytes(), "UTF-8");
-        } catch (IOException e) {
-            String msg = "unable to convert response-body into string; response-body was: '" + responseBody + "'";
-            LOGGER.error(msg);
-            throw new WilddogException(msg, e);
-        }
-//        }
-		
-		// convert response-body to map
-		Map<String, Object> body = null;
+		// the body of a GET is read by every caller; so, unless it is kept as well, it is parsed straight off
+		// the byte-stream, without buffering it first
+		if( success && method == WilddogRestMethod.GET && !this.keepRawBody ) {
+			Map<String, Object> body;
+			try {
+				
+				body = this.jackson.toMap( entity.byteStream() );
+				
+			} catch( JacksonUtilityException jue ) {
+				
+				String msg = describeFailure( "unable to convert response-body of request(" + method + ") @ " + httpResponse.request().url().encodedPath() + " into map", httpResponse.request() );
+				LOGGER.error( msg );
+				throw new WilddogException( msg, jue );
+				
+			} finally {
+				entity.close();
+				disarmDeadline( httpResponse );
+			}
+			return new WilddogResponse( true, code, body, null, httpResponse.header( "ETag" ) );
+		}
+
+		// get the response-body; only read off the wire here, it is parsed once asked for
+		byte[] bytes = null;
 		try {
 			
-			body = JacksonUtility.GET_JSON_STRING_AS_MAP(responseBody);
+			// closing drains what is left of a discarded body, so the connection goes back to the pool
+			if( !success || !this.isBodyDiscarded( method.name() ) ) {
+				bytes = entity.bytes();
+			}
 			
-		} catch( JacksonUtilityException jue ) {
+		} catch( IOException e ) {
 			
-			String msg = "unable to convert response-body into map; response-body was: '" + responseBody + "'";
+			String msg = describeFailure( "unable to read response-body of request(" + method + ") @ " + httpResponse.request().url().encodedPath(), httpResponse.request() );
 			LOGGER.error( msg );
-			throw new WilddogException( msg, jue );
+			throw new WilddogException( msg, e );
+			
+		} finally {
+			entity.close();
+			disarmDeadline( httpResponse );
 		}
 		
 		// build the response
-		response = new WilddogResponse( success, code, body, responseBody);
+		response = new WilddogResponse( success, code, bytes, this.keepRawBody, this.jackson, httpResponse.header( "ETag" ) );
 		
-		//clear the query
-		query = null;
+		// whatever was cached around a written path is out of date now
+		if( this.cache != null && method != WilddogRestMethod.GET ) {
+			this.cache.invalidate( httpResponse.request().url() );
+		}
 		
 		return response;
 	}
@@ -622,48 +2343,584 @@ public class Wilddog {
 ///////////////////////////////////////////////////////////////////////////////
 
 	
-	public enum WilddogRestMethod {
+	/**
+	 * The paths of a {@link Wilddog#getAll(Collection, int)}; every lane takes the next path once its previous
+	 * one completed, so no more requests are in flight than there are lanes.
+	 */
+	private class FanOut {
+		
+		private final List<String> paths;
+		private final WilddogResponse[] responses;
+		private final CountDownLatch done;
+		private final AtomicInteger nextPath = new AtomicInteger();
+		
+		FanOut(List<String> paths ) {
+			this.paths = paths;
+			this.responses = new WilddogResponse[ paths.size() ];
+			this.done = new CountDownLatch( paths.size() );
+		}
+		
+		/**
+		 * Sends the next path, if any; runs on the calling thread, or on the dispatcher once a path completed.
+		 */
+		private void next() {
+			// a lane whose path completes at once (ie: from the cache) moves on in the loop, not by recursion
+			while( true ) {
+				final int index = this.nextPath.getAndIncrement();
+				if( index >= this.paths.size() ) {
+					return;
+				}
+				final CompletableFuture<WilddogResponse> future = this.getAsync( this.paths.get( index ) );
+				if( future.isDone() ) {
+					this.complete( index, future );
+					continue;
+				}
+				future.whenComplete( new BiConsumer<WilddogResponse, Throwable>() {
+					@Override
+					public void accept(WilddogResponse response, Throwable t ) {
+						FanOut.this.complete( index, future );
+						FanOut.this.next();
+					}
+				});
+				return;
+			}
+		}
+		
+		private CompletableFuture<WilddogResponse> getAsync(String path ) {
+			try {
+				return Wilddog.this.getAsync( path );
+			} catch( Throwable t ) {
+				// a lane must not be lost, or the fan-out never completes
+				CompletableFuture<WilddogResponse> failed = new CompletableFuture<WilddogResponse>();
+				failed.completeExceptionally( t );
+				return failed;
+			}
+		}
+		
+		private void complete(int index, CompletableFuture<WilddogResponse> future ) {
+			WilddogResponse response;
+			try {
+				response = future.join();
+			} catch( Throwable t ) {
+				Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+				Map<String, Object> body = new LinkedHashMap<String, Object>();
+				body.put( "error", String.valueOf( cause.getMessage() ) );
+				response = new WilddogResponse( false, 0, body, null );
+			}
+			this.responses[ index ] = response;
+			this.done.countDown();
+		}
+		
+		private void stop() {
+			this.nextPath.set( this.paths.size() );
+		}
+	}
+	
+	/**
+	 * A request-body read from a stream as it is sent; as the stream can only be read once, the
+	 * {@link RetryInterceptor} does not replay it, and a second send (ie: okhttp's own retry after a
+	 * connection-failure) fails rather than send what is left of the stream.
+	 */
+	static class StreamingRequestBody extends RequestBody implements UnrepeatableBody {
+		
+		private final InputStream in;
+		private final boolean gzip;
+		private final AtomicBoolean written = new AtomicBoolean();
+		
+		StreamingRequestBody(InputStream in, boolean gzip ) {
+			this.in = in;
+			this.gzip = gzip;
+		}
+		
+		@Override
+		public MediaType contentType() {
+			return JSON;
+		}
+		
+		@Override
+		public long contentLength() {
+			// unknown, so it is sent chunked
+			return -1;
+		}
+		
+		@Override
+		public void writeTo(BufferedSink sink ) throws IOException {
+			if( !this.written.compareAndSet( false, true ) ) {
+				throw new IOException( "a streamed request-body cannot be sent again" );
+			}
+			Source source = Okio.source( this.in );
+			sink.writeAll( this.gzip ? new GzipSource( source ) : source );
+		}
+	}
+	
+	/**
+	 * A request-body written straight from a buffer (or array), as it is sent; every send reads it anew, from
+	 * the position it had when the body was built.
+	 * 
+	 * It is written a segment at a time, so okio hands every segment to the socket (and back to its pool)
+	 * before filling the next; written at once, a large body would first be copied into fresh segments whole.
+	 */
+	static class ByteBufferRequestBody extends RequestBody {
+		
+		// the size of an okio-segment
+		private static final int SEGMENT_SIZE = 8192;
+		
+		private final ByteBuffer data;
+		
+		ByteBufferRequestBody(ByteBuffer data ) {
+			this.data = data.duplicate();
+		}
+		
+		@Override
+		public MediaType contentType() {
+			return JSON;
+		}
+		
+		@Override
+		public long contentLength() {
+			return this.data.remaining();
+		}
+		
+		@Override
+		public void writeTo(BufferedSink sink ) throws IOException {
+			ByteBuffer data = this.data.duplicate();
+			if( data.hasArray() ) {
+				byte[] array = data.array();
+				int end = data.arrayOffset() + data.limit();
+				for( int i = data.arrayOffset() + data.position(); i < end; i += SEGMENT_SIZE ) {
+					sink.write( array, i, Math.min( SEGMENT_SIZE, end - i ) );
+				}
+				return;
+			}
+			// ie: a direct buffer; copied through a chunk at a time
+			byte[] chunk = new byte[ Math.min( SEGMENT_SIZE, data.remaining() ) ];
+			while( data.hasRemaining() ) {
+				int count = Math.min( chunk.length, data.remaining() );
+				data.get( chunk, 0, count );
+				sink.write( chunk, 0, count );
+			}
+		}
+	}
+	
+	/**
+	 * A request-body written by a {@link WilddogJsonWriter} as it is sent; of unknown length, so it is sent
+	 * chunked.
+	 */
+	static class WriterRequestBody extends RequestBody {
+		
+		private final WilddogJsonWriter writer;
+		
+		WriterRequestBody(WilddogJsonWriter writer ) {
+			this.writer = writer;
+		}
 		
-		GET,
-		PATCH,
-		PUT,
-		POST,
-		DELETE;
+		@Override
+		public MediaType contentType() {
+			return JSON;
+		}
+		
+		@Override
+		public long contentLength() {
+			return -1;
+		}
+		
+		@Override
+		public void writeTo(final BufferedSink sink ) throws IOException {
+			// large writes are split into segments, as in ByteBufferRequestBody; okhttp flushes the sink once
+			// the body is written
+			this.writer.writeTo( new OutputStream() {
+				@Override
+				public void write(int b ) throws IOException {
+					sink.writeByte( b );
+				}
+				@Override
+				public void write(byte[] b, int off, int len ) throws IOException {
+					for( int i = off; i < off + len; i += ByteBufferRequestBody.SEGMENT_SIZE ) {
+						sink.write( b, i, Math.min( ByteBufferRequestBody.SEGMENT_SIZE, off + len - i ) );
+					}
+				}
+			});
+		}
 	}
+	
+	/**
+	 * Configures a {@link Wilddog} and the long-lived {@link OkHttpClient} it sends every request through.
+	 * 
+	 * The connection-pool, dispatcher and TLS-sessions of that client are shared by all calls made on the
+	 * resulting instance; so create one instance per base-url and reuse it.
+	 */
+	public static class Builder {
+
+		private final String baseUrl;
+		private String secureToken = null;
+		private OkHttpClient client = null;
+		private int maxIdleConnections = 5;
+		private long keepAliveMillis = TimeUnit.MINUTES.toMillis( 5 );
+		private long connectTimeoutMillis = TimeUnit.SECONDS.toMillis( 10 );
+		private long readTimeoutMillis = TimeUnit.SECONDS.toMillis( 10 );
+		private long writeTimeoutMillis = TimeUnit.SECONDS.toMillis( 10 );
+		private boolean preferHttp2 = true;
+		private int maxRequests = 64;
+		private int maxRequestsPerHost = 5;
+		private ExecutorService dispatcherExecutor = null;
+		private ObjectMapper objectMapper = null;
+		private boolean keepRawBody = false;
+		private boolean discardWriteBodies = false;
+		private int cacheMaxEntries = 0;
+		private WilddogRetryPolicy retryPolicy = WilddogRetryPolicy.DEFAULT;
+		private WilddogMetrics metrics = WilddogMetrics.NONE;
+		private int metricsPathDepth = 1;
+		private WilddogTracing tracing = WilddogTracing.OFF;
+		private int gzipMinBytes = -1;
+		private long deadlineNanos = 0;
+		private WilddogHedging hedging = WilddogHedging.OFF;
+		private WilddogFlowControl flowControl = WilddogFlowControl.UNLIMITED;
+		private final Map<String, WilddogFlowControl> flowControlByPrefix = new LinkedHashMap<String, WilddogFlowControl>();
+		private long cacheTtlNanos = 0;
+
+		public Builder(String baseUrl ) {
+			this.baseUrl = baseUrl;
+		}
+
+		/**
+		 * @param secureToken -- appended as the 'auth' query-parameter; can be null
+		 */
+		public Builder secureToken(String secureToken ) {
+			this.secureToken = secureToken;
+			return this;
+		}
+
+		/**
+		 * Uses the provided client (and its connection-pool, dispatcher and timeouts) instead of creating one;
+		 * the pool/timeout/dispatcher settings of this builder are then ignored.
+		 * 
+		 * @param client -- can be null, in which case a client is created from this builder's settings
+		 */
+		public Builder client(OkHttpClient client ) {
+			this.client = client;
+			return this;
+		}
+
+		/**
+		 * @param maxIdleConnections -- the number of idle connections kept alive in the pool
+		 * @param keepAlive -- how long an idle connection is kept in the pool
+		 */
+		public Builder connectionPool(int maxIdleConnections, long keepAlive, TimeUnit unit ) {
+			if( maxIdleConnections < 0 ) {
+				throw new IllegalArgumentException( "maxIdleConnections cannot be negative; was: " + maxIdleConnections );
+			}
+			this.maxIdleConnections = maxIdleConnections;
+			this.keepAliveMillis = unit.toMillis( keepAlive );
+			return this;
+		}
+
+		public Builder connectTimeout(long timeout, TimeUnit unit ) {
+			this.connectTimeoutMillis = unit.toMillis( timeout );
+			return this;
+		}
+
+		public Builder readTimeout(long timeout, TimeUnit unit ) {
+			this.readTimeoutMillis = unit.toMillis( timeout );
+			return this;
+		}
+
+		public Builder writeTimeout(long timeout, TimeUnit unit ) {
+			this.writeTimeoutMillis = unit.toMillis( timeout );
+			return this;
+		}
+
+		/**
+		 * @param preferHttp2 -- if true (the default), HTTP/2 is negotiated when the server supports it;
+		 * 			otherwise only HTTP/1.1 is used
+		 */
+		public Builder preferHttp2(boolean preferHttp2 ) {
+			this.preferHttp2 = preferHttp2;
+			return this;
+		}
+
+		/**
+		 * @param maxRequests -- the maximum number of asynchronous requests executing at once; further
+		 * 			requests wait in the dispatcher's queue without holding a thread
+		 */
+		public Builder maxRequests(int maxRequests ) {
+			if( maxRequests < 1 ) {
+				throw new IllegalArgumentException( "maxRequests must be at least 1; was: " + maxRequests );
+			}
+			this.maxRequests = maxRequests;
+			return this;
+		}
+
+		/**
+		 * @param maxRequestsPerHost -- the maximum number of asynchronous requests executing at once
+		 * 			against a single host
+		 */
+		public Builder maxRequestsPerHost(int maxRequestsPerHost ) {
+			if( maxRequestsPerHost < 1 ) {
+				throw new IllegalArgumentException( "maxRequestsPerHost must be at least 1; was: " + maxRequestsPerHost );
+			}
+			this.maxRequestsPerHost = maxRequestsPerHost;
+			return this;
+		}
+
+		/**
+		 * @param dispatcherExecutor -- runs the asynchronous requests; if null, the dispatcher creates
+		 * 			its own cached thread-pool. Not shut down by {@link Wilddog#close()}.
+		 */
+		public Builder dispatcherExecutor(ExecutorService dispatcherExecutor ) {
+			this.dispatcherExecutor = dispatcherExecutor;
+			return this;
+		}
+
+		/**
+		 * @param objectMapper -- converts request- and response-bodies; must be fully configured before
+		 * 			being passed in, as it is shared by all threads. If null, a default mapper is used.
+		 */
+		public Builder objectMapper(ObjectMapper objectMapper ) {
+			this.objectMapper = objectMapper;
+			return this;
+		}
+
+		/**
+		 * @param keepRawBody -- if true, every response-body is also kept as a string and returned by
+		 * 			{@link WilddogResponse#getRawBody()}; if false (the default), the raw-body is empty: the body
+		 * 			of a successful GET is parsed straight off the response-stream, and that of any other
+		 * 			response is dropped once {@link WilddogResponse#getBody()} has parsed it
+		 */
+		public Builder keepRawBody(boolean keepRawBody ) {
+			this.keepRawBody = keepRawBody;
+			return this;
+		}
+
+		/**
+		 * @param discardWriteBodies -- if true, PUT, PATCH and DELETE ask the server not to echo the data
+		 * 			({@code print=silent}), and whatever body a successful one returns is drained unread; so the
+		 * 			response only carries its status-code. POSTs are left alone, as their body holds the
+		 * 			generated key; and failures keep their body, as it holds the error. Defaults to false.
+		 */
+		public Builder discardWriteBodies(boolean discardWriteBodies ) {
+			this.discardWriteBodies = discardWriteBodies;
+			return this;
+		}
+
+		/**
+		 * Enables the {@link WilddogCache} in front of query-less GETs; the bodies these return are read-only,
+		 * as they are shared with the cache.
+		 * 
+		 * @param maxEntries -- the number of snapshots kept before the least recently used is evicted
+		 * @param ttl -- how long a snapshot is served before it is fetched again; paths kept synced
+		 * 			through {@link Wilddog#keepSynced(String)} do not expire
+		 */
+		public Builder cache(int maxEntries, long ttl, TimeUnit unit ) {
+			if( maxEntries < 1 ) {
+				throw new IllegalArgumentException( "maxEntries must be at least 1; was: " + maxEntries );
+			}
+			if( ttl <= 0 ) {
+				throw new IllegalArgumentException( "ttl must be positive; was: " + ttl );
+			}
+			this.cacheMaxEntries = maxEntries;
+			this.cacheTtlNanos = unit.toNanos( ttl );
+			return this;
+		}
+
+		/**
+		 * @param retryPolicy -- when and how often failed idempotent requests are replayed; defaults to
+		 * 			{@link WilddogRetryPolicy#DEFAULT}, {@link WilddogRetryPolicy#NONE} disables retries
+		 */
+		public Builder retryPolicy(WilddogRetryPolicy retryPolicy ) {
+			if( retryPolicy == null ) {
+				throw new IllegalArgumentException( "retryPolicy cannot be null" );
+			}
+			this.retryPolicy = retryPolicy;
+			return this;
+		}
+
+		/**
+		 * @param metrics -- receives the latency, status-code, size and retries of every request; ie: a
+		 * 			{@link WilddogMetricsRecorder}. Defaults to {@link WilddogMetrics#NONE}.
+		 */
+		public Builder metrics(WilddogMetrics metrics ) {
+			if( metrics == null ) {
+				throw new IllegalArgumentException( "metrics cannot be null" );
+			}
+			this.metrics = metrics;
+			return this;
+		}
+
+		/**
+		 * @param metricsPathDepth -- the number of path-segments kept in the path-template the metrics are
+		 * 			recorded under; deeper segments become '*'. Defaults to 1, ie: 'users/*'.
+		 */
+		public Builder metricsPathDepth(int metricsPathDepth ) {
+			if( metricsPathDepth < 0 ) {
+				throw new IllegalArgumentException( "metricsPathDepth cannot be negative; was: " + metricsPathDepth );
+			}
+			this.metricsPathDepth = metricsPathDepth;
+			return this;
+		}
 
+		/**
+		 * @param tracing -- which requests are logged, with their payloads; ie: {@link WilddogTracing#sampled(int)}.
+		 * 			Defaults to {@link WilddogTracing#OFF}.
+		 */
+		public Builder tracing(WilddogTracing tracing ) {
+			if( tracing == null ) {
+				throw new IllegalArgumentException( "tracing cannot be null" );
+			}
+			this.tracing = tracing;
+			return this;
+		}
 
+		/**
+		 * Gzip-compresses request-bodies of at least minBytes (and streamed uploads) before sending them, with
+		 * {@code Content-Encoding: gzip}; off by default, as the server must accept compressed requests.
+		 * 
+		 * NOTE: responses are always negotiated with {@code Accept-Encoding: gzip} and decoded transparently.
+		 * 
+		 * @param minBytes -- the smallest body worth compressing, ie: 1024; 0 compresses every body
+		 */
+		public Builder gzipRequests(int minBytes ) {
+			if( minBytes < 0 ) {
+				throw new IllegalArgumentException( "minBytes cannot be negative; was: " + minBytes );
+			}
+			this.gzipMinBytes = minBytes;
+			return this;
+		}
 
-	static class BasicNameValuePair {
-		private final String name;
-		private final String value;
+		/**
+		 * Gives every request a deadline, covering the whole call including retries; a call still running
+		 * when it expires is cancelled. See {@link Wilddog#withDeadline(long, TimeUnit)} for per-call deadlines.
+		 * 
+		 * @param timeout -- 0 for none, the default
+		 */
+		public Builder deadline(long timeout, TimeUnit unit ) {
+			if( timeout < 0 ) {
+				throw new IllegalArgumentException( "timeout cannot be negative; was: " + timeout );
+			}
+			this.deadlineNanos = unit.toNanos( timeout );
+			return this;
+		}
 
-		public BasicNameValuePair(String name, String value) {
-			this.name = name;
-			this.value = value;
+		/**
+		 * @param hedging -- when a slow GET is sent a second time, the first answer winning; ie:
+		 * 			{@link WilddogHedging#DEFAULT}. Defaults to {@link WilddogHedging#OFF}.
+		 */
+		public Builder hedging(WilddogHedging hedging ) {
+			if( hedging == null ) {
+				throw new IllegalArgumentException( "hedging cannot be null" );
+			}
+			this.hedging = hedging;
+			return this;
 		}
 
-		public String getName() {
-			return this.name;
+		/**
+		 * @param flowControl -- the rate and concurrency every request is held to; ie: a token-bucket and an
+		 * 			adaptive concurrency-limit. Defaults to {@link WilddogFlowControl#UNLIMITED}.
+		 */
+		public Builder flowControl(WilddogFlowControl flowControl ) {
+			if( flowControl == null ) {
+				throw new IllegalArgumentException( "flowControl cannot be null" );
+			}
+			this.flowControl = flowControl;
+			return this;
+		}
+		
+		/**
+		 * Holds the requests on or below the path-prefix to a flow-control of their own, on top of the one of
+		 * the whole instance; of several prefixes, the longest matching one applies.
+		 * 
+		 * @param pathPrefix -- relative to the base-url; ie: 'logs' covers 'logs' and 'logs/2017', not 'logsets'
+		 * @param flowControl -- ie: a lower rate for a path known to be expensive
+		 */
+		public Builder flowControl(String pathPrefix, WilddogFlowControl flowControl ) {
+			String prefix = WilddogCache.normalize( pathPrefix );
+			if( prefix.isEmpty() ) {
+				throw new IllegalArgumentException( "pathPrefix cannot be empty; use flowControl(WilddogFlowControl) for the whole instance" );
+			}
+			if( flowControl == null ) {
+				throw new IllegalArgumentException( "flowControl cannot be null" );
+			}
+			this.flowControlByPrefix.put( prefix, flowControl );
+			return this;
 		}
 
-		public String getValue() {
-			return this.value;
+		public Wilddog build() throws WilddogException {
+			return new Wilddog( this );
 		}
 
-		public String toString() {
-			if (this.value == null) {
-				return this.name;
+		private OkHttpClient buildClient(HttpUrl baseUrl ) {
+			OkHttpClient.Builder builder;
+			ConnectionPool pool;
+			if( this.client != null ) {
+				// shares the pool and dispatcher of the provided client
+				builder = this.client.newBuilder();
+				pool = this.client.connectionPool();
 			} else {
-				int len = this.name.length() + 1 + this.value.length();
-				StringBuilder buffer = new StringBuilder(len);
-				buffer.append(this.name);
-				buffer.append("=");
-				buffer.append(this.value);
-				return buffer.toString();
+				Dispatcher dispatcher = this.dispatcherExecutor == null
+						? new Dispatcher()
+						: new Dispatcher( this.dispatcherExecutor );
+				dispatcher.setMaxRequests( this.maxRequests );
+				dispatcher.setMaxRequestsPerHost( this.maxRequestsPerHost );
+				pool = new ConnectionPool( this.maxIdleConnections, this.keepAliveMillis, TimeUnit.MILLISECONDS );
+				builder = new OkHttpClient.Builder()
+						.dispatcher( dispatcher )
+						.connectionPool( pool )
+						.connectTimeout( this.connectTimeoutMillis, TimeUnit.MILLISECONDS )
+						.readTimeout( this.readTimeoutMillis, TimeUnit.MILLISECONDS )
+						.writeTimeout( this.writeTimeoutMillis, TimeUnit.MILLISECONDS )
+						.protocols( this.preferHttp2
+								? Arrays.asList( Protocol.HTTP_2, Protocol.HTTP_1_1 )
+								: Arrays.asList( Protocol.HTTP_1_1 ) );
 			}
+			// the metrics are taken outside of the retries, so a request is timed from its first attempt to its last
+			MetricsInterceptor metrics = null;
+			if( this.metrics != WilddogMetrics.NONE ) {
+				metrics = new MetricsInterceptor( this.metrics, baseUrl, this.metricsPathDepth );
+				this.metrics.onConnectionPool( pool );
+			}
+			// bodies are compressed once, ahead of the metrics; so these count the bytes actually sent
+			if( this.gzipMinBytes >= 0 ) {
+				builder.addInterceptor( new GzipRequestInterceptor( this.gzipMinBytes, metrics ) );
+			}
+			if( metrics != null ) {
+				builder.addInterceptor( metrics );
+			}
+			builder.addInterceptor( new RetryInterceptor( this.retryPolicy, metrics ) );
+			// inside the retries, so every attempt waits its turn; and the metrics include the time waited
+			if( this.flowControl != WilddogFlowControl.UNLIMITED || !this.flowControlByPrefix.isEmpty() ) {
+				builder.addInterceptor( new FlowControlInterceptor( this.flowControl, this.flowControlByPrefix, baseUrl ) );
+			}
+			return builder
+					.addInterceptor( new TracingInterceptor( this.tracing ) )
+					.build();
+		}
+	}
+
+
+	public enum WilddogRestMethod {
+		
+		GET( true ),
+		PATCH( true ),
+		PUT( true ),
+		POST( false ),
+		DELETE( true );
+		
+		private final boolean idempotent;
+		
+		private WilddogRestMethod(boolean idempotent ) {
+			this.idempotent = idempotent;
+		}
+		
+		/**
+		 * Returns whether sending the request more than once has the same effect as sending it once; POST
+		 * is not, as every POST creates a new child.
+		 */
+		public boolean isIdempotent() {
+			return this.idempotent;
 		}
 	}
 
+
+
 	}
 
 
@@ -0,0 +1,402 @@
+package com.wilddog.client.rest.service;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import com.wilddog.client.rest.error.WilddogException;
+import com.wilddog.client.rest.model.WilddogResponse;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A write-buffer that coalesces PUTs and PATCHs of many paths into a single multi-path PATCH; created by
+ * {@link Wilddog#batch()} or {@link Wilddog#batch(int, long, TimeUnit)}.
+ *
+ * Buffered writes are merged in order: a write replaces any buffered write below its path, and a write below
+ * an already buffered path is folded into that path's value. On flush, the remaining paths are sent as
+ * {@code "relative/path": value} children of their longest common ancestor, which the server applies
+ * atomically. Every buffered write gets a future that completes with the response of the flush it went out in.
+ *
+ * Flushing happens on {@link #flush()} and {@link #close()}, and, when configured, once {@code maxOperations}
+ * writes are buffered or {@code maxDelay} after the first buffered write. A flush is sent only once the one
+ * before it completed, retries included, so overlapping paths land in the order they were written.
+ */
+public class WilddogBatch implements Closeable {
+
+	protected static final Logger 			LOGGER 					= Logger.getRootLogger();
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PROPERTIES & CONSTRUCTORS
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	private final Wilddog wilddog;
+	private final int maxOperations;
+	private final long maxDelayMillis;
+	private final ScheduledExecutorService scheduler;
+
+	/* NOTE: guarded by 'this' */
+	private LinkedHashMap<String, Object> updates = new LinkedHashMap<String, Object>();
+	private List<CompletableFuture<WilddogResponse>> pending = new ArrayList<CompletableFuture<WilddogResponse>>();
+	private ScheduledFuture<?> scheduledFlush = null;
+	private boolean closed = false;
+	private CompletableFuture<WilddogResponse> lastFlush = CompletableFuture.completedFuture( null );
+
+	/**
+	 * @param maxOperations -- flush once this many writes are buffered; 0 to flush explicitly only
+	 * @param maxDelayMillis -- flush this long after the first buffered write; 0 to flush explicitly only
+	 */
+	WilddogBatch(Wilddog wilddog, int maxOperations, long maxDelayMillis ) {
+		this.wilddog = wilddog;
+		this.maxOperations = maxOperations;
+		this.maxDelayMillis = maxDelayMillis;
+		this.scheduler = maxDelayMillis <= 0 ? null : Executors.newSingleThreadScheduledExecutor( new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r ) {
+				Thread thread = new Thread( r, "wilddog-batch" );
+				thread.setDaemon( true );
+				return thread;
+			}
+		});
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PUBLIC API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	/**
+	 * Buffers a PUT of the value to the provided-path relative to the base-url.
+	 *
+	 * @param path -- if null/empty, refers to the base-url
+	 * @param value -- a Map, POJO, collection or scalar; null deletes the data at the path
+	 * @return a future of the response of the flush this write goes out in
+	 */
+	public CompletableFuture<WilddogResponse> put(String path, Object value ) {
+
+		CompletableFuture<WilddogResponse> result = new CompletableFuture<WilddogResponse>();
+		Object tree;
+		try {
+
+			tree = this.toTree( value );
+
+		} catch( Throwable t ) {
+
+			String msg = "unable to convert value for '" + path + "' into json";
+			LOGGER.error( msg );
+			result.completeExceptionally( new WilddogException( msg, t ) );
+			return result;
+		}
+
+		synchronized( this ) {
+			if( this.isClosed( result ) ) {
+				return result;
+			}
+			this.merge( WilddogCache.normalize( path ), tree );
+			this.enqueued( result );
+		}
+		return result;
+	}
+
+	/**
+	 * Buffers a PATCH of the children to the provided-path relative to the base-url; ie: a PUT of every child.
+	 *
+	 * @param path -- if null/empty, refers to the base-url
+	 * @param children -- can be null/empty
+	 * @return a future of the response of the flush this write goes out in
+	 */
+	public CompletableFuture<WilddogResponse> patch(String path, Map<String, Object> children ) {
+
+		CompletableFuture<WilddogResponse> result = new CompletableFuture<WilddogResponse>();
+		Map<String, Object> trees = new LinkedHashMap<String, Object>();
+		try {
+
+			if( children != null ) {
+				for( Map.Entry<String, Object> child : children.entrySet() ) {
+					trees.put( child.getKey(), this.toTree( child.getValue() ) );
+				}
+			}
+
+		} catch( Throwable t ) {
+
+			String msg = "unable to convert children for '" + path + "' into json";
+			LOGGER.error( msg );
+			result.completeExceptionally( new WilddogException( msg, t ) );
+			return result;
+		}
+
+		synchronized( this ) {
+			if( this.isClosed( result ) ) {
+				return result;
+			}
+			String key = WilddogCache.normalize( path );
+			for( Map.Entry<String, Object> child : trees.entrySet() ) {
+				this.merge( join( key, WilddogCache.normalize( child.getKey() ) ), child.getValue() );
+			}
+			this.enqueued( result );
+		}
+		return result;
+	}
+
+	/**
+	 * Sends everything buffered so far as one request.
+	 *
+	 * @return a future of the response; completed right away with null when nothing was buffered
+	 */
+	public CompletableFuture<WilddogResponse> flush() {
+
+		final LinkedHashMap<String, Object> updates;
+		final List<CompletableFuture<WilddogResponse>> pending;
+		final CompletableFuture<WilddogResponse> previous;
+		final CompletableFuture<WilddogResponse> result = new CompletableFuture<WilddogResponse>();
+		synchronized( this ) {
+			if( this.scheduledFlush != null ) {
+				this.scheduledFlush.cancel( false );
+				this.scheduledFlush = null;
+			}
+			if( this.pending.isEmpty() ) {
+				return CompletableFuture.completedFuture( null );
+			}
+			updates = this.updates;
+			pending = this.pending;
+			this.updates = new LinkedHashMap<String, Object>();
+			this.pending = new ArrayList<CompletableFuture<WilddogResponse>>();
+			// flushes are sent one after the other, in the order they were taken
+			previous = this.lastFlush;
+			this.lastFlush = result;
+		}
+
+		previous.handle( new BiFunction<WilddogResponse, Throwable, Void>() {
+			@Override
+			public Void apply(WilddogResponse response, Throwable t ) {
+				// the previous flush reported its own failure
+				return null;
+			}
+		}).thenCompose( new Function<Void, CompletionStage<WilddogResponse>>() {
+			@Override
+			public CompletionStage<WilddogResponse> apply(Void ignored ) {
+				return WilddogBatch.this.send( updates );
+			}
+		}).whenComplete( new BiConsumer<WilddogResponse, Throwable>() {
+			@Override
+			public void accept(WilddogResponse response, Throwable t ) {
+				for( CompletableFuture<WilddogResponse> operation : pending ) {
+					if( t != null ) {
+						operation.completeExceptionally( t );
+					} else {
+						operation.complete( response );
+					}
+				}
+				if( t != null ) {
+					result.completeExceptionally( t );
+				} else {
+					result.complete( response );
+				}
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Flushes what is buffered and stops accepting writes.
+	 */
+	@Override
+	public void close() {
+		synchronized( this ) {
+			this.closed = true;
+		}
+		this.flush();
+		if( this.scheduler != null ) {
+			this.scheduler.shutdown();
+		}
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PRIVATE API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	/**
+	 * Sends the updates as one PATCH of their common ancestor; or as a PUT, when the whole tree was replaced.
+	 */
+	private CompletableFuture<WilddogResponse> send(Map<String, Object> updates ) {
+
+		if( updates.isEmpty() ) {
+			// ie: only empty PATCHs were buffered
+			return CompletableFuture.completedFuture( null );
+		}
+		if( updates.containsKey( "" ) ) {
+			// the whole tree was replaced, which no PATCH can express
+			return this.wilddog.putAsync( null, this.toJson( updates.get( "" ) ) );
+		}
+		String ancestor = commonAncestor( updates.keySet() );
+		Map<String, Object> children = new LinkedHashMap<String, Object>();
+		for( Map.Entry<String, Object> update : updates.entrySet() ) {
+			children.put( update.getKey().substring( ancestor.isEmpty() ? 0 : ancestor.length() + 1 ), update.getValue() );
+		}
+		return this.wilddog.patchAsync( ancestor, children );
+	}
+
+	private boolean isClosed(CompletableFuture<WilddogResponse> result ) {
+		if( this.closed ) {
+			result.completeExceptionally( new WilddogException( "batch is closed" ) );
+		}
+		return this.closed;
+	}
+
+	private void enqueued(CompletableFuture<WilddogResponse> result ) {
+
+		this.pending.add( result );
+
+		if( this.maxOperations > 0 && this.pending.size() >= this.maxOperations ) {
+			// only queues the request, so it is cheap enough to do on the writer's thread
+			this.flush();
+		} else if( this.scheduler != null && this.scheduledFlush == null ) {
+			this.scheduledFlush = this.scheduler.schedule( new Runnable() {
+				@Override
+				public void run() {
+					WilddogBatch.this.flush();
+				}
+			}, this.maxDelayMillis, TimeUnit.MILLISECONDS );
+		}
+	}
+
+	/**
+	 * Applies the write of the value at the key to the buffered updates.
+	 */
+	@SuppressWarnings("unchecked")
+	private void merge(String key, Object value ) {
+
+		// a buffered ancestor absorbs the write into its own value
+		for( String ancestor = parentOf( key ); ancestor != null; ancestor = parentOf( ancestor ) ) {
+			if( this.updates.containsKey( ancestor ) ) {
+				Object tree = this.updates.get( ancestor );
+				if( !( tree instanceof Map ) ) {
+					tree = new LinkedHashMap<String, Object>();
+					this.updates.put( ancestor, tree );
+				}
+				Map<String, Object> node = (Map<String, Object>) tree;
+				String[] segments = key.substring( ancestor.isEmpty() ? 0 : ancestor.length() + 1 ).split( "/" );
+				for( int i = 0; i < segments.length - 1; i++ ) {
+					Object child = node.get( segments[i] );
+					if( !( child instanceof Map ) ) {
+						child = new LinkedHashMap<String, Object>();
+						node.put( segments[i], child );
+					}
+					node = (Map<String, Object>) child;
+				}
+				if( value == null ) {
+					node.remove( segments[segments.length - 1] );
+				} else {
+					node.put( segments[segments.length - 1], value );
+				}
+				return;
+			}
+		}
+
+		// the write replaces any buffered descendant
+		Iterator<String> keys = this.updates.keySet().iterator();
+		while( keys.hasNext() ) {
+			String existing = keys.next();
+			if( key.isEmpty() || existing.startsWith( key + "/" ) ) {
+				keys.remove();
+			}
+		}
+		this.updates.remove( key );
+		this.updates.put( key, value );
+	}
+
+	/**
+	 * Deep-copies the value into maps, lists and scalars, so merging never touches the caller's objects.
+	 */
+	private Object toTree(Object value ) {
+		if( value == null || value instanceof String || value instanceof Number || value instanceof Boolean ) {
+			return value;
+		}
+		return this.wilddog.jackson().getMapper().convertValue( value, Object.class );
+	}
+
+	private String toJson(Object value ) {
+		try {
+			return new String( this.wilddog.jackson().toJsonBytes( value ), "UTF-8" );
+		} catch( Throwable t ) {
+			// the value came out of toTree(...), so it is plain json
+			throw new IllegalStateException( t );
+		}
+	}
+
+	private static String commonAncestor(Iterable<String> keys ) {
+		String[] common = null;
+		int length = 0;
+		for( String key : keys ) {
+			String[] segments = key.split( "/" );
+			if( common == null ) {
+				common = segments;
+				length = segments.length;
+				continue;
+			}
+			int i = 0;
+			while( i < length && i < segments.length && common[i].equals( segments[i] ) ) {
+				i++;
+			}
+			length = i;
+		}
+		// the ancestor must lie strictly above every key, so a single key patches from its parent
+		for( String key : keys ) {
+			if( key.split( "/" ).length == length ) {
+				length--;
+				break;
+			}
+		}
+		StringBuilder result = new StringBuilder();
+		for( int i = 0; i < length; i++ ) {
+			if( i > 0 ) {
+				result.append( '/' );
+			}
+			result.append( common[i] );
+		}
+		return result.toString();
+	}
+
+	private static String parentOf(String key ) {
+		if( key.isEmpty() ) {
+			return null;
+		}
+		int slash = key.lastIndexOf( '/' );
+		return slash < 0 ? "" : key.substring( 0, slash );
+	}
+
+	private static String join(String parent, String child ) {
+		if( parent.isEmpty() ) {
+			return child;
+		}
+		return child.isEmpty() ? parent : parent + "/" + child;
+	}
+
+}
@@ -0,0 +1,581 @@
+package com.wilddog.client.rest.service;
+
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.wilddog.client.rest.error.JacksonUtilityException;
+import com.wilddog.client.rest.error.WilddogException;
+import com.wilddog.client.rest.model.WilddogEvent;
+import com.wilddog.client.rest.model.WilddogEventListener;
+import com.wilddog.client.rest.model.WilddogResponse;
+import com.wilddog.client.rest.util.JacksonUtility;
+
+import okhttp3.HttpUrl;
+import org.apache.log4j.Logger;
+
+/**
+ * An opt-in, in-memory cache of node snapshots in front of {@link Wilddog#get(String)}; enabled through
+ * {@link Wilddog.Builder#cache(int, long, java.util.concurrent.TimeUnit)}.
+ *
+ * Snapshots are kept in one of two ways:
+ * <ul>
+ * <li>synced: {@link Wilddog#keepSynced(String)} keeps the whole subtree of a path current through an event
+ * stream; reads of that path or of any path below it are answered from the subtree.</li>
+ * <li>expiring: every other successful, query-less GET is kept until its time-to-live runs out, or until it
+ * is evicted as the least recently used of more than {@code maxEntries} snapshots.</li>
+ * </ul>
+ * Writes made through the owning {@link Wilddog} drop the expiring snapshots they overlap. An expired snapshot
+ * with an ETag is kept, and revalidated with a conditional GET ({@code If-None-Match}) instead of being
+ * downloaded again when it has not changed.
+ *
+ * NOTE: the bodies handed out, on a hit as on the miss that filled the cache, are shared between readers; so
+ * their maps and lists are read-only, all the way down. A hit is built as the miss was: a scalar leaf has an
+ * empty body, and its value in the raw-body when the client keeps raw-bodies.
+ */
+public class WilddogCache {
+
+	protected static final Logger 			LOGGER 					= Logger.getRootLogger();
+
+	private static final Charset UTF_8								= Charset.forName( "UTF-8" );
+
+	// the writes below different top-level paths are told apart by this many generations
+	private static final int GENERATION_STRIPES						= 64;
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PROPERTIES & CONSTRUCTORS
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	private final int maxEntries;
+	private final long ttlNanos;
+	private final RelativePath relativePath;
+	private final boolean keepRawBody;
+	private final JacksonUtility jackson;
+
+	/* NOTE: guarded by 'this'; the sorted key-set finds the descendants of a path when invalidating */
+	private final LinkedHashMap<String, Snapshot> snapshots;
+	private final TreeSet<String> sortedKeys = new TreeSet<String>();
+
+	/* NOTE: guarded by 'this'; counts the writes of every path, of the base-url, and of the paths below each
+	 * stripe of top-level paths; so a GET can tell whether a write overlapping its path was made meanwhile.
+	 */
+	private long writes = 0;
+	private long rootWrites = 0;
+	private final long[] stripeWrites = new long[GENERATION_STRIPES];
+
+	/* NOTE: a tree per subscription, so that closing one of two on the same path leaves the other; lists are
+	 * added and removed under the lock of the map, and read without it
+	 */
+	private final ConcurrentMap<String, List<SyncedTree>> syncedTrees = new ConcurrentHashMap<String, List<SyncedTree>>();
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicLong revalidations = new AtomicLong();
+
+	/**
+	 * @param keepRawBody -- whether a hit carries the raw-body, as the responses of the client do
+	 * @param jackson -- writes the raw-body of a read answered from a synced subtree
+	 */
+	WilddogCache(HttpUrl baseUrl, int maxEntries, long ttlNanos, boolean keepRawBody, JacksonUtility jackson ) {
+		this.maxEntries = maxEntries;
+		this.ttlNanos = ttlNanos;
+		this.relativePath = new RelativePath( baseUrl );
+		this.keepRawBody = keepRawBody;
+		this.jackson = jackson;
+		this.snapshots = new LinkedHashMap<String, Snapshot>( 16, 0.75f, true ) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Snapshot> eldest ) {
+				if( this.size() <= WilddogCache.this.maxEntries ) {
+					return false;
+				}
+				WilddogCache.this.sortedKeys.remove( eldest.getKey() );
+				WilddogCache.this.evictions.incrementAndGet();
+				return true;
+			}
+		};
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PUBLIC API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	public long getHitCount() {
+		return this.hits.get();
+	}
+
+	public long getMissCount() {
+		return this.misses.get();
+	}
+
+	public long getEvictionCount() {
+		return this.evictions.get();
+	}
+
+	/**
+	 * Returns the number of expired snapshots that the server confirmed as unchanged (304)
+	 */
+	public long getRevalidationCount() {
+		return this.revalidations.get();
+	}
+
+	/**
+	 * Returns the number of expiring snapshots currently held; synced subtrees are not counted
+	 */
+	public synchronized int size() {
+		return this.snapshots.size();
+	}
+
+	/**
+	 * Drops every expiring snapshot; synced subtrees are kept, as their streams keep them current
+	 */
+	public synchronized void clear() {
+		this.snapshots.clear();
+		this.sortedKeys.clear();
+		// nor are the GETs in flight kept
+		this.writes++;
+		this.rootWrites++;
+	}
+
+	@Override
+	public String toString() {
+
+		StringBuilder result = new StringBuilder();
+
+		result.append( WilddogCache.class.getSimpleName() + "[ " )
+				.append( "(Size:" ).append( this.size() ).append( ") " )
+				.append( "(Synced:" ).append( this.syncedTrees.keySet() ).append( ") " )
+				.append( "(Hits:" ).append( this.hits.get() ).append( ") " )
+				.append( "(Misses:" ).append( this.misses.get() ).append( ") " )
+				.append( "(Evictions:" ).append( this.evictions.get() ).append( ") " )
+				.append( "(Revalidations:" ).append( this.revalidations.get() ).append( ") " )
+				.append( "]" );
+
+		return result.toString();
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PACKAGE API (used by Wilddog)
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	/**
+	 * @return the cached response for the path, or null on a miss
+	 */
+	WilddogResponse get(String path ) {
+
+		String key = normalize( path );
+
+		// a synced ancestor (or the path itself) answers for its whole subtree
+		if( !this.syncedTrees.isEmpty() ) {
+			for( String ancestor = key; ancestor != null; ancestor = parentOf( ancestor ) ) {
+				List<SyncedTree> trees = this.syncedTrees.get( ancestor );
+				if( trees == null ) {
+					continue;
+				}
+				for( SyncedTree tree : trees ) {
+					if( tree.ready ) {
+						this.hits.incrementAndGet();
+						String relative = ancestor.isEmpty() && !key.isEmpty() ? "/" + key : key.substring( ancestor.length() );
+						return this.toResponse( childOf( tree.data, relative ) );
+					}
+				}
+			}
+		}
+
+		Snapshot snapshot;
+		synchronized( this ) {
+			snapshot = this.snapshots.get( key );
+			if( snapshot != null && snapshot.expiresAt - System.nanoTime() < 0 ) {
+				// one with an ETag stays around to be revalidated
+				if( snapshot.etag == null ) {
+					this.snapshots.remove( key );
+					this.sortedKeys.remove( key );
+				}
+				snapshot = null;
+			}
+		}
+		if( snapshot == null ) {
+			this.misses.incrementAndGet();
+			return null;
+		}
+		this.hits.incrementAndGet();
+		return toResponse( snapshot );
+	}
+
+	/**
+	 * Returns the generation of the path, to be taken before it is read; it changes with every write of the
+	 * path, of an ancestor or of a descendant (and, rarely, of an unrelated path).
+	 */
+	synchronized long generationOf(String path ) {
+		String key = normalize( path );
+		if( key.isEmpty() ) {
+			return this.writes;
+		}
+		// both only grow, so their sum changes with either
+		return this.rootWrites + this.stripeWrites[stripeOf( key )];
+	}
+
+	/**
+	 * Keeps the body of a successful GET of the path; unless the path was written since the generation was
+	 * taken, as the body may predate that write.
+	 *
+	 * @param generation -- the {@link #generationOf(String)} of the path, taken before the GET was sent
+	 * @return the response to hand out instead; with the body made read-only, as it is handed out on a hit
+	 * @throws IllegalStateException if the response-body is not json
+	 */
+	@SuppressWarnings("unchecked")
+	WilddogResponse put(String path, WilddogResponse response, long generation ) {
+		String key = normalize( path );
+		Map<String, Object> body = response.getBody();
+		synchronized( this ) {
+			Snapshot existing = this.snapshots.get( key );
+			if( existing != null && existing.body == body ) {
+				// ie: the revalidated snapshot itself, which is kept already
+				return response;
+			}
+		}
+		// the body was parsed for this response alone, so it is made read-only in place rather than copied
+		body = (Map<String, Object>) readOnly( body );
+		Snapshot snapshot = new Snapshot( body, this.keepRawBody ? response.getRawBody() : null, response.getETag(), System.nanoTime() + this.ttlNanos );
+		synchronized( this ) {
+			if( this.generationOf( key ) == generation ) {
+				this.snapshots.put( key, snapshot );
+				this.sortedKeys.add( key );
+			}
+		}
+		return new WilddogResponse( true, response.getCode(), body, response.getRawBody(), response.getETag() );
+	}
+
+	/**
+	 * @return the ETag of the (expired) snapshot of the path, or null if there is none
+	 */
+	synchronized String etagOf(String path ) {
+		Snapshot snapshot = this.snapshots.get( normalize( path ) );
+		return snapshot == null ? null : snapshot.etag;
+	}
+
+	/**
+	 * Restarts the time-to-live of the snapshot of the url's path, which the server reported as unchanged.
+	 *
+	 * @return the snapshot as a response, or null if it was dropped in the meantime
+	 */
+	WilddogResponse revalidate(HttpUrl url ) {
+		String key = this.keyOf( url );
+		Snapshot snapshot;
+		synchronized( this ) {
+			snapshot = this.snapshots.get( key );
+			if( snapshot == null ) {
+				return null;
+			}
+			snapshot = new Snapshot( snapshot.body, snapshot.rawBody, snapshot.etag, System.nanoTime() + this.ttlNanos );
+			this.snapshots.put( key, snapshot );
+		}
+		this.revalidations.incrementAndGet();
+		return toResponse( snapshot );
+	}
+
+	/**
+	 * Drops the expiring snapshots of the written url's path, of its ancestors, and of its descendants.
+	 */
+	void invalidate(HttpUrl url ) {
+		this.invalidate( this.keyOf( url ) );
+	}
+
+	private String keyOf(HttpUrl url ) {
+		return this.relativePath.of( url );
+	}
+
+	synchronized void invalidate(String key ) {
+		this.writes++;
+		if( key.isEmpty() ) {
+			this.rootWrites++;
+		} else {
+			this.stripeWrites[stripeOf( key )]++;
+		}
+		for( String ancestor = key; ancestor != null; ancestor = parentOf( ancestor ) ) {
+			if( this.snapshots.remove( ancestor ) != null ) {
+				this.sortedKeys.remove( ancestor );
+			}
+		}
+		// '0' is the character after '/'; so this is every key starting with 'key/'
+		String from = key.isEmpty() ? "" : key + "/";
+		String to = key.isEmpty() ? "\uffff" : key + "0";
+		for( String descendant : this.sortedKeys.subSet( from, to ).toArray( new String[0] ) ) {
+			this.snapshots.remove( descendant );
+			this.sortedKeys.remove( descendant );
+		}
+	}
+
+	/**
+	 * Starts keeping the subtree of the path, for one subscription; returns the listener that applies the
+	 * stream's events to it. Every subscription keeps a tree of its own, until it is passed to
+	 * {@link #unsync(WilddogEventListener)}.
+	 */
+	WilddogEventListener sync(String path ) {
+		SyncedTree tree = new SyncedTree( normalize( path ) );
+		synchronized( this.syncedTrees ) {
+			List<SyncedTree> trees = this.syncedTrees.get( tree.key );
+			if( trees == null ) {
+				trees = new CopyOnWriteArrayList<SyncedTree>();
+				this.syncedTrees.put( tree.key, trees );
+			}
+			trees.add( tree );
+		}
+		return tree;
+	}
+
+	/**
+	 * Stops keeping the subtree of one subscription; the path stays synced while other subscriptions keep it.
+	 *
+	 * @param synced -- as returned by {@link #sync(String)}
+	 */
+	void unsync(WilddogEventListener synced ) {
+		SyncedTree tree = (SyncedTree) synced;
+		synchronized( this.syncedTrees ) {
+			List<SyncedTree> trees = this.syncedTrees.get( tree.key );
+			if( trees != null && trees.remove( tree ) && trees.isEmpty() ) {
+				this.syncedTrees.remove( tree.key );
+			}
+		}
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PRIVATE API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	private static WilddogResponse toResponse(Snapshot snapshot ) {
+		return new WilddogResponse( true, 200, snapshot.body, snapshot.rawBody, snapshot.etag );
+	}
+
+	/**
+	 * Builds the response to a read of a synced subtree, as it would have been read off the wire.
+	 *
+	 * @param data -- read-only already; see {@link #readOnly(Object)}
+	 */
+	@SuppressWarnings("unchecked")
+	private WilddogResponse toResponse(Object data ) {
+		Map<String, Object> body = data instanceof Map ? (Map<String, Object>) data : Collections.<String, Object>emptyMap();
+		String rawBody = null;
+		if( this.keepRawBody ) {
+			try {
+				rawBody = new String( this.jackson.toJsonBytes( data ), UTF_8 );
+			} catch( JacksonUtilityException e ) {
+				// the tree was parsed from json, so it can always be written back
+				throw new IllegalStateException( e );
+			}
+		}
+		return new WilddogResponse( true, 200, body, rawBody, null );
+	}
+
+	/**
+	 * Makes the maps and lists of the tree read-only, in place, so no reader can change what the others are
+	 * handed; only for a tree just parsed, that nothing else holds on to.
+	 *
+	 * @return the read-only root
+	 */
+	@SuppressWarnings("unchecked")
+	static Object readOnly(Object node ) {
+		if( node instanceof Map ) {
+			for( Map.Entry<String, Object> child : ( (Map<String, Object>) node ).entrySet() ) {
+				child.setValue( readOnly( child.getValue() ) );
+			}
+			return Collections.unmodifiableMap( (Map<String, Object>) node );
+		}
+		if( node instanceof List ) {
+			ListIterator<Object> children = ( (List<Object>) node ).listIterator();
+			while( children.hasNext() ) {
+				children.set( readOnly( children.next() ) );
+			}
+			return Collections.unmodifiableList( (List<Object>) node );
+		}
+		return node;
+	}
+
+	/**
+	 * @param relative -- a path relative to the node, either empty or starting with '/'
+	 */
+	private static Object childOf(Object node, String relative ) {
+		int start = 0;
+		while( node != null && start < relative.length() ) {
+			int end = relative.indexOf( '/', start + 1 );
+			if( end < 0 ) {
+				end = relative.length();
+			}
+			String segment = relative.substring( start + 1, end );
+			node = node instanceof Map ? ( (Map<?, ?>) node ).get( segment ) : null;
+			start = end;
+		}
+		return node;
+	}
+
+	/**
+	 * Returns a copy of the node with the value at the relative path replaced (or removed, if null); only the
+	 * maps along the path are copied, so readers of the previous tree are never disturbed.
+	 *
+	 * @param value -- read-only already; see {@link #readOnly(Object)}
+	 */
+	private static Object withChild(Object node, String relative, Object value ) {
+		if( relative.isEmpty() ) {
+			return value;
+		}
+		int slash = relative.indexOf( '/' );
+		String segment = slash < 0 ? relative : relative.substring( 0, slash );
+		String rest = slash < 0 ? "" : relative.substring( slash + 1 );
+
+		Map<String, Object> copy = new LinkedHashMap<String, Object>();
+		if( node instanceof Map ) {
+			for( Map.Entry<?, ?> child : ( (Map<?, ?>) node ).entrySet() ) {
+				copy.put( String.valueOf( child.getKey() ), child.getValue() );
+			}
+		}
+		Object child = withChild( copy.get( segment ), rest, value );
+		if( child == null ) {
+			copy.remove( segment );
+		} else {
+			copy.put( segment, child );
+		}
+		return copy.isEmpty() ? null : Collections.unmodifiableMap( copy );
+	}
+
+	static String normalize(String path ) {
+		if( path == null ) {
+			return "";
+		}
+		StringBuilder result = new StringBuilder( path.length() );
+		for( String segment : path.trim().split( "/" ) ) {
+			if( segment.isEmpty() ) {
+				continue;
+			}
+			if( result.length() > 0 ) {
+				result.append( '/' );
+			}
+			result.append( segment );
+		}
+		return result.toString();
+	}
+
+	private static String parentOf(String key ) {
+		if( key.isEmpty() ) {
+			return null;
+		}
+		int slash = key.lastIndexOf( '/' );
+		return slash < 0 ? "" : key.substring( 0, slash );
+	}
+
+	private static String join(String parent, String child ) {
+		return parent.isEmpty() ? normalize( child ) : parent + "/" + normalize( child );
+	}
+
+	/**
+	 * @return the stripe of the top-level path the (non-empty) key is on or below
+	 */
+	private static int stripeOf(String key ) {
+		int slash = key.indexOf( '/' );
+		String top = slash < 0 ? key : key.substring( 0, slash );
+		return ( top.hashCode() & Integer.MAX_VALUE ) % GENERATION_STRIPES;
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// INTERNAL CLASSES
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	private static class Snapshot {
+
+		private final Map<String, Object> body;
+		private final String rawBody;
+		private final String etag;
+		private final long expiresAt;
+
+		/**
+		 * @param rawBody -- null unless the client keeps raw-bodies
+		 */
+		Snapshot(Map<String, Object> body, String rawBody, String etag, long expiresAt ) {
+			this.body = body;
+			this.rawBody = rawBody;
+			this.etag = etag;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+	/**
+	 * The subtree of one subscription, kept current by the events of its stream.
+	 */
+	private class SyncedTree implements WilddogEventListener {
+
+		private final String key;
+
+		/* NOTE: written by the stream's thread only; every write publishes a new (copied) tree */
+		private volatile Object data = null;
+		private volatile boolean ready = false;
+
+		SyncedTree(String key ) {
+			this.key = key;
+		}
+
+		@Override
+		public void onEvent(WilddogEvent event ) {
+			switch( event.getType() ) {
+				case PUT:
+					this.data = withChild( this.data, normalize( event.getPath() ), readOnly( event.getData() ) );
+					this.ready = true;
+					break;
+				case PATCH:
+					Object data = this.data;
+					Object children = readOnly( event.getData() );
+					if( children instanceof Map ) {
+						for( Map.Entry<?, ?> child : ( (Map<?, ?>) children ).entrySet() ) {
+							data = withChild( data, join( normalize( event.getPath() ), String.valueOf( child.getKey() ) ), child.getValue() );
+						}
+					}
+					this.data = data;
+					break;
+				default:
+					// CANCEL or AUTH_REVOKED; the stream is over, so the tree can no longer be trusted
+					this.ready = false;
+					WilddogCache.this.unsync( this );
+					break;
+			}
+		}
+
+		@Override
+		public void onError(WilddogException error ) {
+			// the stream failed or ended; stale until the reconnected stream sends the full data again
+			this.ready = false;
+		}
+	}
+
+}
@@ -0,0 +1,325 @@
+package com.wilddog.client.rest.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.wilddog.client.rest.error.JacksonUtilityException;
+import com.wilddog.client.rest.error.WilddogException;
+import com.wilddog.client.rest.model.WilddogEvent;
+import com.wilddog.client.rest.model.WilddogEventListener;
+import com.wilddog.client.rest.util.JacksonUtility;
+
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okio.BufferedSource;
+import org.apache.log4j.Logger;
+
+/**
+ * A long-lived {@code text/event-stream} subscription on a path, created by
+ * {@link Wilddog#listen(String, WilddogEventListener)}.
+ *
+ * A single daemon-thread keeps one streaming connection open, parses the events as they arrive, and hands
+ * them to the listener. When the connection fails or is closed by the server, it reconnects with an
+ * exponential, jittered back-off, which starts over once a stream has stayed up for {@code STABLE_MILLIS};
+ * it stops for good when closed, or when the server sends a CANCEL or AUTH_REVOKED event. What the listener
+ * throws is logged, and does not stop the subscription.
+ */
+public class WilddogEventStream implements Closeable {
+
+	protected static final Logger 			LOGGER 					= Logger.getRootLogger();
+
+	public static final String EVENT_STREAM_MEDIA_TYPE				= "text/event-stream";
+
+	/* NOTE: the server sends a keep-alive every 30 seconds; a connection that stays silent for much longer
+	 * than that is considered dead and is reconnected.
+	 */
+	static final long READ_TIMEOUT_MILLIS							= TimeUnit.SECONDS.toMillis( 90 );
+	static final long MIN_BACKOFF_MILLIS							= TimeUnit.SECONDS.toMillis( 1 );
+	static final long MAX_BACKOFF_MILLIS							= TimeUnit.SECONDS.toMillis( 30 );
+	static final long STABLE_MILLIS									= TimeUnit.SECONDS.toMillis( 60 );
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PROPERTIES & CONSTRUCTORS
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	private final OkHttpClient client;
+	private final Request request;
+	private final JacksonUtility jackson;
+	private final WilddogEventListener listener;
+	private final Thread thread;
+	private final Random random = new Random();
+
+	private volatile boolean closed = false;
+	private volatile Call call = null;
+	private final List<Runnable> closeHooks = new CopyOnWriteArrayList<Runnable>();
+	private final AtomicBoolean hooksRun = new AtomicBoolean();
+
+	/* NOTE: only used by the stream's thread; when the current stream was established, or -1 if it was not */
+	private long establishedAt = -1;
+
+	WilddogEventStream(OkHttpClient client, Request request, JacksonUtility jackson, WilddogEventListener listener ) {
+		this.client = client.newBuilder()
+				.readTimeout( READ_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS )
+				.build();
+		this.request = request.newBuilder()
+				.header( "Accept", EVENT_STREAM_MEDIA_TYPE )
+				.build();
+		this.jackson = jackson;
+		this.listener = listener;
+		this.thread = new Thread( new Runnable() {
+			@Override
+			public void run() {
+				WilddogEventStream.this.run();
+			}
+		}, "wilddog-listen " + request.url().encodedPath() );
+		this.thread.setDaemon( true );
+	}
+
+	void start() {
+		this.thread.start();
+	}
+
+	/**
+	 * @param closeHook -- run once when this subscription stops; closed by the caller, or ended by the server
+	 */
+	void onClose(Runnable closeHook ) {
+		this.closeHooks.add( closeHook );
+		if( this.hooksRun.get() && this.closeHooks.remove( closeHook ) ) {
+			// stopped already
+			closeHook.run();
+		}
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PUBLIC API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	/**
+	 * Returns whether this subscription has stopped, either because it was closed or because the server
+	 * cancelled it
+	 */
+	public boolean isClosed() {
+		return this.closed;
+	}
+
+	/**
+	 * Stops the subscription and drops its connection; no callbacks are made after this returns, apart from
+	 * one that may already be in progress.
+	 */
+	@Override
+	public void close() {
+		this.closed = true;
+		Call current = this.call;
+		if( current != null ) {
+			current.cancel();
+		}
+		this.thread.interrupt();
+		this.runCloseHooks();
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PRIVATE API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	private void run() {
+
+		long backoff = MIN_BACKOFF_MILLIS;
+		while( !this.closed ) {
+
+			String ending;
+			Throwable failure;
+			this.establishedAt = -1;
+			try {
+
+				if( this.stream() ) {
+					// the server ended the subscription
+					this.closed = true;
+					this.runCloseHooks();
+					return;
+				}
+				// the events sent while reconnecting are missed, so this is a failure to the listener as well
+				ending = "was closed by the server";
+				failure = null;
+
+			} catch( Throwable t ) {
+
+				ending = "failed";
+				failure = t;
+			}
+			if( this.closed ) {
+				return;
+			}
+
+			// only a stream that stayed up starts over with the shortest delay; one the server drops right away
+			// (ie: while overloaded) is backed off from like a failure
+			if( this.establishedAt >= 0 && System.nanoTime() - this.establishedAt >= TimeUnit.MILLISECONDS.toNanos( STABLE_MILLIS ) ) {
+				backoff = MIN_BACKOFF_MILLIS;
+			}
+			// full back-off, minus up to half of it as jitter
+			long delay = backoff - (long) ( this.random.nextDouble() * backoff / 2 );
+			backoff = Math.min( backoff * 2, MAX_BACKOFF_MILLIS );
+
+			String msg = "event-stream @ " + this.request.url().encodedPath() + " " + ending + "; reconnecting in " + delay + "ms";
+			LOGGER.warn( msg );
+			this.notifyError( failure instanceof WilddogException ? (WilddogException) failure : new WilddogException( msg, failure ) );
+
+			try {
+				Thread.sleep( delay );
+			} catch( InterruptedException e ) {
+				return;
+			}
+		}
+	}
+
+	private void runCloseHooks() {
+		if( this.hooksRun.compareAndSet( false, true ) ) {
+			for( Runnable hook : this.closeHooks ) {
+				// NOTE: whoever removes a hook runs it, so a hook added meanwhile by onClose runs once
+				if( this.closeHooks.remove( hook ) ) {
+					hook.run();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Hands the error to the listener; what it throws is logged, so the stream's thread carries on.
+	 */
+	private void notifyError(WilddogException error ) {
+		try {
+			this.listener.onError( error );
+		} catch( Throwable t ) {
+			LOGGER.error( "listener of event-stream @ " + this.request.url().encodedPath() + " threw on an error", t );
+		}
+	}
+
+	/**
+	 * Opens one streaming connection and dispatches its events until it ends.
+	 *
+	 * @return true if the server ended the subscription (CANCEL or AUTH_REVOKED); false if the stream just ended
+	 */
+	private boolean stream() throws IOException, WilddogException {
+
+		Call current = this.client.newCall( this.request );
+		this.call = current;
+		if( this.closed ) {
+			current.cancel();
+		}
+
+		Response response = current.execute();
+		try {
+
+			if( !response.isSuccessful() ) {
+				String msg = "event-stream @ " + this.request.url().encodedPath() + " was refused with code " + response.code();
+				throw new WilddogException( msg );
+			}
+			this.establishedAt = System.nanoTime();
+
+			BufferedSource source = response.body().source();
+			String eventName = null;
+			StringBuilder data = new StringBuilder();
+			String line;
+			while( ( line = source.readUtf8Line() ) != null ) {
+
+				if( line.isEmpty() ) {
+					// a blank line completes the event
+					if( eventName != null && this.dispatch( eventName, data.toString() ) ) {
+						return true;
+					}
+					eventName = null;
+					data.setLength( 0 );
+					continue;
+				}
+				if( line.startsWith( ":" ) ) {
+					// comment
+					continue;
+				}
+
+				int colon = line.indexOf( ':' );
+				String field = colon < 0 ? line : line.substring( 0, colon );
+				String value = colon < 0 ? "" : line.substring( line.length() > colon + 1 && line.charAt( colon + 1 ) == ' ' ? colon + 2 : colon + 1 );
+				if( "event".equals( field ) ) {
+					eventName = value;
+				} else if( "data".equals( field ) ) {
+					if( data.length() > 0 ) {
+						data.append( '\n' );
+					}
+					data.append( value );
+				}
+			}
+			return false;
+
+		} finally {
+			response.close();
+		}
+	}
+
+	/**
+	 * @return true if the event ends the subscription
+	 */
+	private boolean dispatch(String eventName, String data ) throws WilddogException {
+
+		WilddogEvent.Type type = WilddogEvent.Type.fromEventName( eventName );
+		if( type == null ) {
+			LOGGER.warn( "ignoring unknown event '" + eventName + "' @ " + this.request.url().encodedPath() );
+			return false;
+		}
+		if( type == WilddogEvent.Type.KEEP_ALIVE ) {
+			return false;
+		}
+
+		String path = null;
+		Object value = null;
+		if( type == WilddogEvent.Type.PUT || type == WilddogEvent.Type.PATCH ) {
+			try {
+
+				Object payload = this.jackson.toObject( data );
+				if( payload instanceof Map ) {
+					Map<?, ?> map = (Map<?, ?>) payload;
+					path = (String) map.get( "path" );
+					value = map.get( "data" );
+				}
+
+			} catch( JacksonUtilityException jue ) {
+
+				String msg = "unable to parse " + type + "-event @ " + this.request.url().encodedPath();
+				LOGGER.error( msg );
+				throw new WilddogException( msg, jue );
+			}
+		}
+
+		if( !this.closed ) {
+			try {
+				this.listener.onEvent( new WilddogEvent( type, path, value ) );
+			} catch( Throwable t ) {
+				// ie: a bug of the listener; the events after it are still delivered
+				LOGGER.error( "listener of event-stream @ " + this.request.url().encodedPath() + " threw on a " + type + "-event", t );
+			}
+		}
+		return type == WilddogEvent.Type.CANCEL || type == WilddogEvent.Type.AUTH_REVOKED;
+	}
+
+}
@@ -0,0 +1,231 @@
+package com.wilddog.client.rest.service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits how fast, and how many at once, requests are sent; set for a whole {@link Wilddog} through
+ * {@link Wilddog.Builder#flowControl(WilddogFlowControl)}, and for the paths below a prefix through
+ * {@link Wilddog.Builder#flowControl(String, WilddogFlowControl)}.
+ *
+ * The rate is enforced by a token-bucket: {@code rate} tokens are added per second, up to {@code burst}, and
+ * every request (and every retry of it) takes one. The concurrency is limited adaptively (AIMD): the limit
+ * grows by one for every limit's worth of requests that succeed while it is in use, and is cut by
+ * {@code backoffRatio} (at most once per round-trip) whenever the server signals overload: a 429 or 503, a
+ * timeout, or, when a {@code latencyTolerance} is set, a latency that many times the lowest one seen lately
+ * (a sign of requests queueing up at the server). A 429 or 503 with a {@code Retry-After} also holds every
+ * request back until then.
+ *
+ * A request that cannot be sent within {@code maxWait} (or its deadline) fails, without being retried.
+ */
+public final class WilddogFlowControl {
+
+	/**
+	 * Sends every request right away; the default.
+	 */
+	public static final WilddogFlowControl UNLIMITED = new Builder().build();
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PROPERTIES & CONSTRUCTORS
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	private final double rate;
+	private final int burst;
+	private final int initialLimit;
+	private final int minLimit;
+	private final int maxLimit;
+	private final double backoffRatio;
+	private final double latencyTolerance;
+	private final long maxWaitMillis;
+
+	private WilddogFlowControl(Builder builder ) {
+		this.rate = builder.rate;
+		this.burst = builder.burst > 0 ? builder.burst : (int) Math.max( 1, Math.ceil( builder.rate ) );
+		this.initialLimit = builder.initialLimit;
+		this.minLimit = builder.minLimit;
+		this.maxLimit = builder.maxLimit;
+		this.backoffRatio = builder.backoffRatio;
+		this.latencyTolerance = builder.latencyTolerance;
+		this.maxWaitMillis = builder.maxWaitMillis;
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PUBLIC API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	/**
+	 * @return the tokens added per second; 0 if the rate is unlimited
+	 */
+	public double getRate() {
+		return this.rate;
+	}
+
+	public int getBurst() {
+		return this.burst;
+	}
+
+	/**
+	 * @return the concurrency-limit to start from; 0 if the concurrency is unlimited
+	 */
+	public int getInitialLimit() {
+		return this.initialLimit;
+	}
+
+	public int getMinLimit() {
+		return this.minLimit;
+	}
+
+	public int getMaxLimit() {
+		return this.maxLimit;
+	}
+
+	public double getBackoffRatio() {
+		return this.backoffRatio;
+	}
+
+	/**
+	 * @return the latency, relative to the lowest seen lately, above which the server counts as overloaded;
+	 * 			0 if latencies are not taken into account
+	 */
+	public double getLatencyTolerance() {
+		return this.latencyTolerance;
+	}
+
+	public long getMaxWaitMillis() {
+		return this.maxWaitMillis;
+	}
+
+	public boolean isRateLimited() {
+		return this.rate > 0;
+	}
+
+	public boolean isConcurrencyLimited() {
+		return this.initialLimit > 0;
+	}
+
+	@Override
+	public String toString() {
+
+		StringBuilder result = new StringBuilder();
+
+		result.append( WilddogFlowControl.class.getSimpleName() + "[ " );
+		if( this.isRateLimited() ) {
+			result.append( "(Rate:" ).append( this.rate ).append( "/s) " )
+					.append( "(Burst:" ).append( this.burst ).append( ") " );
+		}
+		if( this.isConcurrencyLimited() ) {
+			result.append( "(Limit:" ).append( this.minLimit ).append( ".." ).append( this.initialLimit ).append( ".." ).append( this.maxLimit ).append( ") " )
+					.append( "(Backoff-ratio:" ).append( this.backoffRatio ).append( ") " )
+					.append( "(Latency-tolerance:" ).append( this.latencyTolerance ).append( ") " );
+		}
+		if( !this.isRateLimited() && !this.isConcurrencyLimited() ) {
+			result.append( "(unlimited) " );
+		} else {
+			result.append( "(Max-wait:" ).append( this.maxWaitMillis ).append( "ms) " );
+		}
+		result.append( "]" );
+
+		return result.toString();
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// INTERNAL CLASSES
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	public static class Builder {
+
+		private double rate = 0;
+		private int burst = 0;
+		private int initialLimit = 0;
+		private int minLimit = 1;
+		private int maxLimit = 0;
+		private double backoffRatio = 0.9;
+		private double latencyTolerance = 0;
+		private long maxWaitMillis = TimeUnit.SECONDS.toMillis( 30 );
+
+		/**
+		 * @param rate -- the requests per second to send at most, on average; 0 for unlimited, the default
+		 * @param burst -- the requests that may be sent at once after a quiet period; 0 for a second's worth
+		 */
+		public Builder rate(double rate, int burst ) {
+			if( rate < 0 || burst < 0 ) {
+				throw new IllegalArgumentException( "rate and burst cannot be negative; were: " + rate + ", " + burst );
+			}
+			this.rate = rate;
+			this.burst = burst;
+			return this;
+		}
+
+		/**
+		 * Limits the requests in flight at once, adapting the limit to what the server sustains.
+		 *
+		 * @param initialLimit -- the limit to start from
+		 * @param minLimit -- the lowest the limit is cut to
+		 * @param maxLimit -- the highest the limit grows to
+		 */
+		public Builder concurrency(int initialLimit, int minLimit, int maxLimit ) {
+			if( minLimit < 1 || initialLimit < minLimit || maxLimit < initialLimit ) {
+				throw new IllegalArgumentException( "expected 1 <= minLimit <= initialLimit <= maxLimit; were: "
+						+ minLimit + ", " + initialLimit + ", " + maxLimit );
+			}
+			this.initialLimit = initialLimit;
+			this.minLimit = minLimit;
+			this.maxLimit = maxLimit;
+			return this;
+		}
+
+		/**
+		 * @param backoffRatio -- what the concurrency-limit is multiplied by on overload; defaults to 0.9
+		 */
+		public Builder backoffRatio(double backoffRatio ) {
+			if( !( backoffRatio > 0 && backoffRatio < 1 ) ) {
+				throw new IllegalArgumentException( "backoffRatio must be between 0 and 1; was: " + backoffRatio );
+			}
+			this.backoffRatio = backoffRatio;
+			return this;
+		}
+
+		/**
+		 * @param latencyTolerance -- the latency, relative to the lowest seen lately, above which the server
+		 * 			counts as overloaded; ie: 2 for twice as slow. Defaults to 0, which reacts to 429, 503 and
+		 * 			timeouts only; suits requests of similar cost, as a large write is slow without any overload.
+		 */
+		public Builder latencyTolerance(double latencyTolerance ) {
+			if( latencyTolerance != 0 && !( latencyTolerance > 1 ) ) {
+				throw new IllegalArgumentException( "latencyTolerance must be 0 or above 1; was: " + latencyTolerance );
+			}
+			this.latencyTolerance = latencyTolerance;
+			return this;
+		}
+
+		/**
+		 * @param maxWait -- how long a request waits to be sent before it fails; defaults to 30 seconds
+		 */
+		public Builder maxWait(long maxWait, TimeUnit unit ) {
+			if( maxWait < 0 ) {
+				throw new IllegalArgumentException( "maxWait cannot be negative; was: " + maxWait );
+			}
+			this.maxWaitMillis = unit.toMillis( maxWait );
+			return this;
+		}
+
+		public WilddogFlowControl build() {
+			return new WilddogFlowControl( this );
+		}
+	}
+
+}
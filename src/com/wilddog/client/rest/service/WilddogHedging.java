@@ -0,0 +1,126 @@
+package com.wilddog.client.rest.service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whether, and when, a GET that is slow to answer is sent a second time; set through
+ * {@link Wilddog.Builder#hedging(WilddogHedging)}.
+ *
+ * A hedge is sent once the first request has been outstanding for longer than the {@code percentile} of the
+ * recent GET-latencies (but at least {@code minDelay}); whichever answers first is used, and the other is
+ * cancelled. Hedges are limited by a budget: every GET earns {@code budgetRatio} of a hedge, so they add at
+ * most that fraction to the load, even when the server is slow across the board.
+ *
+ * No hedges are sent until enough latencies are known to estimate the percentile.
+ */
+public final class WilddogHedging {
+
+	/**
+	 * Never hedges; the default.
+	 */
+	public static final WilddogHedging OFF = new WilddogHedging( 0, 0, 0 );
+
+	/**
+	 * Hedges after the 95th percentile of the latencies (at least 5ms), within a budget of 5% extra requests.
+	 */
+	public static final WilddogHedging DEFAULT = new WilddogHedging( 0.95d, TimeUnit.MILLISECONDS.toNanos( 5 ), 0.05d );
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PROPERTIES & CONSTRUCTORS
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	private final double percentile;
+	private final long minDelayNanos;
+	private final double budgetRatio;
+
+	private WilddogHedging(double percentile, long minDelayNanos, double budgetRatio ) {
+		this.percentile = percentile;
+		this.minDelayNanos = minDelayNanos;
+		this.budgetRatio = budgetRatio;
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PUBLIC API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	/**
+	 * @param percentile -- of the recent latencies, after which a hedge is sent; ie: 0.95
+	 * @return a copy of this {@link WilddogHedging}, based on {@link #DEFAULT} when this is {@link #OFF}
+	 */
+	public WilddogHedging percentile(double percentile ) {
+		if( !( percentile > 0 && percentile < 1 ) ) {
+			throw new IllegalArgumentException( "percentile must be between 0 and 1; was: " + percentile );
+		}
+		WilddogHedging base = this.isEnabled() ? this : DEFAULT;
+		return new WilddogHedging( percentile, base.minDelayNanos, base.budgetRatio );
+	}
+
+	/**
+	 * @param minDelay -- the least time a request is outstanding before it is hedged
+	 * @return a copy of this {@link WilddogHedging}, based on {@link #DEFAULT} when this is {@link #OFF}
+	 */
+	public WilddogHedging minDelay(long minDelay, TimeUnit unit ) {
+		if( minDelay < 0 ) {
+			throw new IllegalArgumentException( "minDelay cannot be negative; was: " + minDelay );
+		}
+		WilddogHedging base = this.isEnabled() ? this : DEFAULT;
+		return new WilddogHedging( base.percentile, unit.toNanos( minDelay ), base.budgetRatio );
+	}
+
+	/**
+	 * @param budgetRatio -- the hedges earned per GET; ie: 0.05 adds at most 5% to the requests sent
+	 * @return a copy of this {@link WilddogHedging}, based on {@link #DEFAULT} when this is {@link #OFF}
+	 */
+	public WilddogHedging budgetRatio(double budgetRatio ) {
+		if( !( budgetRatio > 0 && budgetRatio <= 1 ) ) {
+			throw new IllegalArgumentException( "budgetRatio must be above 0 and at most 1; was: " + budgetRatio );
+		}
+		WilddogHedging base = this.isEnabled() ? this : DEFAULT;
+		return new WilddogHedging( base.percentile, base.minDelayNanos, budgetRatio );
+	}
+
+	public double getPercentile() {
+		return this.percentile;
+	}
+
+	public long getMinDelayNanos() {
+		return this.minDelayNanos;
+	}
+
+	public double getBudgetRatio() {
+		return this.budgetRatio;
+	}
+
+	public boolean isEnabled() {
+		return this.budgetRatio > 0;
+	}
+
+	@Override
+	public String toString() {
+
+		StringBuilder result = new StringBuilder();
+
+		result.append( WilddogHedging.class.getSimpleName() + "[ " );
+		if( !this.isEnabled() ) {
+			result.append( "(off) " );
+		} else {
+			result.append( "(Percentile:" ).append( this.percentile ).append( ") " )
+					.append( "(Min-delay:" ).append( TimeUnit.NANOSECONDS.toMillis( this.minDelayNanos ) ).append( "ms) " )
+					.append( "(Budget-ratio:" ).append( this.budgetRatio ).append( ") " );
+		}
+		result.append( "]" );
+
+		return result.toString();
+	}
+
+}
@@ -0,0 +1,60 @@
+package com.wilddog.client.rest.service;
+
+import com.wilddog.client.rest.service.Wilddog.WilddogRestMethod;
+
+import okhttp3.ConnectionPool;
+
+/**
+ * Receives the measurements of every request made by a {@link Wilddog}; set through
+ * {@link Wilddog.Builder#metrics(WilddogMetrics)}. {@link WilddogMetricsRecorder} aggregates them into
+ * histograms and counters, exported as snapshots and over JMX.
+ *
+ * NOTE: called on the requesting (or dispatcher) thread, once per request; implementations must be
+ * thread-safe and should not block or allocate.
+ */
+public interface WilddogMetrics {
+
+	/**
+	 * Does nothing; the default.
+	 */
+	WilddogMetrics NONE = new WilddogMetrics() {
+		@Override
+		public void onRequest(WilddogRestMethod method, String pathTemplate, int code, long latencyNanos, long bytesOut, long bytesIn ) {
+		}
+	};
+
+	/**
+	 * Called when a request completed, after any retries.
+	 *
+	 * @param pathTemplate -- the path of the request, cut to the configured depth; ie: 'users/*'
+	 * @param code -- the http status-code of the final response; 0 if no response was received
+	 * @param latencyNanos -- from sending the request to receiving the final response-headers
+	 * @param bytesOut -- the size of the request-body; -1 if unknown
+	 * @param bytesIn -- the size of the response-body, as announced by the server; -1 if unknown
+	 */
+	void onRequest(WilddogRestMethod method, String pathTemplate, int code, long latencyNanos, long bytesOut, long bytesIn );
+
+	/**
+	 * Called before a request is sent again by the retry-policy.
+	 */
+	default void onRetry(WilddogRestMethod method, String pathTemplate ) {
+	}
+
+	/**
+	 * Called when a request-body was gzip-compressed before being sent; see
+	 * {@link Wilddog.Builder#gzipRequests(int)}.
+	 *
+	 * @param bytesBefore -- the size of the request-body as built
+	 * @param bytesAfter -- the size of the request-body as sent
+	 */
+	default void onCompression(WilddogRestMethod method, String pathTemplate, long bytesBefore, long bytesAfter ) {
+	}
+
+	/**
+	 * Called once, when the {@link Wilddog} is built, with its connection-pool; to be read whenever the metrics
+	 * are, as counting its connections takes the pool's lock.
+	 */
+	default void onConnectionPool(ConnectionPool pool ) {
+	}
+
+}
@@ -0,0 +1,482 @@
+package com.wilddog.client.rest.service;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.ObjectName;
+
+import com.wilddog.client.rest.error.WilddogException;
+import com.wilddog.client.rest.service.Wilddog.WilddogRestMethod;
+
+import okhttp3.ConnectionPool;
+import org.apache.log4j.Logger;
+
+/**
+ * A {@link WilddogMetrics} that aggregates, per method and path-template, a latency-histogram, the counts of
+ * every status-code, the retries, and the bytes sent and received; read through {@link #snapshot()} or over
+ * JMX (see {@link #registerMBean(String)}).
+ *
+ * The histograms are log-linear, like HdrHistogram: 16 linear sub-buckets per power of two, so every
+ * percentile is exact to within ~6%, from 1 microsecond up to days. Once a method/path-template has been
+ * seen, recording it only increments atomic counters; nothing is allocated or locked.
+ */
+public class WilddogMetricsRecorder implements WilddogMetrics, WilddogMetricsRecorderMBean {
+
+	protected static final Logger 			LOGGER 					= Logger.getRootLogger();
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PROPERTIES & CONSTRUCTORS
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	/* NOTE: one map per method, indexed by ordinal, so a lookup needs no composite key */
+	private final List<ConcurrentMap<String, Stats>> stats;
+	private final Stats total = new Stats();
+
+	// NOTE: of the last Wilddog built with this recorder
+	private volatile ConnectionPool pool = null;
+
+	public WilddogMetricsRecorder() {
+		List<ConcurrentMap<String, Stats>> stats = new ArrayList<ConcurrentMap<String, Stats>>();
+		for( int i = 0; i < WilddogRestMethod.values().length; i++ ) {
+			stats.add( new ConcurrentHashMap<String, Stats>() );
+		}
+		this.stats = Collections.unmodifiableList( stats );
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PUBLIC API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	@Override
+	public void onRequest(WilddogRestMethod method, String pathTemplate, int code, long latencyNanos, long bytesOut, long bytesIn ) {
+		this.total.record( code, latencyNanos, bytesOut, bytesIn );
+		this.statsOf( method, pathTemplate ).record( code, latencyNanos, bytesOut, bytesIn );
+	}
+
+	@Override
+	public void onRetry(WilddogRestMethod method, String pathTemplate ) {
+		this.total.retries.incrementAndGet();
+		this.statsOf( method, pathTemplate ).retries.incrementAndGet();
+	}
+
+	@Override
+	public void onCompression(WilddogRestMethod method, String pathTemplate, long bytesBefore, long bytesAfter ) {
+		this.total.bytesSaved.addAndGet( bytesBefore - bytesAfter );
+		this.statsOf( method, pathTemplate ).bytesSaved.addAndGet( bytesBefore - bytesAfter );
+	}
+
+	@Override
+	public void onConnectionPool(ConnectionPool pool ) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Returns a point-in-time copy of the metrics of every method and path-template seen so far.
+	 *
+	 * @return the snapshots, ordered by method and path-template
+	 */
+	public List<Snapshot> snapshot() {
+		List<Snapshot> result = new ArrayList<Snapshot>();
+		for( WilddogRestMethod method : WilddogRestMethod.values() ) {
+			Map<String, Stats> sorted = new TreeMap<String, Stats>( this.stats.get( method.ordinal() ) );
+			for( Map.Entry<String, Stats> entry : sorted.entrySet() ) {
+				result.add( entry.getValue().snapshot( method, entry.getKey() ) );
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a point-in-time copy of the metrics over all methods and path-templates.
+	 */
+	public Snapshot totals() {
+		return this.total.snapshot( null, null );
+	}
+
+	/**
+	 * Registers this recorder with the platform MBean-server.
+	 *
+	 * @param name -- the object-name, ie: 'com.wilddog:type=WilddogMetrics,name=main'
+	 * @throws {@link WilddogException} if the name is invalid or already taken
+	 */
+	public void registerMBean(String name ) throws WilddogException {
+		try {
+
+			ManagementFactory.getPlatformMBeanServer().registerMBean( this, new ObjectName( name ) );
+
+		} catch( Throwable t ) {
+
+			String msg = "unable to register metrics as MBean '" + name + "'";
+			LOGGER.error( msg );
+			throw new WilddogException( msg, t );
+		}
+	}
+
+	@Override
+	public long getRequestCount() {
+		return this.total.requests.get();
+	}
+
+	@Override
+	public long getErrorCount() {
+		return this.total.errors.get();
+	}
+
+	@Override
+	public long getRetryCount() {
+		return this.total.retries.get();
+	}
+
+	@Override
+	public long getBytesOut() {
+		return this.total.bytesOut.get();
+	}
+
+	@Override
+	public long getBytesIn() {
+		return this.total.bytesIn.get();
+	}
+
+	@Override
+	public long getBytesSaved() {
+		return this.total.bytesSaved.get();
+	}
+
+	@Override
+	public double getLatencyP50Millis() {
+		return this.total.latency.percentileMillis( 50 );
+	}
+
+	@Override
+	public double getLatencyP99Millis() {
+		return this.total.latency.percentileMillis( 99 );
+	}
+
+	@Override
+	public double getLatencyP999Millis() {
+		return this.total.latency.percentileMillis( 99.9 );
+	}
+
+	@Override
+	public double getLatencyMaxMillis() {
+		return this.total.latency.percentileMillis( 100 );
+	}
+
+	@Override
+	public int getConnectionCount() {
+		ConnectionPool pool = this.pool;
+		return pool == null ? 0 : pool.connectionCount();
+	}
+
+	@Override
+	public int getIdleConnectionCount() {
+		ConnectionPool pool = this.pool;
+		return pool == null ? 0 : pool.idleConnectionCount();
+	}
+
+	@Override
+	public String[] getSnapshot() {
+		List<Snapshot> snapshots = this.snapshot();
+		String[] result = new String[snapshots.size()];
+		for( int i = 0; i < result.length; i++ ) {
+			result[i] = snapshots.get( i ).toString();
+		}
+		return result;
+	}
+
+	/**
+	 * Forgets everything recorded so far.
+	 */
+	@Override
+	public void reset() {
+		for( ConcurrentMap<String, Stats> map : this.stats ) {
+			map.clear();
+		}
+		this.total.clear();
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PRIVATE API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	private Stats statsOf(WilddogRestMethod method, String pathTemplate ) {
+		ConcurrentMap<String, Stats> map = this.stats.get( method.ordinal() );
+		Stats stats = map.get( pathTemplate );
+		if( stats == null ) {
+			stats = new Stats();
+			Stats existing = map.putIfAbsent( pathTemplate, stats );
+			if( existing != null ) {
+				stats = existing;
+			}
+		}
+		return stats;
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// INTERNAL CLASSES
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	/**
+	 * The metrics of one method and path-template, as of {@link WilddogMetricsRecorder#snapshot()}.
+	 */
+	public static class Snapshot {
+
+		private final WilddogRestMethod method;
+		private final String pathTemplate;
+		private final long requests;
+		private final long errors;
+		private final long retries;
+		private final long bytesOut;
+		private final long bytesIn;
+		private final long bytesSaved;
+		private final Map<Integer, Long> codes;
+		private final Histogram latency;
+
+		private Snapshot(WilddogRestMethod method, String pathTemplate, Stats stats ) {
+			this.method = method;
+			this.pathTemplate = pathTemplate;
+			this.requests = stats.requests.get();
+			this.errors = stats.errors.get();
+			this.retries = stats.retries.get();
+			this.bytesOut = stats.bytesOut.get();
+			this.bytesIn = stats.bytesIn.get();
+			this.bytesSaved = stats.bytesSaved.get();
+			Map<Integer, Long> codes = new TreeMap<Integer, Long>();
+			for( int code = 0; code < stats.codes.length(); code++ ) {
+				long count = stats.codes.get( code );
+				if( count > 0 ) {
+					codes.put( code, count );
+				}
+			}
+			this.codes = Collections.unmodifiableMap( codes );
+			this.latency = stats.latency.copy();
+		}
+
+		/**
+		 * @return the method; null for the totals
+		 */
+		public WilddogRestMethod getMethod() {
+			return this.method;
+		}
+
+		/**
+		 * @return the path-template; null for the totals
+		 */
+		public String getPathTemplate() {
+			return this.pathTemplate;
+		}
+
+		public long getRequestCount() {
+			return this.requests;
+		}
+
+		/**
+		 * @return the requests that got no response, or a response with a status-code of 400 or more
+		 */
+		public long getErrorCount() {
+			return this.errors;
+		}
+
+		public long getRetryCount() {
+			return this.retries;
+		}
+
+		public long getBytesOut() {
+			return this.bytesOut;
+		}
+
+		public long getBytesIn() {
+			return this.bytesIn;
+		}
+
+		/**
+		 * @return the request-bytes that gzip-compression kept off the wire
+		 */
+		public long getBytesSaved() {
+			return this.bytesSaved;
+		}
+
+		/**
+		 * @return the number of responses per status-code; code 0 counts the requests that got no response
+		 */
+		public Map<Integer, Long> getCodeCounts() {
+			return this.codes;
+		}
+
+		/**
+		 * @param percentile -- between 0 and 100
+		 * @return the latency below which the percentile of requests completed, in milliseconds
+		 */
+		public double getLatencyMillis(double percentile ) {
+			return this.latency.percentileMillis( percentile );
+		}
+
+		@Override
+		public String toString() {
+
+			StringBuilder result = new StringBuilder();
+
+			result.append( this.method == null ? "*" : this.method.name() ).append( " " )
+					.append( this.pathTemplate == null ? "*" : "/" + this.pathTemplate ).append( " " )
+					.append( "(Requests:" ).append( this.requests ).append( ") " )
+					.append( "(Errors:" ).append( this.errors ).append( ") " )
+					.append( "(Retries:" ).append( this.retries ).append( ") " )
+					.append( "(Codes:" ).append( this.codes ).append( ") " )
+					.append( "(Bytes-out:" ).append( this.bytesOut ).append( ") " )
+					.append( "(Bytes-in:" ).append( this.bytesIn ).append( ") " )
+					.append( "(Bytes-saved:" ).append( this.bytesSaved ).append( ") " )
+					.append( String.format( "(Latency-ms p50:%.2f p99:%.2f p999:%.2f max:%.2f)",
+							this.getLatencyMillis( 50 ), this.getLatencyMillis( 99 ), this.getLatencyMillis( 99.9 ), this.getLatencyMillis( 100 ) ) );
+
+			return result.toString();
+		}
+	}
+
+	private static class Stats {
+
+		private final AtomicLong requests = new AtomicLong();
+		private final AtomicLong errors = new AtomicLong();
+		private final AtomicLong retries = new AtomicLong();
+		private final AtomicLong bytesOut = new AtomicLong();
+		private final AtomicLong bytesIn = new AtomicLong();
+		private final AtomicLong bytesSaved = new AtomicLong();
+		private final AtomicLongArray codes = new AtomicLongArray( 600 );
+		private final Histogram latency = new Histogram();
+
+		void record(int code, long latencyNanos, long bytesOut, long bytesIn ) {
+			this.requests.incrementAndGet();
+			if( code == 0 || code >= 400 ) {
+				this.errors.incrementAndGet();
+			}
+			if( code >= 0 && code < this.codes.length() ) {
+				this.codes.incrementAndGet( code );
+			}
+			if( bytesOut > 0 ) {
+				this.bytesOut.addAndGet( bytesOut );
+			}
+			if( bytesIn > 0 ) {
+				this.bytesIn.addAndGet( bytesIn );
+			}
+			this.latency.record( TimeUnit.NANOSECONDS.toMicros( latencyNanos ) );
+		}
+
+		Snapshot snapshot(WilddogRestMethod method, String pathTemplate ) {
+			return new Snapshot( method, pathTemplate, this );
+		}
+
+		void clear() {
+			this.requests.set( 0 );
+			this.errors.set( 0 );
+			this.retries.set( 0 );
+			this.bytesOut.set( 0 );
+			this.bytesIn.set( 0 );
+			this.bytesSaved.set( 0 );
+			for( int i = 0; i < this.codes.length(); i++ ) {
+				this.codes.set( i, 0 );
+			}
+			this.latency.clear();
+		}
+	}
+
+	/**
+	 * A log-linear histogram of microsecond-values: values below 16 get a bucket each; above that, every power
+	 * of two is split into 16 equal buckets.
+	 */
+	static class Histogram {
+
+		private static final int SUB_BUCKET_BITS = 4;
+		private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+		private static final int MAX_EXPONENT = 40;
+
+		private final AtomicLongArray counts = new AtomicLongArray( ( MAX_EXPONENT - SUB_BUCKET_BITS + 2 ) * SUB_BUCKETS );
+
+		void record(long micros ) {
+			this.counts.incrementAndGet( indexOf( Math.max( 0, micros ) ) );
+		}
+
+		Histogram copy() {
+			Histogram result = new Histogram();
+			for( int i = 0; i < this.counts.length(); i++ ) {
+				result.counts.set( i, this.counts.get( i ) );
+			}
+			return result;
+		}
+
+		void clear() {
+			for( int i = 0; i < this.counts.length(); i++ ) {
+				this.counts.set( i, 0 );
+			}
+		}
+
+		double percentileMillis(double percentile ) {
+			long total = 0;
+			for( int i = 0; i < this.counts.length(); i++ ) {
+				total += this.counts.get( i );
+			}
+			if( total == 0 ) {
+				return 0;
+			}
+			long rank = Math.max( 1, (long) Math.ceil( total * percentile / 100d ) );
+			long seen = 0;
+			for( int i = 0; i < this.counts.length(); i++ ) {
+				seen += this.counts.get( i );
+				if( seen >= rank ) {
+					// the upper bound of the bucket, so a percentile is never under-reported
+					return ( lowerBoundOf( i + 1 ) - 1 ) / 1000d;
+				}
+			}
+			return lowerBoundOf( this.counts.length() ) / 1000d;
+		}
+
+		static int indexOf(long value ) {
+			if( value < SUB_BUCKETS ) {
+				return (int) value;
+			}
+			int exponent = 63 - Long.numberOfLeadingZeros( value );
+			if( exponent > MAX_EXPONENT ) {
+				return ( MAX_EXPONENT - SUB_BUCKET_BITS + 2 ) * SUB_BUCKETS - 1;
+			}
+			int subBucket = (int) ( ( value >>> ( exponent - SUB_BUCKET_BITS ) ) & ( SUB_BUCKETS - 1 ) );
+			return ( exponent - SUB_BUCKET_BITS + 1 ) * SUB_BUCKETS + subBucket;
+		}
+
+		static long lowerBoundOf(int index ) {
+			if( index < SUB_BUCKETS ) {
+				return index;
+			}
+			int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+			int subBucket = index % SUB_BUCKETS;
+			return (long) ( SUB_BUCKETS + subBucket ) << ( exponent - SUB_BUCKET_BITS );
+		}
+	}
+
+}
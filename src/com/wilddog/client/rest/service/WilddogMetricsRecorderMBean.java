@@ -0,0 +1,37 @@
+package com.wilddog.client.rest.service;
+
+/**
+ * The JMX view of a {@link WilddogMetricsRecorder}: totals over all methods and paths, plus one line per
+ * method and path-template.
+ */
+public interface WilddogMetricsRecorderMBean {
+
+	long getRequestCount();
+
+	long getErrorCount();
+
+	long getRetryCount();
+
+	long getBytesOut();
+
+	long getBytesIn();
+
+	long getBytesSaved();
+
+	double getLatencyP50Millis();
+
+	double getLatencyP99Millis();
+
+	double getLatencyP999Millis();
+
+	double getLatencyMaxMillis();
+
+	int getConnectionCount();
+
+	int getIdleConnectionCount();
+
+	String[] getSnapshot();
+
+	void reset();
+
+}
@@ -0,0 +1,271 @@
+package com.wilddog.client.rest.service;
+
+import java.io.Closeable;
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+import com.wilddog.client.rest.error.WilddogException;
+import com.wilddog.client.rest.model.WilddogQuery;
+import com.wilddog.client.rest.model.WilddogResponse;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Iterates over the children of a path in key-order, one page of {@code pageSize} children at a time; created
+ * by {@link Wilddog#pager(String, int)} and its overloads.
+ *
+ * Every page is a GET with {@code orderBy="$key"}, {@code startAt} the last key of the previous page and
+ * {@code limitToFirst}; the next {@code prefetchPages} pages are requested while the current one is being
+ * consumed, so at most {@code 1 + prefetchPages} pages are held in memory, whatever the size of the path.
+ *
+ * A page that cannot be fetched ends the iteration with an {@link IllegalStateException}, caused by the
+ * {@link WilddogException} of the request.
+ *
+ * NOTE: not thread-safe; a pager is meant to be consumed by a single thread.
+ */
+public class WilddogPager<T> implements Iterator<Map.Entry<String, T>>, Closeable {
+
+	protected static final Logger 			LOGGER 					= Logger.getRootLogger();
+
+	/**
+	 * The order of keys on the server: keys that parse as 32-bit integers first, numerically; then the other
+	 * keys, lexicographically.
+	 */
+	static final Comparator<String> KEY_ORDER = new Comparator<String>() {
+		@Override
+		public int compare(String a, String b ) {
+			Integer x = asInteger( a );
+			Integer y = asInteger( b );
+			if( x != null && y != null ) {
+				return x.compareTo( y );
+			}
+			if( x != null || y != null ) {
+				return x != null ? -1 : 1;
+			}
+			return a.compareTo( b );
+		}
+	};
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PROPERTIES & CONSTRUCTORS
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	private final Wilddog wilddog;
+	private final String path;
+	private final int pageSize;
+	private final int prefetchPages;
+	private final Function<Object, T> converter;
+
+	private final ArrayDeque<CompletableFuture<Page<T>>> ahead = new ArrayDeque<CompletableFuture<Page<T>>>();
+	private CompletableFuture<Page<T>> last;
+	private Iterator<Map.Entry<String, T>> current = Collections.<Map.Entry<String, T>>emptyList().iterator();
+	private boolean exhausted = false;
+	private boolean closed = false;
+
+	WilddogPager(Wilddog wilddog, String path, int pageSize, int prefetchPages, Function<Object, T> converter ) {
+		this.wilddog = wilddog;
+		this.path = path;
+		this.pageSize = pageSize;
+		this.prefetchPages = prefetchPages;
+		this.converter = converter;
+
+		this.last = this.fetch( null );
+		this.ahead.add( this.last );
+		this.prefetch( 1 + prefetchPages );
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PUBLIC API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	/**
+	 * @throws IllegalStateException if the next page could not be fetched
+	 */
+	@Override
+	public boolean hasNext() {
+		while( !this.current.hasNext() ) {
+			if( this.exhausted || this.closed ) {
+				return false;
+			}
+			if( this.ahead.isEmpty() ) {
+				this.prefetch( 1 );
+			}
+			Page<T> page = this.await( this.ahead.poll() );
+			this.prefetch( this.prefetchPages );
+			this.current = page.entries.iterator();
+			this.exhausted = page.last;
+		}
+		return true;
+	}
+
+	/**
+	 * @throws IllegalStateException if the next page could not be fetched
+	 */
+	@Override
+	public Map.Entry<String, T> next() {
+		if( !this.hasNext() ) {
+			throw new NoSuchElementException();
+		}
+		return this.current.next();
+	}
+
+	/**
+	 * Drops the prefetched pages; the iteration ends after the entries already handed out.
+	 */
+	@Override
+	public void close() {
+		this.closed = true;
+		for( CompletableFuture<Page<T>> page : this.ahead ) {
+			page.cancel( true );
+		}
+		this.ahead.clear();
+		this.current = Collections.<Map.Entry<String, T>>emptyList().iterator();
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PRIVATE API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	/**
+	 * Chains requests for pages until the number of them ahead of the current one reaches the capacity.
+	 */
+	private void prefetch(int capacity ) {
+		while( !this.closed && this.ahead.size() < capacity ) {
+			// ie: once the newest page is in, fetch the one after its last key; unless it was the last page
+			this.last = this.last.thenCompose( new Function<Page<T>, CompletableFuture<Page<T>>>() {
+				@Override
+				public CompletableFuture<Page<T>> apply(Page<T> page ) {
+					return page.last
+							? CompletableFuture.completedFuture( new Page<T>( Collections.<Map.Entry<String, T>>emptyList(), null, true ) )
+							: WilddogPager.this.fetch( page.lastKey );
+				}
+			});
+			this.ahead.add( this.last );
+		}
+	}
+
+	/**
+	 * @param after -- the last key of the previous page; null for the first page
+	 */
+	private CompletableFuture<Page<T>> fetch(final String after ) {
+
+		WilddogQuery query = new WilddogQuery().orderByKey();
+		query = after == null
+				// startAt is inclusive, so one more than a page is fetched to make up for the repeated key
+				? query.limitToFirst( this.pageSize )
+				: query.startAt( after ).limitToFirst( this.pageSize + 1 );
+
+		return this.wilddog.getAsync( this.path, query ).thenApply( new Function<WilddogResponse, Page<T>>() {
+			@Override
+			public Page<T> apply(WilddogResponse response ) {
+				if( !response.getSuccess() ) {
+					String msg = "unable to fetch page after '" + after + "' @ " + WilddogPager.this.path + "; code was " + response.getCode();
+					LOGGER.error( msg );
+					throw new CompletionException( new WilddogException( msg ) );
+				}
+				return WilddogPager.this.toPage( response.getBody(), after );
+			}
+		});
+	}
+
+	private Page<T> toPage(Map<String, Object> body, String after ) {
+
+		// json-objects carry no order, so the page is sorted here
+		List<String> keys = new ArrayList<String>( body.keySet() );
+		Collections.sort( keys, KEY_ORDER );
+		if( after != null && !keys.isEmpty() && keys.get( 0 ).equals( after ) ) {
+			keys.remove( 0 );
+		}
+
+		List<Map.Entry<String, T>> entries = new ArrayList<Map.Entry<String, T>>( keys.size() );
+		for( String key : keys ) {
+			entries.add( new AbstractMap.SimpleImmutableEntry<String, T>( key, this.converter.apply( body.get( key ) ) ) );
+		}
+		String lastKey = keys.isEmpty() ? after : keys.get( keys.size() - 1 );
+		return new Page<T>( entries, lastKey, entries.size() < this.pageSize );
+	}
+
+	private Page<T> await(CompletableFuture<Page<T>> page ) {
+		try {
+			return page.get();
+		} catch( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException( new WilddogException( "interrupted while waiting for a page @ " + this.path, e ) );
+		} catch( CancellationException e ) {
+			throw new IllegalStateException( new WilddogException( "page @ " + this.path + " was cancelled", e ) );
+		} catch( ExecutionException e ) {
+			this.exhausted = true;
+			Throwable cause = e.getCause();
+			throw new IllegalStateException( cause instanceof WilddogException
+					? cause
+					: new WilddogException( "unable to fetch page @ " + this.path, cause ) );
+		}
+	}
+
+	private static Integer asInteger(String key ) {
+		int length = key.length();
+		if( length == 0 || length > 11 ) {
+			return null;
+		}
+		// no leading zeros (or '+'), as "01" is a string-key on the server
+		char first = key.charAt( 0 );
+		if( first == '+' || ( first == '0' && length > 1 ) || ( first == '-' && ( length == 1 || key.charAt( 1 ) == '0' ) ) ) {
+			return null;
+		}
+		try {
+			return Integer.valueOf( key );
+		} catch( NumberFormatException e ) {
+			return null;
+		}
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// INTERNAL CLASSES
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	private static class Page<T> {
+
+		private final List<Map.Entry<String, T>> entries;
+		private final String lastKey;
+		private final boolean last;
+
+		Page(List<Map.Entry<String, T>> entries, String lastKey, boolean last ) {
+			this.entries = entries;
+			this.lastKey = lastKey;
+			this.last = last;
+		}
+	}
+
+}
@@ -0,0 +1,233 @@
+package com.wilddog.client.rest.service;
+
+import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.wilddog.client.rest.service.Wilddog.WilddogRestMethod;
+
+import okhttp3.Response;
+
+/**
+ * Decides whether, and after how long, a failed request is sent again; set through
+ * {@link Wilddog.Builder#retryPolicy(WilddogRetryPolicy)}.
+ *
+ * Only idempotent methods are replayed (see {@link WilddogRestMethod#isIdempotent()}), and only after a
+ * connection-failure or a 429, 500, 502, 503 or 504 response. The delay grows exponentially from
+ * {@code baseDelay} up to {@code maxDelay}, with full jitter; a {@code Retry-After} header from the server is
+ * honored as the minimum delay, and a request is not retried at all when the server asks for more than
+ * {@code maxDelay}.
+ *
+ * On top of that, retries are limited by a budget: every request earns {@code budgetRatio} of a retry, and
+ * {@code minRetriesPerSecond} are always allowed; so when the server is down, retries add at most that
+ * fraction to the load instead of multiplying it.
+ */
+public final class WilddogRetryPolicy {
+
+	/**
+	 * Never retries; every failure is reported right away.
+	 */
+	public static final WilddogRetryPolicy NONE = new Builder().maxAttempts( 1 ).build();
+
+	/**
+	 * Up to 3 attempts, 100ms to 5s apart, within a budget of 10% extra requests (at least 10 retries per second).
+	 */
+	public static final WilddogRetryPolicy DEFAULT = new Builder().build();
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PROPERTIES & CONSTRUCTORS
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	private final int maxAttempts;
+	private final long baseDelayMillis;
+	private final long maxDelayMillis;
+	private final double budgetRatio;
+	private final int minRetriesPerSecond;
+
+	private WilddogRetryPolicy(Builder builder ) {
+		this.maxAttempts = builder.maxAttempts;
+		this.baseDelayMillis = builder.baseDelayMillis;
+		this.maxDelayMillis = builder.maxDelayMillis;
+		this.budgetRatio = builder.budgetRatio;
+		this.minRetriesPerSecond = builder.minRetriesPerSecond;
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PUBLIC API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	public int getMaxAttempts() {
+		return this.maxAttempts;
+	}
+
+	public long getBaseDelayMillis() {
+		return this.baseDelayMillis;
+	}
+
+	public long getMaxDelayMillis() {
+		return this.maxDelayMillis;
+	}
+
+	public double getBudgetRatio() {
+		return this.budgetRatio;
+	}
+
+	public int getMinRetriesPerSecond() {
+		return this.minRetriesPerSecond;
+	}
+
+	/**
+	 * @param method -- the http-method of the request, ie: 'GET'
+	 * @return whether a request of that method may be sent more than once
+	 */
+	public boolean isReplayable(String method ) {
+		for( WilddogRestMethod restMethod : WilddogRestMethod.values() ) {
+			if( restMethod.name().equals( method ) ) {
+				return restMethod.isIdempotent();
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return whether the response-code signals a transient failure
+	 */
+	public boolean isRetryable(int code ) {
+		return code == 429 || code == 500 || code == 502 || code == 503 || code == 504;
+	}
+
+	/**
+	 * Returns how long to wait before the next attempt.
+	 *
+	 * @param attempt -- the number of the attempt that just failed, starting at 1
+	 * @param response -- the failed response; null after a connection-failure
+	 * @return the delay in milliseconds, or -1 if no further attempt should be made
+	 */
+	public long delayMillis(int attempt, Response response ) {
+
+		if( attempt >= this.maxAttempts ) {
+			return -1;
+		}
+
+		// full jitter over an exponentially growing window
+		long window = Math.min( this.maxDelayMillis, this.baseDelayMillis << Math.min( attempt - 1, 30 ) );
+		long delay = ThreadLocalRandom.current().nextLong( window + 1 );
+
+		long retryAfter = response == null ? -1 : retryAfterMillis( response );
+		if( retryAfter > this.maxDelayMillis ) {
+			return -1;
+		}
+		return Math.max( delay, retryAfter );
+	}
+
+	@Override
+	public String toString() {
+
+		StringBuilder result = new StringBuilder();
+
+		result.append( WilddogRetryPolicy.class.getSimpleName() + "[ " )
+				.append( "(Max-attempts:" ).append( this.maxAttempts ).append( ") " )
+				.append( "(Base-delay:" ).append( this.baseDelayMillis ).append( "ms) " )
+				.append( "(Max-delay:" ).append( this.maxDelayMillis ).append( "ms) " )
+				.append( "(Budget-ratio:" ).append( this.budgetRatio ).append( ") " )
+				.append( "(Min-retries-per-second:" ).append( this.minRetriesPerSecond ).append( ") " )
+				.append( "]" );
+
+		return result.toString();
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PRIVATE API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	/**
+	 * @return the delay asked for by a Retry-After header (delta-seconds or http-date), or -1 if absent/invalid
+	 */
+	static long retryAfterMillis(Response response ) {
+		String retryAfter = response.header( "Retry-After" );
+		if( retryAfter == null || retryAfter.trim().isEmpty() ) {
+			return -1;
+		}
+		try {
+			return TimeUnit.SECONDS.toMillis( Long.parseLong( retryAfter.trim() ) );
+		} catch( NumberFormatException e ) {
+			Date date = response.headers().getDate( "Retry-After" );
+			return date == null ? -1 : Math.max( 0, date.getTime() - System.currentTimeMillis() );
+		}
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// INTERNAL CLASSES
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	public static class Builder {
+
+		private int maxAttempts = 3;
+		private long baseDelayMillis = 100;
+		private long maxDelayMillis = TimeUnit.SECONDS.toMillis( 5 );
+		private double budgetRatio = 0.1;
+		private int minRetriesPerSecond = 10;
+
+		/**
+		 * @param maxAttempts -- the total number of attempts, including the first; 1 disables retries
+		 */
+		public Builder maxAttempts(int maxAttempts ) {
+			if( maxAttempts < 1 ) {
+				throw new IllegalArgumentException( "maxAttempts must be at least 1; was: " + maxAttempts );
+			}
+			this.maxAttempts = maxAttempts;
+			return this;
+		}
+
+		/**
+		 * @param baseDelay -- the upper bound of the (jittered) delay before the first retry; doubled for every next one
+		 * @param maxDelay -- the upper bound of any delay; also the longest Retry-After that is waited for
+		 */
+		public Builder backoff(long baseDelay, long maxDelay, TimeUnit unit ) {
+			if( baseDelay < 0 || maxDelay < baseDelay ) {
+				throw new IllegalArgumentException( "expected 0 <= baseDelay <= maxDelay; were: " + baseDelay + ", " + maxDelay );
+			}
+			this.baseDelayMillis = unit.toMillis( baseDelay );
+			this.maxDelayMillis = unit.toMillis( maxDelay );
+			return this;
+		}
+
+		/**
+		 * @param budgetRatio -- the retries earned per request, ie: 0.1 allows 10% extra requests
+		 * @param minRetriesPerSecond -- retries allowed regardless of the number of requests
+		 */
+		public Builder budget(double budgetRatio, int minRetriesPerSecond ) {
+			if( budgetRatio < 0 || minRetriesPerSecond < 0 ) {
+				throw new IllegalArgumentException( "budget cannot be negative; was: " + budgetRatio + ", " + minRetriesPerSecond );
+			}
+			this.budgetRatio = budgetRatio;
+			this.minRetriesPerSecond = minRetriesPerSecond;
+			return this;
+		}
+
+		public WilddogRetryPolicy build() {
+			return new WilddogRetryPolicy( this );
+		}
+	}
+
+}
@@ -0,0 +1,99 @@
+package com.wilddog.client.rest.service;
+
+/**
+ * Which requests are traced, ie: logged with their method, url, code, latency and payload-excerpts; set
+ * through {@link Wilddog.Builder#tracing(WilddogTracing)}.
+ *
+ * Traces go to the INFO level, with the auth-token redacted and payloads cut to {@code maxPayloadLength}
+ * characters. Nothing is formatted for requests that are not traced, or while INFO is disabled.
+ */
+public final class WilddogTracing {
+
+	/**
+	 * Traces nothing; the default.
+	 */
+	public static final WilddogTracing OFF = new WilddogTracing( 0, 0 );
+
+	/**
+	 * Traces every request, with payloads cut to 256 characters.
+	 */
+	public static final WilddogTracing FULL = new WilddogTracing( 1, 256 );
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PROPERTIES & CONSTRUCTORS
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	private final int sampleRate;
+	private final int maxPayloadLength;
+
+	private WilddogTracing(int sampleRate, int maxPayloadLength ) {
+		this.sampleRate = sampleRate;
+		this.maxPayloadLength = maxPayloadLength;
+	}
+
+	/**
+	 * @param sampleRate -- traces one in every sampleRate requests; 1 traces all of them
+	 * @return a {@link WilddogTracing} with payloads cut to 256 characters
+	 */
+	public static WilddogTracing sampled(int sampleRate ) {
+		if( sampleRate < 1 ) {
+			throw new IllegalArgumentException( "sampleRate must be at least 1; was: " + sampleRate );
+		}
+		return new WilddogTracing( sampleRate, FULL.maxPayloadLength );
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PUBLIC API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	/**
+	 * @param maxPayloadLength -- the number of characters of the request- and response-body that are traced;
+	 * 			0 traces no payloads at all
+	 * @return a copy of this {@link WilddogTracing}
+	 */
+	public WilddogTracing maxPayloadLength(int maxPayloadLength ) {
+		if( maxPayloadLength < 0 ) {
+			throw new IllegalArgumentException( "maxPayloadLength cannot be negative; was: " + maxPayloadLength );
+		}
+		return new WilddogTracing( this.sampleRate, maxPayloadLength );
+	}
+
+	/**
+	 * @return 0 when off; otherwise, the N of tracing one in every N requests
+	 */
+	public int getSampleRate() {
+		return this.sampleRate;
+	}
+
+	public int getMaxPayloadLength() {
+		return this.maxPayloadLength;
+	}
+
+	public boolean isEnabled() {
+		return this.sampleRate > 0;
+	}
+
+	@Override
+	public String toString() {
+
+		StringBuilder result = new StringBuilder();
+
+		result.append( WilddogTracing.class.getSimpleName() + "[ " )
+				.append( "(Sample-rate:" ).append( this.sampleRate == 0 ? "off" : "1/" + this.sampleRate ).append( ") " )
+				.append( "(Max-payload-length:" ).append( this.maxPayloadLength ).append( ") " )
+				.append( "]" );
+
+		return result.toString();
+	}
+
+}
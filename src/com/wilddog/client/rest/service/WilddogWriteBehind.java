@@ -0,0 +1,776 @@
+package com.wilddog.client.rest.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import com.wilddog.client.rest.error.JacksonUtilityException;
+import com.wilddog.client.rest.error.WilddogException;
+import com.wilddog.client.rest.model.WilddogResponse;
+import com.wilddog.client.rest.util.LoggingUtility;
+
+import org.apache.log4j.Logger;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+
+/**
+ * A write-behind queue for fire-and-forget PUTs and PATCHs; created by {@link Wilddog#writeBehind(Path)} or
+ * {@link Wilddog#writeBehind(Path, int, int)}.
+ *
+ * A write is appended to a memory-mapped journal and queued in memory, and the caller returns right away. A
+ * single background thread drains the queue in order, sending up to {@code maxBatch} writes at a time as one
+ * multi-path PATCH (see {@link WilddogBatch}); transient failures (408, 429, 5xx and failures to connect) are
+ * retried with back-off, so the writes to any path reach the server in the order they were made. A write the
+ * server rejects with any other 4xx is logged and dropped; except for 401 and 403, which stop the queue, as
+ * no write would be accepted: the writes are kept in the journal, and new ones are refused.
+ *
+ * Writes that were not acknowledged by the server survive a restart of the process: opening the same journal
+ * again replays them before anything else. The journal is compacted in the background once it is half full;
+ * a writer only waits for that when it outruns the compaction. A journal is locked, through a {@code .lock}
+ * file next to it, for as long as its queue is open, so a second queue cannot open it.
+ *
+ * NOTE: the journal lives in the page-cache, so it survives the process but not the machine crashing before
+ * the kernel writes it out; {@link #close()} forces it to disk.
+ */
+public class WilddogWriteBehind implements Closeable {
+
+	protected static final Logger 			LOGGER 					= Logger.getRootLogger();
+
+	static final int JOURNAL_MAGIC									= 0x57444a31; // "WDJ1"
+	static final long MIN_JOURNAL_BYTES								= 16L * 1024 * 1024;
+	static final long MIN_BACKOFF_MILLIS							= 100;
+	static final long MAX_BACKOFF_MILLIS							= TimeUnit.SECONDS.toMillis( 30 );
+
+	/* NOTE: the journal starts with the magic and the sequence-number of the last acknowledged write, followed
+	 * by records of [int length][byte kind][long seq][int path-length][path][json]; the length is written last,
+	 * so a record torn by a crash is never read back.
+	 */
+	private static final int ACKED_OFFSET							= 4;
+	private static final int HEADER_BYTES							= 12;
+	private static final byte PUT									= 1;
+	private static final byte PATCH									= 2;
+
+	private static final Charset UTF_8								= Charset.forName( "UTF-8" );
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PROPERTIES & CONSTRUCTORS
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	private final Wilddog wilddog;
+	private final Path journal;
+	private final int maxPending;
+	private final int maxBatch;
+	private final FileLock lock;
+	private final Thread drainer;
+	private final ExecutorService compactor;
+
+	/* NOTE: guarded by 'this' */
+	private final ArrayDeque<Write> pending = new ArrayDeque<Write>();
+	private MappedByteBuffer buffer;
+	private int position;
+	private long nextSeq;
+	private boolean closed = false;
+	private boolean compacting = false;
+	private int compactionReserve = 0;
+	private IOException compactionFailure = null;
+	private WilddogException refusal = null;
+
+	WilddogWriteBehind(Wilddog wilddog, final Path journal, int maxPending, int maxBatch ) throws WilddogException {
+		this.wilddog = wilddog;
+		this.journal = journal;
+		this.maxPending = maxPending;
+		this.maxBatch = maxBatch;
+
+		this.lock = lock( journal );
+		try {
+
+			this.open();
+
+		} catch( IOException e ) {
+
+			release( this.lock );
+			String msg = "unable to open write-behind journal " + journal;
+			LOGGER.error( msg );
+			throw new WilddogException( msg, e );
+		}
+		if( !this.pending.isEmpty() ) {
+			LOGGER.warn( "replaying " + this.pending.size() + " unacknowledged writes from " + journal );
+		}
+
+		this.drainer = new Thread( new Runnable() {
+			@Override
+			public void run() {
+				WilddogWriteBehind.this.drain();
+			}
+		}, "wilddog-write-behind " + journal.getFileName() );
+		this.drainer.setDaemon( true );
+		this.drainer.start();
+
+		this.compactor = Executors.newSingleThreadExecutor( new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r ) {
+				Thread thread = new Thread( r, "wilddog-write-behind-compactor " + journal.getFileName() );
+				thread.setDaemon( true );
+				return thread;
+			}
+		});
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PUBLIC API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	/**
+	 * Queues a PUT of the json-data to the provided-path relative to the base-url.
+	 *
+	 * @param path -- if null/empty, refers to the base-url
+	 * @param jsonData -- cannot be null; "null" deletes the data at the path
+	 * @throws {@link WilddogException} if the json-data is not valid json, the queue is full, closed or stopped,
+	 * 			or the journal cannot be written
+	 */
+	public void put(String path, String jsonData ) throws WilddogException {
+		if( jsonData == null ) {
+			throw new IllegalArgumentException( "jsonData cannot be null" );
+		}
+		byte[] json = jsonData.getBytes( UTF_8 );
+		this.validate( PUT, path, json );
+		this.append( PUT, path, json );
+	}
+
+	/**
+	 * Queues a PUT of the value, serialized to json, to the provided-path relative to the base-url.
+	 *
+	 * @param path -- if null/empty, refers to the base-url
+	 * @param value -- a Map, POJO, collection or scalar; null deletes the data at the path
+	 * @throws {@link WilddogException} if the value cannot be serialized, the queue is full, closed or stopped,
+	 * 			or the journal cannot be written
+	 */
+	public <T> void put(String path, T value ) throws WilddogException {
+		this.append( PUT, path, this.toJsonBytes( path, value ) );
+	}
+
+	/**
+	 * Queues a PATCH of the children to the provided-path relative to the base-url.
+	 *
+	 * @param path -- if null/empty, refers to the base-url
+	 * @param children -- cannot be null
+	 * @throws {@link WilddogException} if the children cannot be serialized, the queue is full, closed or
+	 * 			stopped, or the journal cannot be written
+	 */
+	public void patch(String path, Map<String, Object> children ) throws WilddogException {
+		if( children == null ) {
+			throw new IllegalArgumentException( "children cannot be null" );
+		}
+		this.append( PATCH, path, this.toJsonBytes( path, children ) );
+	}
+
+	/**
+	 * Returns the number of writes not yet acknowledged by the server
+	 */
+	public synchronized int getPendingCount() {
+		return this.pending.size();
+	}
+
+	/**
+	 * Waits until every write queued so far has been acknowledged by the server (or dropped as rejected).
+	 *
+	 * @return true if the queue was drained in time; false right away once it is stopped by a 401 or 403
+	 * @throws InterruptedException
+	 */
+	public synchronized boolean awaitDrained(long timeout, TimeUnit unit ) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos( timeout );
+		while( !this.pending.isEmpty() ) {
+			if( this.refusal != null ) {
+				return false;
+			}
+			long remaining = TimeUnit.NANOSECONDS.toMillis( deadline - System.nanoTime() );
+			if( remaining <= 0 ) {
+				return false;
+			}
+			this.wait( remaining );
+		}
+		return true;
+	}
+
+	/**
+	 * Stops draining after the batch in flight, forces the journal to disk and unlocks it; the writes still
+	 * pending are replayed when the journal is opened again.
+	 */
+	@Override
+	public void close() {
+		synchronized( this ) {
+			if( this.closed ) {
+				return;
+			}
+			this.closed = true;
+			this.notifyAll();
+		}
+		this.drainer.interrupt();
+		this.compactor.shutdown();
+		boolean stopped = false;
+		try {
+			this.drainer.join( TimeUnit.SECONDS.toMillis( 5 ) );
+			stopped = !this.drainer.isAlive() && this.compactor.awaitTermination( 5, TimeUnit.SECONDS );
+		} catch( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+		}
+		synchronized( this ) {
+			this.buffer.force();
+			// the mapping goes with the buffer; unless a drainer still sending acknowledges its batch in it
+			if( stopped ) {
+				this.buffer = null;
+			}
+		}
+		release( this.lock );
+		this.wilddog.untrack( this );
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PRIVATE API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	private byte[] toJsonBytes(String path, Object value ) throws WilddogException {
+		try {
+
+			return this.wilddog.jackson().toJsonBytes( value );
+
+		} catch( JacksonUtilityException jue ) {
+
+			String msg = "unable to convert value for '" + path + "' into json";
+			LOGGER.error( msg );
+			throw new WilddogException( msg, jue );
+		}
+	}
+
+	/**
+	 * Rejects a write that could never be sent, before it is queued; the json is only scanned, not parsed into
+	 * a tree, which waits until its batch is sent (see {@link #treeOf(Write)}).
+	 */
+	private void validate(byte kind, String path, byte[] json ) throws WilddogException {
+
+		boolean valid;
+		try {
+
+			JsonParser parser = this.wilddog.jackson().getMapper().getJsonFactory().createJsonParser( json );
+			try {
+				JsonToken first = parser.nextToken();
+				valid = first != null && ( kind == PUT || first == JsonToken.START_OBJECT );
+				if( valid ) {
+					parser.skipChildren();
+				}
+			} finally {
+				parser.close();
+			}
+
+		} catch( IOException e ) {
+
+			valid = false;
+		}
+		if( !valid ) {
+			String msg = "invalid json for " + ( kind == PUT ? "PUT" : "PATCH" ) + " of '" + path + "': " + LoggingUtility.excerpt( new String( json, UTF_8 ) );
+			LOGGER.error( msg );
+			throw new WilddogException( msg );
+		}
+	}
+
+	/**
+	 * Parses the json of a write into the maps, lists and scalars it is sent as; when its batch is merged, so
+	 * the queue only holds on to the bytes.
+	 */
+	private Object treeOf(Write write ) throws JacksonUtilityException {
+		return this.wilddog.jackson().toObject( new String( write.json, UTF_8 ) );
+	}
+
+	private synchronized void append(byte kind, String path, byte[] json ) throws WilddogException {
+
+		while( true ) {
+
+			if( this.closed ) {
+				throw new WilddogException( "write-behind queue is closed" );
+			}
+			if( this.refusal != null ) {
+				throw new WilddogException( "write-behind queue is stopped; " + this.refusal.getMessage(), this.refusal );
+			}
+			if( this.pending.size() >= this.maxPending ) {
+				String msg = "write-behind queue is full; " + this.pending.size() + " writes are pending";
+				LOGGER.error( msg );
+				throw new WilddogException( msg );
+			}
+
+			Write write = new Write( this.nextSeq, kind, path == null ? "" : path, json );
+			if( this.position + write.recordBytes() <= this.buffer.capacity() ) {
+				this.position = write.writeTo( this.buffer, this.position );
+				this.nextSeq++;
+				this.pending.add( write );
+				if( this.position > this.buffer.capacity() / 2 ) {
+					this.scheduleCompaction();
+				}
+				this.notifyAll();
+				return;
+			}
+
+			if( this.compactionFailure != null && !this.compacting ) {
+				IOException failure = this.compactionFailure;
+				// the next write tries again
+				this.compactionFailure = null;
+				String msg = "unable to append to write-behind journal " + this.journal;
+				LOGGER.error( msg );
+				throw new WilddogException( msg, failure );
+			}
+
+			// ie: the writes outran the compaction; wait for it, which lets the drainer go on meanwhile
+			this.compactionReserve = Math.max( this.compactionReserve, write.recordBytes() );
+			this.scheduleCompaction();
+			try {
+				this.wait();
+			} catch( InterruptedException e ) {
+				Thread.currentThread().interrupt();
+				String msg = "interrupted while write-behind journal " + this.journal + " was compacted";
+				LOGGER.error( msg );
+				throw new WilddogException( msg, e );
+			}
+		}
+	}
+
+	/**
+	 * Maps the journal, creating it if needed, and queues the writes it holds that were not acknowledged.
+	 */
+	private void open() throws IOException {
+
+		long size = Files.exists( this.journal ) ? Files.size( this.journal ) : 0;
+		this.buffer = map( this.journal, Math.max( size, MIN_JOURNAL_BYTES ) );
+		if( size < HEADER_BYTES || this.buffer.getInt( 0 ) != JOURNAL_MAGIC ) {
+			this.buffer.putInt( 0, JOURNAL_MAGIC );
+			this.buffer.putLong( ACKED_OFFSET, 0 );
+			this.position = HEADER_BYTES;
+			this.nextSeq = 1;
+			return;
+		}
+
+		long acked = this.buffer.getLong( ACKED_OFFSET );
+		this.nextSeq = acked + 1;
+		int position = HEADER_BYTES;
+		while( position + 4 <= this.buffer.capacity() ) {
+			Write write = Write.readFrom( this.buffer, position );
+			if( write == null ) {
+				break;
+			}
+			if( write.seq > acked ) {
+				try {
+
+					this.validate( write.kind, write.path, write.json );
+					this.pending.add( write );
+
+				} catch( WilddogException e ) {
+
+					// ie: written by a version that queued any string as json; it is dropped like a rejected write
+					LOGGER.error( "dropping journaled write #" + write.seq + " of '" + write.path + "'; its json cannot be read" );
+				}
+			}
+			this.nextSeq = Math.max( this.nextSeq, write.seq + 1 );
+			position += write.recordBytes();
+		}
+		this.position = position;
+	}
+
+	/**
+	 * Has the compactor rewrite the journal, unless it is doing so already; called while holding the lock.
+	 */
+	private void scheduleCompaction() {
+		if( this.compacting || this.closed ) {
+			return;
+		}
+		this.compacting = true;
+		this.compactor.execute( new Runnable() {
+			@Override
+			public void run() {
+				WilddogWriteBehind.this.compact();
+			}
+		});
+	}
+
+	/**
+	 * Rewrites the journal with only the pending writes, with room for as much again; runs on the compactor.
+	 * The writes pending when it starts are copied without holding the lock, so neither the writers nor the
+	 * drainer wait for that; only those queued meanwhile are copied while holding it.
+	 */
+	private void compact() {
+
+		List<Write> live;
+		long bytes = HEADER_BYTES;
+		synchronized( this ) {
+			live = new ArrayList<Write>( this.pending );
+			bytes += this.compactionReserve;
+		}
+		for( Write write : live ) {
+			bytes += write.recordBytes();
+		}
+
+		Path compacted = this.journal.resolveSibling( this.journal.getFileName() + ".compact" );
+		MappedByteBuffer buffer = null;
+		try {
+
+			if( bytes > Integer.MAX_VALUE / 2 ) {
+				throw new IOException( "write-behind journal would exceed 1GB" );
+			}
+			Files.deleteIfExists( compacted );
+			buffer = map( compacted, Math.min( Integer.MAX_VALUE, Math.max( MIN_JOURNAL_BYTES, 4 * bytes ) ) );
+			buffer.putInt( 0, JOURNAL_MAGIC );
+			int position = HEADER_BYTES;
+			for( Write write : live ) {
+				position = write.writeTo( buffer, position );
+			}
+			buffer.force();
+
+			synchronized( this ) {
+				if( !this.closed ) {
+					long copied = live.isEmpty() ? 0 : live.get( live.size() - 1 ).seq;
+					for( Write write : this.pending ) {
+						if( write.seq <= copied ) {
+							continue;
+						}
+						if( position + write.recordBytes() > buffer.capacity() ) {
+							throw new IOException( "write-behind journal filled up while it was compacted" );
+						}
+						position = write.writeTo( buffer, position );
+					}
+					buffer.putLong( ACKED_OFFSET, this.buffer.getLong( ACKED_OFFSET ) );
+					try {
+						Files.move( compacted, this.journal, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+					} catch( AtomicMoveNotSupportedException e ) {
+						Files.move( compacted, this.journal, StandardCopyOption.REPLACE_EXISTING );
+					}
+					// every access to the buffer holds the lock, so the old one is not touched again; its mapping
+					// goes once it is garbage-collected
+					this.buffer = buffer;
+					this.position = position;
+					buffer = null;
+					this.compactionReserve = 0;
+				}
+				this.compacting = false;
+				this.notifyAll();
+			}
+
+		} catch( IOException e ) {
+
+			LOGGER.error( "unable to compact write-behind journal " + this.journal, e );
+			synchronized( this ) {
+				this.compactionFailure = e;
+				this.compacting = false;
+				this.notifyAll();
+			}
+
+		} finally {
+
+			// ie: not swapped in
+			if( buffer != null ) {
+				try {
+					Files.deleteIfExists( compacted );
+				} catch( IOException e ) {
+					// left to the next compaction
+				}
+			}
+		}
+	}
+
+	private static MappedByteBuffer map(Path file, long size ) throws IOException {
+		FileChannel channel = FileChannel.open( file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE );
+		try {
+			// the mapping stays valid once the channel is closed
+			return channel.map( FileChannel.MapMode.READ_WRITE, 0, size );
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Locks the journal against any other queue, in this process or another; through a lock-file next to it,
+	 * as the journal itself is replaced on every compaction.
+	 */
+	private static FileLock lock(Path journal ) throws WilddogException {
+
+		Path file = journal.resolveSibling( journal.getFileName() + ".lock" );
+		FileChannel channel = null;
+		FileLock lock = null;
+		try {
+
+			channel = FileChannel.open( file, StandardOpenOption.CREATE, StandardOpenOption.WRITE );
+			lock = channel.tryLock();
+
+		} catch( OverlappingFileLockException e ) {
+
+			// ie: held by another queue of this process
+
+		} catch( IOException e ) {
+
+			String msg = "unable to lock write-behind journal " + journal;
+			LOGGER.error( msg );
+			close( channel );
+			throw new WilddogException( msg, e );
+		}
+		if( lock == null ) {
+			String msg = "write-behind journal " + journal + " is already open by another queue";
+			LOGGER.error( msg );
+			close( channel );
+			throw new WilddogException( msg );
+		}
+		return lock;
+	}
+
+	private static void release(FileLock lock ) {
+		try {
+			lock.release();
+		} catch( IOException e ) {
+			// ie: the channel is closed below, which releases it as well
+		}
+		close( lock.channel() );
+	}
+
+	private static void close(Closeable closeable ) {
+		if( closeable == null ) {
+			return;
+		}
+		try {
+			closeable.close();
+		} catch( IOException e ) {
+			LOGGER.warn( "unable to close " + closeable + ": " + e );
+		}
+	}
+
+	private void drain() {
+
+		long backoff = MIN_BACKOFF_MILLIS;
+		while( true ) {
+
+			List<Write> batch;
+			synchronized( this ) {
+				while( this.pending.isEmpty() && !this.closed ) {
+					try {
+						this.wait();
+					} catch( InterruptedException e ) {
+						// ie: closed
+					}
+				}
+				if( this.closed || this.refusal != null ) {
+					return;
+				}
+				batch = new ArrayList<Write>( Math.min( this.maxBatch, this.pending.size() ) );
+				for( Write write : this.pending ) {
+					if( batch.size() == this.maxBatch ) {
+						break;
+					}
+					batch.add( write );
+				}
+			}
+
+			boolean sent;
+			try {
+
+				sent = this.send( batch );
+
+			} catch( RuntimeException e ) {
+
+				// a bug rather than a failure to send; the drainer must outlive it, or nothing is sent again
+				LOGGER.error( "unable to send " + batch.size() + " queued writes; retrying", e );
+				sent = false;
+			}
+			if( !sent ) {
+				synchronized( this ) {
+					if( this.refusal != null ) {
+						return;
+					}
+				}
+				try {
+					Thread.sleep( backoff );
+				} catch( InterruptedException e ) {
+					return;
+				}
+				backoff = Math.min( backoff * 2, MAX_BACKOFF_MILLIS );
+				continue;
+			}
+			backoff = MIN_BACKOFF_MILLIS;
+
+			synchronized( this ) {
+				for( int i = 0; i < batch.size(); i++ ) {
+					this.pending.poll();
+				}
+				this.buffer.putLong( ACKED_OFFSET, batch.get( batch.size() - 1 ).seq );
+				this.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * @return true if the batch was acknowledged, or rejected for good; false if it must be sent again, or if
+	 * 			the queue was stopped
+	 */
+	@SuppressWarnings("unchecked")
+	private boolean send(List<Write> batch ) {
+
+		WilddogResponse response;
+		try {
+
+			WilddogBatch request = this.wilddog.batch();
+			for( Write write : batch ) {
+				Object tree;
+				try {
+
+					tree = this.treeOf( write );
+
+				} catch( JacksonUtilityException jue ) {
+
+					// validated when queued, so never expected
+					LOGGER.error( "dropping queued write #" + write.seq + " of '" + write.path + "'; its json cannot be read", jue );
+					continue;
+				}
+				if( write.kind == PATCH ) {
+					request.patch( write.path, (Map<String, Object>) tree );
+				} else {
+					request.put( write.path, tree );
+				}
+			}
+			response = request.flush().get();
+
+		} catch( InterruptedException e ) {
+
+			Thread.currentThread().interrupt();
+			return false;
+
+		} catch( ExecutionException e ) {
+
+			LOGGER.warn( "unable to send " + batch.size() + " queued writes; retrying: " + e.getCause() );
+			return false;
+		}
+
+		int code = response == null ? 200 : response.getCode();
+		if( response == null || response.getSuccess() ) {
+			return true;
+		}
+		if( code >= 500 || code == 408 || code == 429 ) {
+			LOGGER.warn( "queued writes were refused with code " + code + "; retrying" );
+			return false;
+		}
+		if( code == 401 || code == 403 ) {
+			// no write would be accepted; they are kept in the journal, for a queue opened with valid credentials
+			String msg = "queued writes were refused with code " + code + "; stopping the write-behind queue of " + this.journal;
+			LOGGER.error( msg );
+			synchronized( this ) {
+				this.refusal = new WilddogException( msg );
+				this.notifyAll();
+			}
+			return false;
+		}
+		if( batch.size() == 1 ) {
+			LOGGER.error( "dropping queued " + ( batch.get( 0 ).kind == PUT ? "PUT" : "PATCH" ) + " of '" + batch.get( 0 ).path
+					+ "'; it was rejected with code " + code );
+			return true;
+		}
+		// one write spoiled the batch; find it by sending them one at a time (all are idempotent)
+		for( Write write : batch ) {
+			if( !this.send( Collections.singletonList( write ) ) ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// INTERNAL CLASSES
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	private static class Write {
+
+		private final long seq;
+		private final byte kind;
+		private final String path;
+		private final byte[] json;
+		private final byte[] pathBytes;
+
+		Write(long seq, byte kind, String path, byte[] json ) {
+			this.seq = seq;
+			this.kind = kind;
+			this.path = path;
+			this.json = json;
+			this.pathBytes = path.getBytes( UTF_8 );
+		}
+
+		int recordBytes() {
+			return 4 + 1 + 8 + 4 + this.pathBytes.length + this.json.length;
+		}
+
+		/**
+		 * @return the position after the record
+		 */
+		int writeTo(ByteBuffer buffer, int position ) {
+			ByteBuffer record = buffer.duplicate();
+			record.position( position + 4 );
+			record.put( this.kind ).putLong( this.seq ).putInt( this.pathBytes.length ).put( this.pathBytes ).put( this.json );
+			// the length goes in last, which makes the record visible
+			buffer.putInt( position, this.recordBytes() - 4 );
+			return position + this.recordBytes();
+		}
+
+		/**
+		 * @return the record at the position; null at the end of the journal, or at a torn record
+		 */
+		static Write readFrom(ByteBuffer buffer, int position ) {
+			int length = buffer.getInt( position );
+			if( length < 13 || position + 4L + length > buffer.capacity() ) {
+				return null;
+			}
+			ByteBuffer record = buffer.duplicate();
+			record.position( position + 4 );
+			byte kind = record.get();
+			long seq = record.getLong();
+			int pathLength = record.getInt();
+			if( ( kind != PUT && kind != PATCH ) || pathLength < 0 || pathLength > length - 13 ) {
+				return null;
+			}
+			byte[] path = new byte[pathLength];
+			byte[] json = new byte[length - 13 - pathLength];
+			record.get( path ).get( json );
+			return new Write( seq, kind, new String( path, UTF_8 ), json );
+		}
+	}
+
+}
@@ -1,20 +1,116 @@
 package com.wilddog.client.rest.util;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.lang.reflect.Type;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.wilddog.client.rest.error.JacksonUtilityException;
+import com.wilddog.client.rest.model.WilddogNode;
 
 import org.apache.log4j.Logger;
+import org.codehaus.jackson.JsonParser;
 import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.ObjectReader;
+import org.codehaus.jackson.map.ObjectWriter;
+import org.codehaus.jackson.type.TypeReference;
 
 public class JacksonUtility {
 
 	protected static final Logger 			LOGGER 					= Logger.getRootLogger();
 	
+	/**
+	 * The instance behind the static helpers; its mapper, reader and writer are thread-safe once built.
+	 */
+	public static final JacksonUtility		DEFAULT					= new JacksonUtility( new ObjectMapper() );
+	
+	
+	
+	private final ObjectMapper mapper;
+	private final ObjectReader treeReader;
+	private final ObjectWriter writer;
+	private final ConcurrentMap<Type, ObjectReader> typedReaders = new ConcurrentHashMap<Type, ObjectReader>();
+	
+	/**
+	 * Pre-builds the reader and writer used for every conversion; the mapper must not be reconfigured
+	 * afterwards, as it is shared across threads.
+	 * 
+	 * @param mapper -- cannot be null
+	 */
+	public JacksonUtility( ObjectMapper mapper ) {
+		if( mapper == null ) {
+			throw new IllegalArgumentException( "mapper cannot be null" );
+		}
+		this.mapper = mapper;
+		this.treeReader = mapper.reader( Object.class );
+		this.writer = mapper.writer();
+	}
+	
+	public ObjectMapper getMapper() {
+		return this.mapper;
+	}
+	
+	/**
+	 * Returns the reader binding json-data to the provided type; readers are built once per type and cached.
+	 * 
+	 * @param type -- cannot be null
+	 */
+	public ObjectReader readerFor( Class<?> type ) {
+		ObjectReader reader = this.typedReaders.get( type );
+		if( reader == null ) {
+			reader = this.mapper.reader( type );
+			ObjectReader existing = this.typedReaders.putIfAbsent( type, reader );
+			if( existing != null ) {
+				reader = existing;
+			}
+		}
+		return reader;
+	}
+	
+	/**
+	 * Returns the reader binding json-data to the provided generic type (ie: a collection of POJOs);
+	 * readers are built once per type and cached.
+	 * 
+	 * @param type -- cannot be null
+	 */
+	public ObjectReader readerFor( TypeReference<?> type ) {
+		ObjectReader reader = this.typedReaders.get( type.getType() );
+		if( reader == null ) {
+			reader = this.mapper.reader( type );
+			ObjectReader existing = this.typedReaders.putIfAbsent( type.getType(), reader );
+			if( existing != null ) {
+				reader = existing;
+			}
+		}
+		return reader;
+	}
+	
+	
+	
+	/**
+	 * Creates a json-string representing the data provided by the map, using the {@link #DEFAULT} instance.
+	 * 
+	 * @see #toJsonString(Map)
+	 */
+	public static String GET_JSON_STRING_FROM_MAP( Map<String, Object> dataMap ) throws JacksonUtilityException {
+		return DEFAULT.toJsonString( dataMap );
+	}
+	
+	/**
+	 * Creates a map represented by the json-data provided, using the {@link #DEFAULT} instance.
+	 * 
+	 * @see #toMap(String)
+	 */
+	public static Map<String, Object> GET_JSON_STRING_AS_MAP( String jsonResponse ) throws JacksonUtilityException {
+		return DEFAULT.toMap( jsonResponse );
+	}
+	
 	
 	
 	/**
@@ -25,24 +121,25 @@ public class JacksonUtility {
 	 * @return the json-string representing the data, or an empty-string; will not return null
 	 * @throws JacksonUtilityException if there was an error converting the map-data into a json-string
 	 */
-	public static String GET_JSON_STRING_FROM_MAP( Map<String, Object> dataMap ) throws JacksonUtilityException {
+	public String toJsonString( Map<String, Object> dataMap ) throws JacksonUtilityException {
 	
 		/* NOTE: per Jackson-dox, the map must be of type <String, Object> */
 		
 		if( dataMap == null || dataMap.isEmpty() ) {
-			LOGGER.info( "cannot convert data from map into json when map is null/empty" );
+			if( LOGGER.isDebugEnabled() ) {
+				LOGGER.debug( "cannot convert data from map into json when map is null/empty" );
+			}
 			return new String(); // don't want to return null to avoid NPEs
 		}
 		
 		Writer writer = new StringWriter();		
 		try {
 		
-			ObjectMapper mapper = new ObjectMapper();
-			mapper.writeValue( writer, dataMap );
+			this.writer.writeValue( writer, dataMap );
 			
 		} catch( Throwable t ) {
 			
-			String msg = "unable to convert data from map into json: " + dataMap.toString();
+			String msg = "unable to convert data from map into json: " + LoggingUtility.excerpt( dataMap );
 			LOGGER.warn( msg );
 			throw new JacksonUtilityException( msg );
 			
@@ -61,7 +158,7 @@ public class JacksonUtility {
 	 * @throws JacksonUtilityException if there was an error converting the json-string into map-data
 	 */
 	@SuppressWarnings("unchecked")
-	public static Map<String, Object> GET_JSON_STRING_AS_MAP( String jsonResponse ) throws JacksonUtilityException {
+	public Map<String, Object> toMap( String jsonResponse ) throws JacksonUtilityException {
 		
 		/* NOTE: @SuppressWarnings("unchecked") because Jackson-dox state that a JSON-Object will always return as 
 		 * Map<String, Object>
@@ -69,7 +166,9 @@ public class JacksonUtility {
 		 */	
 		
 		if( jsonResponse == null || jsonResponse.trim().isEmpty() ) {
-			LOGGER.warn( "jsonResponse was null/empty, returning empty map; was: '" + jsonResponse + "'" );
+			if( LOGGER.isDebugEnabled() ) {
+				LOGGER.debug( "jsonResponse was null/empty, returning empty map" );
+			}
 			return new HashMap<String, Object>(); // don't want to return null to avoid NPEs
 		}
 		jsonResponse = jsonResponse.trim();
@@ -78,15 +177,14 @@ public class JacksonUtility {
 		Map<String, Object> result = null;		
 		try {
 			
-			ObjectMapper mapper = new ObjectMapper();
-			Object o = mapper.readValue( jsonResponse, Object.class );
+			Object o = this.treeReader.readValue( jsonResponse );
 			if( o instanceof Map ) {
 				result = (Map<String, Object>) o;
 			}
 			
 		} catch( Throwable t ) {
 			
-			String msg = "unable to map json-response: " + jsonResponse; 
+			String msg = "unable to map json-response: " + LoggingUtility.excerpt( jsonResponse );
 			LOGGER.error( msg );
 			throw new JacksonUtilityException( msg, t );
 			
@@ -100,10 +198,173 @@ public class JacksonUtility {
 		return result;
 	}
 	
+	/**
+	 * Creates the value represented by the json-data provided; unlike {@link #toMap(String)}, scalars
+	 * and arrays are returned as well.
+	 * 
+	 * @param json; can be null/empty, but will result in null
+	 * @return a Map, List, String, Number, Boolean, or null
+	 * 
+	 * @throws JacksonUtilityException if there was an error converting the json-string
+	 */
+	public Object toObject( String json ) throws JacksonUtilityException {
+		
+		if( json == null || json.trim().isEmpty() ) {
+			return null;
+		}
+		
+		try {
+			
+			return this.treeReader.readValue( json );
+			
+		} catch( Throwable t ) {
+			
+			String msg = "unable to map json: " + LoggingUtility.excerpt( json );
+			LOGGER.error( msg );
+			throw new JacksonUtilityException( msg, t );
+			
+		}
+	}
+	
+	/**
+	 * Creates a map represented by the json-data read from the stream, without buffering the data as a
+	 * string first; the stream is closed once parsed (unless the mapper was configured not to
+	 * auto-close its sources).
+	 * 
+	 * @param jsonStream; can be empty, but will result in an empty-map;
+	 * @return Strings mapped to arbitrary Objects
+	 * 
+	 * @throws JacksonUtilityException if there was an error converting the json-data into map-data
+	 */
+	@SuppressWarnings("unchecked")
+	public Map<String, Object> toMap( InputStream jsonStream ) throws JacksonUtilityException {
+		
+		Map<String, Object> result = null;
+		try {
+			
+			JsonParser parser = this.mapper.getJsonFactory().createJsonParser( jsonStream );
+			try {
+				if( parser.nextToken() != null ) {
+					Object o = this.treeReader.readValue( parser );
+					if( o instanceof Map ) {
+						result = (Map<String, Object>) o;
+					}
+				}
+			} finally {
+				parser.close();
+			}
+			
+		} catch( Throwable t ) {
+			
+			String msg = "unable to map json-response from stream";
+			LOGGER.error( msg );
+			throw new JacksonUtilityException( msg, t );
+			
+		}
+		
+		// don't want to return null to avoid NPEs
+		if( result == null ) {
+			result = new LinkedHashMap<String, Object>();
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Creates a map represented by the (UTF-8) json-data, without decoding it into a string first.
+	 * 
+	 * @param json; can be null/empty, but will result in an empty-map;
+	 * @return Strings mapped to arbitrary Objects
+	 * 
+	 * @throws JacksonUtilityException if there was an error converting the json-data into map-data
+	 */
+	public Map<String, Object> toMap( byte[] json ) throws JacksonUtilityException {
+		return this.toMap( new ByteArrayInputStream( json == null ? new byte[ 0 ] : json ) );
+	}
+	
+	
+	/**
+	 * Binds the json-data read from the stream with the provided reader (see {@link #readerFor(Class)}),
+	 * without building an intermediate map; the stream is closed once parsed (unless the mapper was
+	 * configured not to auto-close its sources).
+	 * 
+	 * @param jsonStream; can be empty, but will result in null
+	 * @return the bound value, or null if the stream was empty or held a json-null
+	 * 
+	 * @throws JacksonUtilityException if there was an error binding the json-data
+	 */
+	public <T> T toValue( InputStream jsonStream, ObjectReader reader ) throws JacksonUtilityException {
+		
+		try {
+			
+			JsonParser parser = this.mapper.getJsonFactory().createJsonParser( jsonStream );
+			try {
+				if( parser.nextToken() == null ) {
+					return null;
+				}
+				return reader.<T>readValue( parser );
+			} finally {
+				parser.close();
+			}
+			
+		} catch( Throwable t ) {
+			
+			String msg = "unable to bind json-response from stream";
+			LOGGER.error( msg );
+			throw new JacksonUtilityException( msg, t );
+			
+		}
+	}
+	
+	/**
+	 * Creates a {@link WilddogNode} tree of the json-data read from the stream, without building maps or
+	 * boxing its numbers; the stream is closed once parsed (unless the mapper was configured not to
+	 * auto-close its sources).
+	 * 
+	 * @param jsonStream; can be empty, but will result in a json-null node
+	 * @return the root of the tree; will not return null
+	 * 
+	 * @throws JacksonUtilityException if there was an error reading the json-data
+	 */
+	public WilddogNode toNode( InputStream jsonStream ) throws JacksonUtilityException {
+		
+		try {
+			
+			JsonParser parser = this.mapper.getJsonFactory().createJsonParser( jsonStream );
+			try {
+				return WilddogNode.read( parser );
+			} finally {
+				parser.close();
+			}
+			
+		} catch( Throwable t ) {
+			
+			String msg = "unable to read json-response from stream into a node";
+			LOGGER.error( msg );
+			throw new JacksonUtilityException( msg, t );
+			
+		}
+	}
+	
+	/**
+	 * Creates the utf-8 json-bytes representing the provided value (a POJO, collection, map or scalar).
+	 * 
+	 * @param value; can be null, resulting in a json-null
+	 * @throws JacksonUtilityException if there was an error converting the value into json
+	 */
+	public byte[] toJsonBytes( Object value ) throws JacksonUtilityException {
+		
+		try {
+			
+			return this.writer.writeValueAsBytes( value );
+			
+		} catch( Throwable t ) {
+			
+			String msg = "unable to convert value of " + ( value == null ? null : value.getClass() ) + " into json";
+			LOGGER.warn( msg );
+			throw new JacksonUtilityException( msg, t );
+			
+		}
+	}
+	
 }
-
-
-
-
-
-
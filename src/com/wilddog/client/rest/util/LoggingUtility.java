@@ -0,0 +1,67 @@
+package com.wilddog.client.rest.util;
+
+import okhttp3.HttpUrl;
+
+/**
+ * Helpers that keep log-lines and error-messages short and free of credentials; payloads are cut to an
+ * excerpt, and the auth-token of a url is replaced.
+ */
+public class LoggingUtility {
+
+	/**
+	 * The number of characters of a payload that end up in an error-message.
+	 */
+	public static final int 				MAX_EXCERPT_LENGTH		= 256;
+
+	public static final String 				REDACTED				= "REDACTED";
+
+	private static final String 			AUTH_PARAM				= "auth";
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PUBLIC API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	/**
+	 * @param value -- can be null
+	 * @return the value as a string, cut to {@link #MAX_EXCERPT_LENGTH} characters
+	 */
+	public static String excerpt( Object value ) {
+		return excerpt( value, MAX_EXCERPT_LENGTH );
+	}
+
+	/**
+	 * @param value -- can be null
+	 * @param maxLength -- the number of characters kept
+	 * @return the value as a string, cut to maxLength characters; ie: '{"a":1,"b"...(+1024 chars)'
+	 */
+	public static String excerpt( Object value, int maxLength ) {
+		if( value == null ) {
+			return "null";
+		}
+		String text = value.toString();
+		if( text.length() <= maxLength ) {
+			return text;
+		}
+		return text.substring( 0, Math.max( 0, maxLength ) ) + "...(+" + ( text.length() - maxLength ) + " chars)";
+	}
+
+	/**
+	 * @param url -- can be null
+	 * @return the url as a string, with the value of its 'auth' query-parameter replaced
+	 */
+	public static String redact( HttpUrl url ) {
+		if( url == null ) {
+			return "null";
+		}
+		if( url.queryParameter( AUTH_PARAM ) == null ) {
+			return url.toString();
+		}
+		return url.newBuilder().setQueryParameter( AUTH_PARAM, REDACTED ).build().toString();
+	}
+
+}
@@ -0,0 +1,125 @@
+package com.wilddog.client.rest.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * What the JMH benchmarks share: a local http-server, quiet logging, and the heap used. They are built and run
+ * with the 'benchmarks' profile only; ie: {@code mvn -P benchmarks test-compile exec:exec -Djmh.args=GzipBenchmark}.
+ * <p>
+ * The jdk's http-server is used rather than MockWebServer, which answers a request in about 45ms on some
+ * machines; that would hide what is measured. Thousands of connections opened and closed in a row can stall the
+ * loopback for a while, so a benchmark that cannot reuse its connections sends a few hundred requests at most.
+ */
+final class BenchmarkUtility {
+
+	static {
+		// the server writes the headers and the body apart; with nagle on, a kept-alive connection waits ~40ms
+		// for the delayed ack of the headers before the body goes out
+		System.setProperty( "sun.net.httpserver.nodelay", "true" );
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PUBLIC API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	/**
+	 * Logs warnings and errors only; the log4j.properties of the jar logs every request at debug-level, along with
+	 * the class it was logged from, which takes a stack-trace and would be most of what is measured.
+	 */
+	static void quietLogging() {
+		Logger.getRootLogger().setLevel( Level.WARN );
+	}
+
+	/**
+	 * Starts a server on a free local port, handing every request to the handler on one of the threads.
+	 *
+	 * @param threads -- how many requests are handled at once
+	 * @param handler -- cannot be null; must answer every exchange, see {@link #respond(HttpExchange, int, byte[])}
+	 */
+	static HttpServer startServer(int threads, HttpHandler handler ) throws IOException {
+		HttpServer server = HttpServer.create( new InetSocketAddress( InetAddress.getLoopbackAddress(), 0 ), 512 );
+		server.setExecutor( Executors.newFixedThreadPool( threads ) );
+		server.createContext( "/", handler );
+		server.start();
+		return server;
+	}
+
+	/**
+	 * Stops the server, and the threads it was started with.
+	 */
+	static void stopServer(HttpServer server ) {
+		server.stop( 0 );
+		( (ExecutorService) server.getExecutor() ).shutdownNow();
+	}
+
+	/**
+	 * Returns the base-url of the server, for a {@link Wilddog}.
+	 */
+	static String baseUrlOf(HttpServer server ) {
+		return "http://127.0.0.1:" + server.getAddress().getPort() + "/rest";
+	}
+
+	/**
+	 * Reads the request-body to its end, and returns how many bytes it had; as sent, ie: still compressed.
+	 */
+	static long drain(HttpExchange exchange ) throws IOException {
+		InputStream in = exchange.getRequestBody();
+		byte[] buffer = new byte[8192];
+		long total = 0;
+		for( int read; ( read = in.read( buffer ) ) != -1; ) {
+			total += read;
+		}
+		return total;
+	}
+
+	/**
+	 * Answers the exchange with the status-code and body, and keeps the connection open for the next request.
+	 *
+	 * @param body -- null for none
+	 */
+	static void respond(HttpExchange exchange, int code, byte[] body ) throws IOException {
+		if( body == null ) {
+			exchange.sendResponseHeaders( code, -1 );
+		} else {
+			exchange.getResponseHeaders().set( "Content-Type", "application/json" );
+			exchange.sendResponseHeaders( code, body.length );
+			OutputStream out = exchange.getResponseBody();
+			out.write( body );
+		}
+		exchange.close();
+	}
+
+	/**
+	 * Returns the heap in use after a few rounds of garbage-collection; ie: about what is still reachable.
+	 */
+	static long usedHeap() throws InterruptedException {
+		Runtime runtime = Runtime.getRuntime();
+		for( int i = 0; i < 5; i++ ) {
+			System.gc();
+			Thread.sleep( 50 );
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private BenchmarkUtility() {
+	}
+
+}
@@ -0,0 +1,97 @@
+package com.wilddog.client.rest.service;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Sends GETs one after the other, each on a client of its own as every request used to, and through one
+ * {@link Wilddog} and its shared client; on tear-down, prints how many connections the server saw.
+ * <p>
+ * Measured in batches of a hundred requests, a few hundred per run; the jdk's server does not always recover from
+ * the thousands of connections the clients per request would open and close otherwise.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, batchSize = 100)
+@Measurement(iterations = 5, batchSize = 100)
+@Fork(1)
+public class ClientReuseBenchmark {
+
+	@Param({ "clientPerRequest", "sharedClient" })
+	public String client;
+
+	private final Set<String> connections = Collections.newSetFromMap( new ConcurrentHashMap<String, Boolean>() );
+	private HttpServer server;
+	private Wilddog wilddog;
+	private Request request;
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PUBLIC API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	@Setup
+	public void setUp() throws Throwable {
+		BenchmarkUtility.quietLogging();
+		this.server = BenchmarkUtility.startServer( 4, new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange ) throws IOException {
+				ClientReuseBenchmark.this.connections.add( exchange.getRemoteAddress().toString() );
+				BenchmarkUtility.respond( exchange, 200, "{\"a\":1}".getBytes( "UTF-8" ) );
+			}
+		} );
+		String baseUrl = BenchmarkUtility.baseUrlOf( this.server );
+		this.wilddog = new Wilddog.Builder( baseUrl ).build();
+		this.request = new Request.Builder().url( baseUrl + "/a.json" ).build();
+	}
+
+	@TearDown
+	public void tearDown() {
+		System.out.printf( "%n%s: %d connections%n", this.client, this.connections.size() );
+		this.wilddog.close();
+		BenchmarkUtility.stopServer( this.server );
+	}
+
+	@Benchmark
+	public Object get() throws Throwable {
+		if( "sharedClient".equals( this.client ) ) {
+			return this.wilddog.get( "a" );
+		}
+		OkHttpClient client = new OkHttpClient();
+		Response response = client.newCall( this.request ).execute();
+		String body = response.body().string();
+		// else the idle connections pile up, and the server stops keeping any alive past a few hundred
+		client.connectionPool().evictAll();
+		return body;
+	}
+
+}
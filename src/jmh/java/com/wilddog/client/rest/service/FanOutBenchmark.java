@@ -0,0 +1,118 @@
+package com.wilddog.client.rest.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.wilddog.client.rest.model.WilddogResponse;
+
+/**
+ * Reads 100 paths through {@link Wilddog#getAll(java.util.Collection, int)} at a parallelism of 1 to 64, from a
+ * server that takes 20ms per read; after every iteration, prints the most reads the server had in flight.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class FanOutBenchmark {
+
+	private static final int PATHS									= 100;
+	private static final long LATENCY_MILLIS						= 20;
+
+	@Param({ "1", "4", "16", "64" })
+	public int parallelism;
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicInteger maxInFlight = new AtomicInteger();
+	private final List<String> paths = new ArrayList<String>();
+	private HttpServer server;
+	private Wilddog wilddog;
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PUBLIC API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	@Setup
+	public void setUp() throws Throwable {
+		BenchmarkUtility.quietLogging();
+		this.server = BenchmarkUtility.startServer( 128, new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange ) throws IOException {
+				int current = FanOutBenchmark.this.inFlight.incrementAndGet();
+				while( true ) {
+					int max = FanOutBenchmark.this.maxInFlight.get();
+					if( current <= max || FanOutBenchmark.this.maxInFlight.compareAndSet( max, current ) ) {
+						break;
+					}
+				}
+				try {
+					Thread.sleep( LATENCY_MILLIS );
+				} catch( InterruptedException e ) {
+					Thread.currentThread().interrupt();
+				} finally {
+					FanOutBenchmark.this.inFlight.decrementAndGet();
+				}
+				BenchmarkUtility.respond( exchange, 200, ( "{\"path\":\"" + exchange.getRequestURI().getPath() + "\"}" ).getBytes( "UTF-8" ) );
+			}
+		} );
+		this.wilddog = new Wilddog.Builder( BenchmarkUtility.baseUrlOf( this.server ) )
+				.maxRequests( 128 )
+				.maxRequestsPerHost( 128 )
+				.build();
+		for( int i = 0; i < PATHS; i++ ) {
+			this.paths.add( "dashboard/" + i );
+		}
+	}
+
+	@TearDown(Level.Iteration)
+	public void report() {
+		System.out.printf( "%nparallelism %d: %d in flight at most%n", this.parallelism, this.maxInFlight.getAndSet( 0 ) );
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.wilddog.close();
+		BenchmarkUtility.stopServer( this.server );
+	}
+
+	@Benchmark
+	public int getAll() throws Throwable {
+		Map<String, WilddogResponse> responses = this.wilddog.getAll( this.paths, this.parallelism );
+		int succeeded = 0;
+		for( WilddogResponse response : responses.values() ) {
+			succeeded += response.getSuccess() ? 1 : 0;
+		}
+		if( succeeded != PATHS ) {
+			throw new IllegalStateException( "only " + succeeded + " of " + PATHS + " reads succeeded" );
+		}
+		return succeeded;
+	}
+
+}
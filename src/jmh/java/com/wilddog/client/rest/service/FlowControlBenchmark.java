@@ -0,0 +1,129 @@
+package com.wilddog.client.rest.service;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Sends GETs from 48 threads to a server that takes 10ms per read and refuses with a 429 what comes in above 8 at
+ * once; without flow-control, and with an adaptive concurrency limit. The score counts every GET sent; after every
+ * iteration, the reads served, refused and failed per second are printed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1, time = 2)
+@Measurement(iterations = 3, time = 4)
+@Threads(48)
+@Fork(1)
+public class FlowControlBenchmark {
+
+	private static final int SERVER_CAPACITY						= 8;
+	private static final long LATENCY_MILLIS						= 10;
+
+	@Param({ "unlimited", "AIMD(4,1,64)" })
+	public String flowControl;
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicInteger served = new AtomicInteger();
+	private final AtomicInteger refused = new AtomicInteger();
+	private final AtomicInteger failed = new AtomicInteger();
+	private HttpServer server;
+	private Wilddog wilddog;
+	private long iterationStart;
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PUBLIC API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	@Setup
+	public void setUp() throws Throwable {
+		BenchmarkUtility.quietLogging();
+		this.server = BenchmarkUtility.startServer( 128, new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange ) throws IOException {
+				int code = 200;
+				try {
+					if( FlowControlBenchmark.this.inFlight.incrementAndGet() > SERVER_CAPACITY ) {
+						code = 429;
+						FlowControlBenchmark.this.refused.incrementAndGet();
+					} else {
+						Thread.sleep( LATENCY_MILLIS );
+						FlowControlBenchmark.this.served.incrementAndGet();
+					}
+				} catch( InterruptedException e ) {
+					Thread.currentThread().interrupt();
+				} finally {
+					FlowControlBenchmark.this.inFlight.decrementAndGet();
+				}
+				BenchmarkUtility.respond( exchange, code, "{}".getBytes( "UTF-8" ) );
+			}
+		} );
+		// without retries, so every read is sent once
+		Wilddog.Builder builder = new Wilddog.Builder( BenchmarkUtility.baseUrlOf( this.server ) )
+				.retryPolicy( WilddogRetryPolicy.NONE );
+		if( !"unlimited".equals( this.flowControl ) ) {
+			builder.flowControl( new WilddogFlowControl.Builder().concurrency( 4, 1, 64 ).build() );
+		}
+		this.wilddog = builder.build();
+	}
+
+	@Setup(Level.Iteration)
+	public void startIteration() {
+		this.served.set( 0 );
+		this.refused.set( 0 );
+		this.failed.set( 0 );
+		this.iterationStart = System.nanoTime();
+	}
+
+	@TearDown(Level.Iteration)
+	public void report() {
+		double seconds = ( System.nanoTime() - this.iterationStart ) / 1e9;
+		System.out.printf( "%n%s: %5.0f served/s  %5.0f refused/s  %5.0f failed/s%n", this.flowControl,
+				this.served.get() / seconds, this.refused.get() / seconds, this.failed.get() / seconds );
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.wilddog.close();
+		BenchmarkUtility.stopServer( this.server );
+	}
+
+	@Benchmark
+	public boolean get() {
+		try {
+			if( this.wilddog.get( "p" ).getSuccess() ) {
+				return true;
+			}
+		} catch( Throwable t ) {
+			// ie: refused by the limiter
+		}
+		this.failed.incrementAndGet();
+		return false;
+	}
+
+}
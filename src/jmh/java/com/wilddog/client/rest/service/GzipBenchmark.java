@@ -0,0 +1,102 @@
+package com.wilddog.client.rest.service;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * PUTs the same repetitive document, as it is and gzip-compressed; after every iteration, prints the bytes the
+ * server received per PUT.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GzipBenchmark {
+
+	@Param({ "plain", "gzip" })
+	public String encoding;
+
+	private final AtomicLong received = new AtomicLong();
+	private final AtomicLong puts = new AtomicLong();
+	private HttpServer server;
+	private Wilddog wilddog;
+	private String document;
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PUBLIC API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	@Setup
+	public void setUp() throws Throwable {
+		BenchmarkUtility.quietLogging();
+		this.server = BenchmarkUtility.startServer( 4, new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange ) throws IOException {
+				GzipBenchmark.this.received.addAndGet( BenchmarkUtility.drain( exchange ) );
+				BenchmarkUtility.respond( exchange, 204, null );
+			}
+		} );
+
+		// many children alike, as most trees are
+		StringBuilder json = new StringBuilder( "{" );
+		for( int i = 0; i < 2000; i++ ) {
+			json.append( i > 0 ? "," : "" ).append( "\"user" ).append( i ).append( "\":{\"name\":\"x\",\"active\":true}" );
+		}
+		this.document = json.append( "}" ).toString();
+
+		Wilddog.Builder builder = new Wilddog.Builder( BenchmarkUtility.baseUrlOf( this.server ) );
+		if( "gzip".equals( this.encoding ) ) {
+			builder.gzipRequests( 1024 );
+		}
+		this.wilddog = builder.build();
+	}
+
+	@TearDown(Level.Iteration)
+	public void report() {
+		if( this.puts.get() > 0 ) {
+			System.out.printf( "%n%s: %d of %d bytes received/PUT%n", this.encoding, this.received.get() / this.puts.get(),
+					this.document.length() );
+		}
+		this.received.set( 0 );
+		this.puts.set( 0 );
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.wilddog.close();
+		BenchmarkUtility.stopServer( this.server );
+	}
+
+	@Benchmark
+	public Object put() throws Throwable {
+		this.puts.incrementAndGet();
+		return this.wilddog.put( "users", this.document );
+	}
+
+}
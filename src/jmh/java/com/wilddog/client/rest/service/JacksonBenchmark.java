@@ -0,0 +1,77 @@
+package com.wilddog.client.rest.service;
+
+import java.io.StringWriter;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.wilddog.client.rest.util.JacksonUtility;
+
+/**
+ * Reads and writes the same json, with a new ObjectMapper per call as every conversion used to, and with the
+ * reader and writer {@link JacksonUtility} builds once. Run with {@code -prof gc} for the bytes allocated per
+ * round-trip.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JacksonBenchmark {
+
+	@Param({ "small", "medium" })
+	public String document;
+
+	private String json;
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PUBLIC API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	@Setup
+	public void setUp() {
+		if( "small".equals( this.document ) ) {
+			this.json = "{\"name\":\"jack\",\"age\":30}";
+			return;
+		}
+		StringBuilder medium = new StringBuilder( "{" );
+		for( int i = 0; i < 50; i++ ) {
+			medium.append( i > 0 ? "," : "" ).append( "\"user" ).append( i ).append( "\":{\"name\":\"user " ).append( i )
+					.append( "\",\"age\":" ).append( 20 + i ).append( ",\"active\":true,\"score\":" ).append( i * 1.5 ).append( "}" );
+		}
+		this.json = medium.append( "}" ).toString();
+	}
+
+	@Benchmark
+	@SuppressWarnings("unchecked")
+	public String mapperPerCall() throws Throwable {
+		Map<String, Object> map = new ObjectMapper().readValue( this.json, Map.class );
+		StringWriter out = new StringWriter();
+		new ObjectMapper().writeValue( out, map );
+		return out.toString();
+	}
+
+	@Benchmark
+	public String reusedReader() throws Throwable {
+		return JacksonUtility.DEFAULT.toJsonString( JacksonUtility.DEFAULT.toMap( this.json ) );
+	}
+
+}
@@ -0,0 +1,100 @@
+package com.wilddog.client.rest.service;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import okhttp3.HttpUrl;
+
+/**
+ * Looks up the path-template of the same request url, by building it again as every request used to, and
+ * through {@link MetricsInterceptor#templateOf(HttpUrl)}. Run with {@code -prof gc} for the bytes allocated per
+ * lookup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmark {
+
+	private static final int PATH_DEPTH								= 2;
+
+	private HttpUrl url;
+	private MetricsInterceptor interceptor;
+	private int baseSegments;
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PUBLIC API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	@Setup
+	public void setUp() {
+		HttpUrl baseUrl = HttpUrl.parse( "http://127.0.0.1/rest" );
+		this.url = HttpUrl.parse( "http://127.0.0.1/rest/users/alice/profile.json" );
+		this.interceptor = new MetricsInterceptor( WilddogMetrics.NONE, baseUrl, PATH_DEPTH );
+		this.baseSegments = new RelativePath( baseUrl ).baseSegments();
+	}
+
+	@Benchmark
+	public String rebuilt() {
+		return rebuilt( this.url, this.baseSegments );
+	}
+
+	@Benchmark
+	public String lookedUp() {
+		return this.interceptor.templateOf( this.url );
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PRIVATE API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	/**
+	 * The template as it used to be built for every request; segments past the depth collapse to '*'.
+	 */
+	private static String rebuilt(HttpUrl url, int baseSegments ) {
+		List<String> segments = url.pathSegments();
+		StringBuilder template = new StringBuilder();
+		for( int i = baseSegments; i < segments.size(); i++ ) {
+			String segment = segments.get( i );
+			if( i == segments.size() - 1 && segment.endsWith( Wilddog.WILDDOG_API_JSON_EXTENSION ) ) {
+				segment = segment.substring( 0, segment.length() - Wilddog.WILDDOG_API_JSON_EXTENSION.length() );
+			}
+			if( segment.isEmpty() ) {
+				continue;
+			}
+			if( template.length() > 0 ) {
+				template.append( '/' );
+			}
+			if( i - baseSegments >= PATH_DEPTH ) {
+				template.append( '*' );
+				break;
+			}
+			template.append( segment );
+		}
+		return template.toString();
+	}
+
+}
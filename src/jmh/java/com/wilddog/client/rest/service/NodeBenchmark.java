@@ -0,0 +1,92 @@
+package com.wilddog.client.rest.service;
+
+import java.io.ByteArrayInputStream;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.wilddog.client.rest.model.WilddogNode;
+import com.wilddog.client.rest.util.JacksonUtility;
+
+/**
+ * Parses a large tree, of objects of 20 numbers each, into nested maps and into a {@link WilddogNode}; on set-up,
+ * prints the heap each keeps reachable.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+public class NodeBenchmark {
+
+	private static final int LEAVES									= 20;
+
+	@Param({ "50000" })
+	public int objects;
+
+	private byte[] bytes;
+	private final JacksonUtility jackson = JacksonUtility.DEFAULT;
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PUBLIC API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	@Setup
+	public void setUp() throws Throwable {
+
+		// ints and doubles, alternately
+		StringBuilder json = new StringBuilder( "{" );
+		Random random = new Random( 1 );
+		for( int i = 0; i < this.objects; i++ ) {
+			json.append( i > 0 ? "," : "" ).append( "\"sensor" ).append( i ).append( "\":{" );
+			for( int k = 0; k < LEAVES; k++ ) {
+				json.append( k > 0 ? "," : "" ).append( "\"r" ).append( k ).append( "\":" )
+						.append( k % 2 == 0 ? String.valueOf( random.nextInt( 100000 ) ) : String.valueOf( random.nextDouble() ) );
+			}
+			json.append( "}" );
+		}
+		this.bytes = json.append( "}" ).toString().getBytes( "UTF-8" );
+		json = null;
+
+		long before = BenchmarkUtility.usedHeap();
+		Map<String, Object> map = this.parseMaps();
+		long retained = BenchmarkUtility.usedHeap() - before;
+		System.out.printf( "%njson %dMB; maps %dMB retained, %d children", this.bytes.length / 1024 / 1024,
+				retained / 1024 / 1024, map.size() );
+		map = null;
+
+		before = BenchmarkUtility.usedHeap();
+		WilddogNode node = this.parseNode();
+		retained = BenchmarkUtility.usedHeap() - before;
+		System.out.printf( "; node %dMB retained, %d children%n", retained / 1024 / 1024, node.getChildCount() );
+	}
+
+	@Benchmark
+	public Map<String, Object> parseMaps() throws Throwable {
+		return this.jackson.toMap( this.bytes );
+	}
+
+	@Benchmark
+	public WilddogNode parseNode() throws Throwable {
+		return this.jackson.toNode( new ByteArrayInputStream( this.bytes ) );
+	}
+
+}
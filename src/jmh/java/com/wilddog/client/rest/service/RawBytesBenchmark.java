@@ -0,0 +1,108 @@
+package com.wilddog.client.rest.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.wilddog.client.rest.model.WilddogJsonWriter;
+
+/**
+ * PUTs payloads of 1KB to 1MB, given as a String, a byte[], a direct ByteBuffer and a {@link WilddogJsonWriter}.
+ * Run with {@code -prof gc} for the bytes allocated per PUT.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class RawBytesBenchmark {
+
+	@Param({ "1024", "16384", "262144", "1048576" })
+	public int size;
+
+	@Param({ "String", "byte[]", "ByteBuffer", "writer" })
+	public String form;
+
+	private HttpServer server;
+	private Wilddog wilddog;
+	private String string;
+	private byte[] bytes;
+	private ByteBuffer buffer;
+	private WilddogJsonWriter writer;
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PUBLIC API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	@Setup
+	public void setUp() throws Throwable {
+		BenchmarkUtility.quietLogging();
+		this.server = BenchmarkUtility.startServer( 4, new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange ) throws IOException {
+				BenchmarkUtility.drain( exchange );
+				BenchmarkUtility.respond( exchange, 204, null );
+			}
+		} );
+		// the responses are not read, so only the sending is measured
+		this.wilddog = new Wilddog.Builder( BenchmarkUtility.baseUrlOf( this.server ) ).discardWriteBodies( true ).build();
+
+		StringBuilder json = new StringBuilder( "{\"v\":\"" );
+		while( json.length() < this.size - 2 ) {
+			json.append( 'x' );
+		}
+		this.string = json.append( "\"}" ).toString();
+		this.bytes = this.string.getBytes( "UTF-8" );
+		this.buffer = ByteBuffer.allocateDirect( this.bytes.length );
+		this.buffer.put( this.bytes ).flip();
+		final byte[] bytes = this.bytes;
+		this.writer = new WilddogJsonWriter() {
+			@Override
+			public void writeTo(OutputStream out ) throws IOException {
+				out.write( bytes );
+			}
+		};
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.wilddog.close();
+		BenchmarkUtility.stopServer( this.server );
+	}
+
+	@Benchmark
+	public Object put() throws Throwable {
+		if( "String".equals( this.form ) ) {
+			return this.wilddog.put( "s", this.string );
+		} else if( "byte[]".equals( this.form ) ) {
+			return this.wilddog.put( "s", this.bytes );
+		} else if( "ByteBuffer".equals( this.form ) ) {
+			return this.wilddog.put( "s", this.buffer );
+		}
+		return this.wilddog.put( "s", this.writer );
+	}
+
+}
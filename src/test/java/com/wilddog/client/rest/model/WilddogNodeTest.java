@@ -0,0 +1,159 @@
+package com.wilddog.client.rest.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.wilddog.client.rest.error.WilddogException;
+import com.wilddog.client.rest.service.Wilddog;
+import com.wilddog.client.rest.util.JacksonUtility;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+public class WilddogNodeTest {
+
+	private static final String JSON								= "{\"name\":\"jack\",\"age\":30,\"height\":1.85,"
+			+ "\"id\":12345678901234567890,\"admin\":false,\"manager\":null,"
+			+ "\"tags\":[\"a\",\"b\",{\"c\":3}],\"address\":{\"city\":\"x\",\"zip\":\"01234\"}}";
+
+	@Rule
+	public final MockWebServer server = new MockWebServer();
+
+	@Test
+	public void readsEveryKindOfLeaf() throws Throwable {
+
+		WilddogNode root = node( JSON );
+		assertEquals( WilddogNode.Type.OBJECT, root.getType() );
+		assertNull( root.getKey() );
+
+		assertEquals( WilddogNode.Type.STRING, root.child( "name" ).getType() );
+		assertEquals( "jack", root.child( "name" ).asString() );
+		assertEquals( 30, root.child( "age" ).asLong() );
+		assertEquals( "30", root.child( "age" ).asString() );
+		assertEquals( 1.85d, root.child( "height" ).asDouble(), 0 );
+		assertEquals( 1L, root.child( "height" ).asLong() );
+		assertEquals( "12345678901234567890", root.child( "id" ).asString() );
+		assertEquals( WilddogNode.Type.NUMBER, root.child( "id" ).getType() );
+		assertFalse( root.child( "admin" ).asBoolean() );
+		assertTrue( root.child( "manager" ).isNull() );
+		assertTrue( root.child( "manager" ).exists() );
+		assertNull( root.child( "manager" ).asString() );
+	}
+
+	@Test
+	public void addressesChildrenByPath() throws Throwable {
+
+		WilddogNode root = node( JSON );
+		assertEquals( "x", root.child( "address/city" ).asString() );
+		assertEquals( "01234", root.child( "/address//zip/" ).asString() );
+		assertEquals( 3, root.child( "tags/2/c" ).asLong() );
+		assertEquals( "c", root.child( "tags/2/c" ).getKey() );
+
+		// ie: a missing child can be chained
+		assertFalse( root.child( "nobody/city" ).exists() );
+		assertEquals( WilddogNode.Type.MISSING, root.child( "tags/3" ).getType() );
+		assertFalse( root.hasChild( "tags/-1" ) );
+		assertFalse( root.hasChild( "name/first" ) );
+		assertNull( root.child( "nobody" ).toObject() );
+	}
+
+	@Test
+	public void listsTheChildrenInTheOrderOfTheData() throws Throwable {
+
+		WilddogNode root = node( JSON );
+		assertEquals( 8, root.getChildCount() );
+		assertEquals( "name", root.getChildKey( 0 ) );
+		assertEquals( "address", root.getChild( 7 ).getKey() );
+
+		List<WilddogNode> tags = root.child( "tags" ).getChildren();
+		assertEquals( 3, tags.size() );
+		assertEquals( "1", tags.get( 1 ).getKey() );
+		assertEquals( "b", tags.get( 1 ).asString() );
+		assertEquals( 0, root.child( "name" ).getChildCount() );
+	}
+
+	@Test
+	public void findsTheChildrenOfALargeObject() throws Throwable {
+
+		StringBuilder json = new StringBuilder( "{" );
+		for( int i = 999; i >= 0; i-- ) {
+			json.append( i < 999 ? "," : "" ).append( "\"k" ).append( i ).append( "\":" ).append( i );
+		}
+		WilddogNode root = node( json.append( "}" ).toString() );
+
+		for( int i = 0; i < 1000; i++ ) {
+			assertEquals( i, root.child( "k" + i ).asLong() );
+		}
+		assertFalse( root.hasChild( "k1000" ) );
+		assertFalse( root.hasChild( "5" ) );
+		assertEquals( "k999", root.getChildKey( 0 ) );
+	}
+
+	@Test
+	public void convertsAsJacksonUtilityDoes() throws Throwable {
+
+		WilddogNode root = node( JSON );
+		assertEquals( JacksonUtility.DEFAULT.toObject( JSON ), root.toObject() );
+		assertEquals( new BigInteger( "12345678901234567890" ), root.toMap().get( "id" ) );
+		assertEquals( Arrays.asList( "a", "b", Collections.singletonMap( "c", 3 ) ), root.child( "tags" ).toObject() );
+		assertTrue( root.child( "tags" ).toMap().isEmpty() );
+	}
+
+	@Test
+	public void readsAnEmptyBodyAsNull() throws Throwable {
+		assertTrue( node( "" ).isNull() );
+		assertTrue( node( "null" ).isNull() );
+		assertEquals( "x", node( "\"x\"" ).asString() );
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void refusesToReadAnObjectAsALeaf() throws Throwable {
+		node( JSON ).child( "address" ).asString();
+	}
+
+	@Test
+	public void getsATreeFromTheServer() throws Throwable {
+
+		this.server.enqueue( new MockResponse().setBody( JSON ) );
+		this.server.enqueue( new MockResponse().setResponseCode( 404 ).setBody( "{\"error\":\"not found\"}" ) );
+		Wilddog wilddog = new Wilddog.Builder( this.server.url( "/rest" ).toString() ).build();
+		try {
+			assertEquals( "x", wilddog.getNode( "users/jack" ).child( "address/city" ).asString() );
+			try {
+				wilddog.getNode( "users/jill" );
+				fail( "there is no jill" );
+			} catch( WilddogException expected ) {
+				assertTrue( expected.getMessage(), expected.getMessage().contains( "404" ) );
+			}
+		} finally {
+			wilddog.close();
+		}
+		assertEquals( "/rest/users/jack.json", this.server.takeRequest().getPath() );
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PRIVATE API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	private static WilddogNode node(String json ) throws Throwable {
+		return JacksonUtility.DEFAULT.toNode( new ByteArrayInputStream( json.getBytes( "UTF-8" ) ) );
+	}
+
+}
@@ -0,0 +1,83 @@
+package com.wilddog.client.rest.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.wilddog.client.rest.service.Wilddog;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+public class WilddogQueryTest {
+
+	@Rule
+	public final MockWebServer server = new MockWebServer();
+
+	@Test
+	public void quotesStringsAsJson() {
+
+		assertEquals( "\"$key\"", new WilddogQuery().orderByKey().getValue( WilddogQuery.ORDER_BY ) );
+		assertEquals( "\"address/city\"", new WilddogQuery().orderByChild( " address/city " ).getValue( WilddogQuery.ORDER_BY ) );
+		assertEquals( "\"a\\\"b\\\\c\\n\\u0001\"", new WilddogQuery().startAt( "a\"b\\c\n\u0001" ).getValue( WilddogQuery.START_AT ) );
+	}
+
+	@Test
+	public void writesIntegralNumbersExactly() {
+
+		assertEquals( "18", new WilddogQuery().startAt( 18.0 ).getValue( WilddogQuery.START_AT ) );
+		assertEquals( "0", new WilddogQuery().startAt( -0.0 ).getValue( WilddogQuery.START_AT ) );
+		assertEquals( "1.5", new WilddogQuery().startAt( 1.5 ).getValue( WilddogQuery.START_AT ) );
+		// no exponent, where String.valueOf(double) would switch to one
+		assertEquals( "1000000000000000", new WilddogQuery().endAt( 1e15 ).getValue( WilddogQuery.END_AT ) );
+		assertEquals( "100000000000000000000", new WilddogQuery().endAt( 1e20 ).getValue( WilddogQuery.END_AT ) );
+	}
+
+	@Test
+	public void keepsLongsBeyondTheRangeOfADouble() {
+
+		long id = ( 1L << 53 ) + 1;
+		assertEquals( String.valueOf( id ), new WilddogQuery().equalTo( id ).getValue( WilddogQuery.EQUAL_TO ) );
+		assertEquals( String.valueOf( Long.MAX_VALUE ), new WilddogQuery().startAt( Long.MAX_VALUE ).getValue( WilddogQuery.START_AT ) );
+		// an int picks the long overload
+		assertEquals( "18", new WilddogQuery().startAt( 18 ).getValue( WilddogQuery.START_AT ) );
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void refusesANonFiniteNumber() {
+		new WilddogQuery().startAt( Double.NaN );
+	}
+
+	@Test
+	public void replacesAParameterOfTheSameNameAndLeavesTheReceiver() {
+
+		WilddogQuery first = new WilddogQuery().limitToFirst( 10 );
+		WilddogQuery second = first.limitToFirst( 20 ).shallow();
+
+		assertEquals( "limitToFirst=10", first.toString() );
+		assertEquals( "limitToFirst=20&shallow=true", second.toString() );
+		assertNull( first.getValue( WilddogQuery.SHALLOW ) );
+	}
+
+	@Test
+	public void sendsTheParametersUrlEncoded() throws Throwable {
+
+		this.server.enqueue( new MockResponse().setBody( "{}" ) );
+		Wilddog wilddog = new Wilddog.Builder( this.server.url( "/rest" ).toString() ).build();
+		try {
+			wilddog.get( "users", new WilddogQuery().orderByChild( "age" ).startAt( 9007199254740993L ).limitToFirst( 5 ) );
+		} finally {
+			wilddog.close();
+		}
+
+		String path = this.server.takeRequest().getPath();
+		assertTrue( path, path.startsWith( "/rest/users.json?" ) );
+		assertTrue( path, path.contains( "orderBy=%22age%22" ) );
+		assertTrue( path, path.contains( "startAt=9007199254740993" ) );
+		assertTrue( path, path.contains( "limitToFirst=5" ) );
+	}
+
+}
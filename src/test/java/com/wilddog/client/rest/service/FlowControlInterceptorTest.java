@@ -0,0 +1,233 @@
+package com.wilddog.client.rest.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.wilddog.client.rest.error.WilddogException;
+import com.wilddog.client.rest.model.WilddogResponse;
+
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+public class FlowControlInterceptorTest {
+
+	@Rule
+	public final MockWebServer server = new MockWebServer();
+
+	private final SlowServer slow = new SlowServer();
+	private final List<Wilddog> clients = new ArrayList<Wilddog>();
+
+	@Before
+	public void setUp() {
+		this.server.setDispatcher( this.slow );
+	}
+
+	@After
+	public void tearDown() {
+		for( Wilddog client : this.clients ) {
+			client.close();
+		}
+	}
+
+	@Test
+	public void sendsNoFasterThanTheRate() throws Throwable {
+
+		Wilddog wilddog = this.wilddog( new WilddogFlowControl.Builder().rate( 20, 1 ).build() );
+		long start = System.nanoTime();
+		for( int i = 0; i < 6; i++ ) {
+			wilddog.get( "a" );
+		}
+		// the first goes right away, the five others a twentieth of a second apart
+		assertTrue( System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos( 240 ) );
+	}
+
+	@Test
+	public void appliesAPrefixToItsPathsOnly() throws Throwable {
+
+		// a request a second, so every request on or below the prefix but the first is rejected
+		Wilddog wilddog = this.wilddog( new WilddogFlowControl.Builder()
+				.rate( 1, 1 )
+				.maxWait( 50, TimeUnit.MILLISECONDS )
+				.build(), "logs" );
+
+		assertTrue( wilddog.get( "logs" ).getSuccess() );
+		for( String path : new String[] { "logs/1", "/logs/2/3/" } ) {
+			try {
+				wilddog.get( path );
+				fail( "'" + path + "' was not held back" );
+			} catch( WilddogException e ) {
+				assertTrue( FlowControlInterceptor.isRejected( (IOException) e.getCause() ) );
+			}
+		}
+		for( String path : new String[] { "logsets", "logsets/1", "users", "" } ) {
+			assertTrue( wilddog.get( path ).getSuccess() );
+		}
+	}
+
+	@Test
+	public void keepsNoMoreInFlightThanTheLimit() throws Throwable {
+
+		this.slow.delayMillis = 50;
+		Wilddog wilddog = this.wilddog( new WilddogFlowControl.Builder().concurrency( 2, 2, 2 ).build() );
+		List<CompletableFuture<WilddogResponse>> responses = new ArrayList<CompletableFuture<WilddogResponse>>();
+		for( int i = 0; i < 10; i++ ) {
+			responses.add( wilddog.getAsync( "a/" + i ) );
+		}
+		for( CompletableFuture<WilddogResponse> response : responses ) {
+			assertTrue( response.get( 10, TimeUnit.SECONDS ).getSuccess() );
+		}
+		assertEquals( 2, this.slow.maxInFlight.get() );
+	}
+
+	@Test
+	public void holdsAPlaceUntilTheResponseBodyIsClosed() throws Throwable {
+
+		HttpUrl baseUrl = this.server.url( "/rest" );
+		WilddogFlowControl one = new WilddogFlowControl.Builder()
+				.concurrency( 1, 1, 1 )
+				.maxWait( 200, TimeUnit.MILLISECONDS )
+				.build();
+		OkHttpClient client = new OkHttpClient.Builder()
+				.addInterceptor( new FlowControlInterceptor( one, Collections.<String, WilddogFlowControl>emptyMap(), baseUrl ) )
+				.build();
+		Request request = new Request.Builder().url( baseUrl.resolve( "/rest/a.json" ) ).build();
+
+		Response first = client.newCall( request ).execute();
+		try {
+			client.newCall( request ).execute().close();
+			fail( "sent a second request while the body of the first was open" );
+		} catch( IOException e ) {
+			assertTrue( FlowControlInterceptor.isRejected( e ) );
+		}
+
+		// read to the end, and closed twice; the place is given back once
+		first.body().string();
+		first.close();
+		client.newCall( request ).execute().close();
+		client.newCall( request ).execute().close();
+		assertEquals( 3, this.slow.requests.get() );
+	}
+
+	@Test
+	public void holdsEveryRequestBackForRetryAfter() throws Throwable {
+
+		this.slow.retryAfterSeconds = 1;
+		Wilddog wilddog = this.wilddog( new WilddogFlowControl.Builder().concurrency( 4, 1, 8 ).build() );
+		wilddog.get( "a" );
+		this.slow.retryAfterSeconds = 0;
+
+		long start = System.nanoTime();
+		assertTrue( wilddog.get( "b" ).getSuccess() );
+		assertTrue( System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos( 900 ) );
+	}
+
+	@Test
+	public void failsARequestHeldBackForLongerThanMaxWait() throws Throwable {
+
+		Wilddog wilddog = this.wilddog( new WilddogFlowControl.Builder()
+				.rate( 1, 1 )
+				.maxWait( 100, TimeUnit.MILLISECONDS )
+				.build() );
+		wilddog.get( "a" );
+		try {
+			wilddog.get( "b" );
+			fail( "sent a request that had to wait for a second" );
+		} catch( WilddogException e ) {
+			assertTrue( e.getCause() instanceof IOException && FlowControlInterceptor.isRejected( (IOException) e.getCause() ) );
+		}
+		// and it was not retried
+		assertEquals( 1, this.slow.requests.get() );
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PRIVATE API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	private Wilddog wilddog(WilddogFlowControl flowControl ) throws Throwable {
+		// without retries, so every request is sent once
+		Wilddog wilddog = new Wilddog.Builder( this.server.url( "/rest" ).toString() )
+				.retryPolicy( WilddogRetryPolicy.NONE )
+				.flowControl( flowControl )
+				.build();
+		this.clients.add( wilddog );
+		return wilddog;
+	}
+
+	private Wilddog wilddog(WilddogFlowControl flowControl, String pathPrefix ) throws Throwable {
+		Wilddog wilddog = new Wilddog.Builder( this.server.url( "/rest" ).toString() )
+				.retryPolicy( WilddogRetryPolicy.NONE )
+				.flowControl( pathPrefix, flowControl )
+				.build();
+		this.clients.add( wilddog );
+		return wilddog;
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// INTERNAL CLASSES
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	/**
+	 * Answers every request after a delay, counting them and the most in flight at once; and with a 503 and a
+	 * Retry-After, when set.
+	 */
+	private static class SlowServer extends Dispatcher {
+
+		private final AtomicInteger requests = new AtomicInteger();
+		private final AtomicInteger inFlight = new AtomicInteger();
+		private final AtomicInteger maxInFlight = new AtomicInteger();
+		private volatile long delayMillis = 0;
+		private volatile int retryAfterSeconds = 0;
+
+		@Override
+		public MockResponse dispatch(RecordedRequest request ) throws InterruptedException {
+			this.requests.incrementAndGet();
+			int inFlight = this.inFlight.incrementAndGet();
+			try {
+				while( true ) {
+					int max = this.maxInFlight.get();
+					if( inFlight <= max || this.maxInFlight.compareAndSet( max, inFlight ) ) {
+						break;
+					}
+				}
+				Thread.sleep( this.delayMillis );
+			} finally {
+				this.inFlight.decrementAndGet();
+			}
+			if( this.retryAfterSeconds > 0 ) {
+				return new MockResponse().setResponseCode( 503 ).setHeader( "Retry-After", this.retryAfterSeconds );
+			}
+			return new MockResponse().setBody( "{}" );
+		}
+	}
+
+}
@@ -0,0 +1,41 @@
+package com.wilddog.client.rest.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import okhttp3.HttpUrl;
+
+public class RelativePathTest {
+
+	@Test
+	public void stripsTheBaseUrlAndTheJsonExtension() {
+
+		for( String base : new String[] { "https://x.wilddogio.com/rest", "https://x.wilddogio.com/rest/" } ) {
+			RelativePath relativePath = new RelativePath( HttpUrl.parse( base ) );
+			assertEquals( 1, relativePath.baseSegments() );
+			assertEquals( "users/jack", relativePath.of( HttpUrl.parse( "https://x.wilddogio.com/rest/users/jack.json" ) ) );
+			assertEquals( "", relativePath.of( HttpUrl.parse( "https://x.wilddogio.com/rest/.json" ) ) );
+			assertEquals( "", relativePath.of( HttpUrl.parse( "https://x.wilddogio.com/rest.json" ) ) );
+		}
+
+		RelativePath root = new RelativePath( HttpUrl.parse( "https://x.wilddogio.com" ) );
+		assertEquals( 0, root.baseSegments() );
+		assertEquals( "a/b c", root.of( HttpUrl.parse( "https://x.wilddogio.com/a/b%20c.json?print=silent" ) ) );
+	}
+
+	@Test
+	public void matchesAPrefixOnWholeSegments() {
+
+		assertTrue( RelativePath.isOnOrBelow( "logs", "logs" ) );
+		assertTrue( RelativePath.isOnOrBelow( "logs/1", "logs" ) );
+		assertTrue( RelativePath.isOnOrBelow( "logs", "" ) );
+		assertTrue( RelativePath.isOnOrBelow( "", "" ) );
+		assertFalse( RelativePath.isOnOrBelow( "logsets", "logs" ) );
+		assertFalse( RelativePath.isOnOrBelow( "log", "logs" ) );
+		assertFalse( RelativePath.isOnOrBelow( "", "logs" ) );
+	}
+
+}
@@ -0,0 +1,150 @@
+package com.wilddog.client.rest.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okio.Buffer;
+
+public class RetryInterceptorTest {
+
+	private static final MediaType JSON								= MediaType.parse( "application/json; charset=utf-8" );
+
+	@Rule
+	public final MockWebServer server = new MockWebServer();
+
+	@Test
+	public void retriesATransientFailureOfAnIdempotentRequest() throws Throwable {
+
+		OkHttpClient client = client( new WilddogRetryPolicy.Builder().backoff( 0, 0, TimeUnit.MILLISECONDS ).build() );
+		this.server.enqueue( new MockResponse().setResponseCode( 503 ) );
+		this.server.enqueue( new MockResponse().setResponseCode( 502 ) );
+		this.server.enqueue( new MockResponse().setBody( "{}" ) );
+
+		Response response = client.newCall( this.get() ).execute();
+		response.close();
+		assertEquals( 200, response.code() );
+		assertEquals( 3, this.server.getRequestCount() );
+	}
+
+	@Test
+	public void givesUpAfterMaxAttempts() throws Throwable {
+
+		OkHttpClient client = client( new WilddogRetryPolicy.Builder().maxAttempts( 2 ).backoff( 0, 0, TimeUnit.MILLISECONDS ).build() );
+		for( int i = 0; i < 3; i++ ) {
+			this.server.enqueue( new MockResponse().setResponseCode( 500 ) );
+		}
+
+		Response response = client.newCall( this.get() ).execute();
+		response.close();
+		assertEquals( 500, response.code() );
+		assertEquals( 2, this.server.getRequestCount() );
+	}
+
+	@Test
+	public void doesNotRetryWhatMayNotBeSentTwice() throws Throwable {
+
+		OkHttpClient client = client( new WilddogRetryPolicy.Builder().backoff( 0, 0, TimeUnit.MILLISECONDS ).build() );
+		Request[] requests = {
+				// not idempotent
+				new Request.Builder().url( this.server.url( "/rest/a.json" ) ).post( RequestBody.create( JSON, "{}" ) ).build(),
+				// a conditional write, which may have been applied before its response was lost
+				new Request.Builder().url( this.server.url( "/rest/a.json" ) ).header( "if-match", "\"1\"" ).put( RequestBody.create( JSON, "{}" ) ).build(),
+				// a body that can be written only once
+				new Request.Builder().url( this.server.url( "/rest/a.json" ) ).put( new Wilddog.StreamingRequestBody( new ByteArrayInputStream( "{}".getBytes( "UTF-8" ) ), false ) ).build(),
+		};
+		for( Request request : requests ) {
+			this.server.enqueue( new MockResponse().setResponseCode( 503 ) );
+			this.server.enqueue( new MockResponse().setBody( "{}" ) );
+			Response response = client.newCall( request ).execute();
+			response.close();
+			assertEquals( 503, response.code() );
+			// takes the 200 a retry would have got, so the next request starts on a 503 again
+			client.newCall( this.get() ).execute().close();
+		}
+		assertEquals( 6, this.server.getRequestCount() );
+	}
+
+	@Test
+	public void doesNotRetryAnAnswerThatIsNotTransient() throws Throwable {
+
+		OkHttpClient client = client( WilddogRetryPolicy.DEFAULT );
+		this.server.enqueue( new MockResponse().setResponseCode( 404 ) );
+		this.server.enqueue( new MockResponse().setResponseCode( 503 ).setHeader( "Retry-After", 60 ) );
+
+		client.newCall( this.get() ).execute().close();
+		// asks for longer than the max-delay
+		client.newCall( this.get() ).execute().close();
+		assertEquals( 2, this.server.getRequestCount() );
+	}
+
+	@Test
+	public void retriesNoMoreThanTheBudgetAllows() throws Throwable {
+
+		// a tenth of a retry per request, none for free; the balance starts at one retry
+		OkHttpClient client = client( new WilddogRetryPolicy.Builder()
+				.maxAttempts( 3 )
+				.backoff( 0, 0, TimeUnit.MILLISECONDS )
+				.budget( 0.1, 0 )
+				.build() );
+		for( int i = 0; i < 400; i++ ) {
+			this.server.enqueue( new MockResponse().setResponseCode( 503 ) );
+		}
+
+		for( int i = 0; i < 100; i++ ) {
+			client.newCall( this.get() ).execute().close();
+		}
+		// without a budget the server would have seen 300; with it, about one retry per ten requests
+		int retries = this.server.getRequestCount() - 100;
+		assertTrue( "retries: " + retries, retries >= 8 && retries <= 12 );
+	}
+
+	@Test
+	public void refusesToWriteAStreamedBodyTwice() throws Throwable {
+
+		RequestBody body = new Wilddog.StreamingRequestBody( new ByteArrayInputStream( "{}".getBytes( "UTF-8" ) ), false );
+		Buffer sent = new Buffer();
+		body.writeTo( sent );
+		assertEquals( "{}", sent.readUtf8() );
+		try {
+			body.writeTo( sent );
+			fail( "wrote a streamed body twice" );
+		} catch( IOException expected ) {
+			// ie: okhttp's own retry fails instead of sending an empty body
+		}
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PRIVATE API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	private Request get() {
+		return new Request.Builder().url( this.server.url( "/rest/a.json" ) ).build();
+	}
+
+	private static OkHttpClient client(WilddogRetryPolicy policy ) {
+		return new OkHttpClient.Builder()
+				.addInterceptor( new RetryInterceptor( policy, null ) )
+				.build();
+	}
+
+}
@@ -0,0 +1,189 @@
+package com.wilddog.client.rest.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.wilddog.client.rest.util.LoggingUtility;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+public class TracingInterceptorTest {
+
+	private static final String TOKEN								= "s3cr3t";
+
+	@Rule
+	public final MockWebServer server = new MockWebServer();
+
+	private final TraceRecorder traces = new TraceRecorder();
+	private Level level;
+
+	@Before
+	public void setUp() {
+		this.server.setDispatcher( new Echo() );
+		Logger root = Logger.getRootLogger();
+		this.level = root.getLevel();
+		root.setLevel( Level.DEBUG );
+		root.addAppender( this.traces );
+	}
+
+	@After
+	public void tearDown() {
+		Logger root = Logger.getRootLogger();
+		root.removeAppender( this.traces );
+		root.setLevel( this.level );
+	}
+
+	@Test
+	public void tracesNothingWhenOff() throws Throwable {
+
+		Wilddog wilddog = this.build( WilddogTracing.OFF );
+		try {
+			wilddog.put( "x", "{\"a\":1}" );
+		} finally {
+			wilddog.close();
+		}
+		assertTrue( this.traces.lines.toString(), this.traces.lines.isEmpty() );
+	}
+
+	@Test
+	public void tracesTheRequestAndResponseWithTheTokenRedacted() throws Throwable {
+
+		Wilddog wilddog = this.build( WilddogTracing.FULL );
+		try {
+			wilddog.put( "x", "{\"a\":1}" );
+		} finally {
+			wilddog.close();
+		}
+
+		assertEquals( 1, this.traces.lines.size() );
+		String trace = this.traces.lines.get( 0 );
+		assertTrue( trace, trace.startsWith( "request(PUT) @ " ) );
+		assertTrue( trace, trace.contains( "auth=" + LoggingUtility.REDACTED ) );
+		assertFalse( trace, trace.contains( TOKEN ) );
+		assertTrue( trace, trace.contains( " returned 200 in " ) );
+		assertTrue( trace, trace.contains( "; request-body(7b): '{\"a\":1}'" ) );
+		assertTrue( trace, trace.contains( "; response-body(7b): '{\"a\":1}'" ) );
+	}
+
+	@Test
+	public void cutsThePayloads() throws Throwable {
+
+		Wilddog wilddog = this.build( WilddogTracing.FULL.maxPayloadLength( 4 ) );
+		try {
+			wilddog.put( "x", "{\"abcdefgh\":1}" );
+		} finally {
+			wilddog.close();
+		}
+
+		String trace = this.traces.lines.get( 0 );
+		assertTrue( trace, trace.contains( "; request-body(14b): '{\"ab...(+10 chars)'" ) );
+		assertTrue( trace, trace.contains( "; response-body(14b): '{\"ab...'" ) );
+	}
+
+	@Test
+	public void tracesOneInEveryNRequests() throws Throwable {
+
+		Wilddog wilddog = this.build( WilddogTracing.sampled( 3 ) );
+		try {
+			for( int i = 0; i < 7; i++ ) {
+				wilddog.get( "x" );
+			}
+		} finally {
+			wilddog.close();
+		}
+		// the 1st, 4th and 7th
+		assertEquals( 3, this.traces.lines.size() );
+	}
+
+	@Test
+	public void tracesNothingWhileInfoIsDisabled() throws Throwable {
+
+		Logger.getRootLogger().setLevel( Level.WARN );
+		Wilddog wilddog = this.build( WilddogTracing.FULL );
+		try {
+			wilddog.get( "x" );
+		} finally {
+			wilddog.close();
+		}
+		assertTrue( this.traces.lines.toString(), this.traces.lines.isEmpty() );
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PRIVATE API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	private Wilddog build(WilddogTracing tracing ) throws Throwable {
+		return new Wilddog.Builder( this.server.url( "/rest" ).toString() )
+				.secureToken( TOKEN )
+				.tracing( tracing )
+				.build();
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// INTERNAL CLASSES
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	/**
+	 * Keeps the traces; ie: the INFO-lines about a request.
+	 */
+	private static class TraceRecorder extends AppenderSkeleton {
+
+		private final List<String> lines = new CopyOnWriteArrayList<String>();
+
+		@Override
+		protected void append(LoggingEvent event ) {
+			String message = event.getRenderedMessage();
+			if( event.getLevel() == Level.INFO && message.startsWith( "request(" ) ) {
+				this.lines.add( message );
+			}
+		}
+
+		@Override
+		public boolean requiresLayout() {
+			return false;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	/**
+	 * Answers a write with its own body, and a read with an empty object.
+	 */
+	private static class Echo extends Dispatcher {
+
+		@Override
+		public MockResponse dispatch(RecordedRequest request ) {
+			String body = request.getBody().readUtf8();
+			return new MockResponse().setBody( body.isEmpty() ? "{}" : body );
+		}
+	}
+
+}
@@ -0,0 +1,134 @@
+package com.wilddog.client.rest.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.wilddog.client.rest.error.WilddogException;
+import com.wilddog.client.rest.model.WilddogResponse;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+
+public class WilddogAsyncTest {
+
+	@Rule
+	public final MockWebServer server = new MockWebServer();
+
+	private OkHttpClient client;
+	private Wilddog wilddog;
+
+	@Before
+	public void setUp() throws Throwable {
+		// the caller's client, so its dispatcher can be looked at
+		this.client = new OkHttpClient();
+		this.wilddog = new Wilddog.Builder( this.server.url( "/rest" ).toString() )
+				.client( this.client )
+				.retryPolicy( WilddogRetryPolicy.NONE )
+				.build();
+	}
+
+	@After
+	public void tearDown() {
+		this.wilddog.close();
+		this.client.dispatcher().executorService().shutdown();
+	}
+
+	@Test
+	public void completesOnADispatcherThread() throws Throwable {
+
+		this.server.enqueue( new MockResponse().setBody( "{\"a\":1}" ) );
+		final AtomicReference<Thread> completedOn = new AtomicReference<Thread>();
+		CompletableFuture<WilddogResponse> future = this.wilddog.getAsync( "x" );
+		WilddogResponse response = future.whenComplete( new BiConsumer<WilddogResponse, Throwable>() {
+			@Override
+			public void accept(WilddogResponse response, Throwable t ) {
+				completedOn.compareAndSet( null, Thread.currentThread() );
+			}
+		} ).get( 10, TimeUnit.SECONDS );
+
+		assertTrue( response.getSuccess() );
+		assertEquals( Collections.singletonMap( "a", 1 ), response.getBody() );
+		assertEquals( "/rest/x.json", this.server.takeRequest().getPath() );
+		assertNotSame( Thread.currentThread(), completedOn.get() );
+	}
+
+	@Test
+	public void sendsTheVerbAndBodyOfEveryWrite() throws Throwable {
+
+		for( int i = 0; i < 4; i++ ) {
+			this.server.enqueue( new MockResponse().setBody( "{}" ) );
+		}
+		this.wilddog.putAsync( "a", "{\"v\":1}" ).get( 10, TimeUnit.SECONDS );
+		this.wilddog.patchAsync( "b", Collections.<String, Object>singletonMap( "v", 2 ) ).get( 10, TimeUnit.SECONDS );
+		this.wilddog.postAsync( "c", "{\"v\":3}".getBytes( "UTF-8" ) ).get( 10, TimeUnit.SECONDS );
+		this.wilddog.deleteAsync( "d" ).get( 10, TimeUnit.SECONDS );
+
+		assertRequest( "PUT", "/rest/a.json", "{\"v\":1}", this.server.takeRequest() );
+		assertRequest( "PATCH", "/rest/b.json", "{\"v\":2}", this.server.takeRequest() );
+		assertRequest( "POST", "/rest/c.json", "{\"v\":3}", this.server.takeRequest() );
+		assertRequest( "DELETE", "/rest/d.json", "", this.server.takeRequest() );
+	}
+
+	@Test
+	public void failsWithAWilddogException() throws Throwable {
+
+		Wilddog offline = new Wilddog.Builder( "http://127.0.0.1:1/rest" ).retryPolicy( WilddogRetryPolicy.NONE ).build();
+		try {
+			offline.getAsync( "x" ).get( 10, TimeUnit.SECONDS );
+			fail( "read from port 1" );
+		} catch( ExecutionException expected ) {
+			assertTrue( expected.getCause() instanceof WilddogException );
+		} finally {
+			offline.close();
+		}
+	}
+
+	@Test
+	public void cancelsTheCallWithTheFuture() throws Throwable {
+
+		this.server.enqueue( new MockResponse().setSocketPolicy( SocketPolicy.NO_RESPONSE ) );
+		CompletableFuture<WilddogResponse> future = this.wilddog.getAsync( "x" );
+		this.server.takeRequest();
+		assertEquals( 1, this.client.dispatcher().runningCallsCount() );
+
+		assertTrue( future.cancel( true ) );
+
+		for( int i = 0; i < 100 && this.client.dispatcher().runningCallsCount() > 0; i++ ) {
+			Thread.sleep( 10 );
+		}
+		assertEquals( 0, this.client.dispatcher().runningCallsCount() );
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PRIVATE API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	private static void assertRequest(String method, String path, String body, RecordedRequest request ) {
+		assertEquals( method, request.getMethod() );
+		assertEquals( path, request.getPath() );
+		assertEquals( body, request.getBody().readUtf8() );
+	}
+
+}
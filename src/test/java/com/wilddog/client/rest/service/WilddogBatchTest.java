@@ -0,0 +1,246 @@
+package com.wilddog.client.rest.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.wilddog.client.rest.error.WilddogException;
+import com.wilddog.client.rest.model.WilddogResponse;
+import com.wilddog.client.rest.util.JacksonUtility;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+public class WilddogBatchTest {
+
+	@Rule
+	public final MockWebServer server = new MockWebServer();
+
+	private Wilddog wilddog;
+
+	@Before
+	public void setUp() throws Throwable {
+		this.wilddog = new Wilddog.Builder( this.server.url( "/rest" ).toString() ).build();
+		this.server.enqueue( new MockResponse().setBody( "{}" ) );
+	}
+
+	@After
+	public void tearDown() {
+		this.wilddog.close();
+	}
+
+	@Test
+	public void patchesTheCommonAncestorOfEveryPath() throws Throwable {
+
+		WilddogBatch batch = this.wilddog.batch();
+		batch.put( "users/jack/age", 30 );
+		batch.put( "users/jill", Collections.singletonMap( "age", 31 ) );
+		batch.flush().get();
+
+		RecordedRequest request = this.server.takeRequest();
+		assertEquals( "PATCH", request.getMethod() );
+		assertEquals( "/rest/users.json", request.getPath() );
+		assertEquals( map( "jack/age", 30, "jill", map( "age", 31 ) ), bodyOf( request ) );
+	}
+
+	@Test
+	public void patchesTheParentOfASinglePath() throws Throwable {
+
+		WilddogBatch batch = this.wilddog.batch();
+		batch.put( "users/jack", Collections.singletonMap( "age", 30 ) );
+		batch.flush().get();
+
+		RecordedRequest request = this.server.takeRequest();
+		assertEquals( "/rest/users.json", request.getPath() );
+		assertEquals( map( "jack", map( "age", 30 ) ), bodyOf( request ) );
+	}
+
+	@Test
+	public void foldsAWriteIntoABufferedAncestor() throws Throwable {
+
+		WilddogBatch batch = this.wilddog.batch();
+		batch.put( "users/jack", map( "age", 30, "name", "Jack" ) );
+		batch.put( "users/jack/age", 31 );
+		batch.put( "users/jack/name", null );
+		batch.put( "users/jack/address/city", "Paris" );
+		batch.flush().get();
+
+		assertEquals( map( "jack", map( "age", 31, "address", map( "city", "Paris" ) ) ), bodyOf( this.server.takeRequest() ) );
+	}
+
+	@Test
+	public void replacesBufferedDescendants() throws Throwable {
+
+		WilddogBatch batch = this.wilddog.batch();
+		batch.put( "users/jack/age", 30 );
+		batch.patch( "users/jack", Collections.<String, Object>singletonMap( "name", "Jack" ) );
+		batch.put( "users", Collections.singletonMap( "jill", true ) );
+		batch.flush().get();
+
+		RecordedRequest request = this.server.takeRequest();
+		assertEquals( "/rest.json", request.getPath() );
+		assertEquals( map( "users", map( "jill", true ) ), bodyOf( request ) );
+	}
+
+	@Test
+	public void putsTheWholeTreeWhenTheRootIsWritten() throws Throwable {
+
+		WilddogBatch batch = this.wilddog.batch();
+		batch.put( "a", 1 );
+		batch.put( "", Collections.singletonMap( "b", 2 ) );
+		batch.put( "c", 3 );
+		batch.flush().get();
+
+		RecordedRequest request = this.server.takeRequest();
+		assertEquals( "PUT", request.getMethod() );
+		assertEquals( map( "b", 2, "c", 3 ), bodyOf( request ) );
+	}
+
+	@Test
+	public void completesEveryWriteWithTheResponseOfItsFlush() throws Throwable {
+
+		WilddogBatch batch = this.wilddog.batch();
+		CompletableFuture<WilddogResponse> first = batch.put( "a", 1 );
+		CompletableFuture<WilddogResponse> second = batch.patch( "b", Collections.<String, Object>singletonMap( "c", 2 ) );
+		WilddogResponse response = batch.flush().get();
+
+		assertTrue( response.getSuccess() );
+		assertTrue( first.get() == response );
+		assertTrue( second.get() == response );
+		assertEquals( 1, this.server.getRequestCount() );
+
+		// nothing buffered, nothing sent
+		assertNull( batch.flush().get() );
+		assertEquals( 1, this.server.getRequestCount() );
+	}
+
+	@Test
+	public void flushesOnceMaxOperationsAreBuffered() throws Throwable {
+
+		WilddogBatch batch = this.wilddog.batch( 2, 0, TimeUnit.MILLISECONDS );
+		batch.put( "a", 1 );
+		CompletableFuture<WilddogResponse> second = batch.put( "b", 2 );
+
+		assertTrue( second.get( 10, TimeUnit.SECONDS ).getSuccess() );
+		assertEquals( map( "a", 1, "b", 2 ), bodyOf( this.server.takeRequest() ) );
+	}
+
+	@Test
+	public void flushesAfterMaxDelay() throws Throwable {
+
+		WilddogBatch batch = this.wilddog.batch( 0, 50, TimeUnit.MILLISECONDS );
+		try {
+			assertTrue( batch.put( "a", 1 ).get( 10, TimeUnit.SECONDS ).getSuccess() );
+		} finally {
+			batch.close();
+		}
+	}
+
+	@Test
+	public void sendsAFlushOnlyOnceThePreviousOneCompleted() throws Throwable {
+
+		SlowServer slow = new SlowServer();
+		this.server.setDispatcher( slow );
+
+		WilddogBatch batch = this.wilddog.batch();
+		batch.put( "users/jack/age", 30 );
+		CompletableFuture<WilddogResponse> first = batch.flush();
+		batch.put( "users/jack/age", 31 );
+		CompletableFuture<WilddogResponse> second = batch.flush();
+
+		assertTrue( second.get( 10, TimeUnit.SECONDS ).getSuccess() );
+		assertTrue( first.isDone() );
+		assertEquals( 1, slow.maxInFlight.get() );
+		assertEquals( 2, slow.bodies.size() );
+		assertEquals( "{\"age\":30}", slow.bodies.get( 0 ) );
+		assertEquals( "{\"age\":31}", slow.bodies.get( 1 ) );
+	}
+
+	@Test(expected = WilddogException.class)
+	public void refusesWritesOnceClosed() throws Throwable {
+
+		WilddogBatch batch = this.wilddog.batch();
+		batch.close();
+		try {
+			batch.put( "a", 1 ).get();
+		} catch( ExecutionException e ) {
+			throw e.getCause();
+		}
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PRIVATE API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	private static Map<String, Object> bodyOf(RecordedRequest request ) throws Throwable {
+		return JacksonUtility.DEFAULT.toMap( request.getBody().readUtf8() );
+	}
+
+	private static Map<String, Object> map(Object... keysAndValues ) {
+		Map<String, Object> map = new LinkedHashMap<String, Object>();
+		for( int i = 0; i < keysAndValues.length; i += 2 ) {
+			map.put( (String) keysAndValues[i], keysAndValues[i + 1] );
+		}
+		return map;
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// INTERNAL CLASSES
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	/**
+	 * Takes 200ms per request; records the bodies in the order they came in, and the most requests in flight.
+	 */
+	private static class SlowServer extends Dispatcher {
+
+		private final List<String> bodies = Collections.synchronizedList( new ArrayList<String>() );
+		private final AtomicInteger inFlight = new AtomicInteger();
+		private final AtomicInteger maxInFlight = new AtomicInteger();
+
+		@Override
+		public MockResponse dispatch(RecordedRequest request ) throws InterruptedException {
+			int inFlight = this.inFlight.incrementAndGet();
+			try {
+				while( true ) {
+					int max = this.maxInFlight.get();
+					if( inFlight <= max || this.maxInFlight.compareAndSet( max, inFlight ) ) {
+						break;
+					}
+				}
+				this.bodies.add( request.getBody().readUtf8() );
+				Thread.sleep( 200 );
+			} finally {
+				this.inFlight.decrementAndGet();
+			}
+			return new MockResponse().setBody( "{}" );
+		}
+	}
+
+}
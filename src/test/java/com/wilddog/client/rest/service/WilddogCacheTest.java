@@ -0,0 +1,272 @@
+package com.wilddog.client.rest.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.wilddog.client.rest.model.WilddogResponse;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+public class WilddogCacheTest {
+
+	@Rule
+	public final MockWebServer server = new MockWebServer();
+
+	private final TreeServer tree = new TreeServer();
+	private Wilddog wilddog;
+
+	@Before
+	public void setUp() throws Throwable {
+		this.server.setDispatcher( this.tree );
+		this.wilddog = new Wilddog.Builder( this.server.url( "/rest" ).toString() )
+				.cache( 100, 1, TimeUnit.MINUTES )
+				.build();
+	}
+
+	@After
+	public void tearDown() {
+		this.wilddog.close();
+	}
+
+	@Test
+	public void answersARepeatedGetFromMemory() throws Throwable {
+
+		this.tree.set( "/rest/users/jack.json", "{\"age\":30}" );
+		assertEquals( Collections.singletonMap( "age", 30 ), this.wilddog.get( "users/jack" ).getBody() );
+		assertEquals( Collections.singletonMap( "age", 30 ), this.wilddog.get( "/users/jack/" ).getBody() );
+
+		assertEquals( 1, this.tree.gets.get() );
+		assertEquals( 1, this.wilddog.getCache().getHitCount() );
+		assertEquals( 1, this.wilddog.getCache().getMissCount() );
+	}
+
+	@Test
+	public void dropsThePathItsAncestorsAndItsDescendantsOnAWrite() throws Throwable {
+
+		for( String path : new String[] { "users", "users/jack", "users/jack/age", "users/jill", "posts" } ) {
+			this.wilddog.get( path );
+		}
+		assertEquals( 5, this.tree.gets.get() );
+
+		this.wilddog.put( "users/jack", Collections.<String, Object>singletonMap( "age", 31 ) );
+
+		for( String path : new String[] { "users", "users/jack", "users/jack/age", "users/jill", "posts" } ) {
+			this.wilddog.get( path );
+		}
+		// users, users/jack and users/jack/age are read again; users/jill and posts are not
+		assertEquals( 8, this.tree.gets.get() );
+	}
+
+	@Test
+	public void keepsAGetThatOverlappedAWriteOutOfTheCache() throws Throwable {
+
+		this.tree.set( "/rest/a.json", "{\"v\":1}" );
+		this.tree.holdGets();
+		CompletableFuture<WilddogResponse> inFlight = this.wilddog.getAsync( "a" );
+		assertTrue( this.tree.getArrived.await( 10, TimeUnit.SECONDS ) );
+
+		// the write lands while the GET is in flight with the old data
+		this.wilddog.put( "a", Collections.<String, Object>singletonMap( "v", 2 ) );
+		this.tree.releaseGets();
+		assertEquals( Collections.singletonMap( "v", 1 ), inFlight.get( 10, TimeUnit.SECONDS ).getBody() );
+
+		assertEquals( Collections.singletonMap( "v", 2 ), this.wilddog.get( "a" ).getBody() );
+		assertEquals( 2, this.tree.gets.get() );
+	}
+
+	@Test
+	public void revalidatesAnExpiredSnapshotWithItsETag() throws Throwable {
+
+		Wilddog shortLived = new Wilddog.Builder( this.server.url( "/rest" ).toString() )
+				.cache( 100, 50, TimeUnit.MILLISECONDS )
+				.build();
+		try {
+			this.tree.set( "/rest/a.json", "{\"v\":1}" );
+			shortLived.get( "a" );
+			Thread.sleep( 100 );
+
+			WilddogResponse response = shortLived.get( "a" );
+			assertEquals( Collections.singletonMap( "v", 1 ), response.getBody() );
+			assertEquals( 1, this.tree.notModified.get() );
+			assertEquals( 1, shortLived.getCache().getRevalidationCount() );
+		} finally {
+			shortLived.close();
+		}
+	}
+
+	@Test
+	public void evictsTheLeastRecentlyUsedSnapshot() throws Throwable {
+
+		Wilddog small = new Wilddog.Builder( this.server.url( "/rest" ).toString() )
+				.cache( 2, 1, TimeUnit.MINUTES )
+				.build();
+		try {
+			small.get( "a" );
+			small.get( "b" );
+			small.get( "a" );
+			small.get( "c" );
+			assertEquals( 2, small.getCache().size() );
+			assertEquals( 1, small.getCache().getEvictionCount() );
+
+			// b was evicted, a was not
+			small.get( "a" );
+			small.get( "b" );
+			assertEquals( 4, this.tree.gets.get() );
+		} finally {
+			small.close();
+		}
+	}
+
+	@Test
+	public void answersAScalarLeafAsTheMissDid() throws Throwable {
+
+		Wilddog raw = new Wilddog.Builder( this.server.url( "/rest" ).toString() )
+				.cache( 100, 1, TimeUnit.MINUTES )
+				.keepRawBody( true )
+				.build();
+		try {
+			this.tree.set( "/rest/users/jack/age.json", "30" );
+			WilddogResponse miss = raw.get( "users/jack/age" );
+			WilddogResponse hit = raw.get( "users/jack/age" );
+
+			assertEquals( 1, raw.getCache().getHitCount() );
+			assertEquals( "30", miss.getRawBody() );
+			assertEquals( "30", hit.getRawBody() );
+			assertEquals( miss.getBody(), hit.getBody() );
+			assertEquals( miss.getETag(), hit.getETag() );
+		} finally {
+			raw.close();
+		}
+	}
+
+	@Test
+	public void keepsNoRawBodyUnlessTheClientDoes() throws Throwable {
+
+		this.tree.set( "/rest/users/jack/age.json", "30" );
+		WilddogResponse miss = this.wilddog.get( "users/jack/age" );
+		WilddogResponse hit = this.wilddog.get( "users/jack/age" );
+
+		assertEquals( 1, this.wilddog.getCache().getHitCount() );
+		assertEquals( "", miss.getRawBody() );
+		assertEquals( "", hit.getRawBody() );
+		assertTrue( hit.getBody().isEmpty() );
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void handsOutReadOnlySnapshots() throws Throwable {
+
+		this.tree.set( "/rest/a.json", "{\"b\":{\"c\":[1,{\"d\":2}]}}" );
+		for( int i = 0; i < 2; i++ ) {
+			// on the miss that fills the cache, as on the hit
+			Map<String, Object> body = this.wilddog.get( "a" ).getBody();
+			Map<String, Object> b = (Map<String, Object>) body.get( "b" );
+			List<Object> c = (List<Object>) b.get( "c" );
+			Map<String, Object> d = (Map<String, Object>) c.get( 1 );
+			assertReadOnly( body, b, c, d );
+		}
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PRIVATE API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	@SuppressWarnings("unchecked")
+	private static void assertReadOnly(Object... nodes ) {
+		for( Object node : nodes ) {
+			try {
+				if( node instanceof Map ) {
+					( (Map<String, Object>) node ).put( "x", 1 );
+				} else {
+					( (List<Object>) node ).add( 1 );
+				}
+				fail( "could modify " + node );
+			} catch( UnsupportedOperationException expected ) {
+				// ie: read-only
+			}
+		}
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// INTERNAL CLASSES
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	/**
+	 * Keeps the json of every path as written, with its ETag; GETs can be held until released.
+	 */
+	private static class TreeServer extends Dispatcher {
+
+		private final Map<String, String> data = new ConcurrentHashMap<String, String>();
+		private final AtomicInteger gets = new AtomicInteger();
+		private final AtomicInteger notModified = new AtomicInteger();
+		private final CountDownLatch getArrived = new CountDownLatch( 1 );
+		private volatile CountDownLatch held = null;
+
+		void set(String path, String json ) {
+			this.data.put( path, json );
+		}
+
+		void holdGets() {
+			this.held = new CountDownLatch( 1 );
+		}
+
+		void releaseGets() {
+			this.held.countDown();
+			this.held = null;
+		}
+
+		@Override
+		public MockResponse dispatch(RecordedRequest request ) throws InterruptedException {
+
+			String path = request.getPath();
+			if( !"GET".equals( request.getMethod() ) ) {
+				String json = request.getBody().readUtf8();
+				this.data.put( path, json );
+				return new MockResponse().setBody( json );
+			}
+
+			this.gets.incrementAndGet();
+			String json = this.data.containsKey( path ) ? this.data.get( path ) : "null";
+			String etag = "\"" + Integer.toHexString( json.hashCode() ) + "\"";
+			CountDownLatch held = this.held;
+			if( held != null ) {
+				this.getArrived.countDown();
+				held.await( 10, TimeUnit.SECONDS );
+			}
+			if( etag.equals( request.getHeader( "If-None-Match" ) ) ) {
+				this.notModified.incrementAndGet();
+				return new MockResponse().setResponseCode( 304 ).setHeader( "ETag", etag );
+			}
+			return new MockResponse().setHeader( "ETag", etag ).setBody( json );
+		}
+	}
+
+}
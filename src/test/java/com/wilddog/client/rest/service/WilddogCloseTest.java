@@ -0,0 +1,175 @@
+package com.wilddog.client.rest.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.wilddog.client.rest.error.WilddogException;
+import com.wilddog.client.rest.model.WilddogEvent;
+import com.wilddog.client.rest.model.WilddogEventListener;
+import com.wilddog.client.rest.util.JacksonUtility;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+public class WilddogCloseTest {
+
+	private static final String PUT_A								= "event: put\ndata: {\"path\":\"/\",\"data\":{\"a\":1}}\n\n";
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	@Rule
+	public final MockWebServer server = new MockWebServer();
+
+	private Wilddog wilddog;
+
+	@Before
+	public void setUp() throws Throwable {
+		this.wilddog = new Wilddog.Builder( this.server.url( "/rest" ).toString() )
+				.cache( 100, 1, TimeUnit.MINUTES )
+				.build();
+	}
+
+	@After
+	public void tearDown() {
+		this.wilddog.close();
+	}
+
+	@Test
+	public void closesTheStreamsStillOpen() throws Throwable {
+
+		this.server.enqueue( openStream() );
+		this.server.enqueue( openStream() );
+		WilddogEventStream listened = this.wilddog.listen( "x", new IgnoringListener() );
+		WilddogEventStream synced = this.wilddog.keepSynced( "y" );
+		WilddogEventStream closedAlready = this.wilddog.listen( "z", new IgnoringListener() );
+		closedAlready.close();
+
+		this.wilddog.close();
+
+		assertTrue( listened.isClosed() );
+		assertTrue( synced.isClosed() );
+		try {
+			this.wilddog.listen( "x", new IgnoringListener() );
+			fail( "listened on a closed instance" );
+		} catch( WilddogException expected ) {
+			// ie: no thread is left behind
+		}
+	}
+
+	@Test
+	public void closesTheWriteBehindQueuesAndKeepsTheirWrites() throws Throwable {
+
+		Path journal = this.folder.getRoot().toPath().resolve( "writes.journal" );
+		// nothing listens on port 1, so the write stays pending
+		Wilddog offline = new Wilddog.Builder( "http://127.0.0.1:1/rest" ).retryPolicy( WilddogRetryPolicy.NONE ).build();
+		WilddogWriteBehind queue = offline.writeBehind( journal );
+		queue.put( "a", "1" );
+		offline.close();
+
+		try {
+			queue.put( "b", "2" );
+			fail( "queued on a closed queue" );
+		} catch( WilddogException expected ) {
+			// ie: the queue was closed along with its instance
+		}
+		try {
+			offline.writeBehind( journal );
+			fail( "opened a queue on a closed instance" );
+		} catch( WilddogException expected ) {
+			// ie: the journal is not locked by it
+		}
+
+		this.server.enqueue( new MockResponse().setBody( "1" ) );
+		queue = this.wilddog.writeBehind( journal );
+		try {
+			assertTrue( queue.awaitDrained( 10, TimeUnit.SECONDS ) );
+		} finally {
+			queue.close();
+		}
+		RecordedRequest replayed = this.server.takeRequest();
+		assertEquals( "PATCH", replayed.getMethod() );
+		assertEquals( Collections.singletonMap( "a", 1 ), JacksonUtility.DEFAULT.toMap( replayed.getBody().readUtf8() ) );
+	}
+
+	@Test
+	public void failsACallWithADeadlineOnceClosed() throws Throwable {
+
+		this.server.enqueue( new MockResponse().setBody( "1" ) );
+		Wilddog bounded = this.wilddog.withDeadline( 10, TimeUnit.SECONDS );
+		this.wilddog.close();
+		try {
+			bounded.get( "x" );
+			fail( "sent a call with a deadline on a closed instance" );
+		} catch( WilddogException expected ) {
+			// ie: its deadline can no longer be kept
+		}
+	}
+
+	@Test
+	public void leavesTheBaseOpenWhenAViewIsClosed() throws Throwable {
+
+		this.server.enqueue( openStream() );
+		WilddogEventStream stream = this.wilddog.listen( "x", new IgnoringListener() );
+		this.server.takeRequest();
+		this.server.enqueue( new MockResponse().setBody( "1" ) );
+
+		this.wilddog.withDeadline( 10, TimeUnit.SECONDS ).close();
+
+		assertFalse( stream.isClosed() );
+		assertTrue( this.wilddog.withDeadline( 10, TimeUnit.SECONDS ).get( "y" ).getSuccess() );
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PRIVATE API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	/**
+	 * @return a stream that sends a PUT, and then stays open for longer than a test
+	 */
+	private static MockResponse openStream() {
+		return new MockResponse()
+				.setHeader( "Content-Type", WilddogEventStream.EVENT_STREAM_MEDIA_TYPE )
+				.setBody( PUT_A + ": padding\n" )
+				.throttleBody( PUT_A.length(), 1, TimeUnit.SECONDS );
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// INTERNAL CLASSES
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	private static class IgnoringListener implements WilddogEventListener {
+
+		@Override
+		public void onEvent(WilddogEvent event ) {
+		}
+
+		@Override
+		public void onError(WilddogException error ) {
+		}
+	}
+
+}
@@ -0,0 +1,125 @@
+package com.wilddog.client.rest.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.wilddog.client.rest.error.WilddogException;
+import com.wilddog.client.rest.model.WilddogResponse;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.SocketPolicy;
+
+public class WilddogDeadlineTest {
+
+	@Rule
+	public final MockWebServer server = new MockWebServer();
+
+	@Test
+	public void failsACallThatOutlivesItsDeadline() throws Throwable {
+
+		this.server.enqueue( new MockResponse().setSocketPolicy( SocketPolicy.NO_RESPONSE ) );
+		Wilddog wilddog = this.builder().build();
+		try {
+			Wilddog view = wilddog.withDeadline( 200, TimeUnit.MILLISECONDS );
+			assertEquals( 200, view.getDeadline( TimeUnit.MILLISECONDS ) );
+			assertEquals( 0, wilddog.getDeadline( TimeUnit.MILLISECONDS ) );
+
+			long start = System.nanoTime();
+			try {
+				view.get( "x" );
+				fail( "the server never answered" );
+			} catch( WilddogException expected ) {
+				assertTrue( expected.getMessage(), expected.getMessage().contains( "exceeded its" ) );
+			}
+			assertTrue( System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos( 200 ) );
+		} finally {
+			wilddog.close();
+		}
+	}
+
+	@Test
+	public void givesEveryCallTheDeadlineOfTheBuilder() throws Throwable {
+
+		this.server.enqueue( new MockResponse().setBody( "{\"a\":1}" ) );
+		this.server.enqueue( new MockResponse().setSocketPolicy( SocketPolicy.NO_RESPONSE ) );
+		Wilddog wilddog = this.builder().deadline( 200, TimeUnit.MILLISECONDS ).build();
+		try {
+			// ie: a call answered in time is not affected
+			assertEquals( Collections.singletonMap( "a", 1 ), wilddog.get( "x" ).getBody() );
+			try {
+				wilddog.getAsync( "x" ).get( 10, TimeUnit.SECONDS );
+				fail( "the server never answered" );
+			} catch( ExecutionException expected ) {
+				assertTrue( expected.getCause() instanceof WilddogException );
+			}
+		} finally {
+			wilddog.close();
+		}
+	}
+
+	@Test
+	public void hedgesASlowGet() throws Throwable {
+
+		Wilddog wilddog = this.builder()
+				.hedging( WilddogHedging.DEFAULT.minDelay( 50, TimeUnit.MILLISECONDS ).budgetRatio( 1 ) )
+				.build();
+		try {
+			// ie: enough latencies to estimate the percentile from
+			for( int i = 0; i < 64; i++ ) {
+				this.server.enqueue( new MockResponse().setBody( "{}" ) );
+				wilddog.get( "warm/" + i );
+			}
+
+			this.server.enqueue( new MockResponse().setSocketPolicy( SocketPolicy.NO_RESPONSE ) );
+			this.server.enqueue( new MockResponse().setBody( "{\"hedged\":true}" ) );
+			WilddogResponse response = wilddog.get( "slow" );
+
+			assertEquals( Collections.singletonMap( "hedged", true ), response.getBody() );
+			assertEquals( 66, this.server.getRequestCount() );
+		} finally {
+			wilddog.close();
+		}
+	}
+
+	@Test
+	public void hedgesNothingUntilTheLatenciesAreKnown() throws Throwable {
+
+		this.server.enqueue( new MockResponse().setSocketPolicy( SocketPolicy.NO_RESPONSE ) );
+		this.server.enqueue( new MockResponse().setBody( "{\"hedged\":true}" ) );
+		Wilddog wilddog = this.builder()
+				.hedging( WilddogHedging.DEFAULT.minDelay( 0, TimeUnit.MILLISECONDS ).budgetRatio( 1 ) )
+				.deadline( 300, TimeUnit.MILLISECONDS )
+				.build();
+		try {
+			wilddog.get( "slow" );
+			fail( "the server never answered" );
+		} catch( WilddogException expected ) {
+			assertEquals( 1, this.server.getRequestCount() );
+		} finally {
+			wilddog.close();
+		}
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PRIVATE API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	private Wilddog.Builder builder() throws Throwable {
+		return new Wilddog.Builder( this.server.url( "/rest" ).toString() ).retryPolicy( WilddogRetryPolicy.NONE );
+	}
+
+}
@@ -0,0 +1,339 @@
+package com.wilddog.client.rest.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.wilddog.client.rest.error.WilddogException;
+import com.wilddog.client.rest.model.WilddogEvent;
+import com.wilddog.client.rest.model.WilddogEventListener;
+import com.wilddog.client.rest.model.WilddogResponse;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+public class WilddogEventStreamTest {
+
+	private static final String PUT_A								= "event: put\ndata: {\"path\":\"/\",\"data\":{\"a\":1}}\n\n";
+
+	@Rule
+	public final MockWebServer server = new MockWebServer();
+
+	private Wilddog wilddog;
+	private final RecordingListener listener = new RecordingListener();
+
+	@Before
+	public void setUp() throws Throwable {
+		this.wilddog = new Wilddog.Builder( this.server.url( "/rest" ).toString() )
+				.cache( 100, 1, TimeUnit.MINUTES )
+				.build();
+	}
+
+	@After
+	public void tearDown() {
+		this.wilddog.close();
+	}
+
+	@Test
+	public void parsesEveryEventInOrder() throws Throwable {
+
+		this.server.enqueue( eventStream( PUT_A
+				+ "event: keep-alive\ndata: null\n\n"
+				+ ": a comment\n"
+				+ "event: patch\ndata: {\"path\":\"/b\",\"data\":{\"c\":2}}\n\n"
+				+ "event: unknown\ndata: {}\n\n"
+				// data split over several lines, and a field without the optional space
+				+ "event:put\ndata: {\"path\":\"/d\",\ndata: \"data\":[1,2]}\n\n"
+				+ "event: cancel\ndata: null\n\n" ) );
+
+		WilddogEventStream stream = this.wilddog.listen( "x", this.listener );
+
+		RecordedRequest request = this.server.takeRequest();
+		assertEquals( "/rest/x.json", request.getPath() );
+		assertEquals( WilddogEventStream.EVENT_STREAM_MEDIA_TYPE, request.getHeader( "Accept" ) );
+
+		assertEvent( WilddogEvent.Type.PUT, "/", Collections.singletonMap( "a", 1 ), this.listener.next() );
+		assertEvent( WilddogEvent.Type.PATCH, "/b", Collections.singletonMap( "c", 2 ), this.listener.next() );
+		assertEvent( WilddogEvent.Type.PUT, "/d", Arrays.asList( 1, 2 ), this.listener.next() );
+		assertEquals( WilddogEvent.Type.CANCEL, ( (WilddogEvent) this.listener.next() ).getType() );
+
+		// the server ended the subscription; so it is not reconnected
+		for( int i = 0; i < 100 && !stream.isClosed(); i++ ) {
+			Thread.sleep( 10 );
+		}
+		assertTrue( stream.isClosed() );
+		assertNull( this.listener.events.poll( 1500, TimeUnit.MILLISECONDS ) );
+		assertEquals( 1, this.server.getRequestCount() );
+	}
+
+	@Test
+	public void reportsAndReconnectsACleanDisconnect() throws Throwable {
+
+		this.server.enqueue( eventStream( PUT_A ) );
+		this.server.enqueue( eventStream( "event: put\ndata: {\"path\":\"/\",\"data\":{\"a\":2}}\n\nevent: cancel\ndata: null\n\n" ) );
+
+		WilddogEventStream stream = this.wilddog.listen( "x", this.listener );
+		try {
+			assertEvent( WilddogEvent.Type.PUT, "/", Collections.singletonMap( "a", 1 ), this.listener.next() );
+			assertTrue( this.listener.next() instanceof WilddogException );
+			assertEvent( WilddogEvent.Type.PUT, "/", Collections.singletonMap( "a", 2 ), this.listener.next() );
+			assertEquals( WilddogEvent.Type.CANCEL, ( (WilddogEvent) this.listener.next() ).getType() );
+		} finally {
+			stream.close();
+		}
+	}
+
+	@Test
+	public void backsOffFromAStreamClosedRightAway() throws Throwable {
+
+		final AtomicInteger streams = new AtomicInteger();
+		this.server.setDispatcher( new Dispatcher() {
+			@Override
+			public MockResponse dispatch(RecordedRequest request ) {
+				streams.incrementAndGet();
+				return eventStream( ": closed right away\n" );
+			}
+		});
+
+		WilddogEventStream stream = this.wilddog.listen( "x", this.listener );
+		try {
+			// delays of at least 0.5s, 1s and 2s; rather than a fixed 1s
+			Thread.sleep( 3400 );
+			assertTrue( streams.get() + " streams", streams.get() <= 3 );
+		} finally {
+			stream.close();
+		}
+	}
+
+	@Test
+	public void outlivesAListenerThatThrows() throws Throwable {
+
+		this.server.enqueue( eventStream( PUT_A ) );
+		this.server.enqueue( eventStream( PUT_A + "event: cancel\ndata: null\n\n" ) );
+		final BlockingQueue<WilddogEvent> events = new LinkedBlockingQueue<WilddogEvent>();
+
+		WilddogEventStream stream = this.wilddog.listen( "x", new WilddogEventListener() {
+			@Override
+			public void onEvent(WilddogEvent event ) {
+				events.add( event );
+				throw new IllegalStateException( "onEvent" );
+			}
+			@Override
+			public void onError(WilddogException error ) {
+				throw new IllegalStateException( "onError" );
+			}
+		});
+		try {
+			assertEquals( WilddogEvent.Type.PUT, events.poll( 10, TimeUnit.SECONDS ).getType() );
+			// reconnected after the clean disconnect, whose onError threw
+			assertEquals( WilddogEvent.Type.PUT, events.poll( 10, TimeUnit.SECONDS ).getType() );
+			assertEquals( WilddogEvent.Type.CANCEL, events.poll( 10, TimeUnit.SECONDS ).getType() );
+		} finally {
+			stream.close();
+		}
+	}
+
+	@Test
+	public void reportsAndRetriesARefusedStream() throws Throwable {
+
+		this.server.enqueue( new MockResponse().setResponseCode( 401 ) );
+		this.server.enqueue( eventStream( PUT_A + "event: cancel\ndata: null\n\n" ) );
+
+		WilddogEventStream stream = this.wilddog.listen( "x", this.listener );
+		try {
+			assertTrue( this.listener.next() instanceof WilddogException );
+			assertEvent( WilddogEvent.Type.PUT, "/", Collections.singletonMap( "a", 1 ), this.listener.next() );
+		} finally {
+			stream.close();
+		}
+	}
+
+	@Test
+	public void answersReadsFromASyncedTreeUntilTheLastStreamIsClosed() throws Throwable {
+
+		SyncServer sync = new SyncServer();
+		this.server.setDispatcher( sync );
+
+		WilddogEventStream first = this.wilddog.keepSynced( "x" );
+		WilddogEventStream second = this.wilddog.keepSynced( "x" );
+		sync.awaitStreams( 2 );
+		awaitSynced( this.wilddog, "x" );
+
+		assertEquals( Collections.singletonMap( "a", 1 ), this.wilddog.get( "x" ).getBody() );
+		this.wilddog.get( "x/a" );
+		first.close();
+		this.wilddog.get( "x" );
+		assertEquals( 0, sync.gets.get() );
+
+		second.close();
+		this.wilddog.get( "x" );
+		assertEquals( 1, sync.gets.get() );
+	}
+
+	@Test
+	public void answersAScalarLeafOfASyncedTreeWithItsRawBody() throws Throwable {
+
+		SyncServer sync = new SyncServer();
+		this.server.setDispatcher( sync );
+		Wilddog raw = new Wilddog.Builder( this.server.url( "/rest" ).toString() )
+				.cache( 100, 1, TimeUnit.MINUTES )
+				.keepRawBody( true )
+				.build();
+		WilddogEventStream stream = raw.keepSynced( "x" );
+		try {
+			sync.awaitStreams( 1 );
+			awaitSynced( raw, "x" );
+
+			WilddogResponse leaf = raw.get( "x/a" );
+			assertEquals( "1", leaf.getRawBody() );
+			assertTrue( leaf.getBody().isEmpty() );
+			assertEquals( "{\"a\":1}", raw.get( "x" ).getRawBody() );
+			assertEquals( 0, sync.gets.get() );
+		} finally {
+			stream.close();
+			raw.close();
+		}
+	}
+
+	@Test
+	public void stopsAnsweringFromATreeWhoseStreamEnded() throws Throwable {
+
+		SyncServer sync = new SyncServer();
+		sync.endFirstStream = true;
+		this.server.setDispatcher( sync );
+
+		WilddogEventStream stream = this.wilddog.keepSynced( "x" );
+		try {
+			// the reconnected stream sends nothing, so the tree stays as the first stream left it
+			sync.awaitStreams( 2 );
+			this.wilddog.get( "x" );
+			assertEquals( 1, sync.gets.get() );
+		} finally {
+			stream.close();
+		}
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PRIVATE API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	private static MockResponse eventStream(String events ) {
+		return new MockResponse()
+				.setHeader( "Content-Type", WilddogEventStream.EVENT_STREAM_MEDIA_TYPE )
+				.setBody( events );
+	}
+
+	private static void assertEvent(WilddogEvent.Type type, String path, Object data, Object actual ) {
+		WilddogEvent event = (WilddogEvent) actual;
+		assertEquals( type, event.getType() );
+		assertEquals( path, event.getPath() );
+		assertEquals( data, event.getData() );
+	}
+
+	/**
+	 * Waits for the cache to answer for the path without a request; ie: once the stream's first PUT came.
+	 */
+	private static void awaitSynced(Wilddog wilddog, String path ) throws Throwable {
+		for( int i = 0; i < 500; i++ ) {
+			long hits = wilddog.getCache().getHitCount();
+			if( wilddog.getCache().get( path ) != null && wilddog.getCache().getHitCount() > hits ) {
+				return;
+			}
+			Thread.sleep( 10 );
+		}
+		throw new AssertionError( "'" + path + "' was not synced" );
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// INTERNAL CLASSES
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	/**
+	 * Hands the events and failures to a queue, in the order they came.
+	 */
+	private static class RecordingListener implements WilddogEventListener {
+
+		private final BlockingQueue<Object> events = new LinkedBlockingQueue<Object>();
+
+		@Override
+		public void onEvent(WilddogEvent event ) {
+			this.events.add( event );
+		}
+
+		@Override
+		public void onError(WilddogException error ) {
+			this.events.add( error );
+		}
+
+		Object next() throws InterruptedException {
+			Object next = this.events.poll( 10, TimeUnit.SECONDS );
+			if( next == null ) {
+				throw new AssertionError( "no event came" );
+			}
+			return next;
+		}
+	}
+
+	/**
+	 * Sends every stream a PUT and then keeps it open; unless the first is to end right after its PUT. GETs
+	 * are answered with other data than the stream's, and counted.
+	 */
+	private static class SyncServer extends Dispatcher {
+
+		private final AtomicInteger streams = new AtomicInteger();
+		private final AtomicInteger gets = new AtomicInteger();
+		private volatile boolean endFirstStream = false;
+
+		void awaitStreams(int count ) throws InterruptedException {
+			for( int i = 0; i < 500 && this.streams.get() < count; i++ ) {
+				Thread.sleep( 10 );
+			}
+			assertEquals( count, this.streams.get() );
+		}
+
+		@Override
+		public MockResponse dispatch(RecordedRequest request ) {
+
+			if( !WilddogEventStream.EVENT_STREAM_MEDIA_TYPE.equals( request.getHeader( "Accept" ) ) ) {
+				this.gets.incrementAndGet();
+				return new MockResponse().setBody( "{\"a\":0}" );
+			}
+
+			int stream = this.streams.incrementAndGet();
+			if( stream == 1 && this.endFirstStream ) {
+				return eventStream( PUT_A );
+			}
+			if( stream > 1 && this.endFirstStream ) {
+				// connected, but silent
+				return eventStream( ": keep-alive\n" ).throttleBody( 1, 1, TimeUnit.SECONDS );
+			}
+			// the PUT right away, the padding behind it a byte a second; ie: open for longer than a test
+			return eventStream( PUT_A + ": padding\n" ).throttleBody( PUT_A.length(), 1, TimeUnit.SECONDS );
+		}
+	}
+
+}
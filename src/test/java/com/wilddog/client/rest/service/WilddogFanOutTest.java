@@ -0,0 +1,140 @@
+package com.wilddog.client.rest.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.wilddog.client.rest.error.WilddogException;
+import com.wilddog.client.rest.model.WilddogResponse;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+
+public class WilddogFanOutTest {
+
+	@Rule
+	public final MockWebServer server = new MockWebServer();
+
+	private final InFlightCounter counter = new InFlightCounter();
+	private Wilddog wilddog;
+
+	@Before
+	public void setUp() throws Throwable {
+		this.server.setDispatcher( this.counter );
+		this.wilddog = new Wilddog.Builder( this.server.url( "/rest" ).toString() )
+				.retryPolicy( WilddogRetryPolicy.NONE )
+				.build();
+	}
+
+	@After
+	public void tearDown() {
+		this.wilddog.close();
+	}
+
+	@Test
+	public void keepsNoMoreThanTheParallelismInFlight() throws Throwable {
+
+		List<String> paths = new ArrayList<String>();
+		for( int i = 0; i < 24; i++ ) {
+			paths.add( "items/" + i );
+		}
+		Map<String, WilddogResponse> responses = this.wilddog.getAll( paths, 3 );
+
+		assertEquals( 24, this.server.getRequestCount() );
+		assertTrue( "max in flight: " + this.counter.max, this.counter.max.get() <= 3 );
+		assertTrue( "max in flight: " + this.counter.max, this.counter.max.get() > 1 );
+		assertEquals( paths, new ArrayList<String>( responses.keySet() ) );
+	}
+
+	@Test
+	public void mapsEveryPathToItsOwnResponse() throws Throwable {
+
+		Map<String, WilddogResponse> responses = this.wilddog.getAll( Arrays.asList( "c", "a", "b", "a" ), 2 );
+
+		// ie: a duplicate is requested once
+		assertEquals( 3, this.server.getRequestCount() );
+		assertEquals( Arrays.asList( "c", "a", "b" ), new ArrayList<String>( responses.keySet() ) );
+		for( Map.Entry<String, WilddogResponse> response : responses.entrySet() ) {
+			assertEquals( Collections.singletonMap( "path", "/rest/" + response.getKey() + ".json" ), response.getValue().getBody() );
+		}
+	}
+
+	@Test
+	public void failsNoPathForAnother() throws Throwable {
+
+		Map<String, WilddogResponse> responses = this.wilddog.getAll( Arrays.asList( "ok", "missing", "dropped" ), 1 );
+
+		assertTrue( responses.get( "ok" ).getSuccess() );
+		assertFalse( responses.get( "missing" ).getSuccess() );
+		assertEquals( 404, responses.get( "missing" ).getCode() );
+		assertFalse( responses.get( "dropped" ).getSuccess() );
+		assertEquals( 0, responses.get( "dropped" ).getCode() );
+		assertTrue( responses.get( "dropped" ).getBody().containsKey( "error" ) );
+	}
+
+	@Test(expected = WilddogException.class)
+	public void rejectsANonPositiveParallelism() throws Throwable {
+		this.wilddog.getAll( Arrays.asList( "a" ), 0 );
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// INTERNAL CLASSES
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	/**
+	 * Answers every path with itself, a little later; and keeps the largest number of requests it answered
+	 * at once.
+	 */
+	private static class InFlightCounter extends Dispatcher {
+
+		private final AtomicInteger inFlight = new AtomicInteger();
+		private final AtomicInteger max = new AtomicInteger();
+
+		@Override
+		public MockResponse dispatch(RecordedRequest request ) throws InterruptedException {
+
+			String path = request.getPath();
+			if( path.equals( "/rest/missing.json" ) ) {
+				return new MockResponse().setResponseCode( 404 ).setBody( "{\"error\":\"not found\"}" );
+			}
+			if( path.equals( "/rest/dropped.json" ) ) {
+				return new MockResponse().setSocketPolicy( SocketPolicy.DISCONNECT_AFTER_REQUEST );
+			}
+
+			int count = this.inFlight.incrementAndGet();
+			while( true ) {
+				int max = this.max.get();
+				if( count <= max || this.max.compareAndSet( max, count ) ) {
+					break;
+				}
+			}
+			try {
+				Thread.sleep( 20 );
+			} finally {
+				this.inFlight.decrementAndGet();
+			}
+			return new MockResponse().setBody( "{\"path\":\"" + path + "\"}" );
+		}
+	}
+
+}
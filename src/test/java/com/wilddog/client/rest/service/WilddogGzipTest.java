@@ -0,0 +1,161 @@
+package com.wilddog.client.rest.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.wilddog.client.rest.model.WilddogResponse;
+import com.wilddog.client.rest.service.Wilddog.WilddogRestMethod;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.GzipSource;
+import okio.Okio;
+
+public class WilddogGzipTest {
+
+	private static final int MIN_BYTES								= 1024;
+
+	@Rule
+	public final MockWebServer server = new MockWebServer();
+
+	@Test
+	public void compressesABodyOfAtLeastMinBytes() throws Throwable {
+
+		final AtomicLong before = new AtomicLong();
+		final AtomicLong after = new AtomicLong();
+		Wilddog wilddog = new Wilddog.Builder( this.server.url( "/rest" ).toString() )
+				.gzipRequests( MIN_BYTES )
+				.metrics( new WilddogMetrics() {
+					@Override
+					public void onRequest(WilddogRestMethod method, String pathTemplate, int code, long latencyNanos, long bytesOut, long bytesIn ) {
+					}
+
+					@Override
+					public void onCompression(WilddogRestMethod method, String pathTemplate, long bytesBefore, long bytesAfter ) {
+						before.set( bytesBefore );
+						after.set( bytesAfter );
+					}
+				})
+				.build();
+		String json = json( MIN_BYTES );
+		try {
+			this.server.enqueue( new MockResponse().setBody( "{}" ) );
+			wilddog.put( "x", json );
+		} finally {
+			wilddog.close();
+		}
+
+		RecordedRequest request = this.server.takeRequest();
+		assertEquals( "gzip", request.getHeader( "Content-Encoding" ) );
+		assertEquals( json, gunzip( request.getBody() ) );
+		assertEquals( json.length(), before.get() );
+		assertEquals( request.getBodySize(), after.get() );
+		assertTrue( after.get() < before.get() );
+	}
+
+	@Test
+	public void sendsASmallerBodyAsIs() throws Throwable {
+
+		Wilddog wilddog = new Wilddog.Builder( this.server.url( "/rest" ).toString() ).gzipRequests( MIN_BYTES ).build();
+		String json = json( MIN_BYTES - 100 );
+		try {
+			this.server.enqueue( new MockResponse().setBody( "{}" ) );
+			wilddog.put( "x", json );
+		} finally {
+			wilddog.close();
+		}
+
+		RecordedRequest request = this.server.takeRequest();
+		assertNull( request.getHeader( "Content-Encoding" ) );
+		assertEquals( json, request.getBody().readUtf8() );
+	}
+
+	@Test
+	public void sendsAnIncompressibleBodyAsIs() throws Throwable {
+
+		byte[] noise = new byte[ 4 * MIN_BYTES ];
+		new Random( 42 ).nextBytes( noise );
+		Wilddog wilddog = new Wilddog.Builder( this.server.url( "/rest" ).toString() ).gzipRequests( MIN_BYTES ).build();
+		try {
+			this.server.enqueue( new MockResponse().setBody( "{}" ) );
+			wilddog.put( "x", noise );
+		} finally {
+			wilddog.close();
+		}
+
+		RecordedRequest request = this.server.takeRequest();
+		assertNull( request.getHeader( "Content-Encoding" ) );
+		assertEquals( noise.length, request.getBodySize() );
+	}
+
+	@Test
+	public void compressesNothingByDefault() throws Throwable {
+
+		Wilddog wilddog = new Wilddog.Builder( this.server.url( "/rest" ).toString() ).build();
+		try {
+			this.server.enqueue( new MockResponse().setBody( "{}" ) );
+			wilddog.put( "x", json( 10 * MIN_BYTES ) );
+		} finally {
+			wilddog.close();
+		}
+		assertNull( this.server.takeRequest().getHeader( "Content-Encoding" ) );
+	}
+
+	@Test
+	public void decodesACompressedResponse() throws Throwable {
+
+		Buffer body = new Buffer();
+		BufferedSink sink = Okio.buffer( new GzipSink( body ) );
+		sink.writeUtf8( "{\"a\":1}" );
+		sink.close();
+		this.server.enqueue( new MockResponse().setHeader( "Content-Encoding", "gzip" ).setBody( body ) );
+
+		Wilddog wilddog = new Wilddog.Builder( this.server.url( "/rest" ).toString() ).build();
+		WilddogResponse response;
+		try {
+			response = wilddog.get( "x" );
+		} finally {
+			wilddog.close();
+		}
+
+		assertEquals( "gzip", this.server.takeRequest().getHeader( "Accept-Encoding" ) );
+		assertEquals( Collections.singletonMap( "a", 1 ), response.getBody() );
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PRIVATE API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	/**
+	 * @return a json-object of (about) the length, which compresses well
+	 */
+	private static String json(int length ) {
+		StringBuilder json = new StringBuilder( "{\"v\":\"" );
+		while( json.length() < length - 2 ) {
+			json.append( 'a' );
+		}
+		return json.append( "\"}" ).toString();
+	}
+
+	private static String gunzip(Buffer body ) throws Exception {
+		return Okio.buffer( new GzipSource( body ) ).readUtf8();
+	}
+
+}
@@ -0,0 +1,269 @@
+package com.wilddog.client.rest.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.wilddog.client.rest.error.JacksonUtilityException;
+import com.wilddog.client.rest.error.WilddogException;
+import com.wilddog.client.rest.util.JacksonUtility;
+
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+public class WilddogPagerTest {
+
+	@Rule
+	public final MockWebServer server = new MockWebServer();
+
+	private final Children children = new Children();
+	private Wilddog wilddog;
+
+	@Before
+	public void setUp() throws Throwable {
+		this.server.setDispatcher( this.children );
+		this.wilddog = new Wilddog.Builder( this.server.url( "/rest" ).toString() )
+				.retryPolicy( WilddogRetryPolicy.NONE )
+				.build();
+	}
+
+	@After
+	public void tearDown() {
+		this.wilddog.close();
+	}
+
+	@Test
+	public void iteratesOverEveryChildOnceInKeyOrder() throws Throwable {
+
+		List<String> expected = new ArrayList<String>();
+		for( int i = 1; i <= 12; i++ ) {
+			this.children.put( String.valueOf( i ), i );
+		}
+		for( String key : new String[] { "-1", "01", "a", "b" } ) {
+			this.children.put( key, 0 );
+		}
+		expected.addAll( this.children.keySet() );
+
+		List<String> keys = new ArrayList<String>();
+		WilddogPager<Integer> pager = this.wilddog.pager( "items", 5, Integer.class );
+		try {
+			while( pager.hasNext() ) {
+				Map.Entry<String, Integer> child = pager.next();
+				assertEquals( this.children.get( child.getKey() ), child.getValue() );
+				keys.add( child.getKey() );
+			}
+		} finally {
+			pager.close();
+		}
+
+		// ie: integer-keys numerically first, then the others
+		assertEquals( "-1", keys.get( 0 ) );
+		assertEquals( "2", keys.get( 2 ) );
+		assertEquals( "10", keys.get( 10 ) );
+		assertEquals( "01", keys.get( 13 ) );
+		assertEquals( expected, keys );
+	}
+
+	@Test
+	public void pagesWithTheLastKeyOfThePreviousPage() throws Throwable {
+
+		for( int i = 0; i < 7; i++ ) {
+			this.children.put( "k" + i, i );
+		}
+		WilddogPager<Object> pager = this.wilddog.pager( "items", 3 );
+		try {
+			while( pager.hasNext() ) {
+				pager.next();
+			}
+		} finally {
+			pager.close();
+		}
+
+		// ie: 3 + 3 + 1; the short page is the last one
+		assertEquals( 3, this.server.getRequestCount() );
+		assertEquals( "/rest/items.json?orderBy=%22$key%22&limitToFirst=3", this.server.takeRequest().getPath() );
+		assertEquals( "/rest/items.json?orderBy=%22$key%22&startAt=%22k2%22&limitToFirst=4", this.server.takeRequest().getPath() );
+		assertEquals( "/rest/items.json?orderBy=%22$key%22&startAt=%22k5%22&limitToFirst=4", this.server.takeRequest().getPath() );
+	}
+
+	@Test
+	public void endsOnAnEmptyPage() throws Throwable {
+
+		WilddogPager<Object> pager = this.wilddog.pager( "items", 3 );
+		try {
+			assertFalse( pager.hasNext() );
+		} finally {
+			pager.close();
+		}
+
+		for( int i = 0; i < 3; i++ ) {
+			this.children.put( "k" + i, i );
+		}
+		int count = 0;
+		pager = this.wilddog.pager( "items", 3 );
+		try {
+			while( pager.hasNext() ) {
+				pager.next();
+				count++;
+			}
+		} finally {
+			pager.close();
+		}
+		// ie: a full last page is followed by one holding nothing but the repeated key
+		assertEquals( 3, count );
+	}
+
+	@Test
+	public void holdsNoMoreThanThePrefetchedPages() throws Throwable {
+
+		for( int i = 0; i < 100; i++ ) {
+			this.children.put( "k" + ( 100 + i ), i );
+		}
+		WilddogPager<Object> pager = this.wilddog.pager( "items", 5, 2, Object.class );
+		try {
+			pager.next();
+			this.awaitRequests( 3 );
+			// ie: the current page and two ahead of it
+			Thread.sleep( 200 );
+			assertEquals( 3, this.server.getRequestCount() );
+		} finally {
+			pager.close();
+		}
+	}
+
+	@Test
+	public void endsWithTheErrorOfAFailedPage() throws Throwable {
+
+		for( int i = 0; i < 10; i++ ) {
+			this.children.put( "k" + i, i );
+		}
+		this.children.failAfter = "k4";
+
+		int count = 0;
+		WilddogPager<Object> pager = this.wilddog.pager( "items", 5 );
+		try {
+			while( pager.hasNext() ) {
+				pager.next();
+				count++;
+			}
+			fail( "the second page failed" );
+		} catch( IllegalStateException expected ) {
+			assertTrue( expected.getCause() instanceof WilddogException );
+		} finally {
+			pager.close();
+		}
+		assertEquals( 5, count );
+		assertFalse( pager.hasNext() );
+	}
+
+	@Test
+	public void endsOnceClosed() throws Throwable {
+
+		for( int i = 0; i < 10; i++ ) {
+			this.children.put( "k" + i, i );
+		}
+		WilddogPager<Object> pager = this.wilddog.pager( "items", 5 );
+		pager.next();
+		pager.close();
+		assertFalse( pager.hasNext() );
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsAnEmptyPage() throws Throwable {
+		this.wilddog.pager( "items", 0 );
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PRIVATE API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	private void awaitRequests(int count ) throws InterruptedException {
+		for( int i = 0; i < 500 && this.server.getRequestCount() < count; i++ ) {
+			Thread.sleep( 10 );
+		}
+		assertTrue( this.server.getRequestCount() >= count );
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// INTERNAL CLASSES
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	/**
+	 * Serves the children in key-order, as the server would for {@code orderBy="$key"}, {@code startAt} and
+	 * {@code limitToFirst}.
+	 */
+	private static class Children extends Dispatcher {
+
+		private final NavigableMap<String, Integer> children = new TreeMap<String, Integer>( WilddogPager.KEY_ORDER );
+		private volatile String failAfter;
+
+		void put(String key, int value ) {
+			this.children.put( key, value );
+		}
+
+		Integer get(String key ) {
+			return this.children.get( key );
+		}
+
+		List<String> keySet() {
+			return new ArrayList<String>( this.children.keySet() );
+		}
+
+		@Override
+		public MockResponse dispatch(RecordedRequest request ) {
+
+			HttpUrl url = HttpUrl.parse( "http://localhost" + request.getPath() );
+			String startAt = url.queryParameter( "startAt" );
+			int limit = Integer.parseInt( url.queryParameter( "limitToFirst" ) );
+
+			NavigableMap<String, Integer> tail = this.children;
+			if( startAt != null ) {
+				startAt = startAt.substring( 1, startAt.length() - 1 );
+				if( startAt.equals( this.failAfter ) ) {
+					return new MockResponse().setResponseCode( 500 ).setBody( "{\"error\":\"boom\"}" );
+				}
+				tail = this.children.tailMap( startAt, true );
+			}
+
+			Map<String, Object> page = new LinkedHashMap<String, Object>();
+			for( Map.Entry<String, Integer> child : tail.entrySet() ) {
+				if( page.size() == limit ) {
+					break;
+				}
+				page.put( child.getKey(), child.getValue() );
+			}
+			try {
+				return new MockResponse().setBody( JacksonUtility.DEFAULT.toJsonString( page ) );
+			} catch( JacksonUtilityException e ) {
+				return new MockResponse().setResponseCode( 500 );
+			}
+		}
+	}
+
+}
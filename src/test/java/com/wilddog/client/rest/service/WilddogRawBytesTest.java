@@ -0,0 +1,149 @@
+package com.wilddog.client.rest.service;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.wilddog.client.rest.model.WilddogJsonWriter;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+public class WilddogRawBytesTest {
+
+	@Rule
+	public final MockWebServer server = new MockWebServer();
+
+	private Wilddog wilddog;
+
+	@Before
+	public void setUp() throws Throwable {
+		this.wilddog = new Wilddog.Builder( this.server.url( "/rest" ).toString() )
+				.retryPolicy( new WilddogRetryPolicy.Builder().backoff( 0, 0, TimeUnit.MILLISECONDS ).build() )
+				.build();
+	}
+
+	@After
+	public void tearDown() {
+		this.wilddog.close();
+	}
+
+	@Test
+	public void sendsAnArrayAsIs() throws Throwable {
+
+		byte[] json = "{\"name\":\"狗\", \"age\" : 3}".getBytes( "UTF-8" );
+		for( int i = 0; i < 3; i++ ) {
+			this.server.enqueue( new MockResponse().setBody( "{}" ) );
+		}
+		this.wilddog.put( "a", json );
+		this.wilddog.patch( "b", json );
+		this.wilddog.post( "c", json );
+
+		assertBody( "PUT", json, this.server.takeRequest() );
+		assertBody( "PATCH", json, this.server.takeRequest() );
+		assertBody( "POST", json, this.server.takeRequest() );
+	}
+
+	@Test
+	public void sendsTheRemainderOfABuffer() throws Throwable {
+
+		byte[] json = largeJson( 3 * 8192 + 17 );
+		byte[] padded = new byte[ json.length + 10 ];
+		System.arraycopy( json, 0, padded, 5, json.length );
+
+		// ie: a slice, which has an array-offset of its own
+		ByteBuffer heap = ByteBuffer.wrap( padded, 3, json.length + 4 ).slice();
+		heap.position( 2 ).limit( 2 + json.length );
+		ByteBuffer direct = ByteBuffer.allocateDirect( json.length );
+		direct.put( json ).flip();
+
+		for( int i = 0; i < 2; i++ ) {
+			this.server.enqueue( new MockResponse().setBody( "{}" ) );
+		}
+		this.wilddog.put( "a", heap );
+		this.wilddog.post( "b", direct );
+
+		assertBody( "PUT", json, this.server.takeRequest() );
+		assertBody( "POST", json, this.server.takeRequest() );
+		// ie: the buffers are left as they were
+		assertEquals( 2, heap.position() );
+		assertEquals( 0, direct.position() );
+	}
+
+	@Test
+	public void resendsARetriedBuffer() throws Throwable {
+
+		byte[] json = largeJson( 10000 );
+		this.server.enqueue( new MockResponse().setResponseCode( 503 ) );
+		this.server.enqueue( new MockResponse().setBody( "{}" ) );
+		this.wilddog.put( "a", ByteBuffer.wrap( json ) );
+
+		assertBody( "PUT", json, this.server.takeRequest() );
+		assertBody( "PUT", json, this.server.takeRequest() );
+	}
+
+	@Test
+	public void streamsWhatAWriterWrites() throws Throwable {
+
+		final byte[] json = largeJson( 20000 );
+		final AtomicInteger calls = new AtomicInteger();
+		WilddogJsonWriter writer = new WilddogJsonWriter() {
+			@Override
+			public void writeTo(OutputStream out ) throws IOException {
+				calls.incrementAndGet();
+				out.write( json[ 0 ] );
+				out.write( json, 1, json.length - 1 );
+			}
+		};
+		this.server.enqueue( new MockResponse().setResponseCode( 503 ) );
+		this.server.enqueue( new MockResponse().setBody( "{}" ) );
+		this.server.enqueue( new MockResponse().setBody( "{}" ) );
+		this.wilddog.put( "a", writer );
+		this.wilddog.patch( "b", writer );
+
+		RecordedRequest request = this.server.takeRequest();
+		assertBody( "PUT", json, request );
+		assertEquals( "chunked", request.getHeader( "Transfer-Encoding" ) );
+		// ie: written again for the retry
+		assertBody( "PUT", json, this.server.takeRequest() );
+		assertBody( "PATCH", json, this.server.takeRequest() );
+		assertEquals( 3, calls.get() );
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PRIVATE API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	/**
+	 * @return a json-object of the length, in bytes
+	 */
+	private static byte[] largeJson(int length ) throws Throwable {
+		char[] value = new char[ length - 8 ];
+		Arrays.fill( value, 'x' );
+		return ( "{\"v\":\"" + new String( value ) + "\"}" ).getBytes( "UTF-8" );
+	}
+
+	private static void assertBody(String method, byte[] expected, RecordedRequest request ) {
+		assertEquals( method, request.getMethod() );
+		assertEquals( "application/json; charset=utf-8", request.getHeader( "Content-Type" ).toLowerCase() );
+		assertArrayEquals( expected, request.getBody().readByteArray() );
+	}
+
+}
@@ -0,0 +1,176 @@
+package com.wilddog.client.rest.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.wilddog.client.rest.error.WilddogException;
+import com.wilddog.client.rest.model.WilddogResponse;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+public class WilddogResponseBodyTest {
+
+	private static final String HTML								= "<html><body>Bad Gateway</body></html>";
+
+	@Rule
+	public final MockWebServer server = new MockWebServer();
+
+	private Wilddog wilddog;
+
+	@Before
+	public void setUp() throws Throwable {
+		this.wilddog = new Wilddog.Builder( this.server.url( "/rest" ).toString() ).build();
+	}
+
+	@After
+	public void tearDown() {
+		this.wilddog.close();
+	}
+
+	@Test
+	public void parsesTheBodyOfAGetRightAway() throws Throwable {
+
+		this.server.enqueue( new MockResponse().setBody( "{\"a\":1}" ) );
+		WilddogResponse response = this.wilddog.get( "x" );
+
+		assertTrue( response.toString().contains( "(Body:{a=1})" ) );
+		assertEquals( Collections.singletonMap( "a", 1 ), response.getBody() );
+		assertEquals( "", response.getRawBody() );
+	}
+
+	@Test
+	public void releasesTheConnectionOfEveryResponse() throws Throwable {
+
+		this.server.enqueue( new MockResponse().setBody( "{\"a\":1}" ) );
+		this.server.enqueue( new MockResponse().setResponseCode( 400 ).setBody( "{\"error\":\"Invalid data\"}" ) );
+		this.server.enqueue( new MockResponse().setBody( "{\"a\":1}" ) );
+		this.wilddog.get( "x" );
+		this.wilddog.put( "x", "{}" );
+		this.wilddog.get( "x" );
+
+		// ie: all three went over the same connection, so every body was read to its end and closed
+		for( int i = 0; i < 3; i++ ) {
+			assertEquals( i, this.server.takeRequest().getSequenceNumber() );
+		}
+	}
+
+	@Test
+	public void failsAGetWhoseBodyIsNotJson() throws Throwable {
+
+		this.server.enqueue( new MockResponse().setBody( HTML ) );
+		try {
+			this.wilddog.get( "x" );
+			fail( "parsed html" );
+		} catch( WilddogException expected ) {
+			// ie: read by every caller, so it fails the call
+		}
+	}
+
+	@Test
+	public void parsesTheEchoOfAWriteOnlyWhenAskedFor() throws Throwable {
+
+		this.server.enqueue( new MockResponse().setBody( "{\"a\":1}" ) );
+		WilddogResponse response = this.wilddog.put( "x", "{\"a\":1}" );
+
+		assertTrue( response.getSuccess() );
+		assertTrue( response.toString().contains( "(Body:(not parsed))" ) );
+		assertEquals( Collections.singletonMap( "a", 1 ), response.getBody() );
+	}
+
+	@Test
+	public void reportsAWriteEchoThatIsNotJsonOnlyWhenParsed() throws Throwable {
+
+		this.server.enqueue( new MockResponse().setBody( HTML ) );
+		WilddogResponse response = this.wilddog.put( "x", "{\"a\":1}" );
+
+		assertTrue( response.getSuccess() );
+		assertEquals( 200, response.getCode() );
+		try {
+			response.getBody();
+			fail( "parsed html" );
+		} catch( IllegalStateException expected ) {
+			assertTrue( expected.getCause() instanceof WilddogException );
+		}
+	}
+
+	@Test
+	public void keepsTheRawBodyWhenAskedTo() throws Throwable {
+
+		Wilddog raw = new Wilddog.Builder( this.server.url( "/rest" ).toString() ).keepRawBody( true ).build();
+		try {
+			this.server.enqueue( new MockResponse().setBody( " {\"a\":1} " ) );
+			WilddogResponse response = raw.get( "x" );
+			assertEquals( "{\"a\":1}", response.getRawBody() );
+			assertEquals( Collections.singletonMap( "a", 1 ), response.getBody() );
+		} finally {
+			raw.close();
+		}
+	}
+
+	@Test
+	public void discardsTheBodiesOfSuccessfulWritesOnly() throws Throwable {
+
+		Wilddog silent = new Wilddog.Builder( this.server.url( "/rest" ).toString() ).discardWriteBodies( true ).build();
+		try {
+			this.server.enqueue( new MockResponse().setBody( "{\"a\":1}" ) );
+			this.server.enqueue( new MockResponse().setResponseCode( 400 ).setBody( "{\"error\":\"Invalid data\"}" ) );
+
+			WilddogResponse written = silent.put( "x", "{\"a\":1}" );
+			assertEquals( "/rest/x.json?print=silent", this.server.takeRequest().getPath() );
+			assertTrue( written.getBody().isEmpty() );
+
+			WilddogResponse refused = silent.put( "x", "{\"a\":1}" );
+			assertFalse( refused.getSuccess() );
+			assertEquals( Collections.singletonMap( "error", "Invalid data" ), refused.getBody() );
+		} finally {
+			silent.close();
+		}
+	}
+
+	@Test
+	public void keepsTheCodeOfAFailureWhoseBodyIsNotJson() throws Throwable {
+
+		Wilddog once = new Wilddog.Builder( this.server.url( "/rest" ).toString() ).retryPolicy( WilddogRetryPolicy.NONE ).build();
+		try {
+			this.server.enqueue( new MockResponse().setResponseCode( 502 ).setBody( HTML ) );
+			this.server.enqueue( new MockResponse().setResponseCode( 502 ).setBody( HTML ) );
+			for( int i = 0; i < 2; i++ ) {
+				try {
+					if( i == 0 ) {
+						once.getNode( "x" );
+					} else {
+						once.get( "x", Integer.class );
+					}
+					fail( "read a 502" );
+				} catch( WilddogException expected ) {
+					assertTrue( expected.getMessage(), expected.getMessage().contains( "failed with code 502: " + HTML ) );
+				}
+			}
+		} finally {
+			once.close();
+		}
+	}
+
+	@Test
+	public void describesAJsonErrorBody() throws Throwable {
+
+		this.server.enqueue( new MockResponse().setResponseCode( 401 ).setBody( "{\"error\":\"Permission denied\"}" ) );
+		try {
+			this.wilddog.get( "x", Integer.class );
+			fail( "read a 401" );
+		} catch( WilddogException expected ) {
+			assertTrue( expected.getMessage(), expected.getMessage().contains( "failed with code 401: {error=Permission denied}" ) );
+		}
+	}
+
+}
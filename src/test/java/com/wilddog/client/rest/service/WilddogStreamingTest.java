@@ -0,0 +1,171 @@
+package com.wilddog.client.rest.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.wilddog.client.rest.error.WilddogException;
+import com.wilddog.client.rest.model.WilddogResponse;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import okio.Okio;
+
+public class WilddogStreamingTest {
+
+	private static final String JSON								= "{\"users\":{\"jack\":{\"age\":30},\"jill\":{\"age\":31}}}";
+
+	@Rule
+	public final MockWebServer server = new MockWebServer();
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private Wilddog wilddog;
+
+	@Before
+	public void setUp() throws Throwable {
+		this.wilddog = new Wilddog.Builder( this.server.url( "/rest" ).toString() ).build();
+	}
+
+	@After
+	public void tearDown() {
+		this.wilddog.close();
+	}
+
+	@Test
+	public void downloadsIntoAStream() throws Throwable {
+
+		this.server.enqueue( new MockResponse().setBody( JSON ) );
+		CloseRecordingStream out = new CloseRecordingStream();
+
+		assertEquals( JSON.length(), this.wilddog.download( "backup", out ) );
+		assertEquals( JSON, out.toString( "UTF-8" ) );
+		assertFalse( out.closed );
+		assertEquals( "/rest/backup.json", this.server.takeRequest().getPath() );
+	}
+
+	@Test
+	public void downloadsIntoAGzipFile() throws Throwable {
+
+		this.server.enqueue( new MockResponse().setBody( JSON ) );
+		Path file = this.folder.getRoot().toPath().resolve( "backup.json.gz" );
+
+		assertEquals( JSON.length(), this.wilddog.download( "backup", file, true ) );
+		InputStream in = new GZIPInputStream( Files.newInputStream( file ) );
+		try {
+			assertEquals( JSON, Okio.buffer( Okio.source( in ) ).readUtf8() );
+		} finally {
+			in.close();
+		}
+		assertFalse( Files.exists( file.resolveSibling( "backup.json.gz.part" ) ) );
+	}
+
+	@Test
+	public void keepsTheFileOfAFailedDownload() throws Throwable {
+
+		this.server.enqueue( new MockResponse().setResponseCode( 404 ).setBody( "{\"error\":\"not found\"}" ) );
+		Path file = this.folder.getRoot().toPath().resolve( "backup.json" );
+		Files.write( file, "{}".getBytes( "UTF-8" ) );
+
+		try {
+			this.wilddog.download( "backup", file );
+			fail( "the download failed" );
+		} catch( WilddogException expected ) {
+			// ie: the previous backup is left as it was
+		}
+		assertEquals( "{}", new String( Files.readAllBytes( file ), "UTF-8" ) );
+		assertFalse( Files.exists( file.resolveSibling( "backup.json.part" ) ) );
+	}
+
+	@Test
+	public void uploadsAChunkedSilentPut() throws Throwable {
+
+		this.server.enqueue( new MockResponse() );
+		CloseRecordingInput in = new CloseRecordingInput( JSON.getBytes( "UTF-8" ) );
+
+		WilddogResponse response = this.wilddog.upload( "backup", in );
+		assertEquals( 200, response.getCode() );
+		assertFalse( in.closed );
+
+		RecordedRequest request = this.server.takeRequest();
+		assertEquals( "PUT", request.getMethod() );
+		assertEquals( "/rest/backup.json?print=silent", request.getPath() );
+		assertEquals( "chunked", request.getHeader( "Transfer-Encoding" ) );
+		assertEquals( JSON, request.getBody().readUtf8() );
+	}
+
+	@Test
+	public void restoresAGzipDownload() throws Throwable {
+
+		this.server.enqueue( new MockResponse().setBody( JSON ) );
+		this.server.enqueue( new MockResponse() );
+
+		ByteArrayOutputStream backup = new ByteArrayOutputStream();
+		this.wilddog.download( "backup", backup, true );
+		this.wilddog.upload( "restored", new ByteArrayInputStream( backup.toByteArray() ), true );
+
+		this.server.takeRequest();
+		assertEquals( JSON, this.server.takeRequest().getBody().readUtf8() );
+	}
+
+	@Test
+	public void neverRetriesAnUpload() throws Throwable {
+
+		this.server.enqueue( new MockResponse().setResponseCode( 503 ) );
+		this.server.enqueue( new MockResponse() );
+
+		WilddogResponse response = this.wilddog.upload( "backup", new ByteArrayInputStream( JSON.getBytes( "UTF-8" ) ) );
+		assertEquals( 503, response.getCode() );
+		assertEquals( 1, this.server.getRequestCount() );
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// INTERNAL CLASSES
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	private static class CloseRecordingStream extends ByteArrayOutputStream {
+
+		private boolean closed = false;
+
+		@Override
+		public void close() {
+			this.closed = true;
+		}
+	}
+
+	private static class CloseRecordingInput extends ByteArrayInputStream {
+
+		private boolean closed = false;
+
+		CloseRecordingInput(byte[] bytes ) {
+			super( bytes );
+		}
+
+		@Override
+		public void close() {
+			this.closed = true;
+		}
+	}
+
+}
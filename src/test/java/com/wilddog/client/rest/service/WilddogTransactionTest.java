@@ -0,0 +1,124 @@
+package com.wilddog.client.rest.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+import java.util.function.Function;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.wilddog.client.rest.error.WilddogException;
+import com.wilddog.client.rest.model.WilddogResponse;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+public class WilddogTransactionTest {
+
+	@Rule
+	public final MockWebServer server = new MockWebServer();
+
+	private Wilddog wilddog;
+
+	@Before
+	public void setUp() throws Throwable {
+		this.wilddog = new Wilddog.Builder( this.server.url( "/rest" ).toString() ).build();
+	}
+
+	@After
+	public void tearDown() {
+		this.wilddog.close();
+	}
+
+	@Test
+	public void appliesTheUpdateAgainToTheDataOfA412() throws Throwable {
+
+		this.server.enqueue( new MockResponse().setHeader( "ETag", "\"a\"" ).setBody( "1" ) );
+		// another client wrote 5 in between
+		this.server.enqueue( new MockResponse().setResponseCode( 412 ).setHeader( "ETag", "\"b\"" ).setBody( "5" ) );
+		this.server.enqueue( new MockResponse().setHeader( "ETag", "\"c\"" ).setBody( "6" ) );
+
+		Integer written = this.wilddog.transaction( "counter", Integer.class, new Function<Integer, Integer>() {
+			@Override
+			public Integer apply(Integer current ) {
+				return current + 1;
+			}
+		});
+		assertEquals( Integer.valueOf( 6 ), written );
+
+		RecordedRequest get = this.server.takeRequest();
+		assertEquals( "GET", get.getMethod() );
+		assertEquals( "true", get.getHeader( Wilddog.ETAG_REQUEST_HEADER ) );
+
+		RecordedRequest first = this.server.takeRequest();
+		assertEquals( "PUT", first.getMethod() );
+		assertEquals( "\"a\"", first.getHeader( "if-match" ) );
+		assertEquals( "2", first.getBody().readUtf8() );
+
+		RecordedRequest second = this.server.takeRequest();
+		assertEquals( "\"b\"", second.getHeader( "if-match" ) );
+		assertEquals( "6", second.getBody().readUtf8() );
+	}
+
+	@Test
+	public void doesNotRetryAWriteRefusedOtherwise() throws Throwable {
+
+		this.server.enqueue( new MockResponse().setHeader( "ETag", "\"a\"" ).setBody( "1" ) );
+		this.server.enqueue( new MockResponse().setResponseCode( 401 ).setBody( "{\"error\":\"Permission denied\"}" ) );
+		try {
+			this.wilddog.transaction( "counter", Integer.class, new Function<Integer, Integer>() {
+				@Override
+				public Integer apply(Integer current ) {
+					return current + 1;
+				}
+			});
+			fail( "the transaction succeeded" );
+		} catch( WilddogException expected ) {
+			assertTrue( expected.getMessage(), expected.getMessage().contains( "401" ) );
+		}
+		assertEquals( 2, this.server.getRequestCount() );
+	}
+
+	@Test
+	public void failsWhenTheServerSendsNoETag() throws Throwable {
+
+		this.server.enqueue( new MockResponse().setBody( "1" ) );
+		try {
+			this.wilddog.transaction( "counter", Integer.class, new Function<Integer, Integer>() {
+				@Override
+				public Integer apply(Integer current ) {
+					return current + 1;
+				}
+			});
+			fail( "wrote without an ETag" );
+		} catch( WilddogException expected ) {
+			// ie: no write is made
+		}
+		assertEquals( 1, this.server.getRequestCount() );
+	}
+
+	@Test
+	public void getsTheDataOnlyIfItChanged() throws Throwable {
+
+		this.server.enqueue( new MockResponse().setResponseCode( 304 ) );
+		this.server.enqueue( new MockResponse().setHeader( "ETag", "\"b\"" ).setBody( "{\"a\":2}" ) );
+
+		WilddogResponse unchanged = this.wilddog.getIfChanged( "x", "\"a\"" );
+		assertTrue( unchanged.isNotModified() );
+		assertEquals( "\"a\"", unchanged.getETag() );
+		RecordedRequest conditional = this.server.takeRequest();
+		assertEquals( "\"a\"", conditional.getHeader( "If-None-Match" ) );
+
+		WilddogResponse changed = this.wilddog.getIfChanged( "x", "\"a\"" );
+		assertTrue( changed.getSuccess() );
+		assertEquals( "\"b\"", changed.getETag() );
+		assertEquals( Collections.singletonMap( "a", 2 ), changed.getBody() );
+	}
+
+}
@@ -0,0 +1,145 @@
+package com.wilddog.client.rest.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.jackson.type.TypeReference;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.wilddog.client.rest.util.JacksonUtility;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+public class WilddogTypedTest {
+
+	@Rule
+	public final MockWebServer server = new MockWebServer();
+
+	private Wilddog wilddog;
+
+	@Before
+	public void setUp() throws Throwable {
+		this.wilddog = new Wilddog.Builder( this.server.url( "/rest" ).toString() ).build();
+	}
+
+	@After
+	public void tearDown() {
+		this.wilddog.close();
+	}
+
+	@Test
+	public void bindsAReadToAClass() throws Throwable {
+
+		this.server.enqueue( new MockResponse().setBody( "{\"name\":\"jack\",\"age\":30}" ) );
+		this.server.enqueue( new MockResponse().setBody( "42" ) );
+		this.server.enqueue( new MockResponse().setBody( "null" ) );
+
+		User jack = this.wilddog.get( "users/jack", User.class );
+		assertEquals( "jack", jack.getName() );
+		assertEquals( 30, jack.getAge() );
+		assertEquals( Integer.valueOf( 42 ), this.wilddog.get( "counter", Integer.class ) );
+		// ie: there is no data at the path
+		assertNull( this.wilddog.get( "users/jill", User.class ) );
+	}
+
+	@Test
+	public void bindsAReadToAGenericType() throws Throwable {
+
+		this.server.enqueue( new MockResponse().setBody( "{\"jack\":{\"name\":\"jack\",\"age\":30},\"jill\":{\"name\":\"jill\",\"age\":31}}" ) );
+		this.server.enqueue( new MockResponse().setBody( "[1,2,3]" ) );
+
+		Map<String, User> users = this.wilddog.get( "users", new TypeReference<Map<String, User>>() {} );
+		assertEquals( Arrays.asList( "jack", "jill" ), Arrays.asList( users.keySet().toArray() ) );
+		assertEquals( 31, users.get( "jill" ).getAge() );
+
+		List<Long> ids = this.wilddog.get( "ids", new TypeReference<List<Long>>() {} );
+		assertEquals( Arrays.asList( 1L, 2L, 3L ), ids );
+	}
+
+	@Test
+	public void writesAValueAsJson() throws Throwable {
+
+		for( int i = 0; i < 3; i++ ) {
+			this.server.enqueue( new MockResponse().setBody( "{}" ) );
+		}
+		this.wilddog.put( "users/jack", new User( "jack", 30 ) );
+		this.wilddog.post( "users", new User( "jill", 31 ) );
+		this.wilddog.patch( "users/jack", Collections.singletonMap( "age", 32 ) );
+
+		assertWrite( "PUT", user( "jack", 30 ), this.server.takeRequest() );
+		assertWrite( "POST", user( "jill", 31 ), this.server.takeRequest() );
+		assertWrite( "PATCH", Collections.<String, Object>singletonMap( "age", 32 ), this.server.takeRequest() );
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PRIVATE API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	private static Map<String, Object> user(String name, int age ) {
+		Map<String, Object> user = new LinkedHashMap<String, Object>();
+		user.put( "name", name );
+		user.put( "age", age );
+		return user;
+	}
+
+	private static void assertWrite(String method, Map<String, Object> expected, RecordedRequest request ) throws Throwable {
+		assertEquals( method, request.getMethod() );
+		assertEquals( expected, JacksonUtility.DEFAULT.toMap( request.getBody().readUtf8() ) );
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// INTERNAL CLASSES
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	public static class User {
+
+		private String name;
+		private int age;
+
+		public User() {
+		}
+
+		User(String name, int age ) {
+			this.name = name;
+			this.age = age;
+		}
+
+		public String getName() {
+			return this.name;
+		}
+
+		public void setName(String name ) {
+			this.name = name;
+		}
+
+		public int getAge() {
+			return this.age;
+		}
+
+		public void setAge(int age ) {
+			this.age = age;
+		}
+	}
+
+}
@@ -0,0 +1,109 @@
+package com.wilddog.client.rest.service;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.wilddog.client.rest.model.WilddogQuery;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+public class WilddogUrlTest {
+
+	@Rule
+	public final MockWebServer server = new MockWebServer();
+
+	private Wilddog wilddog;
+
+	@Before
+	public void setUp() throws Throwable {
+		this.server.setDispatcher( new EmptyObjects() );
+		this.wilddog = new Wilddog.Builder( this.server.url( "/rest" ).toString() ).build();
+	}
+
+	@After
+	public void tearDown() {
+		this.wilddog.close();
+	}
+
+	@Test
+	public void appendsThePathToTheBase() throws Throwable {
+
+		assertEquals( "/rest/users/jack.json", this.pathOf( "users/jack" ) );
+		assertEquals( "/rest/users/jack.json", this.pathOf( " /users//jack/ " ) );
+		assertEquals( "/rest.json", this.pathOf( "" ) );
+		assertEquals( "/rest.json", this.pathOf( null ) );
+		// again, from the cache of encoded paths
+		assertEquals( "/rest/users/jack.json", this.pathOf( "users/jack" ) );
+	}
+
+	@Test
+	public void encodesEverySegment() throws Throwable {
+
+		assertEquals( "/rest/a%20b/c%3Fd%23e.json", this.pathOf( "a b/c?d#e" ) );
+		assertEquals( "/rest/%E7%8B%97/%25.json", this.pathOf( "狗/%" ) );
+	}
+
+	@Test
+	public void encodesTheQueryAndAppendsTheToken() throws Throwable {
+
+		Wilddog secured = new Wilddog.Builder( this.server.url( "/rest/" ).toString() ).secureToken( "a+b/c" ).build();
+		try {
+			secured.get( "x", new WilddogQuery().orderByKey().startAt( "a+b\\c d" ) );
+		} finally {
+			secured.close();
+		}
+		assertEquals( "/rest/x.json?orderBy=%22$key%22&startAt=%22a%2Bb%5C%5Cc%20d%22&auth=a%2Bb%2Fc",
+				this.server.takeRequest().getPath() );
+	}
+
+	@Test
+	@SuppressWarnings("deprecation")
+	public void usesAnAddedQueryForTheNextRequestOnly() throws Throwable {
+
+		this.wilddog.addQuery( "print", "pretty" );
+		this.wilddog.get( "x", new WilddogQuery().shallow() );
+		this.wilddog.get( "x" );
+
+		assertEquals( "/rest/x.json?print=pretty&shallow=true", this.server.takeRequest().getPath() );
+		assertEquals( "/rest/x.json", this.server.takeRequest().getPath() );
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PRIVATE API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	private String pathOf(String path ) throws Throwable {
+		this.wilddog.delete( path );
+		return this.server.takeRequest().getPath();
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// INTERNAL CLASSES
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	private static class EmptyObjects extends Dispatcher {
+
+		@Override
+		public MockResponse dispatch(RecordedRequest request ) {
+			return new MockResponse().setBody( "{}" );
+		}
+	}
+
+}
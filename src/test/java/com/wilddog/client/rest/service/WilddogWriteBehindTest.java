@@ -0,0 +1,283 @@
+package com.wilddog.client.rest.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.wilddog.client.rest.error.WilddogException;
+import com.wilddog.client.rest.util.JacksonUtility;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+public class WilddogWriteBehindTest {
+
+	// the magic and the sequence-number of the last acknowledged write
+	private static final int HEADER_BYTES							= 12;
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	@Rule
+	public final MockWebServer server = new MockWebServer();
+
+	private Path journal;
+	private Wilddog offline;
+	private Wilddog online;
+
+	@Before
+	public void setUp() throws Throwable {
+		this.journal = this.folder.getRoot().toPath().resolve( "writes.journal" );
+		// nothing listens on port 1, so every write stays pending
+		this.offline = new Wilddog.Builder( "http://127.0.0.1:1/rest" ).retryPolicy( WilddogRetryPolicy.NONE ).build();
+		this.online = new Wilddog.Builder( this.server.url( "/rest" ).toString() ).build();
+	}
+
+	@After
+	public void tearDown() {
+		this.offline.close();
+		this.online.close();
+	}
+
+	@Test
+	public void replaysUnacknowledgedWritesWhenReopened() throws Throwable {
+
+		WilddogWriteBehind queue = this.offline.writeBehind( this.journal );
+		queue.put( "users/jack", "{\"age\":30}" );
+		queue.put( "users/jill", Collections.singletonMap( "age", 31 ) );
+		queue.patch( "counters", Collections.<String, Object>singletonMap( "users", 2 ) );
+		assertEquals( 3, queue.getPendingCount() );
+		queue.close();
+
+		this.server.enqueue( new MockResponse().setBody( "{}" ) );
+		queue = this.online.writeBehind( this.journal );
+		try {
+			assertTrue( queue.awaitDrained( 10, TimeUnit.SECONDS ) );
+		} finally {
+			queue.close();
+		}
+
+		// replayed before the drainer starts, so all three go out as one multi-path PATCH
+		RecordedRequest request = this.server.takeRequest();
+		assertEquals( "PATCH", request.getMethod() );
+		Map<String, Object> expected = new LinkedHashMap<String, Object>();
+		expected.put( "users/jack", Collections.singletonMap( "age", 30 ) );
+		expected.put( "users/jill", Collections.singletonMap( "age", 31 ) );
+		expected.put( "counters/users", 2 );
+		assertEquals( expected, JacksonUtility.DEFAULT.toMap( request.getBody().readUtf8() ) );
+		assertEquals( 1, this.server.getRequestCount() );
+	}
+
+	@Test
+	public void doesNotReplayAcknowledgedWrites() throws Throwable {
+
+		this.server.enqueue( new MockResponse().setBody( "{}" ) );
+		WilddogWriteBehind queue = this.online.writeBehind( this.journal );
+		queue.put( "a", "1" );
+		assertTrue( queue.awaitDrained( 10, TimeUnit.SECONDS ) );
+		queue.close();
+
+		queue = this.offline.writeBehind( this.journal );
+		try {
+			assertEquals( 0, queue.getPendingCount() );
+		} finally {
+			queue.close();
+		}
+	}
+
+	@Test
+	public void dropsATornRecordAndWritesOverIt() throws Throwable {
+
+		WilddogWriteBehind queue = this.offline.writeBehind( this.journal );
+		queue.put( "a", "1" );
+		queue.put( "b", "2" );
+		queue.close();
+
+		// a crash while appending leaves the record without its length, which is written last
+		try( FileChannel channel = FileChannel.open( this.journal, StandardOpenOption.READ, StandardOpenOption.WRITE ) ) {
+			long end = endOfRecords( channel );
+			ByteBuffer torn = ByteBuffer.allocate( 4 + 13 + 1 + 3 );
+			torn.putInt( 0 ).put( (byte) 1 ).putLong( 3 ).putInt( 1 ).put( (byte) 'c' ).put( "{\"x".getBytes( "UTF-8" ) );
+			torn.flip();
+			channel.write( torn, end );
+		}
+
+		queue = this.offline.writeBehind( this.journal );
+		assertEquals( 2, queue.getPendingCount() );
+		queue.put( "d", "4" );
+		queue.close();
+
+		this.server.enqueue( new MockResponse().setBody( "{}" ) );
+		queue = this.online.writeBehind( this.journal );
+		try {
+			assertTrue( queue.awaitDrained( 10, TimeUnit.SECONDS ) );
+		} finally {
+			queue.close();
+		}
+		Map<String, Object> expected = new LinkedHashMap<String, Object>();
+		expected.put( "a", 1 );
+		expected.put( "b", 2 );
+		expected.put( "d", 4 );
+		assertEquals( expected, JacksonUtility.DEFAULT.toMap( this.server.takeRequest().getBody().readUtf8() ) );
+	}
+
+	@Test
+	public void rejectsInvalidJsonWhenQueued() throws Throwable {
+
+		WilddogWriteBehind queue = this.offline.writeBehind( this.journal );
+		try {
+			for( String json : new String[] { "", "{\"a\":", "not json" } ) {
+				try {
+					queue.put( "a", json );
+					fail( "queued invalid json: " + json );
+				} catch( WilddogException expected ) {
+					// ie: rejected on the caller's thread, before it is journaled
+				}
+			}
+			assertEquals( 0, queue.getPendingCount() );
+		} finally {
+			queue.close();
+		}
+
+		queue = this.offline.writeBehind( this.journal );
+		try {
+			assertEquals( 0, queue.getPendingCount() );
+		} finally {
+			queue.close();
+		}
+	}
+
+	@Test
+	public void stopsOnAnAuthRefusalAndKeepsTheWrites() throws Throwable {
+
+		this.server.enqueue( new MockResponse().setResponseCode( 401 ).setBody( "{\"error\":\"Permission denied\"}" ) );
+		WilddogWriteBehind queue = this.online.writeBehind( this.journal );
+		try {
+			queue.put( "a", "1" );
+			assertFalse( queue.awaitDrained( 10, TimeUnit.SECONDS ) );
+			assertEquals( 1, queue.getPendingCount() );
+			try {
+				queue.put( "b", "2" );
+				fail( "queued a write on a stopped queue" );
+			} catch( WilddogException expected ) {
+				// ie: the caller is told
+			}
+		} finally {
+			queue.close();
+		}
+		// not retried
+		assertEquals( 1, this.server.getRequestCount() );
+
+		// kept for a queue with valid credentials
+		this.server.enqueue( new MockResponse().setBody( "{}" ) );
+		queue = this.online.writeBehind( this.journal );
+		try {
+			assertTrue( queue.awaitDrained( 10, TimeUnit.SECONDS ) );
+		} finally {
+			queue.close();
+		}
+		this.server.takeRequest();
+		assertEquals( Collections.singletonMap( "a", 1 ), JacksonUtility.DEFAULT.toMap( this.server.takeRequest().getBody().readUtf8() ) );
+	}
+
+	@Test
+	public void dropsAWriteRejectedForGood() throws Throwable {
+
+		this.server.enqueue( new MockResponse().setResponseCode( 400 ).setBody( "{\"error\":\"Invalid data\"}" ) );
+		this.server.enqueue( new MockResponse().setBody( "{}" ) );
+		WilddogWriteBehind queue = this.online.writeBehind( this.journal );
+		try {
+			queue.put( "a", "1" );
+			assertTrue( queue.awaitDrained( 10, TimeUnit.SECONDS ) );
+			queue.put( "b", "2" );
+			assertTrue( queue.awaitDrained( 10, TimeUnit.SECONDS ) );
+		} finally {
+			queue.close();
+		}
+		assertEquals( 2, this.server.getRequestCount() );
+	}
+
+	@Test
+	public void locksTheJournalWhileOpen() throws Throwable {
+
+		WilddogWriteBehind queue = this.offline.writeBehind( this.journal );
+		try {
+			this.offline.writeBehind( this.journal );
+			fail( "opened a journal that is in use" );
+		} catch( WilddogException expected ) {
+			// ie: already open by another queue
+		} finally {
+			queue.close();
+		}
+
+		// unlocked once closed
+		this.offline.writeBehind( this.journal ).close();
+	}
+
+	@Test
+	public void compactsAFullJournal() throws Throwable {
+
+		this.server.enqueue( new MockResponse().setBody( "{}" ) );
+		WilddogWriteBehind queue = this.online.writeBehind( this.journal, 100000, 100000 );
+		StringBuilder json = new StringBuilder( "\"" );
+		for( int i = 0; i < 4000; i++ ) {
+			json.append( 'x' );
+		}
+		String value = json.append( '"' ).toString();
+		// twice the minimum size of the journal, so it is compacted (and grown) on the way
+		int writes = (int) ( 2 * WilddogWriteBehind.MIN_JOURNAL_BYTES / 4000 );
+		for( int i = 0; i < writes; i++ ) {
+			this.server.enqueue( new MockResponse().setBody( "{}" ) );
+			queue.put( "items/" + i, value );
+		}
+		try {
+			assertTrue( queue.awaitDrained( 60, TimeUnit.SECONDS ) );
+		} finally {
+			queue.close();
+		}
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PRIVATE API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	/**
+	 * @return the offset after the last complete record; see the format in {@link WilddogWriteBehind}
+	 */
+	private static long endOfRecords(FileChannel channel ) throws Throwable {
+		ByteBuffer length = ByteBuffer.allocate( 4 );
+		long position = HEADER_BYTES;
+		while( true ) {
+			length.clear();
+			channel.read( length, position );
+			int recordBytes = length.getInt( 0 );
+			if( recordBytes == 0 ) {
+				return position;
+			}
+			position += 4 + recordBytes;
+		}
+	}
+
+}
@@ -0,0 +1,104 @@
+package com.wilddog.client.rest.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.wilddog.client.rest.error.JacksonUtilityException;
+
+public class JacksonUtilityTest {
+
+	private final JacksonUtility jackson = JacksonUtility.DEFAULT;
+
+	@Test
+	public void parsesAMapFromAStream() throws Throwable {
+
+		Map<String, Object> expected = new LinkedHashMap<String, Object>();
+		expected.put( "name", "jack" );
+		expected.put( "ages", Arrays.asList( 30, 31.5 ) );
+
+		assertEquals( expected, this.jackson.toMap( stream( " {\"name\":\"jack\",\"ages\":[30,31.5]} \n" ) ) );
+		assertEquals( expected, this.jackson.toMap( "{\"name\":\"jack\",\"ages\":[30,31.5]}".getBytes( "UTF-8" ) ) );
+	}
+
+	@Test
+	public void closesTheStreamOnceParsed() throws Throwable {
+
+		CloseRecordingStream in = stream( "{\"a\":1}" );
+		this.jackson.toMap( in );
+		assertTrue( in.closed );
+
+		in = stream( "{\"a\":[1,2" );
+		try {
+			this.jackson.toMap( in );
+		} catch( JacksonUtilityException expected ) {
+			// ie: closed all the same
+		}
+		assertTrue( in.closed );
+	}
+
+	@Test
+	public void mapsNothingButAnObjectToAnEmptyMap() throws Throwable {
+
+		assertTrue( this.jackson.toMap( stream( "" ) ).isEmpty() );
+		assertTrue( this.jackson.toMap( stream( "  \n" ) ).isEmpty() );
+		assertTrue( this.jackson.toMap( stream( "null" ) ).isEmpty() );
+		assertTrue( this.jackson.toMap( stream( "42" ) ).isEmpty() );
+		assertTrue( this.jackson.toMap( (byte[]) null ).isEmpty() );
+	}
+
+	@Test(expected = JacksonUtilityException.class)
+	public void failsOnATruncatedDocument() throws Throwable {
+		this.jackson.toMap( stream( "{\"a\":[1,2" ) );
+	}
+
+	@Test
+	public void decodesUtf8() throws Throwable {
+		assertEquals( "狗", this.jackson.toMap( stream( "{\"a\":\"狗\"}" ) ).get( "a" ) );
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// PRIVATE API
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	private static CloseRecordingStream stream(String json ) throws IOException {
+		return new CloseRecordingStream( json.getBytes( "UTF-8" ) );
+	}
+
+
+
+///////////////////////////////////////////////////////////////////////////////
+//
+// INTERNAL CLASSES
+//
+///////////////////////////////////////////////////////////////////////////////
+
+
+	private static class CloseRecordingStream extends ByteArrayInputStream {
+
+		private boolean closed = false;
+
+		CloseRecordingStream(byte[] bytes ) {
+			super( bytes );
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.closed = true;
+			super.close();
+		}
+	}
+
+}